@@ -0,0 +1,159 @@
+package ch.fhnw.swc.mrs.benchmark;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.UUID;
+
+import javax.sql.DataSource;
+
+import com.opentable.db.postgres.embedded.EmbeddedPostgres;
+
+import ch.fhnw.swc.mrs.data.DbMRSServices;
+import ch.fhnw.swc.mrs.model.BusinessDate;
+
+/**
+ * An embedded PostgreSQL instance holding a generated MRS data set. Movie number i gets the id
+ * <code>new UUID(0, i)</code>, user number j the id <code>new UUID(1, j)</code> and the name "User j". Every
+ * {@link #RENTED_EVERY}th movie is rented, its rental gets the id <code>new UUID(2, i)</code>.
+ */
+final class BenchmarkDatabase implements AutoCloseable {
+
+    /** Movie i is rented if i is a multiple of it. */
+    static final int RENTED_EVERY = 10;
+
+    private static final String INSERT_MOVIES = "INSERT INTO movies (id, title, rented, available, releasedate, "
+            + "pricecategory, agerating) "
+            + "SELECT ('0000000000000000' || lpad(to_hex(i), 16, '0'))::uuid, 'Movie ' || i, "
+            + "i % " + RENTED_EVERY + " = 0, CASE WHEN i % " + RENTED_EVERY + " = 0 THEN 0 ELSE 1 END, "
+            + "date '1970-01-01' + (i % 18000)::int, 'Regular', 0 FROM generate_series(0, ? - 1) AS i";
+    private static final String INSERT_USERS = "INSERT INTO clients (id, name, firstname, birthdate) "
+            + "SELECT ('0000000000000001' || lpad(to_hex(j), 16, '0'))::uuid, 'User ' || j, 'Bench', date '1980-01-01' "
+            + "FROM generate_series(0, ? - 1) AS j";
+    /** Rents the rented movies to the users in turn. */
+    private static final String INSERT_RENTALS = "INSERT INTO rentals (id, movieid, clientid, rentaldate) "
+            + "SELECT ('0000000000000002' || lpad(to_hex(i), 16, '0'))::uuid, "
+            + "('0000000000000000' || lpad(to_hex(i), 16, '0'))::uuid, "
+            + "('0000000000000001' || lpad(to_hex(i / " + RENTED_EVERY + " % ?), 16, '0'))::uuid, ? "
+            + "FROM generate_series(0, ? - 1, " + RENTED_EVERY + ") AS i";
+
+    private final EmbeddedPostgres pg;
+
+    private BenchmarkDatabase(EmbeddedPostgres pg) {
+        this.pg = pg;
+    }
+
+    /**
+     * Start an empty database and create the MRS tables.
+     * 
+     * @return the started database.
+     * @throws IOException if PostgreSQL could not be started.
+     */
+    static BenchmarkDatabase start() throws IOException {
+        BenchmarkDatabase db = new BenchmarkDatabase(EmbeddedPostgres.start());
+        new DbMRSServices(db.getDataSource()).init();
+        return db;
+    }
+
+    /**
+     * @return a data source connecting to this database.
+     */
+    DataSource getDataSource() {
+        return pg.getPostgresDatabase();
+    }
+
+    /**
+     * @return the configuration of a connection pool for this database.
+     */
+    Properties getPoolConfiguration() {
+        Properties config = new Properties();
+        config.setProperty("jdbcUrl", pg.getJdbcUrl("postgres", "postgres"));
+        config.setProperty("username", "postgres");
+        config.setProperty("poolName", "benchmark");
+        return config;
+    }
+
+    /**
+     * Generate the data set on the server side.
+     * 
+     * @param movies number of movies to create, the rented ones are rented today.
+     * @param users number of users to create, user j rents the rented movies j, j + users and so on.
+     * @throws SQLException whenever something goes wrong.
+     */
+    void populate(int movies, int users) throws SQLException {
+        try (Connection c = getDataSource().getConnection()) {
+            executeWithCount(c, INSERT_MOVIES, movies);
+            executeWithCount(c, INSERT_USERS, users);
+            try (PreparedStatement ps = c.prepareStatement(INSERT_RENTALS)) {
+                ps.setInt(1, users);
+                ps.setDate(2, Date.valueOf(BusinessDate.today()));
+                ps.setInt(3, movies);
+                ps.executeUpdate();
+            }
+            try (Statement s = c.createStatement()) {
+                s.execute("ANALYZE");
+            }
+        }
+    }
+
+    private static void executeWithCount(Connection c, String sql, int count) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setInt(1, count);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * @param movieId a rented movie.
+     * @return the id of the rental of the movie or <code>null</code> if it is not rented.
+     * @throws SQLException whenever something goes wrong.
+     */
+    UUID findRentalId(UUID movieId) throws SQLException {
+        try (Connection c = getDataSource().getConnection();
+                PreparedStatement ps = c.prepareStatement("SELECT id FROM rentals WHERE movieid = ?")) {
+            ps.setObject(1, movieId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? (UUID) rs.getObject(1) : null;
+            }
+        }
+    }
+
+    /**
+     * Make a movie available again, independently of the backend under test.
+     * 
+     * @param movieId the movie to release.
+     * @throws SQLException whenever something goes wrong.
+     */
+    void release(UUID movieId) throws SQLException {
+        try (Connection c = getDataSource().getConnection();
+                PreparedStatement del = c.prepareStatement("DELETE FROM rentals WHERE movieid = ?");
+                PreparedStatement upd = c.prepareStatement(
+                        "UPDATE movies SET available = copies, rented = false WHERE id = ?")) {
+            del.setObject(1, movieId);
+            del.executeUpdate();
+            upd.setObject(1, movieId);
+            upd.executeUpdate();
+        }
+    }
+
+    /**
+     * Remove all rows of the MRS tables.
+     * 
+     * @throws SQLException whenever something goes wrong.
+     */
+    void truncate() throws SQLException {
+        try (Connection c = getDataSource().getConnection(); Statement s = c.createStatement()) {
+            s.execute("TRUNCATE rentals, movies, clients");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        pg.close();
+    }
+}
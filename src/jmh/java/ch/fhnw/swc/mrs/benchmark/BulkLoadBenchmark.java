@@ -0,0 +1,120 @@
+package ch.fhnw.swc.mrs.benchmark;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.fhnw.swc.mrs.data.ConnectionPool;
+import ch.fhnw.swc.mrs.data.DbMRSServices;
+import ch.fhnw.swc.mrs.model.Movie;
+import ch.fhnw.swc.mrs.model.PriceCategory;
+
+/**
+ * Compares loading a catalogue into the database back-end movie by movie with the bulk operation. Each invocation
+ * loads the whole catalogue into an empty table.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class BulkLoadBenchmark {
+
+    /**
+     * The database back-end and the catalogue to load.
+     */
+    @State(Scope.Benchmark)
+    public static class Catalogue {
+        /** Number of movies to load. */
+        @Param({"10000", "1000000"})
+        public int movies;
+
+        /** Number of rows sent per JDBC batch. */
+        @Param({"100", "1000", "10000"})
+        public int batchSize;
+
+        private BenchmarkDatabase database;
+        private DbMRSServices services;
+        private List<Movie> catalogue;
+
+        /**
+         * Start the database.
+         *
+         * @throws Exception whenever something goes wrong.
+         */
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            PriceCategory.init();
+            database = BenchmarkDatabase.start();
+            Properties config = database.getPoolConfiguration();
+            config.setProperty(ConnectionPool.BATCH_SIZE, Integer.toString(batchSize));
+            config.setProperty("dataSource.reWriteBatchedInserts", "true");
+            services = new DbMRSServices(config);
+        }
+
+        /**
+         * Empty the table and create a new catalogue, the movies get new ids when they are loaded.
+         *
+         * @throws Exception whenever something goes wrong.
+         */
+        @Setup(Level.Invocation)
+        public void prepare() throws Exception {
+            database.truncate();
+            catalogue = new ArrayList<>(movies);
+            LocalDate epoch = LocalDate.of(1970, 1, 1);
+            PriceCategory regular = PriceCategory.getPriceCategoryFromId("Regular");
+            for (int i = 0; i < movies; i++) {
+                catalogue.add(new Movie("Movie " + i, epoch.plusDays(i % 18000), regular, 0));
+            }
+        }
+
+        /**
+         * Shut down the database.
+         *
+         * @throws Exception whenever something goes wrong.
+         */
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            services.close();
+            database.close();
+        }
+    }
+
+    /**
+     * @param c the catalogue to load.
+     * @return whether all movies have been created.
+     */
+    @Benchmark
+    public boolean createMovies(Catalogue c) {
+        return c.services.createMovies(c.catalogue);
+    }
+
+    /**
+     * @param c the catalogue to load.
+     * @return the last movie created.
+     */
+    @Benchmark
+    public Movie createMovie(Catalogue c) {
+        Movie last = null;
+        for (Movie m : c.catalogue) {
+            last = c.services.createMovie(m.getTitle(), m.getReleaseDate(), "Regular", m.getAgeRating());
+        }
+        return last;
+    }
+}
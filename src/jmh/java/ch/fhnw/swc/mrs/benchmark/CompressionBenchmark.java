@@ -0,0 +1,125 @@
+package ch.fhnw.swc.mrs.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.fhnw.swc.mrs.util.Compression;
+import ch.fhnw.swc.mrs.util.JsonUtil;
+
+/**
+ * Measures the CPU time to encode a movie listing of a given size with each content coding. The bytes on the wire
+ * are printed when a trial is set up, they do not depend on the measurement.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompressionBenchmark {
+
+    private static final String[] WORDS = {"Return", "Night", "Star", "Lost", "City", "of", "the", "Last", "Dark",
+        "Empire", "Love", "Secret", "Man", "Ghost", "Island", "War", "King", "Blue", "Dream", "Code"};
+    private static final String[] CATEGORIES = {"Regular", "Children", "New Release"};
+
+    /**
+     * A rendered movie listing.
+     */
+    @State(Scope.Benchmark)
+    public static class Listing {
+        /** Number of movies in the listing, roughly 130 bytes each. */
+        @Param({"5", "50", "500", "5000", "50000"})
+        public int movies;
+
+        /** Content coding, identity means uncompressed. */
+        @Param({"identity", "gzip", "deflate"})
+        public String coding;
+
+        private byte[] json;
+
+        /**
+         * Render the listing and report its size on the wire.
+         *
+         * @throws IOException never.
+         */
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            Random random = new Random(42);
+            List<Map<String, Object>> listing = new ArrayList<>(movies);
+            for (int i = 0; i < movies; i++) {
+                Map<String, Object> movie = new LinkedHashMap<>();
+                movie.put("id", new UUID(random.nextLong(), random.nextLong()).toString());
+                movie.put("rented", random.nextInt(10) == 0);
+                movie.put("title", WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]
+                        + " " + WORDS[random.nextInt(WORDS.length)] + " " + random.nextInt(100));
+                movie.put("releaseDate", LocalDate.of(1950, 1, 1).plusDays(random.nextInt(25000)).toString());
+                movie.put("priceCategory", CATEGORIES[random.nextInt(CATEGORIES.length)]);
+                movie.put("ageRating", random.nextInt(19));
+                listing.add(movie);
+            }
+            json = JsonUtil.dataToJson(listing).getBytes(StandardCharsets.UTF_8);
+            CountingStream wire = new CountingStream();
+            encode(wire);
+            System.out.printf("%n%d movies, %s: %d bytes -> %d bytes on the wire (%.1f%%)%n", movies, coding,
+                    json.length, wire.count, 100.0 * wire.count / json.length);
+        }
+
+        long encode(CountingStream wire) throws IOException {
+            try (OutputStream out = Compression.encode(coding, wire)) {
+                // write in the chunks a JSON generator hands to the servlet stream.
+                for (int i = 0; i < json.length; i += 8000) {
+                    out.write(json, i, Math.min(8000, json.length - i));
+                }
+            }
+            return wire.count;
+        }
+    }
+
+    /**
+     * @param listing the listing to encode.
+     * @return the number of bytes on the wire.
+     * @throws IOException never.
+     */
+    @Benchmark
+    public long encode(Listing listing) throws IOException {
+        return listing.encode(new CountingStream());
+    }
+
+    /**
+     * Discards the bytes, only counts them.
+     */
+    static final class CountingStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package ch.fhnw.swc.mrs.benchmark;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.fhnw.swc.mrs.data.DbMRSServices;
+import ch.fhnw.swc.mrs.model.Movie;
+import ch.fhnw.swc.mrs.model.PriceCategory;
+import ch.fhnw.swc.mrs.model.User;
+
+/**
+ * Compares the per-request latency of the database back-end with pooled connections against opening a physical
+ * connection for every request.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class ConnectionPoolBenchmark {
+
+    private static final int MOVIES = 10000;
+    private static final int USERS = 100;
+
+    /**
+     * The back-end under test, with or without connection pool.
+     */
+    @State(Scope.Benchmark)
+    public static class Backend {
+        /** Whether the connections are pooled. */
+        @Param({"pooled", "unpooled"})
+        public String connections;
+
+        private BenchmarkDatabase database;
+        private DbMRSServices services;
+
+        /**
+         * Start and fill the database.
+         *
+         * @throws Exception whenever something goes wrong.
+         */
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            PriceCategory.init();
+            database = BenchmarkDatabase.start();
+            database.populate(MOVIES, USERS);
+            services = "pooled".equals(connections) ? new DbMRSServices(database.getPoolConfiguration())
+                    : new DbMRSServices(database.getDataSource());
+        }
+
+        /**
+         * Report the pool metrics and shut down the database.
+         *
+         * @throws Exception whenever something goes wrong.
+         */
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            if (services.getPoolMetrics() != null) {
+                System.out.println("Pool: " + services.getPoolMetrics());
+            }
+            services.close();
+            database.close();
+        }
+    }
+
+    /**
+     * Cycles through the movies and users of the data set.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        UUID nextMovie() {
+            return new UUID(0, next++ % MOVIES);
+        }
+
+        String nextUserName() {
+            return "User " + next++ % USERS;
+        }
+    }
+
+    /**
+     * @param b the back-end under test.
+     * @param c provides the movie to look up.
+     * @return the movie.
+     */
+    @Benchmark
+    public Movie getMovieById(Backend b, Cursor c) {
+        return b.services.getMovieById(c.nextMovie());
+    }
+
+    /**
+     * @param b the back-end under test.
+     * @param c provides the name to look up.
+     * @return the first user with the name.
+     */
+    @Benchmark
+    public User getUserByName(Backend b, Cursor c) {
+        return b.services.getUserByName(c.nextUserName());
+    }
+}
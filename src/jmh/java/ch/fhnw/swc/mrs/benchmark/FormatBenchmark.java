@@ -0,0 +1,108 @@
+package ch.fhnw.swc.mrs.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.fhnw.swc.mrs.model.Movie;
+import ch.fhnw.swc.mrs.model.PriceCategory;
+import ch.fhnw.swc.mrs.util.Format;
+import ch.fhnw.swc.mrs.util.JsonUtil;
+
+/**
+ * Compares encoding and decoding a movie listing in each {@link Format}. The size of a listing in each format is
+ * printed when a trial is set up.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FormatBenchmark {
+
+    private static final String[] CATEGORIES = {"Regular", "Children", "New Release"};
+
+    /**
+     * A movie listing and its encoding.
+     */
+    @State(Scope.Benchmark)
+    public static class Listing {
+        /** Number of movies in the listing. */
+        @Param({"1", "1000"})
+        public int movies;
+
+        /** The format of the listing. */
+        @Param({"JSON", "SMILE", "CBOR"})
+        public Format format;
+
+        private List<Map<String, Object>> listing;
+        private byte[] body;
+
+        /**
+         * Build and encode the listing.
+         *
+         * @throws IOException never.
+         */
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            PriceCategory.init();
+            listing = new ArrayList<>(movies);
+            for (int i = 0; i < movies; i++) {
+                Map<String, Object> movie = new LinkedHashMap<>();
+                movie.put("id", new UUID(0, i).toString());
+                movie.put("rented", false);
+                movie.put("title", "Movie " + i);
+                movie.put("releaseDate", LocalDate.of(1950, 1, 1).plusDays(i).toString());
+                movie.put("priceCategory", CATEGORIES[i % CATEGORIES.length]);
+                movie.put("ageRating", i % 19);
+                listing.add(movie);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            JsonUtil.writeArray(listing.iterator(), format, out);
+            body = out.toByteArray();
+            System.out.printf("%n%d movies as %s: %d bytes%n", movies, format, body.length);
+        }
+    }
+
+    /**
+     * @param listing the listing to encode.
+     * @return the encoded listing.
+     * @throws IOException never.
+     */
+    @Benchmark
+    public byte[] encode(Listing listing) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(listing.body.length);
+        JsonUtil.writeArray(listing.listing.iterator(), listing.format, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * @param listing the listing to decode.
+     * @return the decoded movies.
+     * @throws IOException never.
+     */
+    @Benchmark
+    public List<Movie> decode(Listing listing) throws IOException {
+        return JsonUtil.bodyToMovies(new ByteArrayInputStream(listing.body), listing.format);
+    }
+}
@@ -0,0 +1,132 @@
+package ch.fhnw.swc.mrs.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ch.fhnw.swc.mrs.model.Movie;
+import ch.fhnw.swc.mrs.model.PriceCategory;
+import ch.fhnw.swc.mrs.util.JsonUtil;
+
+/**
+ * Compares decoding request bodies through a <code>JsonNode</code> tree, the way {@link JsonUtil} used to, with the
+ * streaming decoders of {@link JsonUtil}. Run with <code>-prof gc</code> to compare the garbage per body.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonDecodingBenchmark {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String[] CATEGORIES = {"Regular", "Children", "New Release"};
+
+    /**
+     * Request bodies: a single movie and an array of movies.
+     */
+    @State(Scope.Benchmark)
+    public static class Bodies {
+        /** Number of movies in the array. */
+        @Param({"10", "1000"})
+        public int movies;
+
+        private String single;
+        private byte[] array;
+
+        /**
+         * Render the bodies.
+         */
+        @Setup(Level.Trial)
+        public void setUp() {
+            PriceCategory.init();
+            StringBuilder json = new StringBuilder("[");
+            for (int i = 0; i < movies; i++) {
+                if (i > 0) {
+                    json.append(',');
+                }
+                json.append("{\"id\":\"").append(new UUID(0, i)).append("\",\"rented\":false,\"title\":\"Movie ")
+                        .append(i).append("\",\"releaseDate\":\"").append(LocalDate.of(1950, 1, 1).plusDays(i))
+                        .append("\",\"priceCategory\":\"").append(CATEGORIES[i % CATEGORIES.length])
+                        .append("\",\"ageRating\":").append(i % 19).append('}');
+            }
+            array = json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+            single = json.substring(1, json.indexOf("}") + 1);
+        }
+    }
+
+    /**
+     * @param bodies the request bodies.
+     * @return the decoded movie.
+     * @throws IOException never.
+     */
+    @Benchmark
+    public Movie singleTree(Bodies bodies) throws IOException {
+        return treeToMovie(MAPPER.readTree(bodies.single));
+    }
+
+    /**
+     * @param bodies the request bodies.
+     * @return the decoded movie.
+     * @throws IOException never.
+     */
+    @Benchmark
+    public Movie singleStream(Bodies bodies) throws IOException {
+        return JsonUtil.jsonToMovie(bodies.single);
+    }
+
+    /**
+     * @param bodies the request bodies.
+     * @return the decoded movies.
+     * @throws IOException never.
+     */
+    @Benchmark
+    public List<Movie> arrayTree(Bodies bodies) throws IOException {
+        List<Movie> result = new ArrayList<>();
+        for (JsonNode node : MAPPER.readTree(new ByteArrayInputStream(bodies.array))) {
+            result.add(treeToMovie(node));
+        }
+        return result;
+    }
+
+    /**
+     * @param bodies the request bodies.
+     * @return the decoded movies.
+     * @throws IOException never.
+     */
+    @Benchmark
+    public List<Movie> arrayStream(Bodies bodies) throws IOException {
+        return JsonUtil.jsonToMovies(new ByteArrayInputStream(bodies.array));
+    }
+
+    /**
+     * The former decoder: pick the fields from the tree and let the movie parse the strings.
+     */
+    private static Movie treeToMovie(JsonNode node) {
+        Movie m = new Movie(node.get("title").asText(), node.get("releaseDate").asText(),
+                node.get("priceCategory").asText(), node.get("ageRating").asInt());
+        m.setId(UUID.fromString(node.get("id").asText()));
+        return m;
+    }
+}
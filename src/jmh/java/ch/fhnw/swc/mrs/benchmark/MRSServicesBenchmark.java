@@ -0,0 +1,285 @@
+package ch.fhnw.swc.mrs.benchmark;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.fhnw.swc.mrs.api.MRSServices;
+import ch.fhnw.swc.mrs.data.DbMRSServices;
+import ch.fhnw.swc.mrs.data.SimpleMRSServices;
+import ch.fhnw.swc.mrs.model.BusinessDate;
+import ch.fhnw.swc.mrs.model.Movie;
+import ch.fhnw.swc.mrs.model.PriceCategory;
+import ch.fhnw.swc.mrs.model.Rental;
+import ch.fhnw.swc.mrs.model.User;
+
+/**
+ * Measures the hot paths of the MRS services on both back-ends. Throughput and latency percentiles are reported by
+ * the benchmark modes, the allocation rate by the gc profiler (<code>-prof gc</code>, enabled by default in the jmh
+ * profile).
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class MRSServicesBenchmark {
+
+    /** Number of movies that are used for renting and returning. */
+    private static final int RENTABLE_MOVIES = 1000;
+    /** Minimal number of users in the data set. */
+    private static final int MIN_USERS = 100;
+    /** Movie i of the data set is rented if i is a multiple of it, as in the database. */
+    private static final int RENTED_EVERY = BenchmarkDatabase.RENTED_EVERY;
+
+    /**
+     * The back-end under test, filled with a generated data set.
+     */
+    @State(Scope.Benchmark)
+    public static class Backend {
+        /** The back-end under test. */
+        @Param({"simple", "db"})
+        public String backend;
+
+        /** Number of movies in the data set. */
+        @Param({"1000", "100000", "1000000", "10000000"})
+        public int movies;
+
+        private MRSServices services;
+        private BenchmarkDatabase database;
+        private UUID[] rentable;
+        private UUID[] users;
+        private String[] userNames;
+
+        /**
+         * Create the back-end and fill it with the data set.
+         *
+         * @throws Exception whenever something goes wrong.
+         */
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            PriceCategory.init();
+            // each user rents one of the rented movies at most, so every user may rent another movie.
+            int userCount = Math.max(MIN_USERS, (movies + RENTED_EVERY - 1) / RENTED_EVERY);
+            users = new UUID[userCount];
+            userNames = new String[userCount];
+            for (int j = 0; j < userCount; j++) {
+                userNames[j] = "User " + j;
+            }
+            List<UUID> available = new ArrayList<>(RENTABLE_MOVIES);
+
+            if ("db".equals(backend)) {
+                database = BenchmarkDatabase.start();
+                database.populate(movies, userCount);
+                services = new DbMRSServices(database.getPoolConfiguration());
+                for (int i = 0; i < movies && available.size() < RENTABLE_MOVIES; i++) {
+                    if (i % RENTED_EVERY != 0) {
+                        available.add(new UUID(0, i));
+                    }
+                }
+                for (int j = 0; j < userCount; j++) {
+                    users[j] = new UUID(1, j);
+                }
+            } else {
+                services = new SimpleMRSServices();
+                for (int j = 0; j < userCount; j++) {
+                    users[j] = services.createUser(userNames[j], "Bench", LocalDate.of(1980, 1, 1)).getId();
+                }
+                LocalDate epoch = LocalDate.of(1970, 1, 1);
+                LocalDate today = BusinessDate.today();
+                for (int i = 0; i < movies; i++) {
+                    Movie m = services.createMovie("Movie " + i, epoch.plusDays(i % 18000), "Regular", 0);
+                    if (i % RENTED_EVERY == 0) {
+                        services.rentMovie(users[i / RENTED_EVERY], m.getId(), today);
+                    } else if (available.size() < RENTABLE_MOVIES) {
+                        available.add(m.getId());
+                    }
+                }
+            }
+            rentable = available.toArray(new UUID[available.size()]);
+        }
+
+        /**
+         * Shut down the database, if any.
+         *
+         * @throws Exception whenever something goes wrong.
+         */
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            if (services instanceof DbMRSServices) {
+                ((DbMRSServices) services).close();
+            }
+            if (database != null) {
+                database.close();
+            }
+        }
+
+        UUID findRental(UUID userId, UUID movieId) throws Exception {
+            if (database != null) {
+                return database.findRentalId(movieId);
+            }
+            for (Rental r : services.getUserById(userId).getRentals()) {
+                if (r.getMovie().getId().equals(movieId)) {
+                    return r.getId();
+                }
+            }
+            return null;
+        }
+
+        void release(UUID userId, UUID movieId) throws Exception {
+            if (database != null) {
+                database.release(movieId);
+            } else {
+                UUID rentalId = findRental(userId, movieId);
+                if (rentalId != null) {
+                    services.returnRental(rentalId);
+                }
+            }
+        }
+    }
+
+    /**
+     * Cycles through the available movies and the users.
+     */
+    @State(Scope.Thread)
+    public static class RentalCandidate {
+        private int next;
+        /** Set by the invocation set-up, JMH does not allow to pass it to the tear-down as well. */
+        Backend bench;
+        UUID userId;
+        UUID movieId;
+
+        void pick(Backend b) {
+            bench = b;
+            int i = next++ % b.rentable.length;
+            movieId = b.rentable[i];
+            userId = b.users[i % b.users.length];
+        }
+    }
+
+    /**
+     * An available movie and a user without rentals, the rental is undone after each invocation.
+     */
+    @State(Scope.Thread)
+    public static class RentalToCreate extends RentalCandidate {
+        /**
+         * @param b the back-end under test.
+         */
+        @Setup(Level.Invocation)
+        public void setUp(Backend b) {
+            pick(b);
+        }
+
+        /**
+         * @throws Exception whenever something goes wrong.
+         */
+        @TearDown(Level.Invocation)
+        public void tearDown() throws Exception {
+            bench.release(userId, movieId);
+        }
+    }
+
+    /**
+     * A freshly created rental.
+     */
+    @State(Scope.Thread)
+    public static class RentalToReturn extends RentalCandidate {
+        UUID rentalId;
+
+        /**
+         * @param b the back-end under test.
+         * @throws Exception whenever something goes wrong.
+         */
+        @Setup(Level.Invocation)
+        public void setUp(Backend b) throws Exception {
+            pick(b);
+            b.services.createRental(userId, movieId, BusinessDate.today());
+            rentalId = b.findRental(userId, movieId);
+        }
+
+        /**
+         * @throws Exception whenever something goes wrong.
+         */
+        @TearDown(Level.Invocation)
+        public void tearDown() throws Exception {
+            bench.release(userId, movieId);
+        }
+    }
+
+    /**
+     * Cycles through the user names.
+     */
+    @State(Scope.Thread)
+    public static class NameCursor {
+        private int next;
+
+        String next(Backend b) {
+            return b.userNames[next++ % b.userNames.length];
+        }
+    }
+
+    /**
+     * @param b the back-end under test.
+     * @return all movies that are not rented.
+     */
+    @Benchmark
+    public Collection<Movie> getAllAvailableMovies(Backend b) {
+        return b.services.getAllMovies(false);
+    }
+
+    /**
+     * @param b the back-end under test.
+     * @return all rented movies.
+     */
+    @Benchmark
+    public Collection<Movie> getAllRentedMovies(Backend b) {
+        return b.services.getAllMovies(true);
+    }
+
+    /**
+     * @param b the back-end under test.
+     * @param names provides the name to look up.
+     * @return the first user with the name.
+     */
+    @Benchmark
+    public User getUserByName(Backend b, NameCursor names) {
+        return b.services.getUserByName(names.next(b));
+    }
+
+    /**
+     * @param b the back-end under test.
+     * @param r the movie to rent and the renting user.
+     * @return whether the rental was created.
+     */
+    @Benchmark
+    public boolean createRental(Backend b, RentalToCreate r) {
+        return b.services.createRental(r.userId, r.movieId, BusinessDate.today());
+    }
+
+    /**
+     * @param b the back-end under test.
+     * @param r the rental to return.
+     * @return whether the rental was returned.
+     */
+    @Benchmark
+    public boolean returnRental(Backend b, RentalToReturn r) {
+        return b.services.returnRental(r.rentalId);
+    }
+}
@@ -0,0 +1,112 @@
+package ch.fhnw.swc.mrs.benchmark;
+
+import java.time.LocalDate;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import ch.fhnw.swc.mrs.model.Movie;
+import ch.fhnw.swc.mrs.model.PriceCategory;
+
+/**
+ * Cost of the accessors, <code>equals</code> and <code>hashCode</code> of {@link Movie}, e.g. while a list of movies
+ * is serialized or looked up in a hash set. With <code>diagnostics</code> the calls are traced, as they always were
+ * before tracing became opt-in; the log level is <code>info</code>, so the trace calls only check the level.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MovieBenchmark {
+
+    private static final String[] CATEGORIES = {"Regular", "Children", "New Release"};
+    /** Number of movies per invocation. */
+    private static final int MOVIES = 1024;
+
+    /** Whether the calls are traced, sets the system property <code>mrs.diagnostics</code>. */
+    @Param({"false", "true"})
+    public boolean diagnostics;
+
+    private Movie[] movies;
+    private Movie[] copies;
+
+    /**
+     * Create the movies and an equal copy of each one. Movie is initialized here, after the diagnostics mode has
+     * been set in this fork.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        System.setProperty("mrs.diagnostics", Boolean.toString(diagnostics));
+        PriceCategory.init();
+        movies = new Movie[MOVIES];
+        copies = new Movie[MOVIES];
+        for (int i = 0; i < MOVIES; i++) {
+            movies[i] = create(i);
+            copies[i] = create(i);
+        }
+    }
+
+    private static Movie create(int i) {
+        Movie m = new Movie("Movie " + i, LocalDate.of(1950, 1, 1).plusDays(i),
+                PriceCategory.getPriceCategoryFromId(CATEGORIES[i % CATEGORIES.length]), i % 19);
+        m.setId(new UUID(0, i));
+        return m;
+    }
+
+    /**
+     * @param bh consumes the properties.
+     */
+    @Benchmark
+    public void accessors(Blackhole bh) {
+        for (Movie m : movies) {
+            bh.consume(m.getId());
+            bh.consume(m.getTitle());
+            bh.consume(m.isRented());
+            bh.consume(m.getReleaseDate());
+            bh.consume(m.getPriceCategory());
+            bh.consume(m.getAgeRating());
+            bh.consume(m.getVersion());
+        }
+    }
+
+    /**
+     * @return the sum of the hash codes.
+     */
+    @Benchmark
+    public int hashCodes() {
+        int sum = 0;
+        for (Movie m : movies) {
+            sum += m.hashCode();
+        }
+        return sum;
+    }
+
+    /**
+     * @return the number of movies equal to their copy.
+     */
+    @Benchmark
+    public int equalCopies() {
+        int equal = 0;
+        for (int i = 0; i < MOVIES; i++) {
+            if (movies[i].equals(copies[i])) {
+                equal++;
+            }
+        }
+        return equal;
+    }
+}
@@ -0,0 +1,269 @@
+package ch.fhnw.swc.mrs.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ch.fhnw.swc.mrs.api.MRSServices;
+import ch.fhnw.swc.mrs.controller.RentalController;
+import ch.fhnw.swc.mrs.data.DbMRSServices;
+import ch.fhnw.swc.mrs.data.SimpleMRSServices;
+import ch.fhnw.swc.mrs.model.PriceCategory;
+import ch.fhnw.swc.mrs.util.StatusCodes;
+import spark.Spark;
+
+/**
+ * Load test of the rental routes over HTTP. Every benchmark thread is a client with a keep-alive connection that
+ * rents a movie with <code>POST /rentals</code> and returns it with <code>DELETE /rentals/:id</code>; the
+ * throughput of {@link #rentAndReturn} is the number of rentals per second the server completes. The number of
+ * clients is set with <code>-t</code>.
+ * <p>
+ * In {@link #rentContended} the clients compete for a handful of movies, the rates of created rentals and of
+ * conflicts (409) are reported as secondary results.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(8)
+public class RentalLoadBenchmark {
+
+    private static final int PORT = 4568;
+    /** Number of movies in the data set. */
+    private static final int MOVIES = 10_000;
+    /** Number of users in the data set, each client rents as one of them. */
+    private static final int USERS = 1_000;
+    /** Number of movies the clients compete for in {@link #rentContended}. */
+    private static final int CONTENDED_MOVIES = 4;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * The server, with a back-end filled with a generated data set.
+     */
+    @State(Scope.Benchmark)
+    public static class Server {
+        /** The back-end behind the routes. */
+        @Param({"simple", "db"})
+        public String backend;
+
+        private MRSServices services;
+        private BenchmarkDatabase database;
+        private UUID[] rentable;
+        private UUID[] users;
+        private final AtomicInteger clients = new AtomicInteger();
+
+        /**
+         * Fill the back-end and start the server.
+         *
+         * @throws Exception whenever something goes wrong.
+         */
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            PriceCategory.init();
+            List<UUID> available = new ArrayList<>(MOVIES);
+            users = new UUID[USERS];
+            if ("db".equals(backend)) {
+                database = BenchmarkDatabase.start();
+                database.populate(MOVIES, USERS);
+                services = new DbMRSServices(database.getPoolConfiguration());
+                for (int i = 0; i < MOVIES; i++) {
+                    if (i % BenchmarkDatabase.RENTED_EVERY != 0) {
+                        available.add(new UUID(0, i));
+                    }
+                }
+                for (int j = 0; j < USERS; j++) {
+                    users[j] = new UUID(1, j);
+                }
+            } else {
+                services = new SimpleMRSServices();
+                LocalDate epoch = LocalDate.of(1970, 1, 1);
+                for (int i = 0; i < MOVIES; i++) {
+                    available.add(services.createMovie("Movie " + i, epoch.plusDays(i), "Regular", 0).getId());
+                }
+                for (int j = 0; j < USERS; j++) {
+                    users[j] = services.createUser("User " + j, "Bench", LocalDate.of(1980, 1, 1)).getId();
+                }
+            }
+            rentable = available.toArray(new UUID[available.size()]);
+            Spark.port(PORT);
+            RentalController.init(services);
+            Spark.awaitInitialization();
+        }
+
+        /**
+         * Stop the server and shut down the database, if any.
+         *
+         * @throws Exception whenever something goes wrong.
+         */
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            Spark.stop();
+            if (services instanceof DbMRSServices) {
+                ((DbMRSServices) services).close();
+            }
+            if (database != null) {
+                database.close();
+            }
+        }
+    }
+
+    /**
+     * A client renting as a user of its own, from a slice of the movies no other client rents.
+     */
+    @State(Scope.Thread)
+    public static class Client {
+        private UUID userId;
+        private UUID[] movies;
+        private int next;
+
+        /**
+         * @param server the server under test.
+         * @param params tell the number of clients.
+         */
+        @Setup(Level.Trial)
+        public void setUp(Server server, BenchmarkParams params) {
+            int n = server.clients.getAndIncrement();
+            int count = params.getThreads();
+            userId = server.users[n % server.users.length];
+            List<UUID> slice = new ArrayList<>();
+            for (int i = n; i < server.rentable.length; i += count) {
+                slice.add(server.rentable[i]);
+            }
+            movies = slice.toArray(new UUID[slice.size()]);
+        }
+    }
+
+    /**
+     * Outcomes of the contended rentals, per second.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Outcomes {
+        /** Rentals that have been created. */
+        public long created;
+        /** Rentals that have been refused because another client had rented the movie. */
+        public long conflicts;
+
+        /**
+         * Start counting anew.
+         */
+        @Setup(Level.Iteration)
+        public void reset() {
+            created = 0;
+            conflicts = 0;
+        }
+    }
+
+    /**
+     * @param server the server under test.
+     * @param client the renting client.
+     * @return the status of the return.
+     * @throws IOException if a request fails.
+     */
+    @Benchmark
+    public int rentAndReturn(Server server, Client client) throws IOException {
+        UUID movieId = client.movies[client.next++ % client.movies.length];
+        HttpURLConnection rent = rent(client.userId, movieId);
+        if (rent.getResponseCode() != StatusCodes.CREATED) {
+            throw new IllegalStateException("rental refused: " + rent.getResponseCode());
+        }
+        return giveBack(rentalId(rent));
+    }
+
+    /**
+     * @param server the server under test.
+     * @param client the renting client.
+     * @param outcomes counts the created and the refused rentals.
+     * @return the status of the rental.
+     * @throws IOException if a request fails.
+     */
+    @Benchmark
+    public int rentContended(Server server, Client client, Outcomes outcomes) throws IOException {
+        UUID movieId = server.rentable[client.next++ % CONTENDED_MOVIES];
+        HttpURLConnection rent = rent(client.userId, movieId);
+        int status = rent.getResponseCode();
+        if (status == StatusCodes.CREATED) {
+            outcomes.created++;
+            giveBack(rentalId(rent));
+        } else {
+            outcomes.conflicts++;
+            drain(rent.getErrorStream());
+        }
+        return status;
+    }
+
+    private static HttpURLConnection rent(UUID userId, UUID movieId) throws IOException {
+        HttpURLConnection c = open("/rentals", "POST");
+        c.setDoOutput(true);
+        c.setRequestProperty("Content-Type", "application/json");
+        byte[] body = ("{\"userId\":\"" + userId + "\",\"movieId\":\"" + movieId + "\"}")
+                .getBytes(StandardCharsets.UTF_8);
+        try (OutputStream out = c.getOutputStream()) {
+            out.write(body);
+        }
+        return c;
+    }
+
+    private static String rentalId(HttpURLConnection rent) throws IOException {
+        try (InputStream in = rent.getInputStream()) {
+            return MAPPER.readTree(in).get("id").asText();
+        }
+    }
+
+    private static int giveBack(String rentalId) throws IOException {
+        HttpURLConnection c = open("/rentals/" + rentalId, "DELETE");
+        int status = c.getResponseCode();
+        drain(status < 400 ? c.getInputStream() : c.getErrorStream());
+        return status;
+    }
+
+    private static HttpURLConnection open(String path, String method) throws IOException {
+        HttpURLConnection c = (HttpURLConnection) new URL("http", "localhost", PORT, path).openConnection();
+        c.setRequestMethod(method);
+        return c;
+    }
+
+    /**
+     * Read a body to its end, the connection is reused for the next request then.
+     */
+    private static void drain(InputStream in) throws IOException {
+        if (in == null) {
+            return;
+        }
+        try (InputStream body = in) {
+            byte[] buffer = new byte[256];
+            while (body.read(buffer) >= 0) {
+                continue;
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package ch.fhnw.swc.mrs.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.fhnw.swc.mrs.controller.RentalController;
+import ch.fhnw.swc.mrs.data.DbMRSServices;
+import ch.fhnw.swc.mrs.model.PriceCategory;
+import ch.fhnw.swc.mrs.util.ServerConfiguration;
+import ch.fhnw.swc.mrs.util.StatusCodes;
+import spark.Spark;
+
+/**
+ * Compares the worker pool of Jetty with a virtual thread per request under a load that waits for the database.
+ * Many more clients than workers page through the rentals of a user with <code>GET /rentals?userId=</code>; in
+ * the platform mode a request holds a worker while it waits for the database, in the virtual mode it only holds a
+ * virtual thread. The virtual mode needs Java 21 or later, on older runtimes both modes run on the worker pool.
+ * The number of clients is set with <code>-t</code>, the size of the pool with <code>-p maxThreads=</code>.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(64)
+public class ServerThreadsBenchmark {
+
+    private static final int PORT = 4569;
+    /** Number of movies in the data set. */
+    private static final int MOVIES = 10_000;
+    /** Number of users in the data set. */
+    private static final int USERS = 1_000;
+
+    /**
+     * The server on the database back-end.
+     */
+    @State(Scope.Benchmark)
+    public static class Server {
+        /** Where the requests run: <code>platform</code> on the workers, <code>virtual</code> on virtual threads. */
+        @Param({"platform", "virtual"})
+        public String mode;
+
+        /** The largest number of workers. */
+        @Param({"16"})
+        public int maxThreads;
+
+        private DbMRSServices services;
+        private BenchmarkDatabase database;
+        private final AtomicInteger clients = new AtomicInteger();
+
+        /**
+         * Fill the database and start the server.
+         *
+         * @throws Exception whenever something goes wrong.
+         */
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            PriceCategory.init();
+            database = BenchmarkDatabase.start();
+            database.populate(MOVIES, USERS);
+            Properties pool = database.getPoolConfiguration();
+            // more connections than workers, the workers are the bottleneck in the platform mode.
+            pool.setProperty("maximumPoolSize", Integer.toString(2 * maxThreads));
+            services = new DbMRSServices(pool);
+
+            Properties config = new Properties();
+            config.setProperty(ServerConfiguration.PORT, Integer.toString(PORT));
+            config.setProperty(ServerConfiguration.MAX_THREADS, Integer.toString(maxThreads));
+            config.setProperty(ServerConfiguration.MIN_THREADS, Integer.toString(maxThreads));
+            config.setProperty(ServerConfiguration.VIRTUAL_THREADS, Boolean.toString("virtual".equals(mode)));
+            ServerConfiguration.apply(config);
+            RentalController.init(services);
+            Spark.awaitInitialization();
+        }
+
+        /**
+         * Stop the server and shut down the database.
+         *
+         * @throws Exception whenever something goes wrong.
+         */
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            Spark.stop();
+            services.close();
+            database.close();
+        }
+    }
+
+    /**
+     * A client paging through the rentals of a user of its own.
+     */
+    @State(Scope.Thread)
+    public static class Client {
+        private String path;
+
+        /**
+         * @param server the server under test.
+         */
+        @Setup(Level.Trial)
+        public void setUp(Server server) {
+            path = "/rentals?userId=" + new UUID(1, server.clients.getAndIncrement() % USERS) + "&limit=20";
+        }
+    }
+
+    /**
+     * @param client the requesting client.
+     * @return the status of the response.
+     * @throws IOException if a request fails.
+     */
+    @Benchmark
+    public int fetchRentals(Client client) throws IOException {
+        HttpURLConnection c = (HttpURLConnection) new URL("http", "localhost", PORT, client.path).openConnection();
+        int status = c.getResponseCode();
+        if (status != StatusCodes.OK) {
+            throw new IllegalStateException("request failed: " + status);
+        }
+        try (InputStream body = c.getInputStream()) {
+            byte[] buffer = new byte[256];
+            while (body.read(buffer) >= 0) {
+                continue;
+            }
+        }
+        return status;
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * JMH micro benchmarks. Run them with <code>mvn -Pjmh test-compile exec:exec</code>.
+ */
+package ch.fhnw.swc.mrs.benchmark;
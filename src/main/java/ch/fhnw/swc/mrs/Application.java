@@ -1,18 +1,27 @@
 package ch.fhnw.swc.mrs;
 
-import ch.fhnw.swc.mrs.api.MRSServices;
 import ch.fhnw.swc.mrs.controller.MovieController;
+import ch.fhnw.swc.mrs.controller.RentalController;
 import ch.fhnw.swc.mrs.controller.UserController;
+import ch.fhnw.swc.mrs.data.DailyJob;
+import ch.fhnw.swc.mrs.data.ExecutorMRSServices;
 import ch.fhnw.swc.mrs.data.SimpleMRSServices;
-import ch.fhnw.swc.mrs.model.ChildrenPriceCategory;
-import ch.fhnw.swc.mrs.model.NewReleasePriceCategory;
-import ch.fhnw.swc.mrs.model.RegularPriceCategory;
+import ch.fhnw.swc.mrs.model.PriceCategory;
 import ch.fhnw.swc.mrs.util.Filters;
-import static spark.Spark.port;
+import ch.fhnw.swc.mrs.util.ServerConfiguration;
+
+import java.util.Properties;
+
+import static spark.Spark.awaitInitialization;
 import static spark.Spark.staticFiles;
 import static spark.Spark.exception;
 
 public final class Application {
+
+	/** Runs the operations of the routes that answer asynchronously. */
+	private static ExecutorMRSServices asyncBackend;
+	/** Recomputes the accounts at the start of every day. */
+	private static DailyJob rollover;
 	
 	/**
 	 * The Application main entry point.
@@ -22,12 +31,16 @@ public final class Application {
 	public static void main(String[] args) throws Exception {
 		loadPriceCategories();
 		// Instantiate dependencies
-		MRSServices backend = new SimpleMRSServices();
+		SimpleMRSServices backend = new SimpleMRSServices();
 		backend.init();
+		rollover = new DailyJob("mrs-rollover", backend::rollover);
+		Properties config = ServerConfiguration.loadConfiguration();
+		asyncBackend = new ExecutorMRSServices(backend, ServerConfiguration.createBackendExecutor(config),
+				ServerConfiguration.getBackendTimeout(config));
 		
 		//Configure Spark
         exception(Exception.class, (e, req, res) -> e.printStackTrace());
-        port(4567);
+        ServerConfiguration.apply(config);
         staticFiles.location("/public");
         staticFiles.expireTime(600L);
         
@@ -38,21 +51,28 @@ public final class Application {
         // Set up routes
         MovieController.init(backend);
         UserController.init(backend);
+        RentalController.init(backend, asyncBackend);
 //        get("*",                     ViewUtil.notFound);
 
         //Set up after-filters (called after each get/post)
         Filters.afterGetPost();
 
+        // the server is started in the background, wait until it accepts requests.
+        awaitInitialization();
     }
 	
     private static void loadPriceCategories() throws Exception {
-    	RegularPriceCategory.getInstance();
-    	ChildrenPriceCategory.getInstance();
-    	NewReleasePriceCategory.getInstance();
+    	PriceCategory.init();
     }
     
     public static void stop() {
     	spark.Spark.stop();
+    	if (asyncBackend != null) {
+    		asyncBackend.close();
+    	}
+    	if (rollover != null) {
+    		rollover.close();
+    	}
     }
 	
 	private Application() { }
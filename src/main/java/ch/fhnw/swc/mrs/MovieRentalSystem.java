@@ -1,13 +1,10 @@
 package ch.fhnw.swc.mrs;
 
 import java.io.IOException;
-import java.net.URI;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.stream.Stream;
 
 import ch.fhnw.swc.mrs.api.MRSServices;
 import ch.fhnw.swc.mrs.data.SimpleMRSServices;
+import ch.fhnw.swc.mrs.model.PriceCategory;
 import ch.fhnw.swc.mrs.view.MRSController;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
@@ -48,20 +45,7 @@ public class MovieRentalSystem extends Application {
      * @throws Exception whenever something goes wrong.
      */
     public static void main(String[] args) throws Exception {
-    	loadPriceCategories();
+    	PriceCategory.init();
         launch(args);
     }
-    
-    private static void loadPriceCategories() throws Exception {
-		URI uri = MovieRentalSystem.class.getClassLoader().getResource("data/pricecategories.config").toURI();
-		try (Stream<String> stream = Files.lines(Paths.get(uri))) {
-			stream.forEach(x -> {
-				try {
-					Class.forName(x);
-				} catch (ClassNotFoundException e) {
-					e.printStackTrace();
-				}
-			});
-		}
-    }
 }
@@ -0,0 +1,205 @@
+package ch.fhnw.swc.mrs.api;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+import ch.fhnw.swc.mrs.model.Account;
+import ch.fhnw.swc.mrs.model.Movie;
+import ch.fhnw.swc.mrs.model.Rental;
+import ch.fhnw.swc.mrs.model.User;
+
+/**
+ * The non-blocking companion of {@link MRSServices}: each operation returns at once and completes its future when
+ * the backend has done the work. The futures of an implementation may fail with
+ * <ul>
+ * <li>{@link RejectedExecutionException} if the backend has too much work queued already or the operation was still
+ * queued at its deadline. It has not been run; retry later.</li>
+ * <li>{@link TimeoutException} if the operation has started but not completed before its deadline. It may still take
+ * effect after its deadline, so it must not simply be repeated.</li>
+ * <li>whatever the operation of {@link MRSServices} throws, e.g. {@link MovieRentalException}.</li>
+ * </ul>
+ * The futures are completed on a thread of the backend, dependent stages that block should run elsewhere.
+ */
+public interface AsyncMRSServices {
+
+    /**
+     * Run any operation of the backend, e.g. several ones that belong together.
+     *
+     * @param operation the operation, it must not block on anything but the backend.
+     * @param <T> the type of the result.
+     * @return the result of the operation.
+     */
+    <T> CompletableFuture<T> submit(Function<? super MRSServices, ? extends T> operation);
+
+    /**
+     * See {@link MRSServices#getMovies(UUID, int)}.
+     *
+     * @param after the id after which the page starts, <code>null</code> for the first page.
+     * @param limit the maximum number of Movies to return, at least 1.
+     * @return at most limit Movies with an id greater than after, in ascending order of their ids.
+     */
+    default CompletableFuture<List<Movie>> getMovies(UUID after, int limit) {
+        return submit(s -> s.getMovies(after, limit));
+    }
+
+    /**
+     * See {@link MRSServices#getMovies(boolean, UUID, int)}.
+     *
+     * @param rented whether the available or the rented Movies shall be retrieved.
+     * @param after the id after which the page starts, <code>null</code> for the first page.
+     * @param limit the maximum number of Movies to return, at least 1.
+     * @return at most limit Movies with an id greater than after, in ascending order of their ids.
+     */
+    default CompletableFuture<List<Movie>> getMovies(boolean rented, UUID after, int limit) {
+        return submit(s -> s.getMovies(rented, after, limit));
+    }
+
+    /**
+     * See {@link MRSServices#getMovieById(UUID)}.
+     *
+     * @param id the identification of the Movie to retrieve.
+     * @return the Movie, <code>null</code> if no movie found with given id.
+     */
+    default CompletableFuture<Movie> getMovieById(UUID id) {
+        return submit(s -> s.getMovieById(id));
+    }
+
+    /**
+     * See {@link MRSServices#createMovie(String, LocalDate, String, int)}.
+     *
+     * @param aTitle Title of the movie. Must not be null nor empty.
+     * @param aReleaseDate Date when this movie was released. Must not be null.
+     * @param aPriceCategory Price category for this movie. Must not be null.
+     * @param anAgeRating How old a user must be at least to be allowed to rent this Movie.
+     * @return the newly created Movie.
+     */
+    default CompletableFuture<Movie> createMovie(String aTitle, LocalDate aReleaseDate, String aPriceCategory,
+            int anAgeRating) {
+        return submit(s -> s.createMovie(aTitle, aReleaseDate, aPriceCategory, anAgeRating));
+    }
+
+    /**
+     * See {@link MRSServices#updateMovie(Movie, long)}.
+     *
+     * @param movie contains the new data.
+     * @param version the version of the Movie the new data is based on.
+     * @return whether the update operation was successful.
+     */
+    default CompletableFuture<Boolean> updateMovie(Movie movie, long version) {
+        return submit(s -> s.updateMovie(movie, version));
+    }
+
+    /**
+     * See {@link MRSServices#deleteMovie(UUID)}.
+     *
+     * @param id id of Movie to delete.
+     * @return whether the delete operation was successful.
+     */
+    default CompletableFuture<Boolean> deleteMovie(UUID id) {
+        return submit(s -> s.deleteMovie(id));
+    }
+
+    /**
+     * See {@link MRSServices#getUsers(UUID, int)}.
+     *
+     * @param after the id after which the page starts, <code>null</code> for the first page.
+     * @param limit the maximum number of Users to return, at least 1.
+     * @return at most limit Users with an id greater than after, in ascending order of their ids.
+     */
+    default CompletableFuture<List<User>> getUsers(UUID after, int limit) {
+        return submit(s -> s.getUsers(after, limit));
+    }
+
+    /**
+     * See {@link MRSServices#getUserById(UUID)}.
+     *
+     * @param id the identification of the User to retrieve.
+     * @return the User, <code>null</code> if no user found with given id.
+     */
+    default CompletableFuture<User> getUserById(UUID id) {
+        return submit(s -> s.getUserById(id));
+    }
+
+    /**
+     * See {@link MRSServices#createUser(String, String, LocalDate)}.
+     *
+     * @param aName the user's family name.
+     * @param aFirstName the user's first name.
+     * @param aBirthdate the user's date of birth.
+     * @return the newly created User.
+     */
+    default CompletableFuture<User> createUser(String aName, String aFirstName, LocalDate aBirthdate) {
+        return submit(s -> s.createUser(aName, aFirstName, aBirthdate));
+    }
+
+    /**
+     * See {@link MRSServices#updateUser(User, long)}.
+     *
+     * @param u contains the new data.
+     * @param version the version of the User the new data is based on.
+     * @return whether the update operation was successful.
+     */
+    default CompletableFuture<Boolean> updateUser(User u, long version) {
+        return submit(s -> s.updateUser(u, version));
+    }
+
+    /**
+     * See {@link MRSServices#deleteUser(UUID)}.
+     *
+     * @param id id of user to delete.
+     * @return whether the delete operation was successful.
+     */
+    default CompletableFuture<Boolean> deleteUser(UUID id) {
+        return submit(s -> s.deleteUser(id));
+    }
+
+    /**
+     * See {@link MRSServices#getRentals(UUID, UUID, UUID, int)}.
+     *
+     * @param userId the id of the renting User, <code>null</code> for any.
+     * @param movieId the id of the rented Movie, <code>null</code> for any.
+     * @param after the id after which the page starts, <code>null</code> for the first page.
+     * @param limit the maximum number of Rentals to return, at least 1.
+     * @return at most limit matching Rentals with an id greater than after, in ascending order of their ids.
+     */
+    default CompletableFuture<List<Rental>> getRentals(UUID userId, UUID movieId, UUID after, int limit) {
+        return submit(s -> s.getRentals(userId, movieId, after, limit));
+    }
+
+    /**
+     * See {@link MRSServices#rentMovie(UUID, UUID, LocalDate)}.
+     *
+     * @param userId the id of the user who is renting a movie.
+     * @param movieId the id of the rented movie.
+     * @param rentalDate date the rental starts.
+     * @return the id of the new rental, <code>null</code> if it could not be created.
+     */
+    default CompletableFuture<UUID> rentMovie(UUID userId, UUID movieId, LocalDate rentalDate) {
+        return submit(s -> s.rentMovie(userId, movieId, rentalDate));
+    }
+
+    /**
+     * See {@link MRSServices#returnRental(UUID)}.
+     *
+     * @param id id of rental to terminate.
+     * @return whether the return was successful.
+     */
+    default CompletableFuture<Boolean> returnRental(UUID id) {
+        return submit(s -> s.returnRental(id));
+    }
+
+    /**
+     * See {@link MRSServices#getAccount(UUID)}.
+     *
+     * @param userId the id of the user.
+     * @return the account of the user, <code>null</code> if there is no user with this id.
+     */
+    default CompletableFuture<Account> getAccount(UUID userId) {
+        return submit(s -> s.getAccount(userId));
+    }
+}
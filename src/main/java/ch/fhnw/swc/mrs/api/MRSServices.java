@@ -2,8 +2,11 @@ package ch.fhnw.swc.mrs.api;
 
 import java.time.LocalDate;
 import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
+import ch.fhnw.swc.mrs.model.Account;
 import ch.fhnw.swc.mrs.model.Movie;
 import ch.fhnw.swc.mrs.model.Rental;
 import ch.fhnw.swc.mrs.model.User;
@@ -22,6 +25,14 @@ public interface MRSServices {
      * @throws IllegalArgumentException in case, any of the parameters are null or title is empty.
      */
     Movie createMovie(String aTitle, LocalDate aReleaseDate, String aPriceCategory, int anAgeRating);
+
+    /**
+     * Create many new movies at once. This is considerably faster than creating them one by one.
+     * 
+     * @param movies the movies to create. They must not have an id yet, each one is assigned a new id.
+     * @return whether all movies have been created; if not, none has been created.
+     */
+    boolean createMovies(Collection<Movie> movies);
     
     /**
      * Retrieve all Movies.
@@ -31,13 +42,50 @@ public interface MRSServices {
     Collection<Movie> getAllMovies();
 
     /**
-     * get all rented or available Movies.
+     * get all rented or available Movies. A Movie is rented when all of its copies are, see {@link Movie#isRented()}.
      * 
      * @param rented whether the available or the rented Movies shall be retrieved.
      * @return all Movies that are either rented or not (depending on parameter rented)
      */
     Collection<Movie> getAllMovies(boolean rented);
 
+    /**
+     * Stream all Movies. Unlike {@link #getAllMovies()} the Movies are not collected in memory first.
+     * 
+     * @return all Movies; the stream may hold resources of the backend, close it when done.
+     */
+    Stream<Movie> streamMovies();
+
+    /**
+     * Stream all rented or available Movies, see {@link #streamMovies()}.
+     * 
+     * @param rented whether the available or the rented Movies shall be retrieved.
+     * @return all Movies that are either rented or not; close the stream when done.
+     */
+    Stream<Movie> streamMovies(boolean rented);
+
+    /**
+     * Retrieve a page of Movies. Pages are ordered by id, pass the id of the last Movie of a page to get the next
+     * one. Ids are ordered as unsigned 128 bit numbers, the way PostgreSQL orders them.
+     * 
+     * @param after the id after which the page starts, <code>null</code> for the first page.
+     * @param limit the maximum number of Movies to return, at least 1.
+     * @return at most limit Movies with an id greater than after, in ascending order of their ids.
+     * @throws IllegalArgumentException if limit is less than 1.
+     */
+    List<Movie> getMovies(UUID after, int limit);
+
+    /**
+     * Retrieve a page of the rented or the available Movies, see {@link #getMovies(UUID, int)}.
+     * 
+     * @param rented whether the available or the rented Movies shall be retrieved.
+     * @param after the id after which the page starts, <code>null</code> for the first page.
+     * @param limit the maximum number of Movies to return, at least 1.
+     * @return at most limit Movies with an id greater than after, in ascending order of their ids.
+     * @throws IllegalArgumentException if limit is less than 1.
+     */
+    List<Movie> getMovies(boolean rented, UUID after, int limit);
+
     /**
      * @param id the identification of the Movie to retrieve.
      * @return get Movie by its ID, <pre>null</pre> if no movie found with given id.
@@ -45,13 +93,35 @@ public interface MRSServices {
     Movie getMovieById(UUID id);
 
     /**
-     * Update Movie with new data.
+     * Update Movie with new data. The rented copies of the Movie are kept, its available copies change with the
+     * number of copies. A Movie without a number of copies, see {@link Movie#hasCopies()}, keeps the stored one.
      * 
      * @param movie contains the new data.
-     * @return whether the update operation was successful.
+     * @return whether the update operation was successful; <code>false</code> if the Movie would have fewer copies
+     *         than are rented.
      */
     boolean updateMovie(Movie movie);
 
+    /**
+     * Update Movie with new data unless it has been changed since it was read.
+     * 
+     * @param movie contains the new data.
+     * @param version the version of the Movie the new data is based on, see {@link Movie#getVersion()}.
+     * @return whether the update operation was successful; <code>false</code> if the Movie does not exist or its
+     *         version is a different one.
+     */
+    boolean updateMovie(Movie movie, long version);
+
+    /**
+     * Update many existing Movies at once. This is considerably faster than updating them one by one. Unlike
+     * {@link #updateMovie(Movie)} Movies that do not exist are not created; the rented copies are kept.
+     * 
+     * @param movies contain the new data, each one must have an id.
+     * @return for each Movie whether it has been updated, <code>false</code> if it does not exist;
+     *         <code>null</code> if the operation failed, then none has been updated.
+     */
+    boolean[] updateMovies(List<Movie> movies);
+
     /**
      * Delete Movie.
      * 
@@ -60,6 +130,24 @@ public interface MRSServices {
      */
     boolean deleteMovie(UUID id);
 
+    /**
+     * Delete many Movies at once.
+     * 
+     * @param ids ids of the Movies to delete.
+     * @return for each id whether a Movie has been deleted; <code>null</code> if the operation failed, then none
+     *         has been deleted.
+     */
+    boolean[] deleteMovies(List<UUID> ids);
+
+    /**
+     * Get the version of the collection of Movies. It changes whenever a Movie is created, changed, rented,
+     * returned or deleted, so a client that knows the version of the Movies it has read can tell whether they are
+     * still current without reading them again. Read the version before the Movies.
+     * 
+     * @return the number of changes to the Movies since this backend has been started.
+     */
+    long getMoviesVersion();
+
     /**
      * Retrieve all Users.
      * 
@@ -67,6 +155,23 @@ public interface MRSServices {
      */
     Collection<User> getAllUsers();
 
+    /**
+     * Stream all Users, see {@link #streamMovies()}.
+     * 
+     * @return all Users; close the stream when done.
+     */
+    Stream<User> streamUsers();
+
+    /**
+     * Retrieve a page of Users, see {@link #getMovies(UUID, int)}.
+     * 
+     * @param after the id after which the page starts, <code>null</code> for the first page.
+     * @param limit the maximum number of Users to return, at least 1.
+     * @return at most limit Users with an id greater than after, in ascending order of their ids.
+     * @throws IllegalArgumentException if limit is less than 1.
+     */
+    List<User> getUsers(UUID after, int limit);
+
     /**
      * @param id the identification of the User to retrieve.
      * @return get User by its ID.
@@ -91,6 +196,14 @@ public interface MRSServices {
      */
     User createUser(String aName, String aFirstName, LocalDate aBirthdate);
 
+    /**
+     * Create many new users at once, see {@link #createMovies(Collection)}.
+     * 
+     * @param users the users to create. Each one is assigned a new id.
+     * @return whether all users have been created; if not, none has been created.
+     */
+    boolean createUsers(Collection<User> users);
+
 
     /**
      * Update User with new data.
@@ -100,6 +213,25 @@ public interface MRSServices {
      */
     boolean updateUser(User u);
 
+    /**
+     * Update User with new data unless it has been changed since it was read, see
+     * {@link #updateMovie(Movie, long)}.
+     * 
+     * @param u contains the new data.
+     * @param version the version of the User the new data is based on, see {@link User#getVersion()}.
+     * @return whether the update operation was successful.
+     */
+    boolean updateUser(User u, long version);
+
+    /**
+     * Update many existing Users at once, see {@link #updateMovies(List)}.
+     * 
+     * @param users contain the new data, each one must have an id.
+     * @return for each User whether it has been updated, <code>false</code> if it does not exist;
+     *         <code>null</code> if the operation failed, then none has been updated.
+     */
+    boolean[] updateUsers(List<User> users);
+
     /**
      * Delete User.
      * 
@@ -108,6 +240,21 @@ public interface MRSServices {
      */
     boolean deleteUser(UUID id);
 
+    /**
+     * Delete many Users at once, see {@link #deleteMovies(List)}.
+     * 
+     * @param ids ids of the Users to delete.
+     * @return for each id whether a User has been deleted; <code>null</code> if the operation failed.
+     */
+    boolean[] deleteUsers(List<UUID> ids);
+
+    /**
+     * Get the version of the collection of Users, see {@link #getMoviesVersion()}.
+     * 
+     * @return the number of changes to the Users since this backend has been started.
+     */
+    long getUsersVersion();
+
     /**
      * Retrieve all Rentals.
      * 
@@ -116,23 +263,84 @@ public interface MRSServices {
     Collection<Rental> getAllRentals();
 
     /**
-     * Create a new Rental.
+     * Retrieve a page of Rentals, see {@link #getMovies(UUID, int)}.
+     * 
+     * @param after the id after which the page starts, <code>null</code> for the first page.
+     * @param limit the maximum number of Rentals to return, at least 1.
+     * @return at most limit Rentals with an id greater than after, in ascending order of their ids.
+     * @throws IllegalArgumentException if limit is less than 1.
+     */
+    List<Rental> getRentals(UUID after, int limit);
+
+    /**
+     * Retrieve a page of the Rentals of a User, of a Movie or of both, see {@link #getMovies(UUID, int)}.
+     * 
+     * @param userId the id of the renting User, <code>null</code> for any.
+     * @param movieId the id of the rented Movie, <code>null</code> for any.
+     * @param after the id after which the page starts, <code>null</code> for the first page.
+     * @param limit the maximum number of Rentals to return, at least 1.
+     * @return at most limit matching Rentals with an id greater than after, in ascending order of their ids.
+     * @throws IllegalArgumentException if limit is less than 1.
+     */
+    List<Rental> getRentals(UUID userId, UUID movieId, UUID after, int limit);
+
+    /**
+     * Create a new Rental, which takes one of the available copies of the movie. Of concurrent rentals of the last
+     * copy only one succeeds.
      * 
      * @param userId the id of the user who is renting a movie.
      * @param movieId the id of the rented movie.
      * @param rentalDate date the rental starts.
-     * @return whether a new rental could be created.
+     * @return whether a new rental could be created; <code>false</code> if no copy of the movie is available.
      */
     boolean createRental(UUID userId, UUID movieId, LocalDate rentalDate);
 
     /**
-     * Return a rented Movie.
+     * Create a new Rental as {@link #createRental(UUID, UUID, LocalDate)} does and tell its id.
+     * 
+     * @param userId the id of the user who is renting a movie.
+     * @param movieId the id of the rented movie.
+     * @param rentalDate date the rental starts.
+     * @return the id of the new rental, <code>null</code> if it could not be created.
+     */
+    UUID rentMovie(UUID userId, UUID movieId, LocalDate rentalDate);
+
+    /**
+     * Create many Rentals at once, each one as {@link #createRental(UUID, UUID, LocalDate)} would. A Movie
+     * requested more often than it has available copies is only rented to the first requests.
+     * 
+     * @param requests the rentals to create.
+     * @return for each request the id of the new Rental, <code>null</code> if it could not be created;
+     *         <code>null</code> if the operation failed, then none has been created.
+     */
+    UUID[] createRentals(List<RentalRequest> requests);
+
+    /**
+     * Return a rented Movie, its copy becomes available again.
      * 
      * @param id id of rental to terminate.
      * @return whether the return was successful.
      */
     boolean returnRental(UUID id);
 
+    /**
+     * Return many rented Movies at once.
+     * 
+     * @param ids ids of the rentals to terminate.
+     * @return for each id whether the return was successful; <code>null</code> if the operation failed, then
+     *         none has been returned.
+     */
+    boolean[] returnRentals(List<UUID> ids);
+
+    /**
+     * Get the balance of a User: the charge and the frequent renter points of the Rentals the User has not returned
+     * yet, as of today.
+     * 
+     * @param userId the id of the User.
+     * @return the account of the User, <code>null</code> if there is no User with this id.
+     */
+    Account getAccount(UUID userId);
+
     /**
      * Initialize the backend component.
      */
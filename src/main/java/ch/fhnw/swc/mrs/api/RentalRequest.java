@@ -0,0 +1,46 @@
+package ch.fhnw.swc.mrs.api;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * A rental that shall be created, see {@link MRSServices#createRentals(java.util.List)}.
+ */
+public final class RentalRequest {
+
+    private final UUID userId;
+    private final UUID movieId;
+    private final LocalDate rentalDate;
+
+    /**
+     * @param userId the id of the user who is renting a movie.
+     * @param movieId the id of the movie to rent.
+     * @param rentalDate date the rental starts.
+     */
+    public RentalRequest(UUID userId, UUID movieId, LocalDate rentalDate) {
+        this.userId = userId;
+        this.movieId = movieId;
+        this.rentalDate = rentalDate;
+    }
+
+    /**
+     * @return the id of the user who is renting a movie.
+     */
+    public UUID getUserId() {
+        return userId;
+    }
+
+    /**
+     * @return the id of the movie to rent.
+     */
+    public UUID getMovieId() {
+        return movieId;
+    }
+
+    /**
+     * @return date the rental starts.
+     */
+    public LocalDate getRentalDate() {
+        return rentalDate;
+    }
+}
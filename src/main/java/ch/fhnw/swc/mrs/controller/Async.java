@@ -0,0 +1,139 @@
+package ch.fhnw.swc.mrs.controller;
+
+import static spark.Spark.halt;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import ch.fhnw.swc.mrs.api.AsyncMRSServices;
+import ch.fhnw.swc.mrs.util.AsyncResponses;
+import ch.fhnw.swc.mrs.util.StatusCodes;
+import spark.HaltException;
+import spark.Request;
+import spark.Response;
+
+/**
+ * Answers requests with the result of an {@link AsyncMRSServices} operation. The thread that has called the route
+ * returns to the server while the backend works, see {@link AsyncResponses}; the answer is written on a thread of
+ * the server once the result is there. Routes and operations halt as usual, e.g. with 404 if nothing is found.
+ * <p>
+ * A busy backend answers with 503 and asks the client to retry after a second: when the backend has too many
+ * operations queued already and when an operation is still queued at its deadline, it has not been run then. An
+ * operation that has started but misses its deadline may still take effect, it answers with 504 and no retry.
+ */
+final class Async {
+
+	private static Logger log = LogManager.getLogger(Async.class);
+
+	/**
+	 * Writes the response to a request once the result of its operation is there.
+	 */
+	@FunctionalInterface
+	interface Reply<T> {
+		void send(T result) throws Exception;
+	}
+
+	/**
+	 * Answer a request with the result of an operation.
+	 * @param request the request to answer.
+	 * @param response its response.
+	 * @param result the result of the operation.
+	 * @param reply writes the response.
+	 * @return the value to return from the route.
+	 * @throws Exception if the response cannot be written on the thread of the route.
+	 */
+	static <T> Object reply(Request request, Response response, CompletableFuture<T> result, Reply<T> reply)
+			throws Exception {
+		AsyncContext context = result.isDone() ? null : AsyncResponses.defer(request, response);
+		if (context == null) {
+			// the result is there already or the server cannot defer responses.
+			T value = null;
+			try {
+				value = result.get();
+			} catch (ExecutionException e) {
+				fail(response, e.getCause());
+			}
+			reply.send(value);
+			return "";
+		}
+		// do not keep a thread of the backend busy with writing.
+		result.whenComplete((value, failure) -> AsyncResponses.dispatch(response,
+				() -> answer(response, context, value, failure, reply)));
+		return "";
+	}
+
+	private static <T> void answer(Response response, AsyncContext context, T value, Throwable failure,
+			Reply<T> reply) {
+		AsyncResponses.resume(response);
+		try {
+			if (failure != null) {
+				fail(response, failure);
+			}
+			reply.send(value);
+		} catch (HaltException e) {
+			halted(response.raw(), e);
+		} catch (Exception e) {
+			log.error("Cannot answer the request", e);
+			if (!response.raw().isCommitted()) {
+				response.raw().setStatus(StatusCodes.INTERNAL_SERVER_ERROR);
+			}
+		} finally {
+			context.complete();
+		}
+	}
+
+	/**
+	 * Throw the exception that has failed an operation, halt with 503 if the backend is busy and with 504 if the
+	 * operation has not completed in time.
+	 */
+	private static void fail(Response response, Throwable failure) throws Exception {
+		Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+				? failure.getCause() : failure;
+		if (cause instanceof RejectedExecutionException) {
+			response.header("Retry-After", "1");
+			halt(StatusCodes.SERVICE_UNAVAILABLE, "the server is busy, try again later");
+		}
+		if (cause instanceof TimeoutException) {
+			halt(StatusCodes.GATEWAY_TIMEOUT, "the operation has not completed in time, it may still take effect");
+		}
+		if (cause instanceof Error) {
+			throw (Error) cause;
+		}
+		throw (Exception) cause;
+	}
+
+	/**
+	 * Write the response of a halted request like Spark does.
+	 */
+	private static void halted(HttpServletResponse response, HaltException halt) {
+		if (response.isCommitted()) {
+			return;
+		}
+		response.setStatus(halt.statusCode());
+		if (halt.body() != null) {
+			if (response.getContentType() == null) {
+				response.setContentType("text/html; charset=utf-8");
+			}
+			try (OutputStream out = response.getOutputStream()) {
+				out.write(halt.body().getBytes(StandardCharsets.UTF_8));
+			} catch (IOException e) {
+				// the client is gone.
+			}
+		}
+	}
+
+	// prevent instantiation
+	private Async() { }
+}
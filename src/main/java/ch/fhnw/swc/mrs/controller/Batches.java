@@ -0,0 +1,185 @@
+package ch.fhnw.swc.mrs.controller;
+
+import static spark.Spark.halt;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import ch.fhnw.swc.mrs.util.Format;
+import ch.fhnw.swc.mrs.util.JsonUtil;
+import ch.fhnw.swc.mrs.util.RequestUtil;
+import ch.fhnw.swc.mrs.util.StatusCodes;
+import spark.Request;
+import spark.Response;
+
+/**
+ * Bulk operations of the collection routes, <code>/movies:batch</code> and alike. The body is an array of items or
+ * a sequence of items, e.g. NDJSON, in any of the {@link Format}s; a chunked body is decoded while it arrives. The
+ * items are passed to the back-end in one call, which writes them in JDBC batches. The response holds one result
+ * per item, in the order of the request: its status, as the single-item route would answer, and its id.
+ * <p>
+ * A request holds at most {@value #DEFAULT_MAX_ITEMS} items unless configured otherwise with the system property
+ * <code>mrs.batch.maxItems</code>; larger loads are sent in several requests.
+ */
+final class Batches {
+
+	/** Largest number of items per request unless configured otherwise. */
+	static final int DEFAULT_MAX_ITEMS = 100_000;
+
+	private static final int MAX_ITEMS = Integer.getInteger("mrs.batch.maxItems", DEFAULT_MAX_ITEMS);
+
+	/**
+	 * Decodes the items of a body, see {@link JsonUtil#bodyToMovies(InputStream, Format)}.
+	 */
+	@FunctionalInterface
+	interface Decoder<T> {
+		List<T> decode(InputStream body, Format format) throws IOException;
+	}
+
+	/**
+	 * Decode the items of a request, halts with 400 if the body is malformed and with 413 if it holds too many.
+	 * @param request the request, its <code>Content-Type</code> header names the format of the body.
+	 * @param decoder decodes the items.
+	 * @return the items in the order of the body.
+	 */
+	static <T> List<T> read(Request request, Decoder<T> decoder) {
+		List<T> items = null;
+		try (InputStream body = request.raw().getInputStream()) {
+			items = decoder.decode(body, RequestUtil.getContentFormat(request));
+		} catch (IOException e) {
+			halt(StatusCodes.BAD_REQUEST, e.getMessage());
+		} catch (RuntimeException e) {
+			// e.g. an unknown price category or a malformed date.
+			halt(StatusCodes.BAD_REQUEST, String.valueOf(e.getMessage()));
+		}
+		if (items.size() > MAX_ITEMS) {
+			halt(StatusCodes.PAYLOAD_TOO_LARGE, "at most " + MAX_ITEMS + " items per request");
+		}
+		return items;
+	}
+
+	/**
+	 * Apply an operation to items that are identified by their id. Items without id are not passed on and fail
+	 * with 400.
+	 * @param items the items of the request.
+	 * @param id extracts the id of an item, <code>null</code> if it has none.
+	 * @param operation the bulk operation of the back-end, reports for each item whether it has succeeded or
+	 *        <code>null</code> if it has failed as a whole; halts with 500 then.
+	 * @param success the status of an item that has succeeded, the one of an item that has not is 404.
+	 * @return the results.
+	 */
+	static <T> List<Map<String, Object>> apply(List<T> items, Function<T, UUID> id,
+			Function<List<T>, boolean[]> operation, int success) {
+		List<T> identified = new ArrayList<>(items.size());
+		for (T item : items) {
+			if (id.apply(item) != null) {
+				identified.add(item);
+			}
+		}
+		boolean[] done = operation.apply(identified);
+		if (done == null) {
+			halt(StatusCodes.INTERNAL_SERVER_ERROR, "the batch could not be processed, nothing has been changed");
+		}
+		List<Map<String, Object>> results = new ArrayList<>(items.size());
+		int next = 0;
+		for (T item : items) {
+			UUID itemId = id.apply(item);
+			if (itemId == null) {
+				results.add(error(StatusCodes.BAD_REQUEST, "id missing"));
+			} else {
+				results.add(result(done[next++] ? success : StatusCodes.NOT_FOUND, itemId));
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Create new items. Items that have an id already are not passed on and fail with 400.
+	 * @param items the items of the request.
+	 * @param id extracts the id of an item, <code>null</code> if it has none.
+	 * @param operation the bulk operation of the back-end, assigns the ids and reports whether it has succeeded;
+	 *        halts with 500 if not.
+	 * @return the results.
+	 */
+	static <T> List<Map<String, Object>> create(List<T> items, Function<T, UUID> id,
+			Predicate<List<T>> operation) {
+		boolean[] identified = new boolean[items.size()];
+		List<T> created = new ArrayList<>(items.size());
+		for (int i = 0; i < identified.length; i++) {
+			identified[i] = id.apply(items.get(i)) != null;
+			if (!identified[i]) {
+				created.add(items.get(i));
+			}
+		}
+		if (!operation.test(created)) {
+			halt(StatusCodes.INTERNAL_SERVER_ERROR, "the batch could not be processed, nothing has been changed");
+		}
+		List<Map<String, Object>> results = new ArrayList<>(items.size());
+		for (int i = 0; i < identified.length; i++) {
+			results.add(identified[i] ? error(StatusCodes.BAD_REQUEST, "a new item must not have an id")
+					: result(StatusCodes.CREATED, id.apply(items.get(i))));
+		}
+		return results;
+	}
+
+	/**
+	 * @param status the status of an item.
+	 * @param id the id of the item.
+	 * @return the result of the item.
+	 */
+	static Map<String, Object> result(int status, UUID id) {
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("status", status);
+		result.put("id", id.toString());
+		return result;
+	}
+
+	/**
+	 * @param status the status of an item that has not been processed.
+	 * @param message why it has not been processed.
+	 * @return the result of the item.
+	 */
+	static Map<String, Object> error(int status, String message) {
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("status", status);
+		result.put("message", message);
+		return result;
+	}
+
+	/**
+	 * Write the results of a batch.
+	 * @param request the request to answer.
+	 * @param response the response to write.
+	 * @param format the negotiated format of the response.
+	 * @param results the results in the order of the items.
+	 * @throws IOException if the body cannot be written.
+	 */
+	static void send(Request request, Response response, Format format, List<Map<String, Object>> results)
+			throws IOException {
+		response.status(StatusCodes.OK);
+		Negotiation.send(request, response, format, JsonUtil.dataToBytes(results, format));
+	}
+
+	/**
+	 * @param getter returns the id of an item, throws {@link IllegalStateException} if it has none.
+	 * @return the id or <code>null</code> if the item has none.
+	 */
+	static UUID idOrNull(Supplier<UUID> getter) {
+		try {
+			return getter.get();
+		} catch (IllegalStateException e) {
+			return null;
+		}
+	}
+
+	// prevent instantiation
+	private Batches() { }
+}
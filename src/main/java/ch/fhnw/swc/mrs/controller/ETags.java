@@ -0,0 +1,146 @@
+package ch.fhnw.swc.mrs.controller;
+
+import static spark.Spark.halt;
+
+import java.util.Locale;
+
+import ch.fhnw.swc.mrs.util.Compression;
+import ch.fhnw.swc.mrs.util.Format;
+import ch.fhnw.swc.mrs.util.RequestUtil;
+import ch.fhnw.swc.mrs.util.StatusCodes;
+import spark.Request;
+import spark.Response;
+
+/**
+ * Entity tags and conditional requests. The tag of a movie or a user is derived from its version, the tag of a
+ * collection from the version of the collection; both carry the start of the server. A client that sends the tag it got in <code>If-None-Match</code>
+ * receives 304 without a body as long as nothing has changed; a client that sends it in <code>If-Match</code> with
+ * an update only overwrites the version it has read.
+ * <p>
+ * A compressed body is a different representation than an uncompressed one, so the negotiated content coding is
+ * appended to the tag. The suffix is ignored when tags are compared, a tag stays valid if a client changes its
+ * <code>Accept-Encoding</code>. A binary format is a different representation as well and is appended likewise;
+ * <code>If-None-Match</code> compares it, since the client would keep a body in another format, whereas
+ * <code>If-Match</code> ignores it, an update concerns the data however it has been read.
+ */
+final class ETags {
+
+	/**
+	 * Collection versions, and the entity versions of the in-memory backend, are counted from the start of the
+	 * server; tell tags of different runs apart.
+	 */
+	private static final String EPOCH = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+	/** Separates the content coding from the version in a tag. */
+	private static final String CODING_SEPARATOR = "--";
+	/** Separates the format from the version in a tag. */
+	private static final String FORMAT_SEPARATOR = "+";
+
+	/**
+	 * @param request the request to answer.
+	 * @param version the version of a movie or a user.
+	 * @return the strong entity tag of the entity in the representation negotiated for the request.
+	 */
+	static String entityTag(Request request, long version) {
+		return tag(request, EPOCH + "-" + version);
+	}
+
+	/**
+	 * @param request the request to answer.
+	 * @param version the version of a collection, read before its elements.
+	 * @return the strong entity tag of the collection in the representation negotiated for the request.
+	 */
+	static String collectionTag(Request request, long version) {
+		return tag(request, EPOCH + "-" + version);
+	}
+
+	private static String tag(Request request, String version) {
+		Format format = RequestUtil.getAcceptedFormat(request);
+		StringBuilder tag = new StringBuilder("\"").append(version);
+		if (format != null && format != Format.JSON) {
+			tag.append(FORMAT_SEPARATOR).append(format.name().toLowerCase(Locale.ROOT));
+		}
+		String coding = Compression.negotiate(request.headers("Accept-Encoding"));
+		// the binary formats are not compressed.
+		if (coding != null && (format == null || Compression.isCompressible(format.getMediaType()))) {
+			tag.append(CODING_SEPARATOR).append(coding);
+		}
+		return tag.append('"').toString();
+	}
+
+	/**
+	 * Tag the response and halt with 304 if the client already has this representation.
+	 * @param request the request, its <code>If-None-Match</code> header is honored.
+	 * @param response the response to tag.
+	 * @param etag the tag of the current representation.
+	 */
+	static void checkNotModified(Request request, Response response, String etag) {
+		response.header("ETag", etag);
+		String ifNoneMatch = request.headers("If-None-Match");
+		if (ifNoneMatch != null && matches(ifNoneMatch, etag, true)) {
+			// the body is not written, so the compression does not add this header.
+			response.header("Vary", "Accept-Encoding");
+			halt(StatusCodes.NOT_MODIFIED);
+		}
+	}
+
+	/**
+	 * Halt with 412 unless the client has read the current representation, if it says so.
+	 * @param request the request, its <code>If-Match</code> header is honored.
+	 * @param etag the tag of the current representation, <code>null</code> if there is none.
+	 */
+	static void checkMatch(Request request, String etag) {
+		String ifMatch = request.headers("If-Match");
+		if (ifMatch != null && (etag == null || !matches(ifMatch, etag, false))) {
+			halt(StatusCodes.PRECONDITION_FAILED, "the resource has been changed");
+		}
+	}
+
+	/**
+	 * @param request the request to work on.
+	 * @return whether an update shall only be applied to the representation the client has read.
+	 */
+	static boolean isConditional(Request request) {
+		return request.headers("If-Match") != null;
+	}
+
+	/**
+	 * Compare a tag with the list of tags of a precondition.
+	 * @param header the value of the precondition header.
+	 * @param etag the tag of the current representation.
+	 * @param weak whether weak tags match, only <code>If-None-Match</code> uses the weak comparison. The strong
+	 *        comparison of <code>If-Match</code> ignores the format.
+	 * @return whether any of the tags matches.
+	 */
+	private static boolean matches(String header, String etag, boolean weak) {
+		String current = normalize(etag, weak);
+		for (String element : header.split(",")) {
+			String candidate = element.trim();
+			if ("*".equals(candidate)) {
+				return true;
+			}
+			if (candidate.startsWith("W/")) {
+				if (!weak) {
+					continue;
+				}
+				candidate = candidate.substring(2);
+			}
+			if (normalize(candidate, weak).equals(current)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String normalize(String etag, boolean weak) {
+		String tag = cut(etag, CODING_SEPARATOR);
+		return weak ? tag : cut(tag, FORMAT_SEPARATOR);
+	}
+
+	private static String cut(String etag, String separator) {
+		int index = etag.lastIndexOf(separator);
+		return index < 0 ? etag : etag.substring(0, index) + "\"";
+	}
+
+	// prevent instantiation
+	private ETags() { }
+}
@@ -1,7 +1,9 @@
 package ch.fhnw.swc.mrs.controller;
 
-import static ch.fhnw.swc.mrs.util.JsonUtil.dataToJson;
-import static ch.fhnw.swc.mrs.util.JsonUtil.jsonToMovie;
+import static ch.fhnw.swc.mrs.util.JsonUtil.bodyToMovie;
+import static ch.fhnw.swc.mrs.util.JsonUtil.dataToBytes;
+import static ch.fhnw.swc.mrs.util.JsonUtil.writeArray;
+import static ch.fhnw.swc.mrs.util.JsonUtil.writeJsonArray;
 import static ch.fhnw.swc.mrs.util.RequestUtil.*;
 import static spark.Spark.get;
 import static spark.Spark.post;
@@ -12,8 +14,11 @@ import static spark.Spark.halt;
 import java.io.IOException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
-import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.SerializerProvider;
@@ -21,6 +26,9 @@ import com.fasterxml.jackson.databind.ser.std.StdSerializer;
 
 import ch.fhnw.swc.mrs.api.MRSServices;
 import ch.fhnw.swc.mrs.model.Movie;
+import ch.fhnw.swc.mrs.util.Compression;
+import ch.fhnw.swc.mrs.util.Format;
+import ch.fhnw.swc.mrs.util.JsonCache;
 import ch.fhnw.swc.mrs.util.JsonUtil;
 import ch.fhnw.swc.mrs.util.StatusCodes;
 import spark.Request;
@@ -30,34 +38,48 @@ import spark.Route;
 public final class MovieController {
 	
 	private static MRSServices backend;
+	/** The JSON of the movies read recently, movies are only serialized again once they have changed. */
+	private static JsonCache<Movie> cache = new JsonCache<>(Movie::getId, Movie::getVersion);
 	
     private static Route fetchAllMovies = (Request request, Response response) -> {
-    	Collection<Movie> movies;
     	String rented = getParamRented(request);
-    	if (rented != null && !rented.isEmpty()) {
-    		movies = backend.getAllMovies("true".equals(rented));
-    	} else {
-    		movies = backend.getAllMovies();
+    	boolean filtered = rented != null && !rented.isEmpty();
+    	Format format = Negotiation.responseFormat(request, response);
+    	ETags.checkNotModified(request, response, ETags.collectionTag(request, backend.getMoviesVersion()));
+    	if (Paging.isRequested(request)) {
+    		int limit = Paging.getLimit(request);
+    		UUID after = Paging.getAfter(request);
+    		List<Movie> page = filtered
+    				? backend.getMovies("true".equals(rented), after, limit) : backend.getMovies(after, limit);
+    		Paging.linkNext(request, response, page, limit, Movie::getId);
+    		writeMovies(request, response, format, page.iterator());
+    		return "";
+    	}
+    	// write the movies while they are read instead of building the whole document first.
+    	try (Stream<Movie> movies = filtered ? backend.streamMovies("true".equals(rented)) : backend.streamMovies()) {
+    		writeMovies(request, response, format, movies.iterator());
     	}
-    	return dataToJson(movies);
+    	return "";
     };
 
     private static Route fetchOneMovie = (Request request, Response response) -> {
     	UUID id = getParamId(request);
     	Movie m = backend.getMovieById(id);
-    	String body = "";
     	if (m == null) {
         	response.status(StatusCodes.NOT_FOUND);
-    	} else {
-        	response.status(StatusCodes.OK);
-        	body = dataToJson(m);
+        	return "";
     	}
-       	return body;
+    	Format format = Negotiation.responseFormat(request, response);
+    	ETags.checkNotModified(request, response, ETags.entityTag(request, m.getVersion()));
+    	response.status(StatusCodes.OK);
+    	Negotiation.send(request, response, format, format == Format.JSON ? cache.get(m) : dataToBytes(m, format));
+    	return "";
     };
     
     private static Route deleteMovie = (Request request, Response response) -> {
     	UUID id = getParamId(request);
     	if (backend.deleteMovie(id)) {
+    		cache.invalidate(id);
         	response.status(StatusCodes.NO_CONTENT);
     	} else {
     		response.status(StatusCodes.NOT_FOUND);
@@ -70,30 +92,80 @@ public final class MovieController {
     	LocalDate aReleaseDate = getParamReleaseDate(request);
     	String aPriceCategory = getParamPriceCategory(request);
     	int anAgeRating = getParamAgeRating(request);
-    	String body = "";
+    	Format format = Negotiation.responseFormat(request, response);
+    	Movie m = null;
     	try {
-    		Movie m = backend.createMovie(aTitle, aReleaseDate, aPriceCategory, anAgeRating);
-    		body = dataToJson(m);
+    		m = backend.createMovie(aTitle, aReleaseDate, aPriceCategory, anAgeRating);
     		response.status(StatusCodes.CREATED);
     	} catch (Exception e) {
     		halt(StatusCodes.NOT_FOUND, e.getMessage());
     	}
-    	return body;
+    	Negotiation.send(request, response, format, dataToBytes(m, format));
+    	return "";
     };
     
     private static Route updateMovie = (Request request, Response response) -> {
     	UUID id = getParamId(request);
-    	String json = request.body();
-    	Movie m = jsonToMovie(json);
+    	Format format = Negotiation.responseFormat(request, response);
+    	Movie m = bodyToMovie(request.bodyAsBytes(), getContentFormat(request));
     	if (!id.equals(m.getId())) {
     		halt(StatusCodes.BAD_REQUEST, "request id does not correspond with movie id");
     	}
-    	if (!backend.updateMovie(m)) {
+    	if (ETags.isConditional(request)) {
+    		Movie current = backend.getMovieById(id);
+    		ETags.checkMatch(request, current == null ? null : ETags.entityTag(request, current.getVersion()));
+    		// somebody else may have updated the movie since it has been read.
+    		if (!backend.updateMovie(m, current.getVersion())) {
+    			halt(StatusCodes.PRECONDITION_FAILED, "the resource has been changed");
+    		}
+    	} else if (!backend.updateMovie(m)) {
     		halt(StatusCodes.BAD_REQUEST, "update could not be processed.");
     	}
-    	return dataToJson(m);
+    	response.header("ETag", ETags.entityTag(request, m.getVersion()));
+    	Negotiation.send(request, response, format, dataToBytes(m, format));
+    	return "";
+    };
+    
+    private static Route createMovies = (Request request, Response response) -> {
+    	Format format = Negotiation.responseFormat(request, response);
+    	List<Movie> movies = Batches.read(request, JsonUtil::bodyToMovies);
+    	List<Map<String, Object>> results = Batches.create(movies, m -> Batches.idOrNull(m::getId),
+    			backend::createMovies);
+    	Batches.send(request, response, format, results);
+    	return "";
+    };
+    
+    private static Route updateMovies = (Request request, Response response) -> {
+    	Format format = Negotiation.responseFormat(request, response);
+    	List<Movie> movies = Batches.read(request, JsonUtil::bodyToMovies);
+    	Batches.send(request, response, format, Batches.apply(movies, m -> Batches.idOrNull(m::getId),
+    			backend::updateMovies, StatusCodes.OK));
+    	return "";
+    };
+    
+    private static Route deleteMovies = (Request request, Response response) -> {
+    	Format format = Negotiation.responseFormat(request, response);
+    	List<UUID> ids = Batches.read(request, JsonUtil::bodyToIds);
+    	List<Map<String, Object>> results = Batches.apply(ids, id -> id, backend::deleteMovies,
+    			StatusCodes.NO_CONTENT);
+    	ids.forEach(cache::invalidate);
+    	Batches.send(request, response, format, results);
+    	return "";
     };
     
+    /**
+     * Write movies as an array. Their JSON is cached, the binary formats are cheap enough to encode every time.
+     */
+    private static void writeMovies(Request request, Response response, Format format, Iterator<Movie> movies)
+    		throws IOException {
+    	response.type(format.getMediaType());
+    	if (format == Format.JSON) {
+    		writeJsonArray(movies, cache::get, Compression.compress(request, response));
+    	} else {
+    		writeArray(movies, format, Compression.compress(request, response));
+    	}
+    }
+    
     /**
      * Initialize MovieController by registering back-end and routes.
      * @param services the back-end component.
@@ -110,6 +182,9 @@ public final class MovieController {
         delete("/movies/:id", MovieController.deleteMovie);
         post("/movies", MovieController.createMovie);
         put("/movies/:id", MovieController.updateMovie);
+        post("/movies:batch", MovieController.createMovies);
+        put("/movies:batch", MovieController.updateMovies);
+        delete("/movies:batch", MovieController.deleteMovies);
     }
     
     // prevent instantiation
@@ -131,6 +206,8 @@ public final class MovieController {
 			jgen.writeStringField("releaseDate", m.getReleaseDate().format(DateTimeFormatter.ISO_DATE));
 			jgen.writeStringField("priceCategory", m.getPriceCategory().toString());
 			jgen.writeNumberField("ageRating", m.getAgeRating());
+			jgen.writeNumberField("copies", m.getCopies());
+			jgen.writeNumberField("available", m.getAvailable());
 			jgen.writeEndObject();
 		}
     	
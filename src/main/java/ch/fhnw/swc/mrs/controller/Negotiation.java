@@ -0,0 +1,55 @@
+package ch.fhnw.swc.mrs.controller;
+
+import static spark.Spark.halt;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import ch.fhnw.swc.mrs.util.Compression;
+import ch.fhnw.swc.mrs.util.Format;
+import ch.fhnw.swc.mrs.util.RequestUtil;
+import ch.fhnw.swc.mrs.util.StatusCodes;
+import spark.Request;
+import spark.Response;
+
+/**
+ * Content negotiation of the REST routes. Movies and users are sent as JSON, Smile or CBOR, whichever the client
+ * prefers in its <code>Accept</code> header, and are read in the format its <code>Content-Type</code> header
+ * names; see {@link Format}.
+ */
+final class Negotiation {
+
+	/**
+	 * Choose the format of the response, halts with 406 if the client accepts none of the formats.
+	 * @param request the request to answer.
+	 * @param response the response, caches are told that its body depends on the <code>Accept</code> header.
+	 * @return the format of the response body.
+	 */
+	static Format responseFormat(Request request, Response response) {
+		response.header("Vary", "Accept");
+		Format format = RequestUtil.getAcceptedFormat(request);
+		if (format == null) {
+			halt(StatusCodes.NOT_ACCEPTABLE, "supported media types are application/json, "
+					+ "application/x-jackson-smile and application/cbor");
+		}
+		return format;
+	}
+
+	/**
+	 * Write an encoded body.
+	 * @param request the request, its <code>Accept-Encoding</code> header is honored.
+	 * @param response the response to write.
+	 * @param format the format of the body.
+	 * @param body the encoded body.
+	 * @throws IOException if the body cannot be written.
+	 */
+	static void send(Request request, Response response, Format format, byte[] body) throws IOException {
+		response.type(format.getMediaType());
+		try (OutputStream out = Compression.compress(request, response)) {
+			out.write(body);
+		}
+	}
+
+	// prevent instantiation
+	private Negotiation() { }
+}
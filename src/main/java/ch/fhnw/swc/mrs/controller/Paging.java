@@ -0,0 +1,96 @@
+package ch.fhnw.swc.mrs.controller;
+
+import static ch.fhnw.swc.mrs.util.RequestUtil.getParamAfter;
+import static ch.fhnw.swc.mrs.util.RequestUtil.getParamLimit;
+import static spark.Spark.halt;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+import ch.fhnw.swc.mrs.util.StatusCodes;
+import spark.Request;
+import spark.Response;
+
+/**
+ * Keyset pagination of the collection routes. A page is requested with the query parameters <code>limit</code> and
+ * <code>after</code>, the id of the last element of the previous page. If a page is full, the response links to
+ * the next one in a <code>Link</code> header.
+ */
+final class Paging {
+
+	/** Page size if only <code>after</code> is given. */
+	static final int DEFAULT_LIMIT = 100;
+	/** Largest page size served, larger limits are reduced to it. */
+	static final int MAX_LIMIT = 1000;
+
+	/**
+	 * @param request the request to work on.
+	 * @return whether the client asks for a page rather than the whole collection.
+	 */
+	static boolean isRequested(Request request) {
+		return request.queryParams("limit") != null || request.queryParams("after") != null;
+	}
+
+	/**
+	 * Extract the page size, halts with 400 if it is not a positive number.
+	 * @param request the request to work on.
+	 * @return the page size, at most {@link #MAX_LIMIT}.
+	 */
+	static int getLimit(Request request) {
+		int limit = getParamLimit(request, DEFAULT_LIMIT);
+		if (limit < 1) {
+			halt(StatusCodes.BAD_REQUEST, "limit must be a positive number");
+		}
+		return Math.min(limit, MAX_LIMIT);
+	}
+
+	/**
+	 * Extract the id after which the page starts, halts with 400 if it is not an id.
+	 * @param request the request to work on.
+	 * @return the id or <code>null</code> for the first page.
+	 */
+	static UUID getAfter(Request request) {
+		try {
+			return getParamAfter(request);
+		} catch (IllegalArgumentException e) {
+			halt(StatusCodes.BAD_REQUEST, "after must be an id");
+			return null;
+		}
+	}
+
+	/**
+	 * Link to the next page unless the page is the last one. The link repeats the query parameters of the request.
+	 * @param request the request for the page.
+	 * @param response the response to add the link to.
+	 * @param page the elements of the page.
+	 * @param limit the page size.
+	 * @param id extracts the id of an element.
+	 */
+	static <T> void linkNext(Request request, Response response, List<T> page, int limit, Function<T, UUID> id) {
+		if (page.size() < limit) {
+			return;
+		}
+		StringBuilder link = new StringBuilder("<").append(request.pathInfo()).append('?');
+		for (String name : request.queryParams()) {
+			if (!"limit".equals(name) && !"after".equals(name)) {
+				link.append(encode(name)).append('=').append(encode(request.queryParams(name))).append('&');
+			}
+		}
+		link.append("limit=").append(limit).append("&after=").append(id.apply(page.get(page.size() - 1)));
+		response.header("Link", link.append(">; rel=\"next\"").toString());
+	}
+
+	private static String encode(String s) {
+		try {
+			return URLEncoder.encode(s, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	// prevent instantiation
+	private Paging() { }
+}
@@ -0,0 +1,209 @@
+package ch.fhnw.swc.mrs.controller;
+
+import static ch.fhnw.swc.mrs.util.JsonUtil.bodyToRentalRequest;
+import static ch.fhnw.swc.mrs.util.JsonUtil.dataToBytes;
+import static ch.fhnw.swc.mrs.util.JsonUtil.writeArray;
+import static ch.fhnw.swc.mrs.util.RequestUtil.getContentFormat;
+import static ch.fhnw.swc.mrs.util.RequestUtil.getParamId;
+import static ch.fhnw.swc.mrs.util.RequestUtil.getParamMovieId;
+import static ch.fhnw.swc.mrs.util.RequestUtil.getParamUserId;
+import static spark.Spark.delete;
+import static spark.Spark.get;
+import static spark.Spark.halt;
+import static spark.Spark.post;
+
+import java.io.IOException;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import ch.fhnw.swc.mrs.api.AsyncMRSServices;
+import ch.fhnw.swc.mrs.api.MRSServices;
+import ch.fhnw.swc.mrs.api.MovieRentalException;
+import ch.fhnw.swc.mrs.api.RentalRequest;
+import ch.fhnw.swc.mrs.data.ExecutorMRSServices;
+import ch.fhnw.swc.mrs.model.BusinessDate;
+import ch.fhnw.swc.mrs.model.Rental;
+import ch.fhnw.swc.mrs.util.Compression;
+import ch.fhnw.swc.mrs.util.Format;
+import ch.fhnw.swc.mrs.util.JsonUtil;
+import ch.fhnw.swc.mrs.util.StatusCodes;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+/**
+ * The routes of the rentals. The single-rental routes answer asynchronously, see {@link Async}, the batch routes
+ * on the thread of the request.
+ */
+public final class RentalController {
+
+	private static MRSServices backend;
+	private static AsyncMRSServices asyncBackend;
+
+	private static Route fetchRentals = (Request request, Response response) -> {
+		UUID userId = null;
+		UUID movieId = null;
+		try {
+			userId = getParamUserId(request);
+			movieId = getParamMovieId(request);
+		} catch (IllegalArgumentException e) {
+			halt(StatusCodes.BAD_REQUEST, "userId and movieId must be ids");
+		}
+		Format format = Negotiation.responseFormat(request, response);
+		// the rentals grow with every day of business, they are only served page by page.
+		int limit = Paging.getLimit(request);
+		return Async.reply(request, response, asyncBackend.getRentals(userId, movieId, Paging.getAfter(request),
+				limit), page -> {
+					Paging.linkNext(request, response, page, limit, Rental::getId);
+					response.type(format.getMediaType());
+					writeArray(page.iterator(), format, Compression.compress(request, response));
+				});
+	};
+
+	private static Route createRental = (Request request, Response response) -> {
+		Format format = Negotiation.responseFormat(request, response);
+		RentalRequest r = null;
+		try {
+			r = bodyToRentalRequest(request.bodyAsBytes(), getContentFormat(request));
+		} catch (IOException e) {
+			halt(StatusCodes.BAD_REQUEST, e.getMessage());
+		}
+		if (r.getRentalDate().isAfter(BusinessDate.today())) {
+			halt(StatusCodes.BAD_REQUEST, "the rental date must not be in the future");
+		}
+		RentalRequest rental = r;
+		return Async.reply(request, response, asyncBackend.submit(services -> rent(services, rental)), id -> {
+			response.status(StatusCodes.CREATED);
+			Negotiation.send(request, response, format, dataToBytes(toData(id, rental), format));
+		});
+	};
+
+	private static Route returnRental = (Request request, Response response) -> {
+		UUID id = null;
+		try {
+			id = getParamId(request);
+		} catch (IllegalArgumentException e) {
+			halt(StatusCodes.BAD_REQUEST, "id must be an id");
+		}
+		// a rental returned concurrently by somebody else is gone as well.
+		return Async.reply(request, response, asyncBackend.returnRental(id),
+				returned -> response.status(returned ? StatusCodes.NO_CONTENT : StatusCodes.NOT_FOUND));
+	};
+
+	private static Route createRentals = (Request request, Response response) -> {
+		Format format = Negotiation.responseFormat(request, response);
+		List<RentalRequest> requests = Batches.read(request, JsonUtil::bodyToRentalRequests);
+		UUID[] ids = backend.createRentals(requests);
+		if (ids == null) {
+			halt(StatusCodes.INTERNAL_SERVER_ERROR, "the batch could not be processed, nothing has been changed");
+		}
+		List<Map<String, Object>> results = new ArrayList<>(ids.length);
+		for (UUID id : ids) {
+			results.add(id != null ? Batches.result(StatusCodes.CREATED, id) : Batches.error(StatusCodes.CONFLICT,
+					"no copy of the movie is available, the user or the movie does not exist "
+					+ "or the date is in the future"));
+		}
+		Batches.send(request, response, format, results);
+		return "";
+	};
+
+	private static Route returnRentals = (Request request, Response response) -> {
+		Format format = Negotiation.responseFormat(request, response);
+		List<UUID> ids = Batches.read(request, JsonUtil::bodyToIds);
+		Batches.send(request, response, format, Batches.apply(ids, id -> id, backend::returnRentals,
+				StatusCodes.NO_CONTENT));
+		return "";
+	};
+
+	/**
+	 * Rent a movie, halts if the rental cannot be created.
+	 * @return the id of the new rental.
+	 */
+	private static UUID rent(MRSServices services, RentalRequest r) {
+		UUID id = null;
+		try {
+			// a single statement on the database, a pair of striped locks in memory: no reads before the write.
+			id = services.rentMovie(r.getUserId(), r.getMovieId(), r.getRentalDate());
+		} catch (MovieRentalException e) {
+			// e.g. the user is too young or has rented too many movies.
+			halt(StatusCodes.CONFLICT, e.getMessage());
+		}
+		if (id == null) {
+			// find out why only on failure, the common case does not pay for it.
+			if (services.getUserById(r.getUserId()) == null || services.getMovieById(r.getMovieId()) == null) {
+				halt(StatusCodes.NOT_FOUND, "the user or the movie does not exist");
+			}
+			halt(StatusCodes.CONFLICT, "no copy of the movie is available");
+		}
+		return id;
+	}
+
+	/**
+	 * The representation of a new rental, the same {@link RentalSerializer} writes, without reading it back.
+	 */
+	private static Map<String, Object> toData(UUID id, RentalRequest r) {
+		Map<String, Object> data = new LinkedHashMap<>();
+		data.put("id", id.toString());
+		data.put("userId", r.getUserId().toString());
+		data.put("movieId", r.getMovieId().toString());
+		data.put("rentalDate", r.getRentalDate().format(DateTimeFormatter.ISO_DATE));
+		return data;
+	}
+
+	/**
+	 * Initialize RentalController by registering back-end and routes. The operations run on the threads of the
+	 * requests.
+	 * @param services the back-end component.
+	 */
+	public static void init(MRSServices services) {
+		init(services, services == null ? null : new ExecutorMRSServices(services));
+	}
+
+	/**
+	 * Initialize RentalController by registering back-end and routes.
+	 * @param services the back-end component.
+	 * @param asyncServices runs the operations of the single-rental routes on the same back-end.
+	 */
+	public static void init(MRSServices services, AsyncMRSServices asyncServices) {
+		if (services == null || asyncServices == null) {
+			throw new IllegalArgumentException("Backend component missing");
+		}
+		backend = services;
+		asyncBackend = asyncServices;
+		JsonUtil.registerSerializer(new RentalSerializer());
+
+		get("/rentals", RentalController.fetchRentals);
+		post("/rentals", RentalController.createRental);
+		delete("/rentals/:id", RentalController.returnRental);
+		post("/rentals:batch", RentalController.createRentals);
+		delete("/rentals:batch", RentalController.returnRentals);
+	}
+
+	// prevent instantiation
+	private RentalController() { }
+
+	private static class RentalSerializer extends StdSerializer<Rental> {
+
+		RentalSerializer() {
+			super(Rental.class);
+		}
+
+		@Override
+		public void serialize(Rental r, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+			jgen.writeStartObject();
+			jgen.writeStringField("id", r.getId().toString());
+			jgen.writeStringField("userId", r.getUser().getId().toString());
+			jgen.writeStringField("movieId", r.getMovie().getId().toString());
+			jgen.writeStringField("rentalDate", r.getRentalDate().format(DateTimeFormatter.ISO_DATE));
+			jgen.writeEndObject();
+		}
+	}
+}
@@ -1,7 +1,9 @@
 package ch.fhnw.swc.mrs.controller;
 
-import static ch.fhnw.swc.mrs.util.JsonUtil.dataToJson;
-import static ch.fhnw.swc.mrs.util.JsonUtil.jsonToUser;
+import static ch.fhnw.swc.mrs.util.JsonUtil.bodyToUser;
+import static ch.fhnw.swc.mrs.util.JsonUtil.dataToBytes;
+import static ch.fhnw.swc.mrs.util.JsonUtil.writeArray;
+import static ch.fhnw.swc.mrs.util.JsonUtil.writeJsonArray;
 import static ch.fhnw.swc.mrs.util.RequestUtil.*;
 
 import static spark.Spark.delete;
@@ -15,14 +17,22 @@ import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.ser.std.StdSerializer;
 
 import ch.fhnw.swc.mrs.api.MRSServices;
+import ch.fhnw.swc.mrs.model.Account;
 import ch.fhnw.swc.mrs.model.User;
+import ch.fhnw.swc.mrs.util.Compression;
+import ch.fhnw.swc.mrs.util.Format;
+import ch.fhnw.swc.mrs.util.JsonCache;
 import ch.fhnw.swc.mrs.util.JsonUtil;
 import ch.fhnw.swc.mrs.util.StatusCodes;
 import spark.Request;
@@ -32,35 +42,64 @@ import spark.Route;
 public class UserController {
 	
 	private static MRSServices backend;
+	/** The JSON of the users read recently, users are only serialized again once they have changed. */
+	private static JsonCache<User> cache = new JsonCache<>(User::getId, User::getVersion);
 	
 	private static Route fetchAllUsers = (Request request, Response response) -> {
 		Collection<User> users;
 		String name = getParamName(request);
+		Format format = Negotiation.responseFormat(request, response);
+		ETags.checkNotModified(request, response, ETags.collectionTag(request, backend.getUsersVersion()));
 		if (name != null && !name.isEmpty()) {
 			users = new ArrayList<User>(1);
 			users.add(backend.getUserByName(name));
+		} else if (Paging.isRequested(request)) {
+			int limit = Paging.getLimit(request);
+			List<User> page = backend.getUsers(Paging.getAfter(request), limit);
+			Paging.linkNext(request, response, page, limit, User::getId);
+			writeUsers(request, response, format, page.iterator());
+			return "";
 		} else {
-			users = backend.getAllUsers();
+			// write the users while they are read instead of building the whole document first.
+			try (Stream<User> all = backend.streamUsers()) {
+				writeUsers(request, response, format, all.iterator());
+			}
+			return "";
 		}
-		return dataToJson(users);
+		Negotiation.send(request, response, format, dataToBytes(users, format));
+		return "";
 	};
 
 	private static Route fetchOneUser = (Request request, Response response) -> {
 		UUID id = getParamId(request);
 		User u = backend.getUserById(id);
-		String body = "";
 		if (u == null) {
 			response.status(StatusCodes.NOT_FOUND);
-		} else {
-			response.status(StatusCodes.OK);
-			body = dataToJson(u);
+			return "";
 		}
-		return body;
+		Format format = Negotiation.responseFormat(request, response);
+		ETags.checkNotModified(request, response, ETags.entityTag(request, u.getVersion()));
+		response.status(StatusCodes.OK);
+		Negotiation.send(request, response, format, format == Format.JSON ? cache.get(u) : dataToBytes(u, format));
+		return "";
+	};
+
+	private static Route fetchAccount = (Request request, Response response) -> {
+		Account a = backend.getAccount(getParamId(request));
+		if (a == null) {
+			response.status(StatusCodes.NOT_FOUND);
+			return "";
+		}
+		Format format = Negotiation.responseFormat(request, response);
+		response.status(StatusCodes.OK);
+		Negotiation.send(request, response, format, dataToBytes(a, format));
+		return "";
 	};
 
 	private static Route deleteUser = (Request request, Response response) -> {
 		UUID id = getParamId(request);
 		if (backend.deleteUser(id)) {
+			cache.invalidate(id);
 			response.status(StatusCodes.NO_CONTENT);
     	} else {
     		response.status(StatusCodes.NOT_FOUND);
@@ -72,30 +111,80 @@ public class UserController {
 		String aName = getParamName(request);
 		String aFirstname = getParamFirstname(request);
 		LocalDate aBirthdate = getParamBirthdate(request);
-		String body = "";
+		Format format = Negotiation.responseFormat(request, response);
+		User u = null;
 		try {
-			User u = backend.createUser(aName, aFirstname, aBirthdate);
-			body = dataToJson(u);
+			u = backend.createUser(aName, aFirstname, aBirthdate);
 			response.status(StatusCodes.CREATED);
 		} catch (Exception e) {
 			halt(StatusCodes.NOT_FOUND, e.getMessage());
 		}
-		return body;
+		Negotiation.send(request, response, format, dataToBytes(u, format));
+		return "";
 	};
 
 	private static Route updateUser = (Request request, Response response) -> {
     	UUID id = getParamId(request);
-    	String json = request.body();
-    	User u = jsonToUser(json);
+    	Format format = Negotiation.responseFormat(request, response);
+    	User u = bodyToUser(request.bodyAsBytes(), getContentFormat(request));
     	if (!id.equals(u.getId())) {
     		halt(StatusCodes.BAD_REQUEST, "request id does not correspond with user id");
     	}
-    	if (!backend.updateUser(u)) {
+    	if (ETags.isConditional(request)) {
+    		User current = backend.getUserById(id);
+    		ETags.checkMatch(request, current == null ? null : ETags.entityTag(request, current.getVersion()));
+    		// somebody else may have updated the user since it has been read.
+    		if (!backend.updateUser(u, current.getVersion())) {
+    			halt(StatusCodes.PRECONDITION_FAILED, "the resource has been changed");
+    		}
+    	} else if (!backend.updateUser(u)) {
     		halt(StatusCodes.BAD_REQUEST, "update could not be processed.");
     	}
-    	return dataToJson(u);
+    	response.header("ETag", ETags.entityTag(request, u.getVersion()));
+    	Negotiation.send(request, response, format, dataToBytes(u, format));
+    	return "";
+	};
+
+	private static Route createUsers = (Request request, Response response) -> {
+		Format format = Negotiation.responseFormat(request, response);
+		List<User> users = Batches.read(request, JsonUtil::bodyToUsers);
+		List<Map<String, Object>> results = Batches.create(users, u -> Batches.idOrNull(u::getId),
+				backend::createUsers);
+		Batches.send(request, response, format, results);
+		return "";
+	};
+
+	private static Route updateUsers = (Request request, Response response) -> {
+		Format format = Negotiation.responseFormat(request, response);
+		List<User> users = Batches.read(request, JsonUtil::bodyToUsers);
+		Batches.send(request, response, format, Batches.apply(users, u -> Batches.idOrNull(u::getId),
+				backend::updateUsers, StatusCodes.OK));
+		return "";
+	};
+
+	private static Route deleteUsers = (Request request, Response response) -> {
+		Format format = Negotiation.responseFormat(request, response);
+		List<UUID> ids = Batches.read(request, JsonUtil::bodyToIds);
+		List<Map<String, Object>> results = Batches.apply(ids, id -> id, backend::deleteUsers,
+				StatusCodes.NO_CONTENT);
+		ids.forEach(cache::invalidate);
+		Batches.send(request, response, format, results);
+		return "";
 	};
 
+	/**
+	 * Write users as an array. Their JSON is cached, the binary formats are cheap enough to encode every time.
+	 */
+	private static void writeUsers(Request request, Response response, Format format, Iterator<User> users)
+			throws IOException {
+		response.type(format.getMediaType());
+		if (format == Format.JSON) {
+			writeJsonArray(users, cache::get, Compression.compress(request, response));
+		} else {
+			writeArray(users, format, Compression.compress(request, response));
+		}
+	}
+
 	/**
      * Initialize MovieController by registering back-end and routes.
      * @param services the back-end component.
@@ -106,12 +195,17 @@ public class UserController {
     	}
     	backend = services;
     	JsonUtil.registerSerializer(new UserSerializer());
+    	JsonUtil.registerSerializer(new AccountSerializer());
     	
         get("/users",     UserController.fetchAllUsers);
         get("/users/:id", UserController.fetchOneUser);
+        get("/users/:id/account", UserController.fetchAccount);
         delete("/users/:id", UserController.deleteUser);
         post("/users", UserController.createUser);
         put("/users/:id", UserController.updateUser);
+        post("/users:batch", UserController.createUsers);
+        put("/users:batch", UserController.updateUsers);
+        delete("/users:batch", UserController.deleteUsers);
     }
     
     // prevent instantiation
@@ -134,4 +228,22 @@ public class UserController {
 		}
     	
     }
+
+    private static class AccountSerializer extends StdSerializer<Account> {
+
+    	AccountSerializer() {
+    		super(Account.class);
+    	}
+
+		@Override
+		public void serialize(Account a, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+			jgen.writeStartObject();
+			jgen.writeStringField("userId", a.getUserId().toString());
+			jgen.writeStringField("date", a.getDate().format(DateTimeFormatter.ISO_DATE));
+			jgen.writeNumberField("charge", a.getCharge());
+			jgen.writeNumberField("frequentRenterPoints", a.getFrequentRenterPoints());
+			jgen.writeNumberField("rentals", a.getRentals());
+			jgen.writeEndObject();
+		}
+    }
 }
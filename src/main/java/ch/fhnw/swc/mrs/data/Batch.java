@@ -0,0 +1,63 @@
+package ch.fhnw.swc.mrs.data;
+
+import java.util.Collection;
+import java.util.function.BiConsumer;
+
+import org.sql2o.Connection;
+import org.sql2o.Query;
+import org.sql2o.Sql2o;
+
+/**
+ * Executes a statement for many objects with JDBC batching. All batches run in one transaction, so either all
+ * objects are written or none.
+ */
+final class Batch {
+
+    /** Number of rows sent per batch unless configured otherwise. */
+    static final int DEFAULT_SIZE = 1000;
+
+    /**
+     * Execute a statement once for every item.
+     *
+     * @param sql2o provides the connection.
+     * @param sql the statement to execute.
+     * @param items the objects to bind to the statement.
+     * @param batchSize the number of rows sent to the database at once.
+     * @param binder binds the parameters of one item to the statement.
+     * @return the update count of each item, in iteration order.
+     */
+    static <T> int[] execute(Sql2o sql2o, String sql, Collection<T> items, int batchSize,
+            BiConsumer<Query, T> binder) {
+        int[] result = new int[items.size()];
+        if (items.isEmpty()) {
+            return result;
+        }
+        try (Connection conn = sql2o.beginTransaction()) {
+            Query q = conn.createQuery(sql);
+            int pending = 0;
+            int done = 0;
+            for (T item : items) {
+                binder.accept(q, item);
+                q.addToBatch();
+                if (++pending == batchSize) {
+                    done = copy(q.executeBatch().getBatchResult(), result, done);
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                copy(q.executeBatch().getBatchResult(), result, done);
+            }
+            conn.commit();
+        }
+        return result;
+    }
+
+    private static int copy(int[] counts, int[] result, int offset) {
+        System.arraycopy(counts, 0, result, offset, counts.length);
+        return offset + counts.length;
+    }
+
+    private Batch() {
+        // prevent instantiation
+    }
+}
@@ -0,0 +1,82 @@
+package ch.fhnw.swc.mrs.data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Creates the pooled data source used by the database back-end. The pool is configured by the classpath resource
+ * <code>/data/db.properties</code>, whose keys are HikariCP settings (jdbcUrl, username, maximumPoolSize,
+ * connectionTimeout, ...) plus {@value #BATCH_SIZE}, the number of rows the DAOs send per JDBC batch. Each key
+ * can be overridden by a system property with the prefix {@value #PREFIX}.
+ */
+public final class ConnectionPool {
+
+    /** Prefix of system properties overriding the pool configuration. */
+    public static final String PREFIX = "mrs.db.";
+    /** Key of the number of rows sent per JDBC batch, this setting is not passed to the pool. */
+    public static final String BATCH_SIZE = "batchSize";
+    /** Classpath resource containing the pool configuration. */
+    private static final String CONFIGURATION = "/data/db.properties";
+
+    private static Logger log = LogManager.getLogger(ConnectionPool.class);
+
+    /**
+     * Load the pool configuration from the classpath and apply the overrides given as system properties.
+     *
+     * @return the configuration of the pool.
+     */
+    public static Properties loadConfiguration() {
+        Properties config = new Properties();
+        try (InputStream in = ConnectionPool.class.getResourceAsStream(CONFIGURATION)) {
+            if (in != null) {
+                config.load(in);
+            }
+        } catch (IOException e) {
+            log.error("Cannot read the pool configuration from " + CONFIGURATION, e);
+        }
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith(PREFIX)) {
+                config.setProperty(name.substring(PREFIX.length()), System.getProperty(name));
+            }
+        }
+        return config;
+    }
+
+    /**
+     * @param config the database configuration.
+     * @return the number of rows sent per JDBC batch.
+     */
+    public static int getBatchSize(Properties config) {
+        String size = config.getProperty(BATCH_SIZE);
+        return size == null ? Batch.DEFAULT_SIZE : Integer.parseInt(size.trim());
+    }
+
+    /**
+     * Start a connection pool.
+     *
+     * @param config HikariCP settings of the pool.
+     * @param metrics collects the metrics of the pool, may be <code>null</code>.
+     * @return the started pool, close it to release its connections.
+     */
+    public static HikariDataSource create(Properties config, PoolMetrics metrics) {
+        Properties poolConfig = new Properties();
+        poolConfig.putAll(config);
+        poolConfig.remove(BATCH_SIZE);
+        HikariConfig hikari = new HikariConfig(poolConfig);
+        if (metrics != null) {
+            hikari.setMetricsTrackerFactory(metrics);
+        }
+        return new HikariDataSource(hikari);
+    }
+
+    private ConnectionPool() {
+        // prevent instantiation
+    }
+}
@@ -0,0 +1,340 @@
+package ch.fhnw.swc.mrs.data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.postgresql.PGConnection;
+
+import ch.fhnw.swc.mrs.model.PriceCategory;
+
+/**
+ * Loads the <code>;</code>-delimited CSV files read by {@link SimpleMRSServices} into PostgreSQL. Each file is
+ * streamed with <code>COPY FROM STDIN</code> into a temporary staging table with text columns. The rows are then
+ * validated in the database and the valid ones are upserted into the MRS table; invalid and duplicate rows are
+ * rejected and reported by line number. Each file is loaded in one transaction.
+ */
+public class CsvBulkLoader {
+
+    /** Maximal number of rejected line numbers kept in a result. */
+    public static final int MAX_REPORTED_LINES = 100;
+
+    /** Validation functions, created in the temporary schema of the session. */
+    private static final String[] FUNCTIONS = {
+        "CREATE OR REPLACE FUNCTION pg_temp.is_uuid(text) RETURNS boolean AS "
+            + "$$ SELECT coalesce($1 ~* '^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}$', false) $$ "
+            + "LANGUAGE sql IMMUTABLE",
+        "CREATE OR REPLACE FUNCTION pg_temp.is_int(text) RETURNS boolean AS "
+            + "$$ SELECT coalesce($1 ~ '^\\s*[+-]?\\d{1,9}\\s*$', false) $$ LANGUAGE sql IMMUTABLE",
+        "CREATE OR REPLACE FUNCTION pg_temp.is_bool(text) RETURNS boolean AS "
+            + "$$ SELECT coalesce(lower(trim($1)) IN ('true', 'false', 't', 'f', 'yes', 'no', '1', '0'), false) $$ "
+            + "LANGUAGE sql IMMUTABLE",
+        "CREATE OR REPLACE FUNCTION pg_temp.is_date(text) RETURNS boolean AS "
+            + "$$ SELECT CASE WHEN $1 IS NULL OR $1 !~ '^\\d{4}-\\d{2}-\\d{2}$' THEN false "
+            + "WHEN substr($1, 1, 4)::int = 0 OR substr($1, 6, 2)::int NOT BETWEEN 1 AND 12 THEN false "
+            + "ELSE substr($1, 9, 2)::int BETWEEN 1 AND extract(day FROM make_date(substr($1, 1, 4)::int, "
+            + "substr($1, 6, 2)::int, 1) + interval '1 month - 1 day') END $$ "
+            + "LANGUAGE sql IMMUTABLE",
+    };
+
+    /**
+     * Layout of movies.csv: ID;Title;ReleaseDate;PriceCategory;AgeRating;Rented. The rented flag only applies to new
+     * movies, the copies of existing ones are owned by their rentals and kept.
+     */
+    private static final Layout MOVIES = new Layout("movies",
+            "id, title, releasedate, pricecategory, agerating, rented",
+            "pg_temp.is_uuid(id) AND coalesce(trim(title), '') <> '' AND pg_temp.is_date(releasedate) "
+            + "AND pricecategory = ANY(?) AND pg_temp.is_bool(rented) "
+            + "AND CASE WHEN pg_temp.is_int(agerating) THEN trim(agerating)::int BETWEEN 0 AND 18 ELSE false END",
+            "lower(id)",
+            "INSERT INTO movies (id, title, rented, available, releasedate, pricecategory, agerating) "
+            + "SELECT id::uuid, title, trim(rented)::boolean, CASE WHEN trim(rented)::boolean THEN 0 ELSE 1 END, "
+            + "releasedate::date, pricecategory, trim(agerating)::int "
+            + "FROM movies_staging WHERE valid ON CONFLICT (id) DO UPDATE SET title = EXCLUDED.title, "
+            + "rented = movies.available = 0, releasedate = EXCLUDED.releasedate, "
+            + "pricecategory = EXCLUDED.pricecategory, agerating = EXCLUDED.agerating, version = movies.version + 1");
+
+    /** Layout of users.csv: ID;Surname;FirstName;Birthdate. */
+    private static final Layout USERS = new Layout("clients",
+            "id, name, firstname, birthdate",
+            "pg_temp.is_uuid(id) AND coalesce(trim(name), '') <> '' AND coalesce(trim(firstname), '') <> '' "
+            + "AND pg_temp.is_date(birthdate)",
+            "lower(id)",
+            "INSERT INTO clients (id, name, firstname, birthdate) "
+            + "SELECT id::uuid, name, firstname, birthdate::date FROM clients_staging WHERE valid "
+            + "ON CONFLICT (id) DO UPDATE SET name = EXCLUDED.name, firstname = EXCLUDED.firstname, "
+            + "birthdate = EXCLUDED.birthdate, version = clients.version + 1");
+
+    /**
+     * Layout of rentals.csv: ID;RentalDate;UserID;MovieID. The user and the movie must already exist and a movie
+     * may not be rented more often than it has copies; rentals that are already stored take their copy as well.
+     * The available copies of the rented movies are counted anew, so loading a file twice does not take a copy
+     * twice.
+     */
+    private static final Layout RENTALS = new Layout("rentals",
+            "id, rentaldate, clientid, movieid",
+            "pg_temp.is_uuid(id) AND pg_temp.is_date(rentaldate) "
+            + "AND CASE WHEN pg_temp.is_uuid(clientid) AND pg_temp.is_uuid(movieid) "
+            + "THEN EXISTS (SELECT 1 FROM clients c WHERE c.id = clientid::uuid) "
+            + "AND EXISTS (SELECT 1 FROM movies m WHERE m.id = movieid::uuid) ELSE false END",
+            "lower(id)",
+            "UPDATE rentals_staging s SET valid = false FROM (SELECT o.line, m.copies, "
+            + "row_number() OVER (PARTITION BY m.id ORDER BY o.line) + (SELECT count(*) FROM rentals r "
+            + "WHERE r.movieid = m.id AND r.id NOT IN (SELECT id::uuid FROM rentals_staging WHERE valid)) AS n "
+            + "FROM rentals_staging o JOIN movies m ON m.id = CASE WHEN o.valid THEN o.movieid::uuid END "
+            + "WHERE o.valid) c WHERE s.line = c.line AND c.n > c.copies",
+            "INSERT INTO rentals (id, movieid, clientid, rentaldate) "
+            + "SELECT id::uuid, movieid::uuid, clientid::uuid, rentaldate::date FROM rentals_staging WHERE valid "
+            + "ON CONFLICT (id) DO UPDATE SET movieid = EXCLUDED.movieid, clientid = EXCLUDED.clientid, "
+            + "rentaldate = EXCLUDED.rentaldate",
+            "UPDATE movies m SET available = greatest(m.copies - r.n, 0), rented = m.copies <= r.n, "
+            + "version = m.version + 1 FROM (SELECT movieid, count(*) AS n FROM rentals "
+            + "WHERE movieid IN (SELECT movieid::uuid FROM rentals_staging WHERE valid) GROUP BY movieid) r "
+            + "WHERE m.id = r.movieid");
+
+    private static Logger log = LogManager.getLogger(CsvBulkLoader.class);
+
+    private final DataSource dataSource;
+
+    /**
+     * @param dataSource provides the connections to the MRS database.
+     */
+    public CsvBulkLoader(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Load the CSV files shipped with the application, the same data set that {@link SimpleMRSServices#init()}
+     * reads.
+     *
+     * @return the results of loading the movies, the users and the rentals.
+     * @throws SQLException if the database reports an error.
+     * @throws IOException if a file cannot be read.
+     */
+    public List<Result> loadDefaults() throws SQLException, IOException {
+        List<Result> results = new ArrayList<>(3);
+        try (InputStream movies = getClass().getResourceAsStream("/data/movies.csv");
+                InputStream users = getClass().getResourceAsStream("/data/users.csv");
+                InputStream rentals = getClass().getResourceAsStream("/data/rentals.csv")) {
+            results.add(loadMovies(movies));
+            results.add(loadUsers(users));
+            results.add(loadRentals(rentals));
+        }
+        return results;
+    }
+
+    /**
+     * @param csv movies in the layout of <code>movies.csv</code>, UTF-8 encoded and with header line.
+     * @return the outcome of the load.
+     * @throws SQLException if the database reports an error.
+     * @throws IOException if the file cannot be read.
+     */
+    public Result loadMovies(InputStream csv) throws SQLException, IOException {
+        return load(MOVIES, csv);
+    }
+
+    /**
+     * @param csv users in the layout of <code>users.csv</code>, UTF-8 encoded and with header line.
+     * @return the outcome of the load.
+     * @throws SQLException if the database reports an error.
+     * @throws IOException if the file cannot be read.
+     */
+    public Result loadUsers(InputStream csv) throws SQLException, IOException {
+        return load(USERS, csv);
+    }
+
+    /**
+     * Load rentals and take a copy of their movies. Load the users and the movies first.
+     *
+     * @param csv rentals in the layout of <code>rentals.csv</code>, UTF-8 encoded and with header line.
+     * @return the outcome of the load.
+     * @throws SQLException if the database reports an error.
+     * @throws IOException if the file cannot be read.
+     */
+    public Result loadRentals(InputStream csv) throws SQLException, IOException {
+        return load(RENTALS, csv);
+    }
+
+    private Result load(Layout layout, InputStream csv) throws SQLException, IOException {
+        long start = System.nanoTime();
+        String staging = layout.table + "_staging";
+        try (Connection conn = dataSource.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (Statement s = conn.createStatement()) {
+                for (String function : FUNCTIONS) {
+                    s.execute(function);
+                }
+                s.execute("CREATE TEMP TABLE " + staging + " (line bigserial, valid boolean NOT NULL DEFAULT false, "
+                        + layout.columns.replace(",", " text,") + " text) ON COMMIT DROP");
+
+                long read = conn.unwrap(PGConnection.class).getCopyAPI().copyIn("COPY " + staging + " ("
+                        + layout.columns + ") FROM STDIN WITH (FORMAT csv, DELIMITER ';', HEADER true, "
+                        + "ENCODING 'UTF8')", csv);
+
+                try (PreparedStatement validate = conn.prepareStatement(
+                        "UPDATE " + staging + " SET valid = " + layout.predicate)) {
+                    if (layout.predicate.contains("?")) {
+                        Array categories = conn.createArrayOf("text", PriceCategory.getPriceCategoryIds().toArray());
+                        validate.setArray(1, categories);
+                    }
+                    validate.executeUpdate();
+                }
+                s.executeUpdate("UPDATE " + staging + " s SET valid = false WHERE valid AND EXISTS (SELECT 1 FROM "
+                        + staging + " o WHERE o.valid AND " + layout.unique.replace("(", "(o.") + " = "
+                        + layout.unique.replace("(", "(s.") + " AND o.line < s.line)");
+                if (layout.limit != null) {
+                    s.executeUpdate(layout.limit);
+                }
+
+                long rejected = 0;
+                List<Long> lines = new ArrayList<>();
+                try (ResultSet rs = s.executeQuery("SELECT line FROM " + staging + " WHERE NOT valid ORDER BY line")) {
+                    while (rs.next()) {
+                        if (rejected++ < MAX_REPORTED_LINES) {
+                            // line 1 of the file is the header
+                            lines.add(rs.getLong(1) + 1);
+                        }
+                    }
+                }
+                long loaded = s.executeUpdate(layout.insert);
+                if (layout.after != null) {
+                    s.executeUpdate(layout.after);
+                }
+                conn.commit();
+
+                Result result = new Result(layout.table, read, loaded, rejected, lines, System.nanoTime() - start);
+                log.info(result);
+                return result;
+            } catch (SQLException | IOException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    /**
+     * Statements describing how a CSV file is staged, validated and stored.
+     */
+    private static final class Layout {
+        private final String table;
+        /** The columns of the staging table, in the order of the CSV file. */
+        private final String columns;
+        /** Condition a valid row fulfills, may contain the price category ids as only parameter. */
+        private final String predicate;
+        /** Key that must be unique among the valid rows, later duplicates are rejected. */
+        private final String unique;
+        /** Rejects valid rows that do not fit the stored data, run after the duplicates are rejected; may be null. */
+        private final String limit;
+        private final String insert;
+        private final String after;
+
+        Layout(String table, String columns, String predicate, String unique, String insert) {
+            this(table, columns, predicate, unique, null, insert, null);
+        }
+
+        Layout(String table, String columns, String predicate, String unique, String limit, String insert,
+                String after) {
+            this.table = table;
+            this.columns = columns;
+            this.predicate = predicate;
+            this.unique = unique;
+            this.limit = limit;
+            this.insert = insert;
+            this.after = after;
+        }
+    }
+
+    /**
+     * The outcome of loading one CSV file.
+     */
+    public static final class Result {
+        private final String table;
+        private final long rowsRead;
+        private final long rowsLoaded;
+        private final long rowsRejected;
+        private final List<Long> rejectedLines;
+        private final long elapsedNanos;
+
+        Result(String table, long rowsRead, long rowsLoaded, long rowsRejected, List<Long> rejectedLines,
+                long elapsedNanos) {
+            this.table = table;
+            this.rowsRead = rowsRead;
+            this.rowsLoaded = rowsLoaded;
+            this.rowsRejected = rowsRejected;
+            this.rejectedLines = Collections.unmodifiableList(rejectedLines);
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * @return the table the rows were loaded into.
+         */
+        public String getTable() {
+            return table;
+        }
+
+        /**
+         * @return the number of data rows in the file.
+         */
+        public long getRowsRead() {
+            return rowsRead;
+        }
+
+        /**
+         * @return the number of rows written to the table.
+         */
+        public long getRowsLoaded() {
+            return rowsLoaded;
+        }
+
+        /**
+         * @return the number of invalid or duplicate rows.
+         */
+        public long getRowsRejected() {
+            return rowsRejected;
+        }
+
+        /**
+         * @return the line numbers of the first {@value CsvBulkLoader#MAX_REPORTED_LINES} rejected rows, the
+         *         header being line 1.
+         */
+        public List<Long> getRejectedLines() {
+            return rejectedLines;
+        }
+
+        /**
+         * @return the time taken to load the file, in milliseconds.
+         */
+        public long getElapsedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        }
+
+        /**
+         * @return the number of rows read per second.
+         */
+        public double getRowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : rowsRead * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d rows read, %d loaded, %d rejected %s in %d ms (%.0f rows/s)", table,
+                    rowsRead, rowsLoaded, rowsRejected, rejectedLines, getElapsedMillis(), getRowsPerSecond());
+        }
+    }
+}
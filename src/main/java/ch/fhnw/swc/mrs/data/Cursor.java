@@ -0,0 +1,72 @@
+package ch.fhnw.swc.mrs.data;
+
+import java.sql.SQLException;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.postgresql.PGConnection;
+import org.sql2o.Connection;
+import org.sql2o.Query;
+import org.sql2o.ResultSetIterable;
+import org.sql2o.Sql2o;
+import org.sql2o.Sql2oException;
+
+/**
+ * Streams the rows of a query instead of collecting them in a list. The PostgreSQL driver only reads a result set
+ * in chunks if the query runs in a transaction and has a fetch size, otherwise it loads the whole result set into
+ * memory before the first row is returned. The stream holds a connection until it is closed.
+ */
+final class Cursor {
+
+    /** Number of rows fetched per round trip. */
+    static final int FETCH_SIZE = 1000;
+
+    /**
+     * Open a stream of mapped rows.
+     *
+     * @param sql2o provides the connection.
+     * @param query creates the query on the connection of the stream.
+     * @param fetch executes the query lazily.
+     * @return the rows; the stream must be closed to release its connection.
+     */
+    static <T> Stream<T> stream(Sql2o sql2o, Function<Connection, Query> query,
+            Function<Query, ResultSetIterable<T>> fetch) {
+        Connection conn = sql2o.beginTransaction();
+        try {
+            setFetchSize(conn, FETCH_SIZE);
+            ResultSetIterable<T> rows = fetch.apply(query.apply(conn));
+            return StreamSupport.stream(rows.spliterator(), false).onClose(() -> close(conn, rows));
+        } catch (RuntimeException e) {
+            close(conn, null);
+            throw e;
+        }
+    }
+
+    private static void close(Connection conn, ResultSetIterable<?> rows) {
+        try {
+            if (rows != null) {
+                rows.close();
+            }
+            // the connection goes back to the pool, do not leave the fetch size behind.
+            setFetchSize(conn, 0);
+        } finally {
+            // nothing has been written, ending the transaction also closes the connection.
+            conn.rollback();
+        }
+    }
+
+    private static void setFetchSize(Connection conn, int fetchSize) {
+        try {
+            java.sql.Connection jdbc = conn.getJdbcConnection();
+            if (jdbc.isWrapperFor(PGConnection.class)) {
+                jdbc.unwrap(PGConnection.class).setDefaultFetchSize(fetchSize);
+            }
+        } catch (SQLException e) {
+            throw new Sql2oException("Could not set the fetch size", e);
+        }
+    }
+
+    // prevent instantiation
+    private Cursor() { }
+}
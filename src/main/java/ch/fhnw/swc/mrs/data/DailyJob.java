@@ -0,0 +1,71 @@
+package ch.fhnw.swc.mrs.data;
+
+import java.time.LocalDate;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import ch.fhnw.swc.mrs.model.BusinessDate;
+
+/**
+ * Runs a job at the start of every day of the {@link BusinessDate}, e.g. {@link SimpleMRSServices#rollover(LocalDate)}.
+ * The job runs on a daemon thread of its own. It is scheduled anew after each run, so days of 23 or 25 hours and a
+ * changed clock are taken into account.
+ */
+public class DailyJob implements AutoCloseable {
+
+	private static Logger log = LogManager.getLogger(DailyJob.class);
+
+	private final ScheduledExecutorService scheduler;
+	private final Consumer<LocalDate> job;
+
+	/**
+	 * Schedule a job for the start of the next day.
+	 * @param name the name of the thread running the job.
+	 * @param job called with the new day.
+	 */
+	public DailyJob(String name, Consumer<LocalDate> job) {
+		if (job == null) {
+			throw new IllegalArgumentException("job must not be null");
+		}
+		this.job = job;
+		scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, name);
+			t.setDaemon(true);
+			return t;
+		});
+		scheduleNext();
+	}
+
+	private void scheduleNext() {
+		try {
+			scheduler.schedule(this::run, BusinessDate.millisUntilTomorrow(), TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			// closed meanwhile.
+		}
+	}
+
+	private void run() {
+		try {
+			// a timer firing a little early runs the job for the old day once more, which does no harm.
+			job.accept(BusinessDate.today());
+		} catch (RuntimeException e) {
+			log.error("Daily job failed", e);
+		} finally {
+			scheduleNext();
+		}
+	}
+
+	/**
+	 * Stop running the job, a run in progress is interrupted.
+	 */
+	@Override
+	public void close() {
+		scheduler.shutdownNow();
+	}
+}
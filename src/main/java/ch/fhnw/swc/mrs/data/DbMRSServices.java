@@ -1,36 +1,151 @@
 package ch.fhnw.swc.mrs.data;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import javax.sql.DataSource;
+
+import org.sql2o.Connection;
 import org.sql2o.Sql2o;
+import org.sql2o.converters.Converter;
+import org.sql2o.converters.UUIDConverter;
+import org.sql2o.quirks.PostgresQuirks;
+import org.sql2o.quirks.Quirks;
 
 import ch.fhnw.swc.mrs.api.MRSServices;
+import ch.fhnw.swc.mrs.api.RentalRequest;
+import ch.fhnw.swc.mrs.model.Account;
+import ch.fhnw.swc.mrs.model.BusinessDate;
 import ch.fhnw.swc.mrs.model.Movie;
 import ch.fhnw.swc.mrs.model.PriceCategory;
 import ch.fhnw.swc.mrs.model.Rental;
 import ch.fhnw.swc.mrs.model.User;
+import ch.fhnw.swc.mrs.util.LocalDateConverter;
+import ch.fhnw.swc.mrs.util.PriceCategoryConverter;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Implementation of the MRS Services that stores its data in a PostgreSQL database. By default the connections
+ * are taken from a pool configured by {@link ConnectionPool}; close the services to shut the pool down.
+ * <p>
+ * The versions of the movies and the users are stored in the database. The versions of their collections are
+ * counted by this instance, so they do not reflect changes made by other processes.
+ */
+public class DbMRSServices implements MRSServices, AutoCloseable {
+	/** Classpath resource containing the DDL statements of the MRS tables. */
+	private static final String SCHEMA = "/data/postgres-schema.sql";
+
+	private final Sql2o sql2o;
+	private final MovieDAO movieDAO;
+	private final UserDAO userDAO;
+	private final RentalDAO rentalDAO;
+	/** The pool owned by this instance, <code>null</code> if the data source was passed in. */
+	private final HikariDataSource pool;
+	private final PoolMetrics poolMetrics;
+	/** Number of changes to the movies, see {@link #getMoviesVersion()}. */
+	private final AtomicLong moviesVersion = new AtomicLong();
+	/** Number of changes to the users, see {@link #getUsersVersion()}. */
+	private final AtomicLong usersVersion = new AtomicLong();
 
-public class DbMRSServices implements MRSServices {
-//	the connection string to the in memory database
-	private static final String DB_CONNECTION = "jdbc:postgresql://localhost:4567/mrs";
+	/**
+	 * Connect to the MRS database through a pool configured by <code>/data/db.properties</code> and system
+	 * properties.
+	 */
+	public DbMRSServices() {
+		this(ConnectionPool.loadConfiguration());
+	}
+
+	/**
+	 * Connect to the MRS database through a pool with the given configuration.
+	 * @param poolConfig HikariCP settings of the pool, see {@link ConnectionPool}.
+	 */
+	public DbMRSServices(Properties poolConfig) {
+		this(new PoolMetrics(), poolConfig);
+	}
+
+	private DbMRSServices(PoolMetrics metrics, Properties poolConfig) {
+		this(ConnectionPool.create(poolConfig, metrics), metrics, ConnectionPool.getBatchSize(poolConfig));
+	}
+
+	/**
+	 * Use the database behind the given data source.
+	 * @param dataSource provides the connections to the MRS database.
+	 */
+	public DbMRSServices(DataSource dataSource) {
+		this(dataSource, Batch.DEFAULT_SIZE);
+	}
+
+	/**
+	 * Use the database behind the given data source.
+	 * @param dataSource provides the connections to the MRS database.
+	 * @param batchSize number of rows sent per JDBC batch by the bulk operations.
+	 */
+	public DbMRSServices(DataSource dataSource, int batchSize) {
+		this(dataSource, null, batchSize);
+	}
 
-	// the connection string to the database 
-//    private static final String DB_CONNECTION = "jdbc:hsqldb:hsql://localhost/mrs";
-	static private Sql2o sql2o = new Sql2o(DB_CONNECTION, "mrs", "mrs");
+	private DbMRSServices(DataSource dataSource, PoolMetrics metrics, int batchSize) {
+		sql2o = new Sql2o(dataSource, createQuirks());
+		movieDAO = new MovieDAO(sql2o, batchSize);
+		userDAO = new UserDAO(sql2o, batchSize);
+		rentalDAO = new RentalDAO(sql2o, batchSize);
+		pool = metrics == null ? null : (HikariDataSource) dataSource;
+		poolMetrics = metrics;
+	}
 
+	@SuppressWarnings("rawtypes")
+	private static Quirks createQuirks() {
+		Map<Class, Converter> converters = new HashMap<>();
+		converters.put(UUID.class, new UUIDConverter());
+		converters.put(LocalDate.class, new LocalDateConverter());
+		converters.put(PriceCategory.class, new PriceCategoryConverter());
+		return new PostgresQuirks(converters);
+	}
 	
 	private MovieDAO getMovieDAO() { 
-		return new MovieDAO(sql2o);
+		return movieDAO;
 	}
 
 	private UserDAO getUserDAO() { 
-		return new UserDAO(sql2o);
+		return userDAO;
 	}
 
 	private RentalDAO getRentalDAO() { 
-		return new RentalDAO(sql2o);
+		return rentalDAO;
+	}
+
+	/**
+	 * @return the metrics of the connection pool or <code>null</code> if the connections are not pooled by this
+	 *         instance.
+	 */
+	public PoolMetrics getPoolMetrics() {
+		return poolMetrics;
+	}
+
+	/**
+	 * Shut down the connection pool, if it is owned by this instance.
+	 */
+	@Override
+	public void close() {
+		if (pool != null) {
+			pool.close();
+		}
 	}
 
 	@Override
@@ -38,7 +153,9 @@ public class DbMRSServices implements MRSServices {
         try {
 			PriceCategory pc = PriceCategory.getPriceCategoryFromId(aPriceCategory);
 			Movie m = new Movie(aTitle, aReleaseDate, pc, anAgeRating);
+			m.setId(UUID.randomUUID());
             getMovieDAO().saveOrUpdate(m);
+            moviesVersion.incrementAndGet();
             return m;
         } catch (Exception e) {
             e.printStackTrace();
@@ -46,6 +163,21 @@ public class DbMRSServices implements MRSServices {
         }
 	}
 
+	@Override
+	public boolean createMovies(Collection<Movie> movies) {
+		try {
+			for (Movie m : movies) {
+				m.setId(UUID.randomUUID());
+			}
+			getMovieDAO().insertAll(movies);
+			moviesVersion.incrementAndGet();
+			return true;
+		} catch (Exception e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
 	@Override
 	public List<Movie> getAllMovies() {
 		return getMovieDAO().getAll();
@@ -56,6 +188,26 @@ public class DbMRSServices implements MRSServices {
         return getMovieDAO().getAll(rented);
 	}
 
+	@Override
+	public Stream<Movie> streamMovies() {
+		return getMovieDAO().streamAll();
+	}
+
+	@Override
+	public Stream<Movie> streamMovies(boolean rented) {
+		return getMovieDAO().streamAll(rented);
+	}
+
+	@Override
+	public List<Movie> getMovies(UUID after, int limit) {
+		return getMovieDAO().getPage(after, checkLimit(limit));
+	}
+
+	@Override
+	public List<Movie> getMovies(boolean rented, UUID after, int limit) {
+		return getMovieDAO().getPage(rented, after, checkLimit(limit));
+	}
+
 	@Override
 	public Movie getMovieById(UUID id) {
 	    return getMovieDAO().getById(id);
@@ -64,7 +216,10 @@ public class DbMRSServices implements MRSServices {
 	@Override
 	public boolean updateMovie(Movie movie) {
 	    try {
-	        getMovieDAO().saveOrUpdate(movie);
+	        if (!getMovieDAO().saveOrUpdate(movie)) {
+	            return false;
+	        }
+	        moviesVersion.incrementAndGet();
 	        return true;
 	    } catch (Exception e) {
 	        e.printStackTrace();
@@ -72,10 +227,36 @@ public class DbMRSServices implements MRSServices {
 	    }
 	}
 
+	@Override
+	public boolean updateMovie(Movie movie, long version) {
+		try {
+			if (getMovieDAO().update(movie, version)) {
+				moviesVersion.incrementAndGet();
+				return true;
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		return false;
+	}
+
+	@Override
+	public boolean[] updateMovies(List<Movie> movies) {
+		try {
+			boolean[] result = written(getMovieDAO().updateAllDetails(movies));
+			moviesVersion.incrementAndGet();
+			return result;
+		} catch (Exception e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
 	@Override
 	public boolean deleteMovie(UUID id) {
         try {
             getMovieDAO().delete(id);
+            moviesVersion.incrementAndGet();
             return true;
         } catch (Exception e) {
             e.printStackTrace();
@@ -83,11 +264,38 @@ public class DbMRSServices implements MRSServices {
         }
 	}
 
+	@Override
+	public boolean[] deleteMovies(List<UUID> ids) {
+		try {
+			boolean[] result = written(getMovieDAO().deleteAll(ids));
+			moviesVersion.incrementAndGet();
+			return result;
+		} catch (Exception e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	@Override
+	public long getMoviesVersion() {
+		return moviesVersion.get();
+	}
+
 	@Override
 	public List<User> getAllUsers() {
 	    return getUserDAO().getAll();
 	}
 
+	@Override
+	public Stream<User> streamUsers() {
+		return getUserDAO().streamAll();
+	}
+
+	@Override
+	public List<User> getUsers(UUID after, int limit) {
+		return getUserDAO().getPage(after, checkLimit(limit));
+	}
+
 	@Override
 	public User getUserById(UUID id) {
 	    return getUserDAO().getById(id);
@@ -103,7 +311,9 @@ public class DbMRSServices implements MRSServices {
 	public User createUser(String aName, String aFirstName, LocalDate aBirthdate) {
 	    try {
 			User u = new User(aName, aFirstName, aBirthdate);
+			u.setId(UUID.randomUUID());
 	        getUserDAO().saveOrUpdate(u);
+	        usersVersion.incrementAndGet();
 	        return u;
 	    } catch (Exception e) {
 	        e.printStackTrace();
@@ -111,21 +321,64 @@ public class DbMRSServices implements MRSServices {
 	    }
 	}
 
+	@Override
+	public boolean createUsers(Collection<User> users) {
+		try {
+			for (User u : users) {
+				u.setId(UUID.randomUUID());
+			}
+			getUserDAO().insertAll(users);
+			usersVersion.incrementAndGet();
+			return true;
+		} catch (Exception e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
 	@Override
 	public boolean updateUser(User user) {
-        try {
-            getUserDAO().saveOrUpdate(user);
-            return true;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return false;
-        }
+		try {
+			if (getUserDAO().saveOrUpdate(user)) {
+				usersVersion.incrementAndGet();
+				return true;
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		return false;
+	}
+
+	@Override
+	public boolean updateUser(User user, long version) {
+		try {
+			if (getUserDAO().update(user, version)) {
+				usersVersion.incrementAndGet();
+				return true;
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		return false;
+	}
+
+	@Override
+	public boolean[] updateUsers(List<User> users) {
+		try {
+			boolean[] result = written(getUserDAO().updateAll(users));
+			usersVersion.incrementAndGet();
+			return result;
+		} catch (Exception e) {
+			e.printStackTrace();
+			return null;
+		}
 	}
 
 	@Override
 	public boolean deleteUser(UUID id) {
         try {
             getUserDAO().delete(id);
+            usersVersion.incrementAndGet();
             return true;
         } catch (Exception e) {
             e.printStackTrace();
@@ -133,43 +386,169 @@ public class DbMRSServices implements MRSServices {
         }
 	}
 
+	@Override
+	public boolean[] deleteUsers(List<UUID> ids) {
+		try {
+			boolean[] result = written(getUserDAO().deleteAll(ids));
+			usersVersion.incrementAndGet();
+			return result;
+		} catch (Exception e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	@Override
+	public long getUsersVersion() {
+		return usersVersion.get();
+	}
+
 	@Override
 	public List<Rental> getAllRentals() {
 		return getRentalDAO().getAll();
 	}
 
+	@Override
+	public List<Rental> getRentals(UUID after, int limit) {
+		return getRentalDAO().getPage(after, checkLimit(limit));
+	}
+
+	@Override
+	public List<Rental> getRentals(UUID userId, UUID movieId, UUID after, int limit) {
+		return getRentalDAO().getPage(userId, movieId, after, checkLimit(limit));
+	}
+
 	@Override
 	public boolean createRental(UUID userId, UUID movieId, LocalDate d) {
-		// TODO: transaction is missing
-        User u = getUserDAO().getById(userId);
-        Movie m = getMovieDAO().getById(movieId);
-
-        if (u != null && m != null && !m.isRented() && !d.isAfter(LocalDate.now())) {
-	        getRentalDAO().create(userId, movieId, d);
-	        m.setRented(true);
-	        getMovieDAO().saveOrUpdate(m);
-	        return true;
-	    }
-	    return false;
+		return rentMovie(userId, movieId, d) != null;
+	}
+
+	@Override
+	public UUID rentMovie(UUID userId, UUID movieId, LocalDate d) {
+		if (d.isAfter(BusinessDate.today())) {
+			return null;
+		}
+		// the availability check, the movie update and the insert run atomically in one statement.
+		UUID id = getRentalDAO().rentMovie(userId, movieId, d);
+		if (id != null) {
+			moviesVersion.incrementAndGet();
+		}
+		return id;
+	}
+
+	@Override
+	public UUID[] createRentals(List<RentalRequest> requests) {
+		LocalDate today = BusinessDate.today();
+		List<RentalRequest> valid = new ArrayList<>(requests.size());
+		for (RentalRequest r : requests) {
+			if (!r.getRentalDate().isAfter(today)) {
+				valid.add(r);
+			}
+		}
+		try {
+			UUID[] created = getRentalDAO().rentMovies(valid);
+			moviesVersion.incrementAndGet();
+			if (valid.size() == requests.size()) {
+				return created;
+			}
+			// requests dated in the future have been left out, they are not created.
+			UUID[] result = new UUID[requests.size()];
+			for (int i = 0, j = 0; i < result.length; i++) {
+				if (!requests.get(i).getRentalDate().isAfter(today)) {
+					result[i] = created[j++];
+				}
+			}
+			return result;
+		} catch (Exception e) {
+			e.printStackTrace();
+			return null;
+		}
 	}
 
 	@Override
 	public boolean returnRental(UUID id) {
-      	RentalDAO rdao = getRentalDAO();
-      	Rental r = rdao.getById(id);
-        Movie m = r.getMovie();
-        m.setRented(false);
-        getMovieDAO().saveOrUpdate(m);
-        rdao.delete(id);
-        return r != null;
+		if (getRentalDAO().returnRental(id)) {
+			moviesVersion.incrementAndGet();
+			return true;
+		}
+		return false;
 	}
 	
+	@Override
+	public boolean[] returnRentals(List<UUID> ids) {
+		try {
+			boolean[] result = written(getRentalDAO().returnRentals(ids));
+			moviesVersion.incrementAndGet();
+			return result;
+		} catch (Exception e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	@Override
+	public Account getAccount(UUID userId) {
+		User u = getUserById(userId);
+		if (u == null) {
+			return null;
+		}
+		// unlike the in-memory backend no running totals are kept: renting stops at User.MAX_RENTABLE_MOVIES, so the
+		// account is computed from those few rows, read by the index on clientid, and the rent and return
+		// statements need not update a second table.
+		return Account.of(userId, BusinessDate.today(), getRentalDAO().getRentalsByUser(u));
+	}
+
+	/**
+	 * @param counts the update counts of a batch.
+	 * @return for each statement whether it has written a row.
+	 */
+	private static boolean[] written(int[] counts) {
+		boolean[] result = new boolean[counts.length];
+		for (int i = 0; i < counts.length; i++) {
+			result[i] = counts[i] > 0;
+		}
+		return result;
+	}
+	
+	private static int checkLimit(int limit) {
+		if (limit < 1) {
+			throw new IllegalArgumentException("page limit must be at least 1");
+		}
+		return limit;
+	}
+	
+	/**
+	 * Bulk load the CSV data set shipped with the application, the same one {@link SimpleMRSServices} reads.
+	 * 
+	 * @return the outcome of loading the movies, the users and the rentals.
+	 * @throws SQLException if the database reports an error.
+	 * @throws IOException if a file cannot be read.
+	 */
+	public List<CsvBulkLoader.Result> loadCsvData() throws SQLException, IOException {
+		try {
+			return new CsvBulkLoader(sql2o.getDataSource()).loadDefaults();
+		} finally {
+			// the loader may have failed half way, count it as a change in any case.
+			moviesVersion.incrementAndGet();
+			usersVersion.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Create the MRS tables unless they already exist.
+	 */
 	@Override
 	public void init() {
-	    try {
- //           Database db = new HsqlDatabase();
- //           db.initDB(DB_CONNECTION);
-        } catch (Exception e) {
+	    try (InputStream in = getClass().getResourceAsStream(SCHEMA);
+	    		BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+	    		Connection conn = sql2o.open()) {
+	    	String script = reader.lines().collect(Collectors.joining("\n"));
+	    	for (String statement : script.split(";")) {
+	    		if (!statement.trim().isEmpty()) {
+	    			conn.createQuery(statement).executeUpdate();
+	    		}
+	    	}
+        } catch (IOException e) {
             e.printStackTrace();
         }
 	}
@@ -0,0 +1,116 @@
+package ch.fhnw.swc.mrs.data;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import ch.fhnw.swc.mrs.api.AsyncMRSServices;
+import ch.fhnw.swc.mrs.api.MRSServices;
+
+/**
+ * Runs the operations of any {@link MRSServices}, e.g. {@link SimpleMRSServices} or {@link DbMRSServices}, on an
+ * executor. Use an executor with a bounded queue, e.g. one sized like the connection pool: once its queue is full
+ * further operations fail at once with {@link RejectedExecutionException} instead of piling up.
+ * <p>
+ * Each operation has a deadline. An operation still queued when its deadline passes is not run at all, its future
+ * fails with {@link RejectedExecutionException}. One that is running is not interrupted, a JDBC call would leave its
+ * connection in an unknown state; its future fails with {@link TimeoutException} nevertheless.
+ */
+public class ExecutorMRSServices implements AsyncMRSServices, AutoCloseable {
+
+	/** Fails the operations that have passed their deadline, shared by all instances. */
+	private static final ScheduledThreadPoolExecutor DEADLINES = createDeadlines();
+
+	private final MRSServices services;
+	private final Executor executor;
+	private final long timeoutMillis;
+
+	/**
+	 * @param services the backend doing the work.
+	 * @param executor runs the operations, it is shut down with these services if it is an {@link ExecutorService}.
+	 * @param timeoutMillis milliseconds an operation may take from its submission, 0 for no deadline.
+	 */
+	public ExecutorMRSServices(MRSServices services, Executor executor, long timeoutMillis) {
+		if (services == null || executor == null) {
+			throw new IllegalArgumentException("services and executor must not be null");
+		}
+		this.services = services;
+		this.executor = executor;
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	/**
+	 * Run the operations on the thread that submits them, the futures are complete when they are returned. Suits
+	 * an in-memory backend that never blocks for long.
+	 * @param services the backend doing the work.
+	 */
+	public ExecutorMRSServices(MRSServices services) {
+		this(services, Runnable::run, 0);
+	}
+
+	/**
+	 * @return the backend doing the work.
+	 */
+	public MRSServices getServices() {
+		return services;
+	}
+
+	@Override
+	public <T> CompletableFuture<T> submit(Function<? super MRSServices, ? extends T> operation) {
+		CompletableFuture<T> result = new CompletableFuture<>();
+		// set by whichever comes first: the operation starting or its deadline passing while it is queued.
+		AtomicBoolean claimed = new AtomicBoolean();
+		try {
+			executor.execute(() -> {
+				// skip the work if the deadline has passed while the operation was queued.
+				if (claimed.compareAndSet(false, true) && !result.isDone()) {
+					try {
+						result.complete(operation.apply(services));
+					} catch (Throwable e) {
+						result.completeExceptionally(e);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			result.completeExceptionally(e);
+			return result;
+		}
+		if (timeoutMillis > 0 && !result.isDone()) {
+			ScheduledFuture<?> deadline = DEADLINES.schedule(() -> result.completeExceptionally(
+					claimed.compareAndSet(false, true)
+							? new RejectedExecutionException("not started within " + timeoutMillis + " ms")
+							: new TimeoutException("no result within " + timeoutMillis + " ms")),
+					timeoutMillis, TimeUnit.MILLISECONDS);
+			result.whenComplete((r, e) -> deadline.cancel(false));
+		}
+		return result;
+	}
+
+	/**
+	 * Shut the executor down, queued operations are still run. The backend is not closed.
+	 */
+	@Override
+	public void close() {
+		if (executor instanceof ExecutorService) {
+			((ExecutorService) executor).shutdown();
+		}
+	}
+
+	private static ScheduledThreadPoolExecutor createDeadlines() {
+		ScheduledThreadPoolExecutor deadlines = new ScheduledThreadPoolExecutor(1, r -> {
+			Thread t = new Thread(r, "mrs-deadlines");
+			t.setDaemon(true);
+			return t;
+		});
+		// most operations complete in time, their deadlines are dropped at once.
+		deadlines.setRemoveOnCancelPolicy(true);
+		return deadlines;
+	}
+}
@@ -1,10 +1,13 @@
 package ch.fhnw.swc.mrs.data;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import org.sql2o.Connection;
 import org.sql2o.Query;
+import org.sql2o.ResultSetHandler;
 import org.sql2o.Sql2o;
 
 import ch.fhnw.swc.mrs.model.Movie;
@@ -15,18 +18,41 @@ import ch.fhnw.swc.mrs.model.Movie;
 public class MovieDAO {
     /** SQL statement to delete movie. */
     private static final String DELETE_SQL = "DELETE FROM movies WHERE id = :id";
-    /** SQL statement to create movie. */
+    /** SQL statement to create movie, with one copy if the number of copies is not given. */
     private static final String INSERT_SQL = 
-            "INSERT INTO movies (title, rented, releasedate, pricecategory, agerating)"
-            + "  VALUES (:title, :rented, :releasedate, :pricecategory, :agerating)";
-    /** SQL statement to update movie. */
+            "INSERT INTO movies (id, title, rented, copies, available, releasedate, pricecategory, agerating)"
+            + "  VALUES (:id, :title, :available = 0, COALESCE(:copies, 1), :available, :releasedate, :pricecategory, "
+            + ":agerating)";
+    /** New number of copies of an existing movie, the stored one if it is not given. */
+    private static final String NEW_COPIES = "COALESCE(:copies, movies.copies)";
+    /**
+     * SQL statement to create a movie or to update it if it already exists. The rented copies of an existing movie
+     * are owned by the rentals: they are kept, and the movie is not updated if it would have fewer copies.
+     */
+    private static final String UPSERT_SQL = INSERT_SQL
+            + " ON CONFLICT (id) DO UPDATE SET title = EXCLUDED.title, copies = " + NEW_COPIES + ", "
+            + "available = " + NEW_COPIES + " - movies.copies + movies.available, "
+            + "rented = " + NEW_COPIES + " - movies.copies + movies.available = 0, "
+            + "releasedate = EXCLUDED.releasedate, pricecategory = EXCLUDED.pricecategory, "
+            + "agerating = EXCLUDED.agerating, version = movies.version + 1 "
+            + "WHERE movies.copies - movies.available <= " + NEW_COPIES;
+    /**
+     * SQL statement to update the data of a movie. Its rented copies are owned by the rentals: they are kept, and
+     * the movie is not updated if it would have fewer copies.
+     */
     private static final String UPDATE_SQL = "UPDATE movies "
-            + "SET title = :title, rented = :rented, "
-            + "releasedate = :releasedate, pricecategory = :pricecategory , agerating = :agerating" 
-    		+ "WHERE id = :id";
+            + "SET title = :title, copies = " + NEW_COPIES + ", "
+            + "available = " + NEW_COPIES + " - copies + available, "
+            + "rented = " + NEW_COPIES + " - copies + available = 0, "
+            + "releasedate = :releasedate, pricecategory = :pricecategory , agerating = :agerating, "
+            + "version = version + 1 WHERE id = :id AND copies - available <= " + NEW_COPIES;
+    /** Returned by the statements that store a single movie. */
+    private static final String RETURNING = " RETURNING version, copies, available";
+    /** SQL statement to update movie unless its version has changed. */
+    private static final String UPDATE_VERSION_SQL = UPDATE_SQL + " AND version = :version" + RETURNING;
     /** select clause of queries. */
-    private static final String SELECT_CLAUSE = "SELECT id, title, rented, releasedate, pricecategory, agerating "
-            + "  FROM movies ";
+    private static final String SELECT_CLAUSE = "SELECT id, title, rented, copies, available, releasedate, "
+            + "pricecategory, agerating, version FROM movies ";
     /** SQL statement to get movie by id. */
     private static final String GET_BY_ID_SQL = SELECT_CLAUSE + " WHERE id = :id";
     /** SQL statement to get movie by name. */
@@ -35,11 +61,32 @@ public class MovieDAO {
     private static final String GET_ALL_SQL = SELECT_CLAUSE;
     /** SQL statement to get all movies of a given rented status. */
     private static final String GET_ALL_RENTED_SQL = SELECT_CLAUSE + " WHERE rented = :rented";
+    /** SQL statement to get the first page of movies. */
+    private static final String GET_FIRST_PAGE_SQL = SELECT_CLAUSE + " ORDER BY id LIMIT :limit";
+    /** SQL statement to get the page of movies following a given id. */
+    private static final String GET_PAGE_SQL = SELECT_CLAUSE + " WHERE id > :after ORDER BY id LIMIT :limit";
+    /** SQL statement to get the first page of movies of a given rented status. */
+    private static final String GET_FIRST_RENTED_PAGE_SQL = SELECT_CLAUSE
+            + " WHERE rented = :rented ORDER BY id LIMIT :limit";
+    /** SQL statement to get the page of movies of a given rented status following a given id. */
+    private static final String GET_RENTED_PAGE_SQL = SELECT_CLAUSE
+            + " WHERE rented = :rented AND id > :after ORDER BY id LIMIT :limit";
 
 	private Sql2o sql2o;
+	/** Number of rows sent per JDBC batch by the bulk operations. */
+	private final int batchSize;
 
 	public MovieDAO(Sql2o sql2o) {
+		this(sql2o, Batch.DEFAULT_SIZE);
+	}
+
+	/**
+	 * @param sql2o provides the connections to the database.
+	 * @param batchSize number of rows sent per JDBC batch by the bulk operations.
+	 */
+	public MovieDAO(Sql2o sql2o, int batchSize) {
 		this.sql2o = sql2o;
+		this.batchSize = batchSize;
 	}
 
 	/**
@@ -67,7 +114,7 @@ public class MovieDAO {
 	 */
 	public List<Movie> getAll() {
 		try (Connection conn = sql2o.open()) {
-			return conn.createQuery(GET_ALL_SQL).executeScalarList(Movie.class);
+			return conn.createQuery(GET_ALL_SQL).executeAndFetch(Movie.class);
 		}
     }
     
@@ -80,11 +127,59 @@ public class MovieDAO {
 		try (Connection conn = sql2o.open()) {
 			return conn.createQuery(GET_ALL_RENTED_SQL)
 					.addParameter("rented", rented)
-					.executeScalarList(Movie.class);
+					.executeAndFetch(Movie.class);
 		}
     	
     }
 
+    /**
+     * Stream all movies stored in this system. The movies are read in chunks while the stream is consumed.
+     * @return all movies; close the stream to release its connection.
+     */
+	public Stream<Movie> streamAll() {
+		return Cursor.stream(sql2o, conn -> conn.createQuery(GET_ALL_SQL), q -> q.executeAndFetchLazy(Movie.class));
+	}
+
+    /**
+     * Stream movies according to their rented status, see {@link #streamAll()}.
+     * @param rented if the movies shall be rented or not.
+     * @return movies that fulfill the rented status; close the stream to release its connection.
+     */
+	public Stream<Movie> streamAll(boolean rented) {
+		return Cursor.stream(sql2o, conn -> conn.createQuery(GET_ALL_RENTED_SQL).addParameter("rented", rented),
+				q -> q.executeAndFetchLazy(Movie.class));
+	}
+
+    /**
+     * Get a page of movies ordered by id. The page is read from the primary key index, so its cost does not depend
+     * on how many movies precede it.
+     * @param after the id after which the page starts, <code>null</code> for the first page.
+     * @param limit the maximum number of movies to return.
+     * @return at most limit movies with an id greater than after, ordered by id.
+     */
+	public List<Movie> getPage(UUID after, int limit) {
+		try (Connection conn = sql2o.open()) {
+			Query q = after == null ? conn.createQuery(GET_FIRST_PAGE_SQL)
+					: conn.createQuery(GET_PAGE_SQL).addParameter("after", after);
+			return q.addParameter("limit", limit).executeAndFetch(Movie.class);
+		}
+	}
+
+    /**
+     * Get a page of movies with the given rented status ordered by id.
+     * @param rented if the movies shall be rented or not.
+     * @param after the id after which the page starts, <code>null</code> for the first page.
+     * @param limit the maximum number of movies to return.
+     * @return at most limit movies with an id greater than after, ordered by id.
+     */
+	public List<Movie> getPage(boolean rented, UUID after, int limit) {
+		try (Connection conn = sql2o.open()) {
+			Query q = after == null ? conn.createQuery(GET_FIRST_RENTED_PAGE_SQL)
+					: conn.createQuery(GET_RENTED_PAGE_SQL).addParameter("after", after);
+			return q.addParameter("rented", rented).addParameter("limit", limit).executeAndFetch(Movie.class);
+		}
+	}
+
     /**
      * Get movies according to their title.
      * @param title the title of the movie.
@@ -94,38 +189,107 @@ public class MovieDAO {
 		try (Connection conn = sql2o.open()) {
 			return conn.createQuery(GET_BY_TITLE_SQL)
 					.addParameter("title", title)
-					.executeScalarList(Movie.class);
+					.executeAndFetch(Movie.class);
 		}
     }
 
 	/**
-	 * Persist a Movie object. Use this method either when storing a new User object
-	 * or for updating an existing one.
+	 * Persist a Movie object. Use this method either when storing a new Movie object
+	 * or for updating an existing one. The version and the copies of the movie are set to the ones stored.
 	 * 
-	 * @param user
+	 * @param movie
 	 *            the object to persist.
+	 * @return whether the movie has been stored, not if it has fewer copies than are rented.
 	 */
-	public void saveOrUpdate(Movie movie) {
-		try (Connection conn = sql2o.beginTransaction()) {
-			Movie m = conn.createQuery(GET_BY_ID_SQL)
-					.addParameter("id", movie.getId())
-					.executeAndFetchFirst(Movie.class);
-			if (m == null) {
-				prepareQuery(conn, INSERT_SQL, m).executeUpdate();
-			} else {
-				prepareQuery(conn, UPDATE_SQL, m)
-					.addParameter("id", m.getId())
-					.executeUpdate();
-			}
-			conn.commit();
+	public boolean saveOrUpdate(Movie movie) {
+		try (Connection conn = sql2o.open()) {
+			return stored(prepareQuery(conn, UPSERT_SQL + RETURNING, movie), movie);
 		}
 	}
+
+	/**
+	 * Update a Movie object unless it has been changed since the given version was read. The check and the update
+	 * are one statement, so of two concurrent updates based on the same version only one succeeds.
+	 * 
+	 * @param movie
+	 *            the object to persist, its version and copies are set to the new ones if it has been updated.
+	 * @param version
+	 *            the version the stored movie must have.
+	 * @return whether the movie has been updated, not if it has fewer copies than are rented.
+	 */
+	public boolean update(Movie movie, long version) {
+		try (Connection conn = sql2o.open()) {
+			return stored(bindDetails(conn.createQuery(UPDATE_VERSION_SQL), movie).addParameter("version", version),
+					movie);
+		}
+	}
+
+	/**
+	 * Run a statement that stores a movie and copy the version, the copies and the available copies it returns to
+	 * the movie.
+	 * 
+	 * @param q the statement, returning the version, the copies and the available copies.
+	 * @param movie the movie that is stored.
+	 * @return whether a row has been stored.
+	 */
+	private static boolean stored(Query q, Movie movie) {
+		ResultSetHandler<Boolean> copy = rs -> {
+			movie.setCopies(rs.getInt("copies"));
+			movie.setAvailable(rs.getInt("available"));
+			movie.setVersion(rs.getLong("version"));
+			return Boolean.TRUE;
+		};
+		return q.executeAndFetchFirst(copy) != null;
+	}
+
+	/**
+	 * Persist many Movie objects in one transaction, new ones are created and existing ones updated. The rows
+	 * are sent in JDBC batches.
+	 * 
+	 * @param movies
+	 *            the objects to persist.
+	 * @return the number of rows written for each movie, in iteration order.
+	 */
+	public int[] saveOrUpdateAll(Collection<Movie> movies) {
+		return Batch.execute(sql2o, UPSERT_SQL, movies, batchSize, MovieDAO::bind);
+	}
+
+	/**
+	 * Create many new movies in one transaction, the rows are sent in JDBC batches.
+	 * 
+	 * @param movies
+	 *            the objects to create, each one must have an id.
+	 * @return the number of rows written for each movie, in iteration order.
+	 */
+	public int[] insertAll(Collection<Movie> movies) {
+		return Batch.execute(sql2o, INSERT_SQL, movies, batchSize, MovieDAO::bind);
+	}
+
+	/**
+	 * Update the data of many existing movies in one transaction, the rows are sent in JDBC batches. The rented
+	 * copies of the movies are not changed, the available ones change with the number of copies.
+	 * 
+	 * @param movies
+	 *            the objects to update.
+	 * @return the number of rows written for each movie, in iteration order; 0 if a movie does not exist or would
+	 *         have fewer copies than are rented.
+	 */
+	public int[] updateAllDetails(Collection<Movie> movies) {
+		return Batch.execute(sql2o, UPDATE_SQL, movies, batchSize, MovieDAO::bindDetails);
+	}
 	
 	private Query prepareQuery(Connection conn, String sql, Movie m) {
-		return conn.createQuery(sql)
-				.addParameter("id", m.getId())
+		return bind(conn.createQuery(sql), m);
+	}
+
+	private static Query bind(Query q, Movie m) {
+		return bindDetails(q, m).addParameter("available", m.getAvailable());
+	}
+
+	private static Query bindDetails(Query q, Movie m) {
+		return q.addParameter("id", m.getId())
 				.addParameter("title", m.getTitle())
-				.addParameter("rented", m.isRented())
+				.addParameter("copies", m.hasCopies() ? Integer.valueOf(m.getCopies()) : null)
 				.addParameter("releasedate", m.getReleaseDate())
 				.addParameter("pricecategory", m.getPriceCategory().toString())
 				.addParameter("agerating", m.getAgeRating());
@@ -144,4 +308,15 @@ public class MovieDAO {
 		}
 	}
 
+	/**
+	 * Remove many movies in one transaction, the rows are sent in JDBC batches.
+	 * 
+	 * @param ids
+	 *            the Movies to remove.
+	 * @return the number of rows removed for each id, in iteration order.
+	 */
+	public int[] deleteAll(Collection<UUID> ids) {
+		return Batch.execute(sql2o, DELETE_SQL, ids, batchSize, (q, id) -> q.addParameter("id", id));
+	}
+
 }
@@ -0,0 +1,107 @@
+package ch.fhnw.swc.mrs.data;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+/**
+ * Metrics of a connection pool: the number of active and idle connections, the threads waiting for a connection
+ * and the time spent waiting. The connection counts are refreshed by the pool about once per second.
+ */
+public class PoolMetrics implements MetricsTrackerFactory {
+
+    private volatile PoolStats stats;
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder timeouts = new LongAdder();
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        stats = poolStats;
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                acquisitions.increment();
+                waitNanos.add(elapsedAcquiredNanos);
+                maxWaitNanos.accumulate(elapsedAcquiredNanos);
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                timeouts.increment();
+            }
+        };
+    }
+
+    /**
+     * @return the number of connections in use.
+     */
+    public int getActiveConnections() {
+        PoolStats s = stats;
+        return s == null ? 0 : s.getActiveConnections();
+    }
+
+    /**
+     * @return the number of open connections that are not in use.
+     */
+    public int getIdleConnections() {
+        PoolStats s = stats;
+        return s == null ? 0 : s.getIdleConnections();
+    }
+
+    /**
+     * @return the number of threads waiting for a connection.
+     */
+    public int getPendingThreads() {
+        PoolStats s = stats;
+        return s == null ? 0 : s.getPendingThreads();
+    }
+
+    /**
+     * @return the number of connections handed out by the pool.
+     */
+    public long getAcquisitions() {
+        return acquisitions.sum();
+    }
+
+    /**
+     * @return the number of requests for a connection that timed out.
+     */
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    /**
+     * @return the total time spent waiting for a connection, in milliseconds.
+     */
+    public double getTotalWaitMillis() {
+        return waitNanos.sum() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * @return the average time spent waiting for a connection, in milliseconds.
+     */
+    public double getAverageWaitMillis() {
+        long n = acquisitions.sum();
+        return n == 0 ? 0 : getTotalWaitMillis() / n;
+    }
+
+    /**
+     * @return the longest time spent waiting for a connection, in milliseconds.
+     */
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("active=%d idle=%d pending=%d acquisitions=%d avgWait=%.3fms maxWait=%.3fms timeouts=%d",
+                getActiveConnections(), getIdleConnections(), getPendingThreads(), getAcquisitions(),
+                getAverageWaitMillis(), getMaxWaitMillis(), getTimeouts());
+    }
+}
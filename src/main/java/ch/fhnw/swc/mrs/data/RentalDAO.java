@@ -1,12 +1,21 @@
 package ch.fhnw.swc.mrs.data;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
 import org.sql2o.Connection;
+import org.sql2o.Query;
 import org.sql2o.Sql2o;
 
+import ch.fhnw.swc.mrs.api.RentalRequest;
+import ch.fhnw.swc.mrs.model.BusinessDate;
+import ch.fhnw.swc.mrs.model.Movie;
+import ch.fhnw.swc.mrs.model.PriceCategory;
 import ch.fhnw.swc.mrs.model.Rental;
 import ch.fhnw.swc.mrs.model.User;
 
@@ -21,19 +30,70 @@ public class RentalDAO {
     /** SQL statement to create rental. */
     private static final String INSERT_SQL = "INSERT INTO rentals ( id, movieid, clientid, rentaldate )"
             + "  VALUES ( :id, :movieid, :clientid, :rentaldate )";
-    /** select clause of queries. */
-    private static final String SELECT_CLAUSE = "SELECT id, movieid, clientid, rentaldate FROM rentals ";
+    /** SQL statement to update rental. */
+    private static final String UPDATE_SQL = "UPDATE rentals SET movieid = :movieid, clientid = :clientid, "
+            + "rentaldate = :rentaldate WHERE id = :id";
+    /** select clause of queries, fetches the rented movie and the renting user along with the rental. */
+    private static final String SELECT_CLAUSE = "SELECT r.id, r.rentaldate, "
+            + "m.id AS movieid, m.title, m.releasedate, m.pricecategory, m.agerating, m.version AS movieversion, "
+            + "m.copies, m.available, "
+            + "c.id AS clientid, c.name, c.firstname, c.birthdate, c.version AS clientversion "
+            + "FROM rentals r JOIN movies m ON m.id = r.movieid JOIN clients c ON c.id = r.clientid ";
     /** SQL statement to get rental by id. */
-    private static final String GET_BY_ID_SQL = SELECT_CLAUSE + " WHERE id = :id";
+    private static final String GET_BY_ID_SQL = SELECT_CLAUSE + " WHERE r.id = :id";
     /** SQL statement to get all rentals from a user. */
-    private static final String GET_BY_USER_SQL = SELECT_CLAUSE + " WHERE clientid = :clientid";
+    private static final String GET_BY_USER_SQL = SELECT_CLAUSE + " WHERE r.clientid = :clientid";
     /** SQL statement to get all rentals. */
     private static final String GET_ALL_SQL = SELECT_CLAUSE;
+    /** SQL statement to get the first page of rentals. */
+    private static final String GET_FIRST_PAGE_SQL = SELECT_CLAUSE + " ORDER BY r.id LIMIT :limit";
+    /** SQL statement to get the page of rentals following a given id. */
+    private static final String GET_PAGE_SQL = SELECT_CLAUSE + " WHERE r.id > :after ORDER BY r.id LIMIT :limit";
+    /**
+     * SQL statement to rent a movie: takes one of the available copies of the movie unless there are none and
+     * inserts the rental in the same statement, so concurrent renters of the last copy cannot both succeed. The
+     * movie is marked as rented when its last copy is taken. The user must be old enough for the movie and may not
+     * have rented the maximum number of movies already.
+     */
+    private static final String RENT_SQL = "WITH m AS ("
+            + "UPDATE movies SET available = available - 1, rented = available = 1, version = version + 1 "
+            + "WHERE id = :movieid AND available > 0 "
+            + "AND EXISTS (SELECT 1 FROM clients c WHERE c.id = :clientid "
+            + "AND extract(year FROM age(:today, c.birthdate)) >= movies.agerating) "
+            + "AND (SELECT count(*) FROM rentals WHERE clientid = :clientid) < " + User.MAX_RENTABLE_MOVIES
+            + " RETURNING id) "
+            + "INSERT INTO rentals ( id, movieid, clientid, rentaldate ) "
+            + "SELECT :id, m.id, :clientid, :rentaldate FROM m";
+    /** Gives back a copy of the movie of a returned rental. */
+    private static final String RELEASE_COPY = "UPDATE movies SET available = least(available + 1, copies), "
+            + "rented = false, version = version + 1 ";
+    /** SQL statement to return a rental: deletes the rental and releases its copy in the same statement. */
+    private static final String RETURN_SQL = "WITH r AS (DELETE FROM rentals WHERE id = :id RETURNING movieid), "
+            + "m AS (" + RELEASE_COPY + "WHERE id IN (SELECT movieid FROM r)) "
+            + "SELECT count(*) FROM r";
+    /**
+     * SQL statement to return a rental in a batch: the copy is released for the rental the statement has deleted,
+     * so of two concurrent returns of the same rental only one gives back a copy. The update count is the number
+     * of movies updated, one for each rental deleted.
+     */
+    private static final String BATCH_RETURN_SQL = "WITH r AS (DELETE FROM rentals WHERE id = :id RETURNING movieid) "
+            + RELEASE_COPY + "WHERE id IN (SELECT movieid FROM r)";
 
 	private Sql2o sql2o;
+	/** Number of rows sent per JDBC batch by the bulk operations. */
+	private final int batchSize;
 
 	public RentalDAO(Sql2o sql2o) {
+		this(sql2o, Batch.DEFAULT_SIZE);
+	}
+
+	/**
+	 * @param sql2o provides the connections to the database.
+	 * @param batchSize number of rows sent per JDBC batch by the bulk operations.
+	 */
+	public RentalDAO(Sql2o sql2o, int batchSize) {
 		this.sql2o = sql2o;
+		this.batchSize = batchSize;
 	}
 
 	/**
@@ -46,7 +106,7 @@ public class RentalDAO {
 	 */
 	public Rental getById(UUID id) {
 		try (Connection conn = sql2o.open()) {
-			return conn.createQuery(GET_BY_ID_SQL).addParameter("id", id).executeAndFetchFirst(Rental.class);
+			return conn.createQuery(GET_BY_ID_SQL).addParameter("id", id).executeAndFetchFirst(RentalDAO::map);
 		}
     }
 
@@ -57,9 +117,69 @@ public class RentalDAO {
 	 */
 	public List<Rental> getAll() {
 		try (Connection conn = sql2o.open()) {
-			return conn.createQuery(GET_ALL_SQL).executeScalarList(Rental.class);
+			return conn.createQuery(GET_ALL_SQL).executeAndFetch(RentalDAO::map);
 		}
     }
+
+	/**
+	 * Retrieve a page of rentals ordered by id. The page is read from the primary key index, so its cost does not
+	 * depend on how many rentals precede it.
+	 * 
+	 * @param after
+	 *            the id after which the page starts, <code>null</code> for the first page.
+	 * @param limit
+	 *            the maximum number of rentals to return.
+	 * @return at most limit rentals with an id greater than after, ordered by id.
+	 */
+	public List<Rental> getPage(UUID after, int limit) {
+		try (Connection conn = sql2o.open()) {
+			Query q = after == null ? conn.createQuery(GET_FIRST_PAGE_SQL)
+					: conn.createQuery(GET_PAGE_SQL).addParameter("after", after);
+			return q.addParameter("limit", limit).executeAndFetch(RentalDAO::map);
+		}
+	}
+    
+	/**
+	 * Retrieve a page of the rentals of a user, of a movie or of both, ordered by id. The page is read from the
+	 * index of the filtered column.
+	 * 
+	 * @param userid
+	 *            the renting user, <code>null</code> for any.
+	 * @param movieid
+	 *            the rented movie, <code>null</code> for any.
+	 * @param after
+	 *            the id after which the page starts, <code>null</code> for the first page.
+	 * @param limit
+	 *            the maximum number of rentals to return.
+	 * @return at most limit matching rentals with an id greater than after, ordered by id.
+	 */
+	public List<Rental> getPage(UUID userid, UUID movieid, UUID after, int limit) {
+		List<String> conditions = new ArrayList<>(3);
+		if (userid != null) {
+			conditions.add("r.clientid = :clientid");
+		}
+		if (movieid != null) {
+			conditions.add("r.movieid = :movieid");
+		}
+		if (after != null) {
+			conditions.add("r.id > :after");
+		}
+		String sql = SELECT_CLAUSE + (conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions))
+				+ " ORDER BY r.id LIMIT :limit";
+		try (Connection conn = sql2o.open()) {
+			Query q = conn.createQuery(sql).addParameter("limit", limit);
+			if (userid != null) {
+				q.addParameter("clientid", userid);
+			}
+			if (movieid != null) {
+				q.addParameter("movieid", movieid);
+			}
+			if (after != null) {
+				q.addParameter("after", after);
+			}
+			return q.executeAndFetch(RentalDAO::map);
+		}
+	}
     
     /**
      * Retrieve all rentals of a user.
@@ -68,7 +188,8 @@ public class RentalDAO {
      */
     public List<Rental> getRentalsByUser(User user) {
 		try (Connection conn = sql2o.open()) {
-			return conn.createQuery(GET_BY_USER_SQL).executeScalarList(Rental.class);
+			return conn.createQuery(GET_BY_USER_SQL).addParameter("clientid", user.getId())
+					.executeAndFetch(RentalDAO::map);
 		}
     	
     }
@@ -87,6 +208,80 @@ public class RentalDAO {
 		}    	
     }
 
+    /**
+     * Rent a movie to a user in a single statement. Nothing is changed if all copies of the movie are rented, if
+     * the movie or the user do not exist, if the user is too young for the movie or has rented too many movies.
+     * 
+     * @param userid the renting user.
+     * @param movieid the movie to rent.
+     * @param rentalDate the date of the rental.
+     * @return the id of the new rental, <code>null</code> if the movie has not been rented.
+     */
+    public UUID rentMovie(UUID userid, UUID movieid, LocalDate rentalDate) {
+		UUID id = UUID.randomUUID();
+		try (Connection conn = sql2o.open()) {
+			int count = conn.createQuery(RENT_SQL)
+			.addParameter("id", id)
+			.addParameter("movieid", movieid)
+			.addParameter("clientid", userid)
+			.addParameter("rentaldate", rentalDate)
+			.addParameter("today", BusinessDate.today())
+			.executeUpdate().getResult();
+			return count == 1 ? id : null;
+		}
+    }
+
+    /**
+     * Rent many movies in one transaction, each one as {@link #rentMovie(UUID, UUID, LocalDate)} does. The rows are
+     * sent in JDBC batches; a movie requested more often than it has available copies is only rented to the first
+     * requests.
+     * 
+     * @param requests the rentals to create.
+     * @return for each request the id of the new rental, <code>null</code> if the movie has not been rented.
+     */
+    public UUID[] rentMovies(List<RentalRequest> requests) {
+    	LocalDate today = BusinessDate.today();
+    	List<UUID> ids = new ArrayList<>(requests.size());
+    	int[] counts = Batch.execute(sql2o, RENT_SQL, requests, batchSize, (q, r) -> {
+    		UUID id = UUID.randomUUID();
+    		ids.add(id);
+    		q.addParameter("id", id)
+    		.addParameter("movieid", r.getMovieId())
+    		.addParameter("clientid", r.getUserId())
+    		.addParameter("rentaldate", r.getRentalDate())
+    		.addParameter("today", today);
+    	});
+    	UUID[] result = new UUID[counts.length];
+    	for (int i = 0; i < counts.length; i++) {
+    		result[i] = counts[i] == 1 ? ids.get(i) : null;
+    	}
+    	return result;
+    }
+
+    /**
+     * Remove a rental and give back its copy of the movie in a single statement.
+     * 
+     * @param id the rental to return.
+     * @return whether the rental existed.
+     */
+    public boolean returnRental(UUID id) {
+		try (Connection conn = sql2o.open()) {
+			Long count = conn.createQuery(RETURN_SQL).addParameter("id", id).executeScalar(Long.class);
+			return count != null && count > 0;
+		}
+    }
+
+    /**
+     * Return many rentals in one transaction, each one as {@link #returnRental(UUID)} does. The rows are sent in
+     * JDBC batches.
+     * 
+     * @param ids the rentals to return.
+     * @return the number of rentals removed for each id, in iteration order.
+     */
+    public int[] returnRentals(Collection<UUID> ids) {
+    	return Batch.execute(sql2o, BATCH_RETURN_SQL, ids, batchSize, (q, id) -> q.addParameter("id", id));
+    }
+
 	/**
 	 * Remove a rental from the database. 
 	 * 
@@ -98,4 +293,63 @@ public class RentalDAO {
 			conn.createQuery(DELETE_SQL).addParameter("id", id).executeUpdate();
 		}
     }
+
+    /**
+     * Store many rentals in one transaction, the rows are sent in JDBC batches. The available copies of the
+     * movies are not changed.
+     * 
+     * @param rentals the rentals to store, each one must have an id.
+     * @return the number of rows written for each rental, in iteration order.
+     */
+    public int[] insertAll(Collection<Rental> rentals) {
+    	return Batch.execute(sql2o, INSERT_SQL, rentals, batchSize, RentalDAO::bind);
+    }
+
+    /**
+     * Update many rentals in one transaction, the rows are sent in JDBC batches.
+     * 
+     * @param rentals the rentals to update.
+     * @return the number of rows written for each rental, in iteration order.
+     */
+    public int[] updateAll(Collection<Rental> rentals) {
+    	return Batch.execute(sql2o, UPDATE_SQL, rentals, batchSize, RentalDAO::bind);
+    }
+
+    /**
+     * Remove many rentals in one transaction, the rows are sent in JDBC batches. The available copies of the
+     * movies are not changed.
+     * 
+     * @param ids the rentals to remove.
+     * @return the number of rows removed for each id, in iteration order.
+     */
+    public int[] deleteAll(Collection<UUID> ids) {
+    	return Batch.execute(sql2o, DELETE_SQL, ids, batchSize, (q, id) -> q.addParameter("id", id));
+    }
+
+    /**
+     * Create a rental, its movie and its user from a row of the select clause.
+     * 
+     * @param rs positioned on the row to map.
+     * @return the rental.
+     * @throws SQLException if a column cannot be read.
+     */
+    private static Rental map(ResultSet rs) throws SQLException {
+    	User u = new User((UUID) rs.getObject("clientid"), rs.getString("name"), rs.getString("firstname"),
+    			rs.getDate("birthdate").toLocalDate());
+    	Movie m = new Movie(rs.getString("title"), rs.getDate("releasedate").toLocalDate(),
+    			PriceCategory.getPriceCategoryFromId(rs.getString("pricecategory")), rs.getInt("agerating"));
+    	m.setId((UUID) rs.getObject("movieid"));
+    	m.setVersion(rs.getLong("movieversion"));
+    	u.setVersion(rs.getLong("clientversion"));
+    	m.setCopies(rs.getInt("copies"));
+    	m.setAvailable(rs.getInt("available"));
+    	return Rental.restore((UUID) rs.getObject("id"), u, m, rs.getDate("rentaldate").toLocalDate());
+    }
+
+    private static Query bind(Query q, Rental r) {
+    	return q.addParameter("id", r.getId())
+    			.addParameter("movieid", r.getMovie().getId())
+    			.addParameter("clientid", r.getUser().getId())
+    			.addParameter("rentaldate", r.getRentalDate());
+    }
 }
@@ -1,236 +1,848 @@
-package ch.fhnw.swc.mrs.data;
-
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
-import java.nio.charset.StandardCharsets;
-import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.UUID;
-
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVRecord;
-//import org.apache.commons.csv.CSVParser;
-
-import ch.fhnw.swc.mrs.api.MRSServices;
-import ch.fhnw.swc.mrs.model.Movie;
-import ch.fhnw.swc.mrs.model.PriceCategory;
-import ch.fhnw.swc.mrs.model.Rental;
-import ch.fhnw.swc.mrs.model.User;
-
-/**
- * A simple implementation of the MRS Services.
- */
-public class SimpleMRSServices implements MRSServices {
-
-    private Map<UUID, Movie> movies = new HashMap<>();
-    private Map<UUID, User> users = new HashMap<>();
-    private Map<UUID, Rental> rentalList = new HashMap<>();
-
-	@Override
-	public Movie createMovie(String aTitle, LocalDate aReleaseDate, String aPriceCategory, int anAgeRating) {
-		try {
-			PriceCategory pc = PriceCategory.getPriceCategoryFromId(aPriceCategory);
-			Movie m = new Movie(aTitle, aReleaseDate, pc, anAgeRating);
-	        UUID id = UUID.randomUUID();
-	        m.setId(id);
-	        movies.put(id, m);
-			return m;
-		} catch (Exception e) {
-			return null;
-		}
-	}    
-
-    @Override
-    public Collection<Movie> getAllMovies() {
-        return movies.values();
-    }
-
-    @Override
-    public Collection<Movie> getAllMovies(boolean rented) {
-        Collection<Movie> result = new ArrayList<>();
-        for (Movie m : movies.values()) {
-            if (rented == m.isRented()) {
-                result.add(m);
-            }
-        }
-        return result;
-    }
-
-    @Override
-    public Movie getMovieById(UUID id) {
-        return movies.get(id);
-    }
-
-    @Override
-    public boolean updateMovie(Movie movie) {
-        movies.put(movie.getId(), movie);
-        return true;
-    }
-
-    @Override
-    public boolean deleteMovie(UUID id) {
-        return movies.remove(id) != null;
-    }
-
-    @Override
-    public Collection<User> getAllUsers() {
-        return users.values();
-    }
-
-    @Override
-    public User getUserById(UUID id) {
-        return users.get(id);
-    }
-
-    @Override
-    public User getUserByName(String name) {
-        for (User u : users.values()) {
-            if (u.getName().equals(name)) {
-                return u;
-            }
-        }
-        return null;
-    }
-
-	@Override
-	public User createUser(String aName, String aFirstName, LocalDate aBirthdate) {
-		try {
-			User u = new User(aName, aFirstName, aBirthdate);
-            UUID id = UUID.randomUUID();
-            u.setId(id);
-            users.put(id, u);
-            return u;			
-		} catch (Exception e) {
-			return null;
-		}
-	}
-
-    @Override
-    public boolean updateUser(User u) {
-    	User user = u;
-        users.put(user.getId(), user);
-        return true;
-    }
-
-    @Override
-    public boolean deleteUser(UUID id) {
-        return users.remove(id) != null;
-    }
-
-    @Override
-    public Collection<Rental> getAllRentals() {
-        return rentalList.values();
-    }
-
-    @Override
-    public boolean createRental(UUID userId, UUID movieId, LocalDate d) {
-        User u = users.get(userId);
-        Movie m = movies.get(movieId);
-        
-        if (u != null && m != null && !m.isRented() && !d.isAfter(LocalDate.now())) {
-            Rental r = new Rental(u, m, d);
-            UUID id = UUID.randomUUID();
-            r.setId(id);
-            rentalList.put(id, r);
-            return true;
-        }
-        return false;
-    }
-
-    @Override
-    public boolean returnRental(UUID id) {
-        Rental r = rentalList.get(id);
-        r.getMovie().setRented(false);
-        boolean result = r.getUser().getRentals().remove(r);
-        rentalList.remove(id);
-        return result;
-    }
-
-    /**
-     * Initialize the "server component".
-     */
-    public void init() {
-        readMovies();
-        readUsers();
-        readRentals();
-    }
-
-    private void readMovies() {
-    	InputStream instream = getClass().getResourceAsStream("/data/movies.csv");
-        try (Reader in = new InputStreamReader(instream, StandardCharsets.UTF_8)) {
-            Iterable<CSVRecord> movieList = CSVFormat.EXCEL.withFirstRecordAsHeader().withHeader(MovieHeaders.class)
-                    .withDelimiter(';').parse(in);
-            for (CSVRecord m : movieList) {
-                UUID id = UUID.fromString(m.get(MovieHeaders.ID));
-                String title = m.get(MovieHeaders.Title);
-                LocalDate releaseDate = LocalDate.parse(m.get(MovieHeaders.ReleaseDate));
-                PriceCategory pc = PriceCategory.getPriceCategoryFromId(m.get(MovieHeaders.PriceCategory));
-                boolean isRented = Boolean.parseBoolean(m.get(MovieHeaders.isRented));
-                int ageRating = Integer.parseInt(m.get(MovieHeaders.AgeRating));
-                Movie movie = new Movie(title, releaseDate, pc, ageRating);
-                movie.setId(id);
-                movie.setRented(isRented);
-                movies.put(id, movie);
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-    }
-
-    private void readUsers() {
-    	InputStream instream = getClass().getResourceAsStream("/data/users.csv");
-        try (Reader in = new InputStreamReader(instream, StandardCharsets.UTF_8)) {
-            Iterable<CSVRecord> usersList = CSVFormat.EXCEL.withFirstRecordAsHeader().withHeader(UserHeaders.class)
-                    .withDelimiter(';').parse(in);
-            for (CSVRecord u : usersList) {
-                UUID id = UUID.fromString(u.get(UserHeaders.ID));
-                String surname = u.get(UserHeaders.Surname);
-                String firstname = u.get(UserHeaders.FirstName);
-                LocalDate birthdate = LocalDate.parse(u.get(UserHeaders.Birthdate));
-                User user = new User(surname, firstname, birthdate);
-                user.setId(id);
-                users.put(id, user);
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-    }
-
-    private void readRentals() {
-    	InputStream instream = getClass().getResourceAsStream("/data/rentals.csv");
-        try (Reader in = new InputStreamReader(instream, StandardCharsets.UTF_8)) {
-            Iterable<CSVRecord> rentals = CSVFormat.EXCEL.withFirstRecordAsHeader().withHeader(RentalHeaders.class)
-                    .withDelimiter(';').parse(in);
-            for (CSVRecord r : rentals) {
-                UUID id = UUID.fromString(r.get(RentalHeaders.ID));
-                LocalDate rentaldate = LocalDate.parse(r.get(RentalHeaders.RentalDate));
-                UUID userId = UUID.fromString(r.get(RentalHeaders.UserID));
-                UUID movieId = UUID.fromString(r.get(RentalHeaders.MovieID));
-                User u = users.get(userId);
-                Movie m = movies.get(movieId);
-                Rental rental = new Rental(u, m, rentaldate);
-                rental.setId(id);
-                rentalList.put(id, rental);
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-    }
-
-    enum MovieHeaders {
-        ID, Title, ReleaseDate, PriceCategory, AgeRating, isRented
-    }
-
-    enum UserHeaders {
-        ID, Surname, FirstName, Birthdate
-    }
-
-    enum RentalHeaders {
-        ID, RentalDate, UserID, MovieID
-    }
-
-}
+package ch.fhnw.swc.mrs.data;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+//import org.apache.commons.csv.CSVParser;
+
+import ch.fhnw.swc.mrs.api.MRSServices;
+import ch.fhnw.swc.mrs.api.RentalRequest;
+import ch.fhnw.swc.mrs.model.Account;
+import ch.fhnw.swc.mrs.model.BusinessDate;
+import ch.fhnw.swc.mrs.model.Movie;
+import ch.fhnw.swc.mrs.model.PriceCategory;
+import ch.fhnw.swc.mrs.model.Rental;
+import ch.fhnw.swc.mrs.model.Stock;
+import ch.fhnw.swc.mrs.model.User;
+
+/**
+ * A simple, in-memory implementation of the MRS Services. It is safe to be used by many threads concurrently:
+ * reads go to concurrent maps without locking, whereas rental operations lock the involved user and movie
+ * through a set of striped locks.
+ * <p>
+ * Movies are partitioned by their rented state and users are indexed by name, so that
+ * {@link #getAllMovies(boolean)} and {@link #getUserByName(String)} cost O(result) instead of a full scan. The ids
+ * of all objects are also kept in sorted sets, so that a page costs O(log n + limit). The indexes are only
+ * maintained by this class; changing the rented state or the name of an object directly does not move it in the
+ * index until it is passed to an update.
+ * <p>
+ * Every change increments the version of the changed object and of its collection. The collection versions are
+ * incremented after the change, so a reader that reads a version before the data never pairs a new version with
+ * old data.
+ * <p>
+ * The {@link Account accounts} of the users are updated as rentals are created and returned, and recomputed once a
+ * day has passed, so reading one does not walk the rentals of the user.
+ * <p>
+ * A movie stands for all physical copies of a title. The available copies of each movie are counted in a
+ * {@link Stock}, which is decremented by a rental and incremented by its return; a movie counts as rented once all
+ * of its copies are. Listeners for movies running low are added to {@link #getStock()}.
+ */
+public class SimpleMRSServices implements MRSServices {
+
+    /** Number of lock stripes, must be a power of two. */
+    private static final int STRIPES = 64;
+    /** Orders ids as unsigned numbers like PostgreSQL does, {@link UUID#compareTo(UUID)} compares signed longs. */
+    private static final Comparator<UUID> ID_ORDER = (a, b) -> {
+        int result = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return result != 0 ? result : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    };
+
+    private Map<UUID, Movie> movies = new ConcurrentHashMap<>();
+    private Map<UUID, User> users = new ConcurrentHashMap<>();
+    private Map<UUID, Rental> rentalList = new ConcurrentHashMap<>();
+
+    /** Ids of all movies, in page order. */
+    private final NavigableSet<UUID> movieIds = new ConcurrentSkipListSet<>(ID_ORDER);
+    /** Ids of all users, in page order. */
+    private final NavigableSet<UUID> userIds = new ConcurrentSkipListSet<>(ID_ORDER);
+    /** Ids of all rentals, in page order. */
+    private final NavigableSet<UUID> rentalIds = new ConcurrentSkipListSet<>(ID_ORDER);
+    /** Ids of the rentals of each movie with rented copies. */
+    private final Map<UUID, Set<UUID>> rentalsOfMovie = new ConcurrentHashMap<>();
+    /** The available copies of each movie, changed while holding the lock of the movie. */
+    private final Stock stock = new Stock();
+    /** Ids of the rented movies. */
+    private final NavigableSet<UUID> rentedMovies = new ConcurrentSkipListSet<>(ID_ORDER);
+    /** Ids of the movies available for rent. */
+    private final NavigableSet<UUID> availableMovies = new ConcurrentSkipListSet<>(ID_ORDER);
+    /** Ids of the users, by name. */
+    private final Map<String, Set<UUID>> usersByName = new ConcurrentHashMap<>();
+    /** The name under which a user is indexed, needed to re-index users that were changed in place. */
+    private final Map<UUID, String> indexedNames = new ConcurrentHashMap<>();
+
+    /**
+     * The balance of the users, maintained as rentals are created and returned. Users whose account has been neither
+     * read nor rolled over are missing. An account dated before {@link #accountsDate} is recomputed when it is read,
+     * see {@link #rollover(LocalDate)}. Changed while holding the lock of the user.
+     */
+    private final Map<UUID, Account> accounts = new ConcurrentHashMap<>();
+    /** The day of the accounts, only ever moves forward. */
+    private volatile LocalDate accountsDate = BusinessDate.today();
+
+    /** Number of changes to the movies, see {@link #getMoviesVersion()}. */
+    private final AtomicLong moviesVersion = new AtomicLong();
+    /** Number of changes to the users, see {@link #getUsersVersion()}. */
+    private final AtomicLong usersVersion = new AtomicLong();
+
+    /** Locks guarding the rental state of users and movies, selected by id. */
+    private final Object[] locks = new Object[STRIPES];
+
+    /**
+     * Create an empty backend. Call {@link #init()} to load the initial data set.
+     */
+    public SimpleMRSServices() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+	@Override
+	public Movie createMovie(String aTitle, LocalDate aReleaseDate, String aPriceCategory, int anAgeRating) {
+		try {
+			PriceCategory pc = PriceCategory.getPriceCategoryFromId(aPriceCategory);
+			Movie m = new Movie(aTitle, aReleaseDate, pc, anAgeRating);
+	        UUID id = UUID.randomUUID();
+	        m.setId(id);
+	        movies.put(id, m);
+	        restock(m);
+	        indexMovie(id, false);
+	        moviesVersion.incrementAndGet();
+			return m;
+		} catch (Exception e) {
+			return null;
+		}
+	}    
+
+    @Override
+    public boolean createMovies(Collection<Movie> newMovies) {
+        for (Movie m : newMovies) {
+            UUID id = UUID.randomUUID();
+            m.setId(id);
+            movies.put(id, m);
+            restock(m);
+            indexMovie(id, m.isRented());
+        }
+        moviesVersion.incrementAndGet();
+        return true;
+    }
+
+    @Override
+    public Collection<Movie> getAllMovies() {
+        return movies.values();
+    }
+
+    @Override
+    public Collection<Movie> getAllMovies(boolean rented) {
+        Set<UUID> ids = rented ? rentedMovies : availableMovies;
+        Collection<Movie> result = new ArrayList<>();
+        for (UUID id : ids) {
+            Movie m = movies.get(id);
+            if (m != null) {
+                result.add(m);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Stream<Movie> streamMovies() {
+        return movies.values().stream();
+    }
+
+    @Override
+    public Stream<Movie> streamMovies(boolean rented) {
+        return (rented ? rentedMovies : availableMovies).stream().map(movies::get).filter(Objects::nonNull);
+    }
+
+    @Override
+    public List<Movie> getMovies(UUID after, int limit) {
+        return page(movieIds, movies, after, limit);
+    }
+
+    @Override
+    public List<Movie> getMovies(boolean rented, UUID after, int limit) {
+        return page(rented ? rentedMovies : availableMovies, movies, after, limit);
+    }
+
+    @Override
+    public Movie getMovieById(UUID id) {
+        return movies.get(id);
+    }
+
+    @Override
+    public boolean updateMovie(Movie movie) {
+        UUID id = movie.getId();
+        return withLocks(id, id, () -> replaceMovie(movies.get(id), movie));
+    }
+
+    @Override
+    public boolean updateMovie(Movie movie, long version) {
+        UUID id = movie.getId();
+        return withLocks(id, id, () -> {
+            Movie old = movies.get(id);
+            return old != null && old.getVersion() == version && replaceMovie(old, movie);
+        });
+    }
+
+    @Override
+    public boolean[] updateMovies(List<Movie> newData) {
+        boolean[] result = new boolean[newData.size()];
+        for (int i = 0; i < result.length; i++) {
+            Movie movie = newData.get(i);
+            UUID id = movie.getId();
+            result[i] = withLocks(id, id, () -> {
+                Movie old = movies.get(id);
+                return old != null && replaceMovie(old, movie);
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Store the new data of a movie. Must be called while holding the lock of the movie.
+     * 
+     * @param old the movie currently stored, <code>null</code> if there is none.
+     * @param movie the new data, may be the stored movie changed in place.
+     * @return <code>true</code>, <code>false</code> if the movie would have fewer copies than are rented.
+     */
+    private boolean replaceMovie(Movie old, Movie movie) {
+        UUID id = movie.getId();
+        if (old != null) {
+            // the rented copies are owned by the rentals, do not let an update overwrite them.
+            int rentedCopies = old.getCopies() - old.getAvailable();
+            if (!movie.hasCopies()) {
+                movie.setCopies(old.getCopies());
+            }
+            if (movie.getCopies() < rentedCopies) {
+                return false;
+            }
+            movie.setAvailable(movie.getCopies() - rentedCopies);
+            movie.setVersion(old.getVersion() + 1);
+        }
+        movies.put(id, movie);
+        restock(movie);
+        indexMovie(id, movie.isRented());
+        moviesVersion.incrementAndGet();
+        return true;
+    }
+
+    @Override
+    public boolean deleteMovie(UUID id) {
+        return withLocks(id, id, () -> {
+            movieIds.remove(id);
+            rentedMovies.remove(id);
+            availableMovies.remove(id);
+            stock.removeAllFromStock(id);
+            if (movies.remove(id) == null) {
+                return false;
+            }
+            moviesVersion.incrementAndGet();
+            return true;
+        });
+    }
+
+    @Override
+    public boolean[] deleteMovies(List<UUID> ids) {
+        boolean[] result = new boolean[ids.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = deleteMovie(ids.get(i));
+        }
+        return result;
+    }
+
+    @Override
+    public long getMoviesVersion() {
+        return moviesVersion.get();
+    }
+
+    @Override
+    public Collection<User> getAllUsers() {
+        return users.values();
+    }
+
+    @Override
+    public Stream<User> streamUsers() {
+        return users.values().stream();
+    }
+
+    @Override
+    public List<User> getUsers(UUID after, int limit) {
+        return page(userIds, users, after, limit);
+    }
+
+    @Override
+    public User getUserById(UUID id) {
+        return users.get(id);
+    }
+
+    @Override
+    public User getUserByName(String name) {
+        Set<UUID> ids = usersByName.get(name);
+        if (ids != null) {
+            for (UUID id : ids) {
+                User u = users.get(id);
+                if (u != null && u.getName().equals(name)) {
+                    return u;
+                }
+            }
+        }
+        return null;
+    }
+
+	@Override
+	public User createUser(String aName, String aFirstName, LocalDate aBirthdate) {
+		try {
+			User u = new User(aName, aFirstName, aBirthdate);
+            UUID id = UUID.randomUUID();
+            u.setId(id);
+            users.put(id, u);
+            indexUser(id, aName);
+            usersVersion.incrementAndGet();
+            return u;			
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+    @Override
+    public boolean createUsers(Collection<User> newUsers) {
+        for (User u : newUsers) {
+            UUID id = UUID.randomUUID();
+            u.setId(id);
+            users.put(id, u);
+            indexUser(id, u.getName());
+        }
+        usersVersion.incrementAndGet();
+        return true;
+    }
+
+    @Override
+    public boolean updateUser(User u) {
+        UUID id = u.getId();
+        return withLocks(id, id, () -> replaceUser(users.get(id), u));
+    }
+
+    @Override
+    public boolean updateUser(User u, long version) {
+        UUID id = u.getId();
+        return withLocks(id, id, () -> {
+            User old = users.get(id);
+            return old != null && old.getVersion() == version && replaceUser(old, u);
+        });
+    }
+
+    @Override
+    public boolean[] updateUsers(List<User> newData) {
+        boolean[] result = new boolean[newData.size()];
+        for (int i = 0; i < result.length; i++) {
+            User u = newData.get(i);
+            UUID id = u.getId();
+            result[i] = withLocks(id, id, () -> {
+                User old = users.get(id);
+                return old != null && replaceUser(old, u);
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Store the new data of a user. Must be called while holding the lock of the user.
+     * 
+     * @param old the user currently stored, <code>null</code> if there is none.
+     * @param u the new data, may be the stored user changed in place.
+     * @return <code>true</code>.
+     */
+    private boolean replaceUser(User old, User u) {
+        UUID id = u.getId();
+        if (old != null) {
+            // keep the rentals of the user, an update must not drop them.
+            if (old != u) {
+                u.setRentals(old.getRentals());
+            }
+            u.setVersion(old.getVersion() + 1);
+        }
+        users.put(id, u);
+        indexUser(id, u.getName());
+        usersVersion.incrementAndGet();
+        return true;
+    }
+
+    @Override
+    public boolean deleteUser(UUID id) {
+        return withLocks(id, id, () -> {
+            unindexUser(id);
+            accounts.remove(id);
+            if (users.remove(id) == null) {
+                return false;
+            }
+            usersVersion.incrementAndGet();
+            return true;
+        });
+    }
+
+    @Override
+    public boolean[] deleteUsers(List<UUID> ids) {
+        boolean[] result = new boolean[ids.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = deleteUser(ids.get(i));
+        }
+        return result;
+    }
+
+    @Override
+    public long getUsersVersion() {
+        return usersVersion.get();
+    }
+
+    @Override
+    public Collection<Rental> getAllRentals() {
+        return rentalList.values();
+    }
+
+    @Override
+    public List<Rental> getRentals(UUID after, int limit) {
+        return page(rentalIds, rentalList, after, limit);
+    }
+
+    @Override
+    public List<Rental> getRentals(UUID userId, UUID movieId, UUID after, int limit) {
+        if (userId == null && movieId == null) {
+            return getRentals(after, limit);
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("page limit must be at least 1");
+        }
+        List<Rental> candidates = new ArrayList<>();
+        if (userId != null) {
+            User u = users.get(userId);
+            if (u != null) {
+                // the rentals of a user are changed while holding its lock.
+                withLocks(userId, userId, () -> candidates.addAll(u.getRentals()));
+            }
+        } else {
+            for (UUID id : rentalsOfMovie.getOrDefault(movieId, Collections.emptySet())) {
+                Rental r = rentalList.get(id);
+                if (r != null) {
+                    candidates.add(r);
+                }
+            }
+        }
+        NavigableMap<UUID, Rental> matching = new TreeMap<>(ID_ORDER);
+        for (Rental r : candidates) {
+            if ((movieId == null || movieId.equals(r.getMovie().getId()))
+                    && (after == null || ID_ORDER.compare(r.getId(), after) > 0)) {
+                matching.put(r.getId(), r);
+            }
+        }
+        List<Rental> result = new ArrayList<>(Math.min(limit, matching.size()));
+        for (Rental r : matching.values()) {
+            if (result.size() == limit) {
+                break;
+            }
+            result.add(r);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean createRental(UUID userId, UUID movieId, LocalDate d) {
+        return rentMovie(userId, movieId, d) != null;
+    }
+
+    @Override
+    public UUID[] createRentals(List<RentalRequest> requests) {
+        UUID[] result = new UUID[requests.size()];
+        for (int i = 0; i < result.length; i++) {
+            RentalRequest r = requests.get(i);
+            try {
+                result[i] = rentMovie(r.getUserId(), r.getMovieId(), r.getRentalDate());
+            } catch (RuntimeException e) {
+                // e.g. the user is too young, the other requests are not affected.
+                result[i] = null;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public UUID rentMovie(UUID userId, UUID movieId, LocalDate d) {
+        if (d.isAfter(BusinessDate.today())) {
+            return null;
+        }
+        return withLocks(userId, movieId, () -> {
+            User u = users.get(userId);
+            Movie m = movies.get(movieId);
+
+            if (u != null && m != null && stock.getInStock(movieId) > 0) {
+                // takes one of the available copies of the movie.
+                Rental r = new Rental(u, m, d);
+                stock.removeFromStock(m);
+                UUID id = UUID.randomUUID();
+                r.setId(id);
+                rentalList.put(id, r);
+                rentalIds.add(id);
+                addRentalOfMovie(movieId, id);
+                indexMovie(movieId, m.isRented());
+                accounts.computeIfPresent(userId, (k, a) -> a.plus(r));
+                m.setVersion(m.getVersion() + 1);
+                moviesVersion.incrementAndGet();
+                return id;
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public boolean returnRental(UUID id) {
+        Rental r = rentalList.get(id);
+        if (r == null) {
+            return false;
+        }
+        UUID movieId = r.getMovie().getId();
+        return withLocks(r.getUser().getId(), movieId, () -> {
+            if (rentalList.remove(id) == null) {
+                // somebody else returned this rental in the meantime.
+                return false;
+            }
+            rentalIds.remove(id);
+            removeRentalOfMovie(movieId, id);
+            Movie current = movies.get(movieId);
+            if (r.getMovie() != current) {
+                // the movie has been replaced by an update since it has been rented.
+                r.getMovie().returnCopy();
+            }
+            if (current != null) {
+                if (current.returnCopy()) {
+                    stock.addToStock(current);
+                }
+                current.setVersion(current.getVersion() + 1);
+                indexMovie(movieId, current.isRented());
+                moviesVersion.incrementAndGet();
+            }
+            if (!r.getUser().getRentals().remove(r)) {
+                return false;
+            }
+            accounts.computeIfPresent(r.getUser().getId(), (k, a) -> a.minus(r));
+            return true;
+        });
+    }
+
+    @Override
+    public boolean[] returnRentals(List<UUID> ids) {
+        boolean[] result = new boolean[ids.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = returnRental(ids.get(i));
+        }
+        return result;
+    }
+
+    @Override
+    public Account getAccount(UUID userId) {
+        LocalDate today = BusinessDate.today();
+        if (today.isAfter(accountsDate)) {
+            advanceAccounts(today);
+        }
+        return withLocks(userId, userId, () -> currentAccount(userId));
+    }
+
+    /**
+     * Recompute the accounts of all users for a new day in one parallel pass, so that the fees of the outstanding
+     * rentals need not be recomputed when the accounts are read. Accounts are also recomputed on their own when they
+     * are read on a new day, this only moves the work off the requests, see {@link DailyJob}.
+     * 
+     * @param day the new day, ignored unless it is after the day of the accounts.
+     */
+    public void rollover(LocalDate day) {
+        advanceAccounts(day);
+        users.keySet().parallelStream().forEach(id -> withLocks(id, id, () -> currentAccount(id)));
+    }
+
+    private synchronized void advanceAccounts(LocalDate day) {
+        if (day.isAfter(accountsDate)) {
+            accountsDate = day;
+        }
+    }
+
+    /**
+     * Get the account of a user as of {@link #accountsDate}, computing it if it is missing or dated before. Must be
+     * called while holding the lock of the user.
+     * 
+     * @param userId the id of the user.
+     * @return the account, <code>null</code> if the user does not exist.
+     */
+    private Account currentAccount(UUID userId) {
+        User u = users.get(userId);
+        if (u == null) {
+            accounts.remove(userId);
+            return null;
+        }
+        LocalDate day = accountsDate;
+        Account a = accounts.get(userId);
+        if (a == null || !a.getDate().equals(day)) {
+            a = Account.of(userId, day, u.getRentals());
+            accounts.put(userId, a);
+        }
+        return a;
+    }
+
+    /**
+     * Run an action while holding the locks of two entities. The locks are always acquired in the same order, so
+     * two threads locking the same pair of entities cannot deadlock.
+     * 
+     * @param first id of the first entity to lock.
+     * @param second id of the second entity to lock, may be the same as the first one.
+     * @param action the action to execute.
+     * @return the result of the action.
+     */
+    private <T> T withLocks(UUID first, UUID second, Supplier<T> action) {
+        int i = stripe(first);
+        int j = stripe(second);
+        synchronized (locks[Math.min(i, j)]) {
+            synchronized (locks[Math.max(i, j)]) {
+                return action.get();
+            }
+        }
+    }
+
+    /**
+     * Collect the entities of a page in the order of their ids.
+     * 
+     * @param ids the sorted ids of the entities.
+     * @param entities the entities by id.
+     * @param after the id after which the page starts, <code>null</code> for the first page.
+     * @param limit the maximum size of the page.
+     * @return the page.
+     */
+    private static <T> List<T> page(NavigableSet<UUID> ids, Map<UUID, T> entities, UUID after, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("page limit must be at least 1");
+        }
+        List<T> result = new ArrayList<>();
+        for (UUID id : after == null ? ids : ids.tailSet(after, false)) {
+            T entity = entities.get(id);
+            // skip entities that were removed after their id has been read.
+            if (entity != null) {
+                result.add(entity);
+                if (result.size() == limit) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the available copies of the movies. Changing them does not change the movies.
+     */
+    public Stock getStock() {
+        return stock;
+    }
+
+    /**
+     * Bring the stock of a movie in line with its available copies. Must be called while holding the lock of the
+     * movie.
+     * 
+     * @param m the movie.
+     */
+    private void restock(Movie m) {
+        int missing = m.getAvailable() - stock.getInStock(m.getId());
+        if (missing > 0) {
+            stock.addToStock(m, missing);
+        } else if (missing < 0) {
+            stock.removeFromStock(m, -missing);
+        }
+    }
+
+    /**
+     * Index a rental under its movie. Must be called while holding the lock of the movie.
+     * 
+     * @param movieId the id of the rented movie.
+     * @param rentalId the id of the rental.
+     */
+    private void addRentalOfMovie(UUID movieId, UUID rentalId) {
+        rentalsOfMovie.compute(movieId, (k, ids) -> {
+            Set<UUID> result = ids == null ? ConcurrentHashMap.newKeySet() : ids;
+            result.add(rentalId);
+            return result;
+        });
+    }
+
+    private void removeRentalOfMovie(UUID movieId, UUID rentalId) {
+        rentalsOfMovie.computeIfPresent(movieId, (k, ids) -> {
+            ids.remove(rentalId);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    /**
+     * Move a movie into the partition of its rented state. Must be called while holding the lock of the movie.
+     * 
+     * @param id the id of the movie.
+     * @param rented the rented state of the movie.
+     */
+    private void indexMovie(UUID id, boolean rented) {
+        movieIds.add(id);
+        if (rented) {
+            rentedMovies.add(id);
+            availableMovies.remove(id);
+        } else {
+            availableMovies.add(id);
+            rentedMovies.remove(id);
+        }
+    }
+
+    /**
+     * (Re-)index a user under its current name. Must be called while holding the lock of the user.
+     * 
+     * @param id the id of the user.
+     * @param name the current name of the user.
+     */
+    private void indexUser(UUID id, String name) {
+        userIds.add(id);
+        String previous = indexedNames.put(id, name);
+        if (name.equals(previous)) {
+            return;
+        }
+        if (previous != null) {
+            removeFromName(previous, id);
+        }
+        usersByName.compute(name, (k, ids) -> {
+            Set<UUID> result = ids == null ? ConcurrentHashMap.newKeySet() : ids;
+            result.add(id);
+            return result;
+        });
+    }
+
+    private void unindexUser(UUID id) {
+        userIds.remove(id);
+        String previous = indexedNames.remove(id);
+        if (previous != null) {
+            removeFromName(previous, id);
+        }
+    }
+
+    private void removeFromName(String name, UUID id) {
+        usersByName.computeIfPresent(name, (k, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    private static int stripe(UUID id) {
+        int h = id.hashCode();
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+
+    /**
+     * Initialize the "server component".
+     */
+    public void init() {
+        readMovies();
+        readUsers();
+        readRentals();
+    }
+
+    private void readMovies() {
+    	InputStream instream = getClass().getResourceAsStream("/data/movies.csv");
+        try (Reader in = new InputStreamReader(instream, StandardCharsets.UTF_8)) {
+            Iterable<CSVRecord> movieList = CSVFormat.EXCEL.withFirstRecordAsHeader().withHeader(MovieHeaders.class)
+                    .withDelimiter(';').parse(in);
+            for (CSVRecord m : movieList) {
+                UUID id = UUID.fromString(m.get(MovieHeaders.ID));
+                String title = m.get(MovieHeaders.Title);
+                LocalDate releaseDate = LocalDate.parse(m.get(MovieHeaders.ReleaseDate));
+                PriceCategory pc = PriceCategory.getPriceCategoryFromId(m.get(MovieHeaders.PriceCategory));
+                boolean isRented = Boolean.parseBoolean(m.get(MovieHeaders.isRented));
+                int ageRating = Integer.parseInt(m.get(MovieHeaders.AgeRating));
+                Movie movie = new Movie(title, releaseDate, pc, ageRating);
+                movie.setId(id);
+                movie.setRented(isRented);
+                movies.put(id, movie);
+                restock(movie);
+                indexMovie(id, isRented);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void readUsers() {
+    	InputStream instream = getClass().getResourceAsStream("/data/users.csv");
+        try (Reader in = new InputStreamReader(instream, StandardCharsets.UTF_8)) {
+            Iterable<CSVRecord> usersList = CSVFormat.EXCEL.withFirstRecordAsHeader().withHeader(UserHeaders.class)
+                    .withDelimiter(';').parse(in);
+            for (CSVRecord u : usersList) {
+                UUID id = UUID.fromString(u.get(UserHeaders.ID));
+                String surname = u.get(UserHeaders.Surname);
+                String firstname = u.get(UserHeaders.FirstName);
+                LocalDate birthdate = LocalDate.parse(u.get(UserHeaders.Birthdate));
+                User user = new User(surname, firstname, birthdate);
+                user.setId(id);
+                users.put(id, user);
+                indexUser(id, surname);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void readRentals() {
+    	InputStream instream = getClass().getResourceAsStream("/data/rentals.csv");
+        try (Reader in = new InputStreamReader(instream, StandardCharsets.UTF_8)) {
+            Iterable<CSVRecord> rentals = CSVFormat.EXCEL.withFirstRecordAsHeader().withHeader(RentalHeaders.class)
+                    .withDelimiter(';').parse(in);
+            for (CSVRecord r : rentals) {
+                UUID id = UUID.fromString(r.get(RentalHeaders.ID));
+                LocalDate rentaldate = LocalDate.parse(r.get(RentalHeaders.RentalDate));
+                UUID userId = UUID.fromString(r.get(RentalHeaders.UserID));
+                UUID movieId = UUID.fromString(r.get(RentalHeaders.MovieID));
+                User u = users.get(userId);
+                Movie m = movies.get(movieId);
+                Rental rental = new Rental(u, m, rentaldate);
+                rental.setId(id);
+                rentalList.put(id, rental);
+                rentalIds.add(id);
+                addRentalOfMovie(movieId, id);
+                restock(m);
+                indexMovie(movieId, m.isRented());
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    enum MovieHeaders {
+        ID, Title, ReleaseDate, PriceCategory, AgeRating, isRented
+    }
+
+    enum UserHeaders {
+        ID, Surname, FirstName, Birthdate
+    }
+
+    enum RentalHeaders {
+        ID, RentalDate, UserID, MovieID
+    }
+
+}
@@ -1,9 +1,12 @@
 package ch.fhnw.swc.mrs.data;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import org.sql2o.Connection;
+import org.sql2o.Query;
 import org.sql2o.Sql2o;
 
 import ch.fhnw.swc.mrs.model.User;
@@ -19,24 +22,48 @@ public class UserDAO {
 	/** SQL statement to create user. */
 	private static final String INSERT_SQL 
 		= "INSERT INTO clients ( id, firstname, name, birthdate ) VALUES ( :id, :firstname, :name, :birthdate )";
+	/** SQL statement to create a user or to update it if it already exists. */
+	private static final String UPSERT_SQL = INSERT_SQL
+		+ " ON CONFLICT (id) DO UPDATE SET firstname = EXCLUDED.firstname, name = EXCLUDED.name, "
+		+ "birthdate = EXCLUDED.birthdate, version = clients.version + 1";
 	/** SQL statement to update user. */
 	private static final String UPDATE_SQL 
-		= "UPDATE clients SET firstname = :firstname, name = :name, birthdate = :birthdate WHERE id = :id";
+		= "UPDATE clients SET firstname = :firstname, name = :name, birthdate = :birthdate, version = version + 1 "
+		+ "WHERE id = :id";
+	/** SQL statement to update user unless its version has changed, returns the new version. */
+	private static final String UPDATE_VERSION_SQL = UPDATE_SQL + " AND version = :version RETURNING version";
 	/** SQL statement to get user by id. */
 	private static final String GET_BY_ID_SQL 
-	= "SELECT id, firstname, name, birthdate FROM clients WHERE id = :id";
+	= "SELECT id, firstname, name, birthdate, version FROM clients WHERE id = :id";
 	/** SQL statement to get user by name. */
 	private static final String GET_BY_NAME_SQL 
-		= "SELECT id, firstname, name, birthdate FROM clients WHERE name = :name";
+		= "SELECT id, firstname, name, birthdate, version FROM clients WHERE name = :name";
 	/** SQL statement to get all users. */
 	private static final String GET_ALL_SQL 
 //	= "SELECT id, firstname, name, birthdate FROM clients";
 	= "SELECT * FROM clients";
+	/** SQL statement to get the first page of users. */
+	private static final String GET_FIRST_PAGE_SQL
+		= "SELECT id, firstname, name, birthdate, version FROM clients ORDER BY id LIMIT :limit";
+	/** SQL statement to get the page of users following a given id. */
+	private static final String GET_PAGE_SQL
+		= "SELECT id, firstname, name, birthdate, version FROM clients WHERE id > :after ORDER BY id LIMIT :limit";
 
 	private Sql2o sql2o;
+	/** Number of rows sent per JDBC batch by the bulk operations. */
+	private final int batchSize;
 
 	public UserDAO(Sql2o sql2o) {
+		this(sql2o, Batch.DEFAULT_SIZE);
+	}
+
+	/**
+	 * @param sql2o provides the connections to the database.
+	 * @param batchSize number of rows sent per JDBC batch by the bulk operations.
+	 */
+	public UserDAO(Sql2o sql2o, int batchSize) {
 		this.sql2o = sql2o;
+		this.batchSize = batchSize;
 	}
 
 	/**
@@ -65,27 +92,118 @@ public class UserDAO {
 		}
 	}
 
+	/**
+	 * Stream all users stored in this system. The users are read in chunks while the stream is consumed.
+	 * 
+	 * @return all users; close the stream to release its connection.
+	 */
+	public Stream<User> streamAll() {
+		return Cursor.stream(sql2o, conn -> conn.createQuery(GET_ALL_SQL), q -> q.executeAndFetchLazy(User.class));
+	}
+
+	/**
+	 * Retrieve a page of users ordered by id. The page is read from the primary key index, so its cost does not
+	 * depend on how many users precede it.
+	 * 
+	 * @param after
+	 *            the id after which the page starts, <code>null</code> for the first page.
+	 * @param limit
+	 *            the maximum number of users to return.
+	 * @return at most limit users with an id greater than after, ordered by id.
+	 */
+	public List<User> getPage(UUID after, int limit) {
+		try (Connection conn = sql2o.open()) {
+			Query q = after == null ? conn.createQuery(GET_FIRST_PAGE_SQL)
+					: conn.createQuery(GET_PAGE_SQL).addParameter("after", after);
+			return q.addParameter("limit", limit).executeAndFetch(User.class);
+		}
+	}
+
 	/**
 	 * Persist a User object. Use this method either when storing a new User object
-	 * or for updating an existing one.
+	 * or for updating an existing one. The version of the user is set to the one stored.
 	 * 
 	 * @param user
 	 *            the object to persist.
+	 * @return whether the user has been stored.
+	 */
+	public boolean saveOrUpdate(User user) {
+		try (Connection conn = sql2o.open()) {
+			return stored(bind(conn.createQuery(UPSERT_SQL + " RETURNING version"), user), user);
+		}
+	}
+
+	/**
+	 * Update a User object unless it has been changed since the given version was read, see
+	 * {@link MovieDAO#update(ch.fhnw.swc.mrs.model.Movie, long)}.
+	 * 
+	 * @param user
+	 *            the object to persist, its version is set to the new one if it has been updated.
+	 * @param version
+	 *            the version the stored user must have.
+	 * @return whether the user has been updated.
 	 */
-	public void saveOrUpdate(User user) {
-		try (Connection conn = sql2o.beginTransaction()) {
-			User u = conn.createQuery(GET_BY_ID_SQL)
-					.addParameter("id", user.getId())
-					.executeAndFetchFirst(User.class);
-			String sql = (u == null) ? INSERT_SQL : UPDATE_SQL;
-			conn.createQuery(sql)
-				.addParameter("id", user.getId())
+	public boolean update(User user, long version) {
+		try (Connection conn = sql2o.open()) {
+			return stored(bind(conn.createQuery(UPDATE_VERSION_SQL), user).addParameter("version", version), user);
+		}
+	}
+
+	/**
+	 * Run a statement that stores a user and copy the version it returns to the user.
+	 * 
+	 * @param q the statement, returning the version.
+	 * @param user the user that is stored.
+	 * @return whether a row has been stored.
+	 */
+	private static boolean stored(Query q, User user) {
+		Long version = q.executeScalar(Long.class);
+		if (version == null) {
+			return false;
+		}
+		user.setVersion(version);
+		return true;
+	}
+
+	/**
+	 * Persist many User objects in one transaction, new ones are created and existing ones updated. The rows
+	 * are sent in JDBC batches.
+	 * 
+	 * @param users
+	 *            the objects to persist.
+	 * @return the number of rows written for each user, in iteration order.
+	 */
+	public int[] saveOrUpdateAll(Collection<User> users) {
+		return Batch.execute(sql2o, UPSERT_SQL, users, batchSize, UserDAO::bind);
+	}
+
+	/**
+	 * Create many new users in one transaction, the rows are sent in JDBC batches.
+	 * 
+	 * @param users
+	 *            the objects to create, each one must have an id.
+	 * @return the number of rows written for each user, in iteration order.
+	 */
+	public int[] insertAll(Collection<User> users) {
+		return Batch.execute(sql2o, INSERT_SQL, users, batchSize, UserDAO::bind);
+	}
+
+	/**
+	 * Update many existing users in one transaction, the rows are sent in JDBC batches.
+	 * 
+	 * @param users
+	 *            the objects to update.
+	 * @return the number of rows written for each user, in iteration order.
+	 */
+	public int[] updateAll(Collection<User> users) {
+		return Batch.execute(sql2o, UPDATE_SQL, users, batchSize, UserDAO::bind);
+	}
+
+	private static Query bind(Query q, User user) {
+		return q.addParameter("id", user.getId())
 				.addParameter("firstname", user.getFirstName())
 				.addParameter("name", user.getName())
-				.addParameter("birthdate", user.getBirthdate())
-				.executeUpdate();
-			conn.commit();
-		}
+				.addParameter("birthdate", user.getBirthdate());
 	}
 
 	/**
@@ -101,6 +219,17 @@ public class UserDAO {
 		}
 	}
 
+	/**
+	 * Remove many users in one transaction, the rows are sent in JDBC batches.
+	 * 
+	 * @param ids
+	 *            the Users to remove.
+	 * @return the number of rows removed for each id, in iteration order.
+	 */
+	public int[] deleteAll(Collection<UUID> ids) {
+		return Batch.execute(sql2o, DELETE_SQL, ids, batchSize, (q, id) -> q.addParameter("id", id));
+	}
+
 	/**
 	 * Retrieve a user by his/her name. Use the family name to retrieve a list of
 	 * all users with that name. Note this method does not support wildcards!
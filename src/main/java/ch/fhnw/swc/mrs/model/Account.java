@@ -0,0 +1,139 @@
+package ch.fhnw.swc.mrs.model;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * The balance of a user on a given day: what the open rentals cost and how many frequent renter points they earn
+ * if they are returned that day. Charges are kept in cents, so sums do not accumulate rounding errors.
+ * <p>
+ * Accounts are immutable. A backend keeps them up to date as rentals are created and returned with
+ * {@link #plus(Rental)} and {@link #minus(Rental)}, and recomputes them with {@link #of(UUID, LocalDate, Iterable)}
+ * once a day has passed, as charges grow with the days a movie is rented.
+ */
+public final class Account {
+
+    private final UUID userId;
+    private final LocalDate date;
+    private final long charge;
+    private final int frequentRenterPoints;
+    private final int rentals;
+
+    private Account(UUID userId, LocalDate date, long charge, int frequentRenterPoints, int rentals) {
+        this.userId = userId;
+        this.date = date;
+        this.charge = charge;
+        this.frequentRenterPoints = frequentRenterPoints;
+        this.rentals = rentals;
+    }
+
+    /**
+     * Compute the account of a user.
+     *
+     * @param userId the id of the user.
+     * @param date the day of the balance.
+     * @param openRentals the rentals of the user that have not been returned.
+     * @return the account of the user on the given day.
+     */
+    public static Account of(UUID userId, LocalDate date, Iterable<Rental> openRentals) {
+        Account result = new Account(userId, date, 0, 0, 0);
+        for (Rental r : openRentals) {
+            result = result.plus(r);
+        }
+        return result;
+    }
+
+    /**
+     * @param r a rental of the user that has been created.
+     * @return the account including the rental.
+     */
+    public Account plus(Rental r) {
+        return new Account(userId, date, charge + charge(r, date), frequentRenterPoints + points(r, date),
+                rentals + 1);
+    }
+
+    /**
+     * @param r a rental of the user that has been returned.
+     * @return the account without the rental.
+     */
+    public Account minus(Rental r) {
+        return new Account(userId, date, charge - charge(r, date), frequentRenterPoints - points(r, date),
+                rentals - 1);
+    }
+
+    /**
+     * @param r a rental.
+     * @param date the day on which it is returned.
+     * @return the charge of the rental in cents.
+     */
+    public static long charge(Rental r, LocalDate date) {
+        return Math.round(r.getMovie().getPriceCategory().getCharge(r.getRentalDays(date)) * 100);
+    }
+
+    private static int points(Rental r, LocalDate date) {
+        return r.getMovie().getPriceCategory().getFrequentRenterPoints(r.getRentalDays(date));
+    }
+
+    /**
+     * @return the id of the user.
+     */
+    public UUID getUserId() {
+        return userId;
+    }
+
+    /**
+     * @return the day of the balance.
+     */
+    public LocalDate getDate() {
+        return date;
+    }
+
+    /**
+     * @return the total charge of the open rentals in cents.
+     */
+    public long getCharge() {
+        return charge;
+    }
+
+    /**
+     * @return the frequent renter points the open rentals earn.
+     */
+    public int getFrequentRenterPoints() {
+        return frequentRenterPoints;
+    }
+
+    /**
+     * @return the number of open rentals.
+     */
+    public int getRentals() {
+        return rentals;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Account)) {
+            return false;
+        }
+        Account other = (Account) o;
+        return userId.equals(other.userId) && date.equals(other.date) && charge == other.charge
+                && frequentRenterPoints == other.frequentRenterPoints && rentals == other.rentals;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = userId.hashCode();
+        result = 19 * result + date.hashCode();
+        result = 19 * result + Long.hashCode(charge);
+        result = 19 * result + frequentRenterPoints;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "Account[" + userId + ", " + date + ", " + charge + " cents, " + frequentRenterPoints + " points, "
+                + rentals + " rentals]";
+    }
+}
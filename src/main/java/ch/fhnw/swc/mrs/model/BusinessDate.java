@@ -0,0 +1,81 @@
+package ch.fhnw.swc.mrs.model;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/**
+ * The current day of the movie rental system. All rental durations, age checks and accounts are based on it rather
+ * than on {@link LocalDate#now()}, so they agree with each other across midnight and can be tested at any day by
+ * {@link #setClock(Clock) setting a clock}.
+ * <p>
+ * The day is cached with the instants at which it starts and ends: {@link #today()} only reads the time of the clock
+ * and compares it, the date is computed once per day.
+ */
+public final class BusinessDate {
+
+    private static volatile Clock clock = Clock.systemDefaultZone();
+    private static volatile Day day = new Day(clock);
+
+    /**
+     * @return the current day of the clock.
+     */
+    public static LocalDate today() {
+        Clock c = clock;
+        Day d = day;
+        long now = c.millis();
+        if (d.clock != c || now < d.start || now >= d.end) {
+            // a new day or a new clock; racing threads compute the same day.
+            d = new Day(c);
+            day = d;
+        }
+        return d.date;
+    }
+
+    /**
+     * @return the clock the business date is read from.
+     */
+    public static Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * Replace the clock, e.g. to run tests at a fixed day.
+     *
+     * @param aClock the clock to read the business date from, the system clock by default. Must not be null.
+     */
+    public static void setClock(Clock aClock) {
+        if (aClock == null) {
+            throw new IllegalArgumentException("clock must not be null");
+        }
+        clock = aClock;
+        day = new Day(aClock);
+    }
+
+    /**
+     * @return the number of milliseconds until the next day starts, at least 1.
+     */
+    public static long millisUntilTomorrow() {
+        Day d = new Day(clock);
+        return Math.max(1, d.end - d.clock.millis());
+    }
+
+    /** A day of a clock and the instants at which it starts and ends. */
+    private static final class Day {
+        private final Clock clock;
+        private final LocalDate date;
+        private final long start;
+        private final long end;
+
+        Day(Clock aClock) {
+            clock = aClock;
+            ZoneId zone = aClock.getZone();
+            date = LocalDate.now(aClock);
+            start = date.atStartOfDay(zone).toInstant().toEpochMilli();
+            end = date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        }
+    }
+
+    // prevent instantiation
+    private BusinessDate() { }
+}
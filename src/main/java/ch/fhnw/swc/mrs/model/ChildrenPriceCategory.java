@@ -15,14 +15,12 @@ public final class ChildrenPriceCategory extends PriceCategory {
      */
     @Override
     public double getCharge(int daysRented) {
-        double result = 0;
-        if (daysRented > 0) {
-            result = 1.5;
-            if (daysRented > 3) {
-                result += (daysRented - 3) * 1.5;
-            }
-        }
-        return result;
+        return TABLE.getCharge(daysRented);
+    }
+
+    @Override
+    public int getFrequentRenterPoints(int daysRented) {
+        return TABLE.getPoints(daysRented);
     }
 
     @Override
@@ -30,6 +28,9 @@ public final class ChildrenPriceCategory extends PriceCategory {
         return "Children";
     }
 
+    /** charges and points by the number of days. */
+    private static final PricingTable TABLE = new PricingTable(1.5, 3, 1.5, 0, 1);
+
     /** singleton instance. */
     private static ChildrenPriceCategory singleton = new ChildrenPriceCategory();
 
@@ -41,11 +42,6 @@ public final class ChildrenPriceCategory extends PriceCategory {
 	
     };
 
-    static {
-		// register itself to the PriceCategory
-		registerPriceCategory(ChildrenPriceCategory.getInstance());
-    }
-    
     /**
      * Access singleton instance.
      * 
@@ -23,17 +23,33 @@ public class Movie {
 	public static final String EXC_MISSING_RELEASE_DATE = "Release date must not be null";
 	/** Exception text: price category must not be null. */
 	public static final String EXC_MISSING_PRICE_CATEGORY = "price category must not be null";
+	/** Exception text: Illegal number of copies was used. */
+	public static final String EXC_COPIES = "A movie must have at least one copy";
+	/** Exception text: Illegal number of available copies was used. */
+	public static final String EXC_AVAILABLE = "Available copies must be in range [0, copies]";
 
     private boolean initialized = false;
     private UUID id;
-    private boolean rented = false;
+    /** Number of physical copies of this movie. */
+    private int copies = 1;
+    /** Whether the number of copies has been set, see {@link #hasCopies()}. */
+    private boolean copiesSet = false;
+    /** Number of copies that are not rented. */
+    private int available = 1;
     private String title = "Untitled";
     private LocalDate releaseDate;
     private PriceCategory priceCategory;
     private int ageRating;
+    /** Incremented by the back-end whenever this movie is changed. */
+    private long version;
 
     /** Logger used to produce logs. */
     private static Logger log = LogManager.getLogger(Movie.class);
+    /**
+     * Whether calls are traced, set with the system property <code>mrs.diagnostics</code>. The accessors are called
+     * millions of times when large lists are serialized; as the flag is a constant, the JIT removes the tracing.
+     */
+    private static final boolean TRACE = Boolean.getBoolean("mrs.diagnostics");
 
     /**
      * Objects initialized with this constructor are not ready for use. They must be assigned an id!
@@ -44,9 +60,9 @@ public class Movie {
      * @throws IllegalArgumentException in case, any of the parameters are null or title is empty.
      */
     public Movie(String aTitle, LocalDate aReleaseDate, PriceCategory aPriceCategory, int anAgeRating) {
-        log.trace("entering Movie(String, Date, PriceCategory, int)");
+        trace("entering Movie(String, Date, PriceCategory, int)");
         initializeMovie(aTitle, aReleaseDate, aPriceCategory, anAgeRating);
-        log.trace("exiting Movie(String, Date, PriceCategory, int)");
+        trace("exiting Movie(String, Date, PriceCategory, int)");
     }
     
     /**
@@ -76,12 +92,12 @@ public class Movie {
      * @throws IllegalStateException when trying to retrieve id before it was set.
      */
     public UUID getId() {
-        log.trace("entering getId");
+        trace("entering getId");
         if (initialized) {
-        	log.trace("exiting getId returning id");
+        	trace("exiting getId returning id");
             return id;
         } else {
-        	log.trace("exiting getId throwing IllegalStateException");
+        	trace("exiting getId throwing IllegalStateException");
             throw new IllegalStateException(EXC_ID_NOT_SET);
         }
     }
@@ -91,21 +107,21 @@ public class Movie {
      * @throws IllegalStateException when trying to re-set id.
      */
     public void setId(UUID anId) {
-    	log.trace("entering setId");
+    	trace("entering setId");
         if (initialized) {
-        	log.trace("exiting setId throwing IllegalStateException");
+        	trace("exiting setId throwing IllegalStateException");
             throw new IllegalStateException(EXC_ID_FIXED);
         }
         initialized = true;
         id = anId;
-        log.trace("exiting setId");
+        trace("exiting setId");
     }
 
     /**
      * @return The title of this Movie.
      */
     public String getTitle() {
-        log.trace("in getTitle");
+        trace("in getTitle");
         return title;
     }
 
@@ -113,37 +129,122 @@ public class Movie {
      * @param aTitle set the title of this Movie.
      */
     protected void setTitle(String aTitle) {
-        log.trace("entering setTitle");
+        trace("entering setTitle");
         if (aTitle == null || aTitle.trim().isEmpty()) {
-            log.trace("exiting setTitle throwing IllegalArgumentException");
+            trace("exiting setTitle throwing IllegalArgumentException");
             throw new IllegalArgumentException(EXC_MISSING_TITLE);
         }
         title = aTitle;
-        log.trace("exiting setTitle");
+        trace("exiting setTitle");
     }
 
    /**
-     * @return whether this Movie is rented to a User.
+     * @return whether all copies of this Movie are rented to users.
      */
     public boolean isRented() {
-        log.trace("in isRented");
-        return rented;
+        trace("in isRented");
+        return available == 0;
     }
 
     /**
-     * @param isRented set the rented status.
+     * @param isRented set the rented status: <code>true</code> rents all copies, <code>false</code> makes all of
+     * them available.
      */
     public void setRented(boolean isRented) {
-        log.trace("entering setRented");
-        rented = isRented;
-        log.trace("exiting setRented");
+        trace("entering setRented");
+        available = isRented ? 0 : copies;
+        trace("exiting setRented");
+    }
+
+    /**
+     * @return the number of physical copies of this Movie, at least 1.
+     */
+    public int getCopies() {
+        trace("in getCopies");
+        return copies;
+    }
+
+    /**
+     * @return whether the number of copies has been set. A Movie without, such as one read from a request that does
+     * not tell its copies, keeps the stored number of copies when it is updated.
+     */
+    public boolean hasCopies() {
+        trace("in hasCopies");
+        return copiesSet;
+    }
+
+    /**
+     * Change the number of copies of this Movie. The number of rented copies stays the same, copies are added to or
+     * removed from the available ones.
+     * @param aNumber the number of physical copies, at least 1 and at least the number of rented copies.
+     * @throws IllegalArgumentException if there are fewer copies than rented ones.
+     */
+    public void setCopies(int aNumber) {
+        trace("entering setCopies");
+        int rentedCopies = copies - available;
+        if (aNumber < 1 || aNumber < rentedCopies) {
+            trace("exiting setCopies throwing IllegalArgumentException");
+            throw new IllegalArgumentException(EXC_COPIES);
+        }
+        available = aNumber - rentedCopies;
+        copies = aNumber;
+        copiesSet = true;
+        trace("exiting setCopies");
+    }
+
+    /**
+     * @return the number of copies of this Movie that are not rented.
+     */
+    public int getAvailable() {
+        trace("in getAvailable");
+        return available;
+    }
+
+    /**
+     * @param aNumber the number of copies of this Movie that are not rented, in range [0, copies].
+     * @throws IllegalArgumentException if the number is out of range.
+     */
+    public void setAvailable(int aNumber) {
+        trace("entering setAvailable");
+        if (aNumber < 0 || aNumber > copies) {
+            trace("exiting setAvailable throwing IllegalArgumentException");
+            throw new IllegalArgumentException(EXC_AVAILABLE);
+        }
+        available = aNumber;
+        trace("exiting setAvailable");
+    }
+
+    /**
+     * Take one of the available copies of this Movie.
+     * @return whether a copy was available, nothing is changed otherwise.
+     */
+    public boolean rentCopy() {
+        trace("in rentCopy");
+        if (available == 0) {
+            return false;
+        }
+        available--;
+        return true;
+    }
+
+    /**
+     * Give back one of the rented copies of this Movie.
+     * @return whether a copy was rented, nothing is changed otherwise.
+     */
+    public boolean returnCopy() {
+        trace("in returnCopy");
+        if (available == copies) {
+            return false;
+        }
+        available++;
+        return true;
     }
 
     /**
      * @return the date this Movie was released.
      */
     public LocalDate getReleaseDate() {
-        log.trace("in getReleaseDate");
+        trace("in getReleaseDate");
         return releaseDate;
     }
 
@@ -151,20 +252,20 @@ public class Movie {
      * @param aReleaseDate set the date this Movie was released.
      */
     protected void setReleaseDate(LocalDate aReleaseDate) {
-        log.trace("entering setReleaseDate");
+        trace("entering setReleaseDate");
         if (aReleaseDate == null) {
-            log.trace("exiting setReleaseDate throwing IllegalStateException");
+            trace("exiting setReleaseDate throwing IllegalStateException");
             throw new IllegalArgumentException(EXC_MISSING_RELEASE_DATE);
         }
         releaseDate = aReleaseDate;
-        log.trace("exiting setReleaseDate");
+        trace("exiting setReleaseDate");
     }
 
     /**
      * @return PriceCategory of this Movie.
      */
     public PriceCategory getPriceCategory() {
-        log.trace("in releaseDateProperty");
+        trace("in releaseDateProperty");
         return priceCategory;
     }
 
@@ -172,20 +273,20 @@ public class Movie {
      * @param aPriceCategory set PriceCategory for this Movie.
      */
     public void setPriceCategory(PriceCategory aPriceCategory) {
-        log.trace("entering setPriceCategory");
+        trace("entering setPriceCategory");
         if (aPriceCategory == null) {
-            log.trace("exiting setPriceCategory throwing IllegalArgumentException");
+            trace("exiting setPriceCategory throwing IllegalArgumentException");
             throw new IllegalArgumentException(EXC_MISSING_PRICE_CATEGORY);
         }
         priceCategory = aPriceCategory;
-        log.trace("exiting setPriceCategory");
+        trace("exiting setPriceCategory");
     }
 
     /**
      * @return The minimum age for being allowed to rent this movie.
      */
 	public int getAgeRating() {
-	    log.trace("in getAgeRating");
+	    trace("in getAgeRating");
 		return ageRating;
 	}
 
@@ -193,73 +294,98 @@ public class Movie {
 	 * @param ageRating The minimum age for being allowed to rent this movie.
 	 */
 	public void setAgeRating(int ageRating) {
-	    log.trace("entering setAgeRating");
+	    trace("entering setAgeRating");
 		if (ageRating < 0 || ageRating > 18) {
-		    log.trace("exiting setAgeRating throwing IllegalArgumentException");
+		    trace("exiting setAgeRating throwing IllegalArgumentException");
     		throw new IllegalArgumentException(EXC_AGE_RATING);			
 		}
 		this.ageRating = ageRating;
-	    log.trace("exiting setAgeRating");
+	    trace("exiting setAgeRating");
 	}
 
+    /**
+     * @return the number of changes to this movie since it has been stored, used to detect concurrent updates.
+     */
+    public long getVersion() {
+        trace("in getVersion");
+        return version;
+    }
+
+    /**
+     * @param aVersion the number of changes to this movie, only set by the back-end.
+     */
+    public void setVersion(long aVersion) {
+        trace("in setVersion");
+        version = aVersion;
+    }
+
     @Override
     public int hashCode() {
-        log.trace("entering hashCode");
+        trace("entering hashCode");
         final int prime = 31;
         int result = prime + getId().hashCode();
         result = prime * result + ((getReleaseDate() == null) ? 0 : getReleaseDate().hashCode());
         result = prime * result + ((getTitle() == null) ? 0 : getTitle().hashCode());
-        log.trace("exiting hashCode");
+        trace("exiting hashCode");
         return result;
     }
 
     @Override
     public boolean equals(Object obj) {
-        log.trace("entering equals");
+        trace("entering equals");
         if (this == obj) {
-            log.trace("exiting equals (objects are the same)");
+            trace("exiting equals (objects are the same)");
             return true;
         }
 
         if ((obj == null) || !(obj instanceof Movie)) {
-            log.trace("exiting equals (objects are of different type)");
+            trace("exiting equals (objects are of different type)");
             return false;
         }
 
         // cast safe here as we tested the type four lines above.
-        log.trace("exiting equals");
+        trace("exiting equals");
         return areAttributesEqual((Movie) obj);
     }
 
 	private boolean areAttributesEqual(final Movie other) {
-		log.trace("entering areAttributesEqual");
+		trace("entering areAttributesEqual");
 		if (!getId().equals(other.getId())) {
-		    log.trace("exiting areAttributesEqual on different id");
+		    trace("exiting areAttributesEqual on different id");
             return false;
         }
 
         if (!getReleaseDate().equals(other.getReleaseDate())) {
-		    log.trace("exiting areAttributesEqual on different release date");
+		    trace("exiting areAttributesEqual on different release date");
             return false;
         }
 
         if (!getTitle().equals(other.getTitle())) {
-		    log.trace("exiting areAttributesEqual on different title");
+		    trace("exiting areAttributesEqual on different title");
             return false;
         }
         
         if (!getPriceCategory().equals(other.getPriceCategory())) {
-		    log.trace("exiting areAttributesEqual on different price category");
+		    trace("exiting areAttributesEqual on different price category");
         	return false;
         }
         
         if (getAgeRating() != other.getAgeRating()) {
-		    log.trace("exiting areAttributesEqual on different age rating");
+		    trace("exiting areAttributesEqual on different age rating");
         	return false;
         }
 
-	    log.trace("exiting areAttributesEqual on equal objects");
+	    trace("exiting areAttributesEqual on equal objects");
         return true;
 	}
 
+	/**
+	 * Trace a call in diagnostics mode, see {@link #TRACE}.
+	 * @param message what happens.
+	 */
+	private static void trace(String message) {
+		if (TRACE) {
+			log.trace(message);
+		}
+	}
 }
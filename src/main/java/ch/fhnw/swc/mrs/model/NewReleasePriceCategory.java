@@ -15,10 +15,7 @@ public final class NewReleasePriceCategory extends PriceCategory {
      */
     @Override
     public double getCharge(int daysRented) {
-        if (daysRented > 0) {
-            return daysRented * 3;
-        }
-        return 0.0d;
+        return TABLE.getCharge(daysRented);
     }
 
     /**
@@ -31,15 +28,7 @@ public final class NewReleasePriceCategory extends PriceCategory {
      */
     @Override
     public int getFrequentRenterPoints(int daysRented) {
-        int result = 0;
-        if (daysRented > 0) {
-            if (daysRented == 1) {
-                result = 1;
-            } else { // add bonus for two day new release rental
-                result = 2;
-            }
-        }
-        return result;
+        return TABLE.getPoints(daysRented);
     }
 
     @Override
@@ -47,6 +36,9 @@ public final class NewReleasePriceCategory extends PriceCategory {
         return "New Release";
     }
 
+    /** charges and points by the number of days. */
+    private static final PricingTable TABLE = new PricingTable(3, 1, 3, 0, 1, 2);
+
     /** singleton instance. */
     private static NewReleasePriceCategory singleton = new NewReleasePriceCategory();
 
@@ -56,11 +48,6 @@ public final class NewReleasePriceCategory extends PriceCategory {
     private NewReleasePriceCategory() {
     };
 
-    static {
-		// register itself to the PriceCategory
-		registerPriceCategory(NewReleasePriceCategory.getInstance());
-    }
-    
     /**
      * Access singleton instance.
      * 
@@ -1,15 +1,34 @@
 package ch.fhnw.swc.mrs.model;
 
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 /**
  * Abstract price category class for movie rentals.
- * 
+ * <p>
+ * The categories are registered by their name, see {@link #toString()}: the built-in ones, those in the file
+ * <code>/data/pricecategories.csv</code> on the class path, see {@link TablePriceCategory}, and any registered by
+ * {@link #registerPriceCategory(PriceCategory)}. The system property <code>mrs.priceCategories</code> names a file to
+ * read instead of the one on the class path.
  */
 public abstract class PriceCategory {
 
-    private static List<PriceCategory> registeredCategories = new ArrayList<>(3);
+    /** System property naming the file of additional price categories. */
+    public static final String CONFIGURATION_PROPERTY = "mrs.priceCategories";
+
+    private static Logger log = LogManager.getLogger(PriceCategory.class);
 
     /**
      * @param daysRented none.
@@ -27,34 +46,81 @@ public abstract class PriceCategory {
 
     /**
      * Get the concrete PriceCategory object.
-     * 
+     *
      * @param name the name of the price category to retrieve.
      * @return the price category with the given id or null if not found.
      */
     public static PriceCategory getPriceCategoryFromId(String name) {
-        for (PriceCategory cat : registeredCategories) {
-            if (cat.toString().equals(name)) {
-                return cat;
-            }
-        }
-        return null;
+        return name == null ? null : Registry.categories.get(name);
+    }
+
+    /**
+     * @return the names of all registered price categories, in the order of their registration.
+     */
+    public static List<String> getPriceCategoryIds() {
+        return new ArrayList<>(Registry.categories.keySet());
     }
 
     /**
-     * Register a concrete price category for retrieval through getPriceCategoryFromId.
-     * 
+     * Register a concrete price category for retrieval through getPriceCategoryFromId. A category is not replaced by
+     * another one of the same name.
+     *
      * @param pc a price category to register.
      */
     protected static void registerPriceCategory(PriceCategory pc) {
-        if (!registeredCategories.contains(pc)) {
-            registeredCategories.add(pc);
-        }
+        Registry.register(pc);
     }
 
     /** Initialize a list of available price categories. */
     public static void init() {
-      registerPriceCategory(RegularPriceCategory.getInstance());
-      registerPriceCategory(ChildrenPriceCategory.getInstance());
-      registerPriceCategory(NewReleasePriceCategory.getInstance());    
+        Registry.categories.size();
+    }
+
+    /**
+     * Holds the registered categories. Initialized on first use rather than with PriceCategory, so the built-in
+     * categories, being subclasses, are initialized after PriceCategory and do not depend on the order in which
+     * classes are loaded. Lookups read an immutable map without locking; registrations, which are rare, copy it.
+     */
+    private static final class Registry {
+
+        private static volatile Map<String, PriceCategory> categories = Collections.emptyMap();
+
+        static {
+            register(RegularPriceCategory.getInstance());
+            register(ChildrenPriceCategory.getInstance());
+            register(NewReleasePriceCategory.getInstance());
+            for (PriceCategory pc : readConfiguration()) {
+                register(pc);
+            }
+        }
+
+        static synchronized void register(PriceCategory pc) {
+            String id = pc.toString();
+            PriceCategory registered = categories.get(id);
+            if (registered == null) {
+                Map<String, PriceCategory> copy = new LinkedHashMap<>(categories);
+                copy.put(id, pc);
+                categories = Collections.unmodifiableMap(copy);
+            } else if (registered != pc) {
+                log.warn("Price category " + id + " is registered already, ignoring " + pc.getClass().getName());
+            }
+        }
+
+        private static List<TablePriceCategory> readConfiguration() {
+            String file = System.getProperty(CONFIGURATION_PROPERTY);
+            try (InputStream in = file != null ? new FileInputStream(file)
+                    : PriceCategory.class.getResourceAsStream("/data/pricecategories.csv")) {
+                if (in == null) {
+                    return Collections.emptyList();
+                }
+                try (Reader csv = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                    return TablePriceCategory.read(csv);
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                // the built-in categories are still available.
+                log.error("Cannot read price categories from " + (file != null ? file : "class path"), e);
+                return Collections.emptyList();
+            }
+        }
     }
 }
@@ -0,0 +1,82 @@
+package ch.fhnw.swc.mrs.model;
+
+import java.util.Arrays;
+
+/**
+ * The charges and frequent renter points of a price category by the number of days a movie is rented. A rental
+ * costs a base charge for the first days and a daily rate for every further day, up to a cap. The points are given
+ * by a table, its last entry holds for all longer rentals.
+ * <p>
+ * Both are computed once for rentals of up to {@value #DAYS} days, longer rentals are computed on each call.
+ */
+final class PricingTable {
+
+    /** Number of days for which charges and points are looked up rather than computed. */
+    static final int DAYS = 366;
+
+    private final double baseCharge;
+    private final int baseDays;
+    private final double dailyRate;
+    private final double maxCharge;
+    private final int[] points;
+    /** The charge of a rental by its number of days, up to {@link #DAYS}. */
+    private final double[] charges;
+    /** The points of a rental by its number of days, up to {@link #DAYS}. */
+    private final int[] pointsByDays;
+
+    /**
+     * @param baseCharge the charge for the first baseDays days of a rental.
+     * @param baseDays the number of days covered by the base charge.
+     * @param dailyRate the charge for each further day.
+     * @param maxCharge the largest charge of a rental, 0 for no cap.
+     * @param points the frequent renter points for a rental of one, two, ... days; the last entry holds for all
+     *            longer rentals.
+     * @throws IllegalArgumentException if a value is negative or no points are given.
+     */
+    PricingTable(double baseCharge, int baseDays, double dailyRate, double maxCharge, int... points) {
+        if (baseCharge < 0 || baseDays < 0 || dailyRate < 0 || maxCharge < 0) {
+            throw new IllegalArgumentException("charges and days must not be negative");
+        }
+        if (points == null || points.length == 0 || Arrays.stream(points).anyMatch(p -> p < 0)) {
+            throw new IllegalArgumentException("points must be given and must not be negative");
+        }
+        this.baseCharge = baseCharge;
+        this.baseDays = baseDays;
+        this.dailyRate = dailyRate;
+        this.maxCharge = maxCharge;
+        this.points = points.clone();
+        charges = new double[DAYS + 1];
+        pointsByDays = new int[DAYS + 1];
+        for (int days = 1; days <= DAYS; days++) {
+            charges[days] = computeCharge(days);
+            pointsByDays[days] = this.points[Math.min(days, this.points.length) - 1];
+        }
+    }
+
+    /**
+     * @param daysRented no of days that a movie is rented.
+     * @return rental price for movie, 0 if it has not been rented for a day.
+     */
+    double getCharge(int daysRented) {
+        if (daysRented <= 0) {
+            return 0;
+        }
+        return daysRented <= DAYS ? charges[daysRented] : computeCharge(daysRented);
+    }
+
+    /**
+     * @param daysRented no of days that a movie is rented.
+     * @return frequent renter points earned, 0 if it has not been rented for a day.
+     */
+    int getPoints(int daysRented) {
+        if (daysRented <= 0) {
+            return 0;
+        }
+        return daysRented <= DAYS ? pointsByDays[daysRented] : points[points.length - 1];
+    }
+
+    private double computeCharge(int days) {
+        double result = days > baseDays ? baseCharge + (days - baseDays) * dailyRate : baseCharge;
+        return maxCharge > 0 && result > maxCharge ? maxCharge : result;
+    }
+}
@@ -15,14 +15,12 @@ public final class RegularPriceCategory extends PriceCategory {
      */
     @Override
     public double getCharge(int daysRented) {
-        double result = 0;
-        if (daysRented > 0) {
-            result = 2;
-        }
-        if (daysRented > 2) {
-            result = 2 + (daysRented - 2) * 1.5;
-        }
-        return result;
+        return TABLE.getCharge(daysRented);
+    }
+
+    @Override
+    public int getFrequentRenterPoints(int daysRented) {
+        return TABLE.getPoints(daysRented);
     }
 
     @Override
@@ -30,6 +28,9 @@ public final class RegularPriceCategory extends PriceCategory {
         return "Regular";
     }
 
+    /** charges and points by the number of days. */
+    private static final PricingTable TABLE = new PricingTable(2, 2, 1.5, 0, 1);
+
     /** singleton instance. */
     private static RegularPriceCategory singleton = new RegularPriceCategory();
 
@@ -40,11 +41,6 @@ public final class RegularPriceCategory extends PriceCategory {
 
     };
 
-    static {
-		// register itself to the PriceCategory
-		registerPriceCategory(RegularPriceCategory.getInstance());
-    }
-    
     /**
      * Access singleton instance.
      * 
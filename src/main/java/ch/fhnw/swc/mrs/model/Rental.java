@@ -60,10 +60,34 @@ public class Rental {
         }
 
         rentals.add(this);
-        aMovie.setRented(true);
+        aMovie.rentCopy();
         setRentalDate(aRentalDate);
     }
 
+    private Rental() {
+    }
+
+    /**
+     * Re-create a rental that has been stored. The rules checked when renting are not checked again, they held when
+     * the rental was created; the copies of the movie are not changed.
+     * 
+     * @param anId the identifier of the rental.
+     * @param aUser User who has rented aMovie, the rental is added to the rentals of the user.
+     * @param aMovie Movie that is rented.
+     * @param aRentalDate date of start of this rental.
+     * @return the rental, ready for use.
+     * @throws NullPointerException if the user is <code>null</code>.
+     */
+    public static Rental restore(UUID anId, User aUser, Movie aMovie, LocalDate aRentalDate) {
+        Rental r = new Rental();
+        r.setUser(aUser);
+        r.setMovie(aMovie);
+        r.rentalDate = aRentalDate;
+        r.setId(anId);
+        aUser.addRental(r);
+        return r;
+    }
+
     /**
      * @return the unique rental identifier.
      */
@@ -96,14 +120,32 @@ public class Rental {
      * @return the number of days this movie is rented to the user.
      */
     public int getRentalDays() {
-        return (int) ChronoUnit.DAYS.between(rentalDate, LocalDate.now());
+        return getRentalDays(BusinessDate.today());
+    }
+
+    /**
+     * Calculate the duration of this rental if it ends at a given day.
+     * 
+     * @param returnDate the day the movie is returned.
+     * @return the number of days this movie is rented to the user until then.
+     */
+    public int getRentalDays(LocalDate returnDate) {
+        return (int) ChronoUnit.DAYS.between(rentalDate, returnDate);
     }
 
     /**
      * @return The rental fee to pay for this rental.
      */
     public double getRentalFee() {
-        return getMovie().getPriceCategory().getCharge(getRentalDays());
+        return getRentalFee(BusinessDate.today());
+    }
+
+    /**
+     * @param returnDate the day the movie is returned.
+     * @return The rental fee to pay for this rental if it ends at the given day.
+     */
+    public double getRentalFee(LocalDate returnDate) {
+        return getMovie().getPriceCategory().getCharge(getRentalDays(returnDate));
     }
 
     /**
@@ -153,7 +195,7 @@ public class Rental {
      * @param aRentalDate the date of the rental.
      */
     protected void setRentalDate(LocalDate aRentalDate) {
-        if (aRentalDate == null || aRentalDate.isAfter(LocalDate.now())) {
+        if (aRentalDate == null || aRentalDate.isAfter(BusinessDate.today())) {
             throw new IllegalArgumentException(EXC_RENTAL_DATE_IN_FUTURE);
         }
         rentalDate = aRentalDate;
@@ -187,7 +229,7 @@ public class Rental {
      * @return whether the user is old enough to see the movie.
      */
     private static boolean isUserOfAge(Movie m, User u) {
-		LocalDate today = LocalDate.now();
+		LocalDate today = BusinessDate.today();
 		LocalDate birthdate = u.getBirthdate();
 		int ageRating = m.getAgeRating();
 		
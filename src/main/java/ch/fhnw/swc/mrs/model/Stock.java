@@ -1,99 +1,217 @@
 package ch.fhnw.swc.mrs.model;
 
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 import ch.fhnw.swc.mrs.api.MovieRentalException;
 
 /**
- * Manages the stock of videos of the rental shop.
+ * Manages the stock of videos of the rental shop. It is safe to be used by many threads concurrently: the number of
+ * copies of each movie is an atomic counter, keyed by the id of the movie, that never drops below 0.
+ * <p>
+ * {@link LowStockListener Listeners} are notified on an executor, so a slow listener does not hold up the thread
+ * that removes a copy. While the notification of a movie is pending, further removals of that movie only update the
+ * count it is going to report: a burst of removals results in a single notification with the latest count.
  */
 public class Stock {
 
-	/** The stock of videos. */
-	private HashMap<String, Integer> stock = new HashMap<String, Integer>();
+	private static Logger log = LogManager.getLogger(Stock.class);
+
+	/** The stock of videos, by the id of the movie. */
+	private final ConcurrentMap<UUID, AtomicInteger> stock = new ConcurrentHashMap<>();
+
+	/** low stock listeners, iterated without locking. */
+	private final CopyOnWriteArrayList<LowStockListener> listeners = new CopyOnWriteArrayList<>();
 
-	/** low stock listeners. */
-	private List<LowStockListener> listeners = new LinkedList<LowStockListener>();
+	/** The notifications not yet delivered, by the id of the movie. */
+	private final ConcurrentMap<UUID, LowStock> pending = new ConcurrentHashMap<>();
+
+	/** Delivers the notifications. */
+	private final Executor notifier;
+
+	/**
+	 * Create an empty stock whose listeners are notified on a thread shared by all stocks.
+	 */
+	public Stock() {
+		this(Notifier.EXECUTOR);
+	}
+
+	/**
+	 * Create an empty stock.
+	 *
+	 * @param notifier
+	 *            notifies the listeners, e.g. <code>Runnable::run</code> to notify them on the thread that
+	 *            removes a copy.
+	 */
+	public Stock(Executor notifier) {
+		if (notifier == null) {
+			throw new IllegalArgumentException("notifier must not be null");
+		}
+		this.notifier = notifier;
+	}
 
 	/**
 	 * Add a movie to the stock.
-	 * 
+	 *
 	 * @param movie
 	 *            the movie to add to the stock.
 	 * @return the number of items of this movie in stock after this operation.
 	 * @throws NullPointerException
 	 *             if the argument is <code>null</code>
+	 * @throws IllegalStateException
+	 *             if the movie has no id.
 	 */
 	public int addToStock(Movie movie) {
-		Integer i = stock.get(movie.getTitle());
-		int inStock = (i == null) ? 0 : i;
-		stock.put(movie.getTitle(), ++inStock);
-		return inStock;
+		return addToStock(movie, 1);
+	}
+
+	/**
+	 * Add copies of a movie to the stock.
+	 *
+	 * @param movie
+	 *            the movie to add to the stock.
+	 * @param copies
+	 *            the number of copies to add, 0 to only register the movie.
+	 * @return the number of items of this movie in stock after this operation.
+	 * @throws IllegalArgumentException
+	 *             if the number of copies is negative.
+	 */
+	public int addToStock(Movie movie, int copies) {
+		if (copies < 0) {
+			throw new IllegalArgumentException("number of copies must not be negative");
+		}
+		return stock.computeIfAbsent(movie.getId(), id -> new AtomicInteger()).addAndGet(copies);
 	}
 
 	/**
 	 * Removes a movie from the stock.
-	 * 
+	 *
 	 * @param movie
 	 *            the movie to remove from the stock.
 	 * @return the number of items of this movie in stock after this operation.
+	 * @throws MovieRentalException
+	 *             if there is no copy of the movie in stock.
 	 */
 	public int removeFromStock(Movie movie) {
-		String title = movie.getTitle();
-		Integer i = stock.get(title);
-		int inStock = (i == null) ? 0 : i;
-		if (inStock <= 0) {
-			throw new MovieRentalException("no video in stock");
+		return removeFromStock(movie, 1);
+	}
+
+	/**
+	 * Removes copies of a movie from the stock, either all of them or none.
+	 *
+	 * @param movie
+	 *            the movie to remove from the stock.
+	 * @param copies
+	 *            the number of copies to remove, at least 1.
+	 * @return the number of items of this movie in stock after this operation.
+	 * @throws MovieRentalException
+	 *             if there are fewer copies of the movie in stock.
+	 * @throws IllegalArgumentException
+	 *             if the number of copies is less than 1.
+	 */
+	public int removeFromStock(Movie movie, int copies) {
+		if (copies < 1) {
+			throw new IllegalArgumentException("number of copies must be at least 1");
 		}
-		stock.put(title, --inStock);
-		notifyListeners(movie, inStock);
-		return inStock;
+		AtomicInteger counter = stock.get(movie.getId());
+		int inStock;
+		do {
+			inStock = counter == null ? 0 : counter.get();
+			if (inStock < copies) {
+				throw new MovieRentalException("no video in stock");
+			}
+		} while (!counter.compareAndSet(inStock, inStock - copies));
+		notifyListeners(movie, inStock - copies);
+		return inStock - copies;
+	}
+
+	/**
+	 * Forget a movie, e.g. because it has been deleted. The listeners are not notified.
+	 *
+	 * @param movieId
+	 *            the id of the movie.
+	 * @return the number of copies of the movie that were in stock.
+	 */
+	public int removeAllFromStock(UUID movieId) {
+		AtomicInteger i = movieId == null ? null : stock.remove(movieId);
+		return (i == null) ? 0 : i.get();
 	}
 
 	/**
 	 * Notify all LowStockListeners with a threshold of c or below that movie m is
-	 * low in stock.
-	 * 
+	 * low in stock, unless a notification of m is pending already; then it reports c instead.
+	 *
 	 * @param m
 	 *            movie to notify
 	 * @param c
 	 *            threshold for notification
 	 */
 	private void notifyListeners(Movie m, int c) {
+		if (listeners.isEmpty()) {
+			return;
+		}
+		UUID id = m.getId();
+		if (pending.put(id, new LowStock(m, c)) == null) {
+			try {
+				notifier.execute(() -> deliver(id));
+			} catch (RejectedExecutionException e) {
+				// the notifier has been shut down, notify on this thread rather than not at all.
+				deliver(id);
+			}
+		}
+	}
+
+	private void deliver(UUID id) {
+		LowStock event = pending.remove(id);
+		if (event == null) {
+			return;
+		}
 		for (LowStockListener l : listeners) {
-			if (l.getThreshold() >= c) {
-				l.stockLow(m, c);
+			try {
+				if (l.getThreshold() >= event.count) {
+					l.stockLow(event.movie, event.count);
+				}
+			} catch (RuntimeException e) {
+				log.error("Low stock listener failed", e);
 			}
 		}
 	}
 
 	/**
-	 * @param title
-	 *            the movie title to get the stock count.
+	 * @param movieId
+	 *            the id of the movie to get the stock count.
 	 * @return the number copies of the movie still in stock.
 	 */
-	public int getInStock(String title) {
-		Integer i = stock.get(title);
-		return (i == null) ? 0 : i;
+	public int getInStock(UUID movieId) {
+		AtomicInteger i = movieId == null ? null : stock.get(movieId);
+		return (i == null) ? 0 : i.get();
 	}
 
 	/**
 	 * Add a stock listener.
-	 * 
+	 *
 	 * @param l
 	 *            listener
 	 */
 	public void addLowStockListener(LowStockListener l) {
-		if (l != null && !listeners.contains(l)) {
-			listeners.add(l);
+		if (l != null) {
+			listeners.addIfAbsent(l);
 		}
 	}
 
 	/**
-	 * Remove a stock listener.
-	 * 
+	 * Remove a stock listener. A notification that is being delivered may still reach it.
+	 *
 	 * @param l
 	 *            listener
 	 */
@@ -101,4 +219,23 @@ public class Stock {
 		listeners.remove(l);
 	}
 
+	/** A pending notification. */
+	private static final class LowStock {
+		private final Movie movie;
+		private final int count;
+
+		LowStock(Movie movie, int count) {
+			this.movie = movie;
+			this.count = count;
+		}
+	}
+
+	/** Holds the default notifier, created when the first stock uses it. */
+	private static final class Notifier {
+		private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+			Thread t = new Thread(r, "mrs-stock-events");
+			t.setDaemon(true);
+			return t;
+		});
+	}
 }
@@ -0,0 +1,93 @@
+package ch.fhnw.swc.mrs.model;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+
+/**
+ * A price category defined by data rather than by a class of its own, see {@link PricingTable}. Such categories are
+ * read from the file <code>/data/pricecategories.csv</code>, see {@link PriceCategory}, one per line:
+ *
+ * <pre>
+ * Id,BaseCharge,BaseDays,DailyRate,MaxCharge,Points
+ * Classic,2,3,1,10,1;2
+ * </pre>
+ *
+ * A rental of a Classic costs 2 for up to three days, 1 for every further day and at most 10. It earns one frequent
+ * renter point if it lasts a day, two points if it lasts longer. Lines starting with # are ignored.
+ */
+public final class TablePriceCategory extends PriceCategory {
+
+    /** The columns of the file. */
+    enum Headers { Id, BaseCharge, BaseDays, DailyRate, MaxCharge, Points }
+
+    private final String id;
+    private final PricingTable table;
+
+    /**
+     * @param anId the name of the category, see {@link #toString()}. Must not be null nor empty.
+     * @param baseCharge the charge for the first baseDays days of a rental.
+     * @param baseDays the number of days covered by the base charge.
+     * @param dailyRate the charge for each further day.
+     * @param maxCharge the largest charge of a rental, 0 for no cap.
+     * @param points the frequent renter points for a rental of one, two, ... days; the last entry holds for all
+     *            longer rentals.
+     * @throws IllegalArgumentException if the name is missing, a value is negative or no points are given.
+     */
+    public TablePriceCategory(String anId, double baseCharge, int baseDays, double dailyRate, double maxCharge,
+            int... points) {
+        if (anId == null || anId.trim().isEmpty()) {
+            throw new IllegalArgumentException("the name of a price category must not be empty");
+        }
+        id = anId.trim();
+        table = new PricingTable(baseCharge, baseDays, dailyRate, maxCharge, points);
+    }
+
+    @Override
+    public double getCharge(int daysRented) {
+        return table.getCharge(daysRented);
+    }
+
+    @Override
+    public int getFrequentRenterPoints(int daysRented) {
+        return table.getPoints(daysRented);
+    }
+
+    @Override
+    public String toString() {
+        return id;
+    }
+
+    /**
+     * Read price categories in the format described above.
+     *
+     * @param csv the lines of the categories, preceded by the header line.
+     * @return the categories in the order of the lines.
+     * @throws IOException if the lines cannot be read.
+     * @throws IllegalArgumentException if a line is malformed.
+     */
+    public static List<TablePriceCategory> read(Reader csv) throws IOException {
+        List<TablePriceCategory> categories = new ArrayList<>();
+        for (CSVRecord r : CSVFormat.DEFAULT.withCommentMarker('#').withIgnoreSurroundingSpaces()
+                .withHeader(Headers.class).withSkipHeaderRecord().parse(csv)) {
+            try {
+                String[] points = r.get(Headers.Points).split(";");
+                int[] values = new int[points.length];
+                for (int i = 0; i < points.length; i++) {
+                    values[i] = Integer.parseInt(points[i].trim());
+                }
+                categories.add(new TablePriceCategory(r.get(Headers.Id), Double.parseDouble(r.get(Headers.BaseCharge)),
+                        Integer.parseInt(r.get(Headers.BaseDays)), Double.parseDouble(r.get(Headers.DailyRate)),
+                        Double.parseDouble(r.get(Headers.MaxCharge)), values));
+            } catch (IllegalArgumentException e) {
+                // NumberFormatException as well.
+                throw new IllegalArgumentException("line " + r.getRecordNumber() + ": " + e.getMessage(), e);
+            }
+        }
+        return categories;
+    }
+}
@@ -40,6 +40,8 @@ public class User {
     private String firstname = "Unnamed";
     /** The user's date of birth is used to check age ratings. */
     private LocalDate birthdate;
+    /** Incremented by the back-end whenever this user is changed. */
+    private long version;
 
     /**
      * A list of rentals of the user.
@@ -90,7 +92,7 @@ public class User {
      * @param aBirthdate must not be null or in the future.
      */
     private void checkBirthdate(LocalDate aBirthdate) {
-        LocalDate now = LocalDate.now();
+        LocalDate now = BusinessDate.today();
         if (now.isBefore(aBirthdate) || now.minusYears(120).isAfter(aBirthdate)) {
             throw new IllegalArgumentException(ILLEGAL_BIRTHDATE);
         }
@@ -201,17 +203,27 @@ public class User {
         birthdate = aBirthdate;
     }
 
+    /**
+     * @return the number of changes to this user since it has been stored, used to detect concurrent updates.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @param aVersion the number of changes to this user, only set by the back-end.
+     */
+    public void setVersion(long aVersion) {
+        version = aVersion;
+    }
+
     /**
      * Calculate the total charge the user has to pay for all his/her rentals.
      * 
      * @return the total charge.
      */
     public double getCharge() {
-        double result = 0.0d;
-        for (Rental rental : rentals) {
-            result += rental.getMovie().getPriceCategory().getCharge(rental.getRentalDays());
-        }
-        return result;
+        return Account.of(id, BusinessDate.today(), rentals).getCharge() / 100.0d;
     }
 
     @Override
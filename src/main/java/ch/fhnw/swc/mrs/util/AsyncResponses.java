@@ -0,0 +1,67 @@
+package ch.fhnw.swc.mrs.util;
+
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletRequest;
+
+import spark.Request;
+import spark.Response;
+
+/**
+ * Lets a Spark route answer after it has returned, e.g. when the backend has completed a future. The request is
+ * switched to the asynchronous mode of the servlet API, so the thread that has called the route is free to handle
+ * other requests meanwhile. Only the servers set up by {@link ServerConfiguration#apply(java.util.Properties)}
+ * support this.
+ * <p>
+ * A route calls {@link #defer(Request, Response)} and returns; whatever it returns is ignored. Later on, it
+ * {@link #dispatch(Response, Runnable) dispatches} its answer, which calls {@link #resume(Response)}, writes the
+ * response and completes the {@link AsyncContext}.
+ */
+public final class AsyncResponses {
+
+	/**
+	 * Defer the response of a request.
+	 * @param request the request to answer later.
+	 * @param response its response.
+	 * @return the context to complete once the response is written, <code>null</code> if the server does not
+	 *         support deferred responses; then the route has to answer before it returns.
+	 */
+	public static AsyncContext defer(Request request, Response response) {
+		if (!(response.raw() instanceof DeferrableResponse)) {
+			return null;
+		}
+		HttpServletRequest raw = request.raw();
+		// on virtual threads the request is asynchronous already.
+		AsyncContext context = raw.isAsyncStarted() ? raw.getAsyncContext() : raw.startAsync();
+		// the backend has a deadline of its own.
+		context.setTimeout(0);
+		((DeferrableResponse) response.raw()).defer();
+		return context;
+	}
+
+	/**
+	 * Run the answer to a deferred request on a thread of the server, like {@link AsyncContext#start(Runnable)}
+	 * would in a servlet container. Runs it on the calling thread if the server is too busy.
+	 * @param response the response deferred by {@link #defer(Request, Response)}.
+	 * @param answer writes the response.
+	 */
+	public static void dispatch(Response response, Runnable answer) {
+		try {
+			((DeferrableResponse) response.raw()).getExecutor().execute(answer);
+		} catch (RejectedExecutionException e) {
+			answer.run();
+		}
+	}
+
+	/**
+	 * Allow a deferred response to be written.
+	 * @param response the response deferred by {@link #defer(Request, Response)}.
+	 */
+	public static void resume(Response response) {
+		((DeferrableResponse) response.raw()).resume();
+	}
+
+	// prevent instantiation
+	private AsyncResponses() { }
+}
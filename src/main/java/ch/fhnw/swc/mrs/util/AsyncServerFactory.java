@@ -0,0 +1,102 @@
+package ch.fhnw.swc.mrs.util;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.DispatcherType;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+import spark.embeddedserver.jetty.JettyServerFactory;
+
+/**
+ * Creates Jetty servers on which routes may answer asynchronously, see {@link AsyncResponses}. Optionally each
+ * request is handled on a thread of an executor, see {@link ServerConfiguration#VIRTUAL_THREADS}: the request is
+ * switched to asynchronous mode, so the worker that has parsed it is free again at once; the response is completed
+ * when Spark has handled the request on the executor.
+ */
+final class AsyncServerFactory implements JettyServerFactory {
+
+	private static Logger log = LogManager.getLogger(AsyncServerFactory.class);
+
+	private final ExecutorService executor;
+
+	/**
+	 * @param executor runs the requests, usually one virtual thread per request; <code>null</code> to run them on
+	 *            the workers of Jetty.
+	 */
+	AsyncServerFactory(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	@Override
+	public Server create(int maxThreads, int minThreads, int threadTimeoutMillis) {
+		return create(new QueuedThreadPool(maxThreads > 0 ? maxThreads : 200, minThreads > 0 ? minThreads : 8,
+				threadTimeoutMillis > 0 ? threadTimeoutMillis : 60000));
+	}
+
+	@Override
+	public Server create(ThreadPool threadPool) {
+		return new Server(threadPool) {
+			@Override
+			public void setHandler(Handler handler) {
+				super.setHandler(new Dispatcher(handler, executor != null ? executor : threadPool));
+			}
+		};
+	}
+
+	/**
+	 * Passes a {@link DeferrableResponse} to Spark and hands the requests over to the executor, if any.
+	 */
+	private final class Dispatcher extends HandlerWrapper {
+
+		/** Runs the deferred answers, see {@link AsyncResponses#dispatch(spark.Response, Runnable)}. */
+		private final Executor answers;
+
+		Dispatcher(Handler handler, Executor answers) {
+			setHandler(handler);
+			this.answers = answers;
+		}
+
+		@Override
+		public void handle(String target, Request baseRequest, HttpServletRequest request,
+				HttpServletResponse response) throws IOException, ServletException {
+			DeferrableResponse deferrable = new DeferrableResponse(response, answers);
+			if (executor == null || request.getDispatcherType() != DispatcherType.REQUEST) {
+				super.handle(target, baseRequest, request, deferrable);
+				return;
+			}
+			AsyncContext async = request.startAsync();
+			// the idle timeout of the connection still applies, handling the request may take as long as it needs.
+			async.setTimeout(0);
+			baseRequest.setHandled(true);
+			executor.execute(() -> {
+				try {
+					Dispatcher.super.handle(target, baseRequest, request, deferrable);
+				} catch (IOException | ServletException | RuntimeException e) {
+					log.error("Cannot handle the request for " + target, e);
+					if (!response.isCommitted()) {
+						response.setStatus(StatusCodes.INTERNAL_SERVER_ERROR);
+					}
+				} finally {
+					// a deferred response is completed by the route.
+					if (!deferrable.isDeferred()) {
+						async.complete();
+					}
+				}
+			});
+		}
+	}
+}
@@ -0,0 +1,230 @@
+package ch.fhnw.swc.mrs.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.http.HttpServletResponse;
+
+import spark.Request;
+import spark.Response;
+
+/**
+ * Negotiates the content coding of a response with the <code>Accept-Encoding</code> header of the request and
+ * compresses the body while it is written. gzip and deflate are supported; bodies smaller than the minimum size
+ * are sent as they are, because compressing them costs more than it saves. The minimum size defaults to
+ * {@value #DEFAULT_MIN_SIZE} bytes and is configured with the system property <code>mrs.compression.minSize</code>.
+ */
+public final class Compression {
+
+	/** The gzip content coding. */
+	public static final String GZIP = "gzip";
+	/** The deflate content coding, a zlib stream. */
+	public static final String DEFLATE = "deflate";
+	/** Smallest body that is compressed unless configured otherwise. */
+	public static final int DEFAULT_MIN_SIZE = 1024;
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private static volatile int minSize = Integer.getInteger("mrs.compression.minSize", DEFAULT_MIN_SIZE);
+
+	/**
+	 * @return the smallest body in bytes that is compressed.
+	 */
+	public static int getMinSize() {
+		return minSize;
+	}
+
+	/**
+	 * @param size the smallest body in bytes that shall be compressed.
+	 */
+	public static void setMinSize(int size) {
+		minSize = size;
+	}
+
+	/**
+	 * Choose the content coding of a response. The coding with the highest quality value is chosen, gzip is
+	 * preferred over deflate if both are equally acceptable.
+	 * @param acceptEncoding the <code>Accept-Encoding</code> header of the request, may be <code>null</code>.
+	 * @return {@link #GZIP}, {@link #DEFLATE} or <code>null</code> if the body shall not be compressed.
+	 */
+	public static String negotiate(String acceptEncoding) {
+		if (acceptEncoding == null) {
+			return null;
+		}
+		Double gzip = null;
+		Double deflate = null;
+		Double any = null;
+		for (String element : acceptEncoding.split(",")) {
+			String[] params = element.split(";");
+			double q = 1.0;
+			for (int i = 1; i < params.length; i++) {
+				String param = params[i].trim();
+				if (param.startsWith("q=")) {
+					try {
+						q = Double.parseDouble(param.substring(2));
+					} catch (NumberFormatException e) {
+						q = 0.0;
+					}
+				}
+			}
+			switch (params[0].trim().toLowerCase(Locale.ROOT)) {
+			case "gzip":
+			case "x-gzip":
+				gzip = q;
+				break;
+			case DEFLATE:
+				deflate = q;
+				break;
+			case "*":
+				any = q;
+				break;
+			default:
+				break;
+			}
+		}
+		double qGzip = gzip != null ? gzip : any != null ? any : 0.0;
+		double qDeflate = deflate != null ? deflate : any != null ? any : 0.0;
+		if (qGzip > 0 && qGzip >= qDeflate) {
+			return GZIP;
+		}
+		return qDeflate > 0 ? DEFLATE : null;
+	}
+
+	/**
+	 * Determine whether compressing a content type pays off. Images and archives are compressed already.
+	 * @param contentType the content type of a response, may be <code>null</code>.
+	 * @return whether a body of this type shall be compressed.
+	 */
+	public static boolean isCompressible(String contentType) {
+		if (contentType == null) {
+			return true;
+		}
+		String type = contentType.toLowerCase(Locale.ROOT);
+		return type.startsWith("text/") || type.startsWith("application/json") || type.contains("+json")
+				|| type.contains("xml") || type.startsWith("application/javascript")
+				|| type.startsWith("image/svg");
+	}
+
+	/**
+	 * Wrap a stream with an encoder.
+	 * @param coding {@link #GZIP}, {@link #DEFLATE} or <code>null</code> for no compression.
+	 * @param out receives the encoded bytes.
+	 * @return a stream that encodes everything written to it.
+	 * @throws IOException if the encoder cannot write its header.
+	 */
+	public static OutputStream encode(String coding, OutputStream out) throws IOException {
+		if (GZIP.equals(coding)) {
+			return new GZIPOutputStream(out, BUFFER_SIZE);
+		} else if (DEFLATE.equals(coding)) {
+			return new DeflaterOutputStream(out, new Deflater(), BUFFER_SIZE, false) {
+				@Override
+				public void close() throws IOException {
+					super.close();
+					// the deflater was passed in, so the stream does not release it.
+					def.end();
+				}
+			};
+		}
+		return out;
+	}
+
+	/**
+	 * Open the body of a response. The content type must be set before.
+	 * @param request the request, its <code>Accept-Encoding</code> header is honored.
+	 * @param response the response to write.
+	 * @return the stream to write the body to, close it when the body is complete.
+	 * @throws IOException if the body cannot be opened.
+	 */
+	public static OutputStream compress(Request request, Response response) throws IOException {
+		return compress(request.headers("Accept-Encoding"), response.raw());
+	}
+
+	/**
+	 * Open the body of a response, see {@link #compress(Request, Response)}.
+	 * @param acceptEncoding the <code>Accept-Encoding</code> header of the request, may be <code>null</code>.
+	 * @param response the response to write.
+	 * @return the stream to write the body to, close it when the body is complete.
+	 * @throws IOException if the body cannot be opened.
+	 */
+	static OutputStream compress(String acceptEncoding, HttpServletResponse response) throws IOException {
+		if (!isCompressible(response.getContentType())) {
+			return response.getOutputStream();
+		}
+		// caches must not serve a compressed body to a client that did not ask for it.
+		response.addHeader("Vary", "Accept-Encoding");
+		String coding = negotiate(acceptEncoding);
+		return coding == null ? response.getOutputStream() : new ThresholdOutputStream(response, coding, minSize);
+	}
+
+	/**
+	 * Buffers the body until it reaches the minimum size. Small bodies are sent as they are, larger ones are
+	 * compressed from there on, so a long body is never held in memory.
+	 */
+	private static final class ThresholdOutputStream extends OutputStream {
+		private final HttpServletResponse response;
+		private final String coding;
+		private final int threshold;
+		private ByteArrayOutputStream buffer;
+		/** Receives the body once the coding is decided, <code>null</code> while buffering. */
+		private OutputStream out;
+
+		ThresholdOutputStream(HttpServletResponse response, String coding, int threshold) {
+			this.response = response;
+			this.coding = coding;
+			this.threshold = threshold;
+			buffer = new ByteArrayOutputStream(Math.min(threshold, BUFFER_SIZE));
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] {(byte) b}, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (out == null) {
+				if (buffer.size() + len < threshold) {
+					buffer.write(b, off, len);
+					return;
+				}
+				open(true);
+			}
+			out.write(b, off, len);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			// while buffering, flushing would commit the response before the coding is known.
+			if (out != null) {
+				out.flush();
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (out == null) {
+				open(false);
+			}
+			out.close();
+		}
+
+		private void open(boolean compressed) throws IOException {
+			if (compressed) {
+				response.setHeader("Content-Encoding", coding);
+				out = encode(coding, response.getOutputStream());
+			} else {
+				out = response.getOutputStream();
+			}
+			buffer.writeTo(out);
+			buffer = null;
+		}
+	}
+
+	// prevent instantiation
+	private Compression() { }
+}
@@ -0,0 +1,60 @@
+package ch.fhnw.swc.mrs.util;
+
+import java.util.concurrent.Executor;
+
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * The response Spark writes to on an {@link AsyncServerFactory} server. Spark writes the value returned by a route
+ * and closes the response unless it is committed; a deferred response pretends to be committed until the route
+ * resumes it to write its answer.
+ */
+final class DeferrableResponse extends HttpServletResponseWrapper {
+
+	private final Executor executor;
+	private volatile boolean deferred;
+	private volatile boolean resumed;
+
+	/**
+	 * @param response the response of the server.
+	 * @param executor runs the requests of the server.
+	 */
+	DeferrableResponse(HttpServletResponse response, Executor executor) {
+		super(response);
+		this.executor = executor;
+	}
+
+	/**
+	 * Keep Spark from writing the response when the route returns.
+	 */
+	void defer() {
+		deferred = true;
+	}
+
+	/**
+	 * Allow the response to be written, the route answers now.
+	 */
+	void resume() {
+		resumed = true;
+	}
+
+	/**
+	 * @return runs the requests of the server.
+	 */
+	Executor getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * @return whether a route has deferred the response, it completes the response then.
+	 */
+	boolean isDeferred() {
+		return deferred;
+	}
+
+	@Override
+	public boolean isCommitted() {
+		return deferred && !resumed || super.isCommitted();
+	}
+}
@@ -1,5 +1,8 @@
 package ch.fhnw.swc.mrs.util;
 
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
 import spark.Request;
 import spark.Response;
 
@@ -19,11 +22,27 @@ public final class Filters {
     };
 
     /**
-     * Enable GZIP for all responses.
+     * Responses contain JSON unless a route says otherwise.
      */
-    static Filter addGzipHeader = (Request request, Response response) -> {
-    	response.header("Content-Type",	"application/json");
-        response.header("Content-Encoding", "gzip");
+    static Filter addJsonContentType = (Request request, Response response) -> {
+        if (response.type() == null) {
+            response.type("application/json");
+        }
+    };
+
+    /**
+     * Write the body compressed with the content coding negotiated by {@link Compression}. Routes that stream
+     * their body compress it themselves, their response is committed already. Static files under /public are
+     * served before any filter runs, so images are never compressed a second time.
+     */
+    static Filter compressBody = (Request request, Response response) -> {
+        String body = response.body();
+        if (body != null && !response.raw().isCommitted()) {
+            // Spark does not write the body of a committed response again.
+            try (OutputStream out = Compression.compress(request, response)) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
     };
     
     /**
@@ -37,7 +56,8 @@ public final class Filters {
      * Set up after-filters (called after each get/post)
      */
     public static void afterGetPost() {
-    	after("*", Filters.addGzipHeader);
+    	after("*", Filters.addJsonContentType);
+    	after("*", Filters.compressBody);
     }
     
     private Filters() { }
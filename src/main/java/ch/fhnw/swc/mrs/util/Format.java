@@ -0,0 +1,60 @@
+package ch.fhnw.swc.mrs.util;
+
+import java.util.Locale;
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * The representations of movies and users the REST API speaks. The binary formats carry the same data model as
+ * JSON, so the serializers and decoders of {@link JsonUtil} write and read all of them; they only save the
+ * encoding and parsing of text, which matters to services calling the API many times a second.
+ */
+public enum Format {
+
+	/** JSON text, the default. */
+	JSON("application/json", JsonFactory::new),
+	/** Smile, Jackson's binary JSON. */
+	SMILE("application/x-jackson-smile", SmileFactory::new),
+	/** CBOR, RFC 7049. */
+	CBOR("application/cbor", CBORFactory::new);
+
+	private final String mediaType;
+	private final Supplier<JsonFactory> factory;
+
+	Format(String mediaType, Supplier<JsonFactory> factory) {
+		this.mediaType = mediaType;
+		this.factory = factory;
+	}
+
+	/**
+	 * @return the media type of the format, without parameters.
+	 */
+	public String getMediaType() {
+		return mediaType;
+	}
+
+	/**
+	 * @return a new factory of generators and parsers of the format.
+	 */
+	JsonFactory createFactory() {
+		return factory.get();
+	}
+
+	/**
+	 * Look up the format of a body.
+	 * @param contentType a <code>Content-Type</code> header, parameters such as the charset are ignored.
+	 * @return the format or <code>null</code> if the media type is not supported.
+	 */
+	public static Format fromContentType(String contentType) {
+		String type = contentType.split(";", 2)[0].trim().toLowerCase(Locale.ROOT);
+		for (Format format : values()) {
+			if (format.mediaType.equals(type)) {
+				return format;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,96 @@
+package ch.fhnw.swc.mrs.util;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Keeps the rendered JSON of entities, so an entity that has not changed is not serialized again. An entry is
+ * valid as long as the entity has the version it was rendered from; the back-ends increment the version on every
+ * change, so updates and rentals invalidate an entry without being told about the cache. Entities that are
+ * changed in place without passing them to the back-end are not noticed.
+ * <p>
+ * The cache holds at most {@value #DEFAULT_MAX_ENTRIES} entities unless configured otherwise with the system
+ * property <code>mrs.jsonCache.maxEntries</code>. Once it is full, further entities are rendered on every request
+ * rather than evicting others.
+ *
+ * @param <T> the type of the entities.
+ */
+public final class JsonCache<T> {
+
+	/** Number of entities cached unless configured otherwise. */
+	public static final int DEFAULT_MAX_ENTRIES = 100_000;
+
+	private final Map<UUID, Entry> entries = new ConcurrentHashMap<>();
+	private final Function<T, UUID> id;
+	private final ToLongFunction<T> version;
+	private final int maxEntries;
+
+	/**
+	 * Create a cache of the configured size.
+	 * @param id extracts the id of an entity.
+	 * @param version extracts the version of an entity.
+	 */
+	public JsonCache(Function<T, UUID> id, ToLongFunction<T> version) {
+		this(id, version, Integer.getInteger("mrs.jsonCache.maxEntries", DEFAULT_MAX_ENTRIES));
+	}
+
+	/**
+	 * @param id extracts the id of an entity.
+	 * @param version extracts the version of an entity.
+	 * @param maxEntries the maximum number of entities cached.
+	 */
+	public JsonCache(Function<T, UUID> id, ToLongFunction<T> version, int maxEntries) {
+		this.id = id;
+		this.version = version;
+		this.maxEntries = maxEntries;
+	}
+
+	/**
+	 * Get the JSON of an entity, render it if it is not cached in its current version. The returned array is
+	 * shared, it must not be modified.
+	 * @param entity the entity to convert.
+	 * @return the UTF-8 encoded JSON object.
+	 */
+	public byte[] get(T entity) {
+		UUID key = id.apply(entity);
+		long current = version.applyAsLong(entity);
+		Entry entry = entries.get(key);
+		if (entry != null && entry.version == current) {
+			return entry.json;
+		}
+		byte[] json = JsonUtil.dataToJsonBytes(entity);
+		if (entry != null || entries.size() < maxEntries) {
+			// a thread that has read the entity before a change must not replace the newer rendering.
+			entries.merge(key, new Entry(current, json), (old, fresh) -> fresh.version >= old.version ? fresh : old);
+		}
+		return json;
+	}
+
+	/**
+	 * Drop the JSON of an entity, e.g. because it has been deleted.
+	 * @param key the id of the entity.
+	 */
+	public void invalidate(UUID key) {
+		entries.remove(key);
+	}
+
+	/**
+	 * @return the number of entities cached.
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	private static final class Entry {
+		private final long version;
+		private final byte[] json;
+
+		Entry(long version, byte[] json) {
+			this.version = version;
+			this.json = json;
+		}
+	}
+}
@@ -1,29 +1,57 @@
 package ch.fhnw.swc.mrs.util;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.function.Function;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.databind.ser.std.StdSerializer;
 
+import ch.fhnw.swc.mrs.api.RentalRequest;
+import ch.fhnw.swc.mrs.model.BusinessDate;
 import ch.fhnw.swc.mrs.model.Movie;
+import ch.fhnw.swc.mrs.model.PriceCategory;
 import ch.fhnw.swc.mrs.model.User;
 
 public final class JsonUtil {
 	
-	private static ObjectMapper mapper = new ObjectMapper();
+	/** One mapper per {@link Format}, they share the registered serializers. */
+	private static Map<Format, ObjectMapper> mappers = new EnumMap<>(Format.class);
+	static {
+		for (Format format : Format.values()) {
+			mappers.put(format, new ObjectMapper(format.createFactory()));
+		}
+	}
+	private static ObjectMapper mapper = mappers.get(Format.JSON);
 	
 	/**
-	 * Register a serializer with the mapper.
+	 * Register a serializer with the mappers of all formats.
 	 * @param serializer the custom serializer.
 	 */
 	public static void registerSerializer(StdSerializer<?> serializer) {
 		SimpleModule module = new SimpleModule();
 		module.addSerializer(serializer);
-		mapper.registerModule(module);
+		for (ObjectMapper m : mappers.values()) {
+			m.registerModule(module);
+		}
 	}
 	
 	/**
@@ -40,36 +68,389 @@ public final class JsonUtil {
     }
     
     /**
-     * Convert JSON to Movie object.
+     * Convert DTO to UTF-8 encoded JSON.
+     * @param data the dto.
+     * @return the JSON bytes.
+     */
+    public static byte[] dataToJsonBytes(Object data) {
+    	return dataToBytes(data, Format.JSON);
+    }
+    
+    /**
+     * Convert DTO to the given format.
+     * @param data the dto.
+     * @param format the format of the result.
+     * @return the encoded bytes.
+     */
+    public static byte[] dataToBytes(Object data, Format format) {
+    	try {
+			return mappers.get(format).writeValueAsBytes(data);
+		} catch (JsonProcessingException e) {
+			throw new RuntimeException("IOEXception while mapping object (" + data + ") to " + format, e);
+		}
+    }
+    
+    /**
+     * Write elements as a JSON array, one element after the other, without building the whole document in memory.
+     * @param elements the elements to convert.
+     * @param out receives the JSON array, it is closed when the array is complete.
+     * @throws IOException if writing fails.
+     */
+    public static void writeJsonArray(Iterator<?> elements, OutputStream out) throws IOException {
+    	writeArray(elements, Format.JSON, out);
+    }
+    
+    /**
+     * Write elements as an array in the given format, see {@link #writeJsonArray(Iterator, OutputStream)}.
+     * @param elements the elements to convert.
+     * @param format the format of the array.
+     * @param out receives the array, it is closed when the array is complete.
+     * @throws IOException if writing fails.
+     */
+    public static void writeArray(Iterator<?> elements, Format format, OutputStream out) throws IOException {
+    	ObjectMapper m = mappers.get(format);
+    	// flushing after each element would send every element in a separate chunk.
+    	ObjectWriter writer = m.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    	try (JsonGenerator gen = m.getFactory().createGenerator(out)) {
+    		gen.writeStartArray();
+    		while (elements.hasNext()) {
+    			writer.writeValue(gen, elements.next());
+    		}
+    		gen.writeEndArray();
+    	}
+    }
+    
+    /**
+     * Write elements that are rendered already as a JSON array, see {@link JsonCache}.
+     * @param elements the elements to write.
+     * @param render provides the UTF-8 encoded JSON of an element.
+     * @param out receives the JSON array, it is closed when the array is complete.
+     * @throws IOException if writing fails.
+     */
+    public static <T> void writeJsonArray(Iterator<T> elements, Function<? super T, byte[]> render,
+    		OutputStream out) throws IOException {
+    	// collect the small fragments, an encoder compresses each write separately.
+    	try (OutputStream buffer = new BufferedOutputStream(out, 8192)) {
+    		buffer.write('[');
+    		if (elements.hasNext()) {
+    			buffer.write(render.apply(elements.next()));
+    			while (elements.hasNext()) {
+    				buffer.write(',');
+    				buffer.write(render.apply(elements.next()));
+    			}
+    		}
+    		buffer.write(']');
+    	}
+    }
+    
+    /**
+     * Convert JSON to Movie object. The object is decoded in one pass over the tokens, unknown fields are ignored.
      * @param json the json object to parse.
-     * @return a Movie object created with the data from the json object.
-     * @throws IOException thrown upon parse problems.
+     * @return a Movie object created with the data from the json object, without id if the object has none.
+     * @throws IOException thrown upon parse problems or if a field is missing.
      */
     public static Movie jsonToMovie(String json) throws IOException {
-    	JsonNode node = mapper.readTree(json);
-    	String title = node.get("title").asText();
-    	String releaseDate = node.get("releaseDate").asText();
-    	String priceCategory = node.get("priceCategory").asText();
-    	int ageRating = node.get("ageRating").asInt();
-		Movie m = new Movie(title, releaseDate, priceCategory, ageRating);
-		m.setId(UUID.fromString(node.get("id").asText()));
-		return m;
+    	try (JsonParser parser = mapper.getFactory().createParser(json)) {
+    		return readSingle(parser, JsonUtil::readMovie);
+    	}
     }
     
     /**
-     * Convert JSON to Movie object.
+     * Convert JSON to Movie objects, see {@link #jsonToMovie(String)}. The input is either an array of movies or
+     * a sequence of movies, e.g. one per line; a single movie is a sequence of one. The movies are decoded while
+     * the input is read.
+     * @param json the UTF-8 encoded json to parse.
+     * @return the Movie objects in the order of the input.
+     * @throws IOException thrown upon parse problems or if a field is missing.
+     */
+    public static List<Movie> jsonToMovies(InputStream json) throws IOException {
+    	return bodyToMovies(json, Format.JSON);
+    }
+    
+    /**
+     * Convert a body in the given format to Movie object, see {@link #jsonToMovie(String)}.
+     * @param body the encoded object.
+     * @param format the format of the body.
+     * @return a Movie object created with the data from the body, without id if the object has none.
+     * @throws IOException thrown upon parse problems or if a field is missing.
+     */
+    public static Movie bodyToMovie(byte[] body, Format format) throws IOException {
+    	try (JsonParser parser = mappers.get(format).getFactory().createParser(body)) {
+    		return readSingle(parser, JsonUtil::readMovie);
+    	}
+    }
+    
+    /**
+     * Convert a body in the given format to Movie objects, see {@link #jsonToMovies(InputStream)}.
+     * @param body the encoded array or sequence of objects.
+     * @param format the format of the body.
+     * @return the Movie objects in the order of the input.
+     * @throws IOException thrown upon parse problems or if a field is missing.
+     */
+    public static List<Movie> bodyToMovies(InputStream body, Format format) throws IOException {
+    	try (JsonParser parser = mappers.get(format).getFactory().createParser(body)) {
+    		return readAll(parser, JsonUtil::readMovie);
+    	}
+    }
+    
+    /**
+     * Convert JSON to User object, see {@link #jsonToMovie(String)}.
      * @param json the json object to parse.
-     * @return a Movie object created with the data from the json object.
-     * @throws IOException thrown upon parse problems.
+     * @return a User object created with the data from the json object, without id if the object has none.
+     * @throws IOException thrown upon parse problems or if a field is missing.
      */
     public static User jsonToUser(String json) throws IOException {
-    	JsonNode node = mapper.readTree(json);
-    	String name = node.get("name").asText();
-    	String firstname = node.get("firstname").asText();
-    	String birthdate = node.get("birthDate").asText();
-		User u = new User(name, firstname, birthdate);
-		u.setId(UUID.fromString(node.get("id").asText()));
-		return u;
+    	try (JsonParser parser = mapper.getFactory().createParser(json)) {
+    		return readSingle(parser, JsonUtil::readUser);
+    	}
+    }
+    
+    /**
+     * Convert JSON to User objects, see {@link #jsonToMovies(InputStream)}.
+     * @param json the UTF-8 encoded json to parse.
+     * @return the User objects in the order of the input.
+     * @throws IOException thrown upon parse problems or if a field is missing.
+     */
+    public static List<User> jsonToUsers(InputStream json) throws IOException {
+    	return bodyToUsers(json, Format.JSON);
+    }
+    
+    /**
+     * Convert a body in the given format to User object, see {@link #jsonToMovie(String)}.
+     * @param body the encoded object.
+     * @param format the format of the body.
+     * @return a User object created with the data from the body, without id if the object has none.
+     * @throws IOException thrown upon parse problems or if a field is missing.
+     */
+    public static User bodyToUser(byte[] body, Format format) throws IOException {
+    	try (JsonParser parser = mappers.get(format).getFactory().createParser(body)) {
+    		return readSingle(parser, JsonUtil::readUser);
+    	}
+    }
+    
+    /**
+     * Convert a body in the given format to User objects, see {@link #jsonToMovies(InputStream)}.
+     * @param body the encoded array or sequence of objects.
+     * @param format the format of the body.
+     * @return the User objects in the order of the input.
+     * @throws IOException thrown upon parse problems or if a field is missing.
+     */
+    public static List<User> bodyToUsers(InputStream body, Format format) throws IOException {
+    	try (JsonParser parser = mappers.get(format).getFactory().createParser(body)) {
+    		return readAll(parser, JsonUtil::readUser);
+    	}
+    }
+    
+    /**
+     * Convert a body in the given format to ids, see {@link #jsonToMovies(InputStream)}. Each id is a string.
+     * @param body the encoded array or sequence of ids.
+     * @param format the format of the body.
+     * @return the ids in the order of the input.
+     * @throws IOException thrown upon parse problems or if a value is not an id.
+     */
+    public static List<UUID> bodyToIds(InputStream body, Format format) throws IOException {
+    	try (JsonParser parser = mappers.get(format).getFactory().createParser(body)) {
+    		return readAll(parser, JsonUtil::readId);
+    	}
+    }
+    
+    /**
+     * Convert a body in the given format to a rental request, see {@link #bodyToRentalRequests(InputStream, Format)}.
+     * @param body the encoded request.
+     * @param format the format of the body.
+     * @return the request.
+     * @throws IOException thrown upon parse problems or if a field is missing.
+     */
+    public static RentalRequest bodyToRentalRequest(byte[] body, Format format) throws IOException {
+    	try (JsonParser parser = mappers.get(format).getFactory().createParser(body)) {
+    		return readSingle(parser, JsonUtil::readRentalRequest);
+    	}
+    }
+    
+    /**
+     * Convert a body in the given format to rental requests, see {@link #jsonToMovies(InputStream)}. A request has
+     * the fields <code>userId</code>, <code>movieId</code> and optionally <code>rentalDate</code>, which defaults
+     * to today.
+     * @param body the encoded array or sequence of requests.
+     * @param format the format of the body.
+     * @return the requests in the order of the input.
+     * @throws IOException thrown upon parse problems or if a field is missing.
+     */
+    public static List<RentalRequest> bodyToRentalRequests(InputStream body, Format format) throws IOException {
+    	try (JsonParser parser = mappers.get(format).getFactory().createParser(body)) {
+    		return readAll(parser, JsonUtil::readRentalRequest);
+    	}
+    }
+    
+    /**
+     * Decodes a value, the parser is positioned on its first token.
+     */
+    @FunctionalInterface
+    private interface Decoder<T> {
+    	T read(JsonParser parser) throws IOException;
+    }
+    
+    private static <T> T readSingle(JsonParser parser, Decoder<T> decoder) throws IOException {
+    	parser.nextToken();
+    	return decoder.read(parser);
+    }
+    
+    private static <T> List<T> readAll(JsonParser parser, Decoder<T> decoder) throws IOException {
+    	List<T> result = new ArrayList<>();
+    	JsonToken token = parser.nextToken();
+    	if (token == JsonToken.START_ARRAY) {
+    		for (token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+    			if (token == null) {
+    				throw JsonMappingException.from(parser, "end of array expected");
+    			}
+    			result.add(decoder.read(parser));
+    		}
+    	} else {
+    		// the parser reads root values one after the other, whatever white space separates them.
+    		for (; token != null; token = parser.nextToken()) {
+    			result.add(decoder.read(parser));
+    		}
+    	}
+    	return result;
+    }
+    
+    private static void expectObject(JsonParser parser) throws JsonMappingException {
+    	if (parser.currentToken() != JsonToken.START_OBJECT) {
+    		throw JsonMappingException.from(parser, "object expected");
+    	}
+    }
+    
+    private static UUID readId(JsonParser parser) throws IOException {
+    	if (parser.currentToken() != JsonToken.VALUE_STRING) {
+    		throw JsonMappingException.from(parser, "id expected");
+    	}
+    	return toId(parser, parser.getText());
+    }
+    
+    private static UUID toId(JsonParser parser, String id) throws JsonMappingException {
+    	try {
+    		return UUID.fromString(id);
+    	} catch (IllegalArgumentException e) {
+    		throw JsonMappingException.from(parser, "illegal id " + id, e);
+    	}
+    }
+    
+    private static RentalRequest readRentalRequest(JsonParser parser) throws IOException {
+    	expectObject(parser);
+    	String userId = null;
+    	String movieId = null;
+    	String rentalDate = null;
+    	while (parser.nextToken() == JsonToken.FIELD_NAME) {
+    		String field = parser.getCurrentName();
+    		parser.nextToken();
+    		switch (field) {
+    		case "userId":
+    			userId = parser.getValueAsString();
+    			break;
+    		case "movieId":
+    			movieId = parser.getValueAsString();
+    			break;
+    		case "rentalDate":
+    			rentalDate = parser.getValueAsString();
+    			break;
+    		default:
+    			parser.skipChildren();
+    			break;
+    		}
+    	}
+    	return new RentalRequest(toId(parser, required(parser, userId, "userId")),
+    			toId(parser, required(parser, movieId, "movieId")),
+    			rentalDate == null ? BusinessDate.today() : LocalDate.parse(rentalDate, DateTimeFormatter.ISO_DATE));
+    }
+    
+    private static Movie readMovie(JsonParser parser) throws IOException {
+    	expectObject(parser);
+    	String id = null;
+    	String title = null;
+    	String releaseDate = null;
+    	String priceCategory = null;
+    	Integer ageRating = null;
+    	Integer copies = null;
+    	while (parser.nextToken() == JsonToken.FIELD_NAME) {
+    		String field = parser.getCurrentName();
+    		parser.nextToken();
+    		switch (field) {
+    		case "id":
+    			id = parser.getValueAsString();
+    			break;
+    		case "title":
+    			title = parser.getValueAsString();
+    			break;
+    		case "releaseDate":
+    			releaseDate = parser.getValueAsString();
+    			break;
+    		case "priceCategory":
+    			priceCategory = parser.getValueAsString();
+    			break;
+    		case "ageRating":
+    			ageRating = parser.getValueAsInt();
+    			break;
+    		case "copies":
+    			copies = parser.getValueAsInt();
+    			break;
+    		default:
+    			parser.skipChildren();
+    			break;
+    		}
+    	}
+    	Movie m = new Movie(required(parser, title, "title"),
+    			LocalDate.parse(required(parser, releaseDate, "releaseDate"), DateTimeFormatter.ISO_DATE),
+    			PriceCategory.getPriceCategoryFromId(required(parser, priceCategory, "priceCategory")),
+    			required(parser, ageRating, "ageRating"));
+    	if (copies != null) {
+    		m.setCopies(copies);
+    	}
+    	if (id != null) {
+    		m.setId(toId(parser, id));
+    	}
+    	return m;
+    }
+    
+    private static User readUser(JsonParser parser) throws IOException {
+    	expectObject(parser);
+    	String id = null;
+    	String name = null;
+    	String firstname = null;
+    	String birthDate = null;
+    	while (parser.nextToken() == JsonToken.FIELD_NAME) {
+    		String field = parser.getCurrentName();
+    		parser.nextToken();
+    		switch (field) {
+    		case "id":
+    			id = parser.getValueAsString();
+    			break;
+    		case "name":
+    			name = parser.getValueAsString();
+    			break;
+    		case "firstname":
+    			firstname = parser.getValueAsString();
+    			break;
+    		case "birthDate":
+    			birthDate = parser.getValueAsString();
+    			break;
+    		default:
+    			parser.skipChildren();
+    			break;
+    		}
+    	}
+    	User u = new User(required(parser, name, "name"), required(parser, firstname, "firstname"),
+    			LocalDate.parse(required(parser, birthDate, "birthDate"), DateTimeFormatter.ISO_DATE));
+    	if (id != null) {
+    		u.setId(toId(parser, id));
+    	}
+    	return u;
+    }
+    
+    private static <T> T required(JsonParser parser, T value, String field) throws JsonMappingException {
+    	if (value == null) {
+    		throw JsonMappingException.from(parser, "missing field " + field);
+    	}
+    	return value;
     }
     
     // prevent instantiation
@@ -2,6 +2,8 @@ package ch.fhnw.swc.mrs.util;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Locale;
 import java.util.UUID;
 
 import spark.Request;
@@ -99,6 +101,57 @@ public final class RequestUtil {
    		return rating;
     }
 
+    /**
+     * Extract the parameter ?limit from the request.
+     * @param request the request to get the attribute from.
+     * @param defaultLimit the value to return if there is no limit parameter.
+     * @return the maximum number of elements to return, -1 if the parameter is not a number.
+     */
+    public static int getParamLimit(Request request, int defaultLimit) {
+    	String param = request.queryParams("limit");
+    	if (param == null) {
+    		return defaultLimit;
+    	}
+    	try {
+    		return Integer.parseInt(param);
+    	} catch (NumberFormatException nfe) {
+    		return -1;
+    	}
+    }
+
+    /**
+     * Extract the parameter ?after from the request.
+     * @param request the request to get the attribute from.
+     * @return the id after which a page starts, <code>null</code> if there is none.
+     * @throws IllegalArgumentException if the parameter is not an id.
+     */
+    public static UUID getParamAfter(Request request) {
+    	String param = request.queryParams("after");
+    	return param == null || param.isEmpty() ? null : UUID.fromString(param);
+    }
+
+    /**
+     * Extract the parameter ?userId from the request.
+     * @param request the request to get the attribute from.
+     * @return the id of a user, <code>null</code> if there is none.
+     * @throws IllegalArgumentException if the parameter is not an id.
+     */
+    public static UUID getParamUserId(Request request) {
+    	String param = request.queryParams("userId");
+    	return param == null || param.isEmpty() ? null : UUID.fromString(param);
+    }
+
+    /**
+     * Extract the parameter ?movieId from the request.
+     * @param request the request to get the attribute from.
+     * @return the id of a movie, <code>null</code> if there is none.
+     * @throws IllegalArgumentException if the parameter is not an id.
+     */
+    public static UUID getParamMovieId(Request request) {
+    	String param = request.queryParams("movieId");
+    	return param == null || param.isEmpty() ? null : UUID.fromString(param);
+    }
+
     /**
      * Retrieve the locale from the requests session.
      * @param request to work on.
@@ -114,8 +167,7 @@ public final class RequestUtil {
      * @return whether html is an acceptable format.
      */
     public static boolean clientAcceptsHtml(Request request) {
-        String accept = request.headers("Accept");
-        return accept != null && accept.contains("text/html");
+        return negotiate(request.headers("Accept"), "text/html") != null;
     }
 
     /**
@@ -124,8 +176,98 @@ public final class RequestUtil {
      * @return whether json is an acceptable format.
      */
     public static boolean clientAcceptsJson(Request request) {
-        String accept = request.headers("Accept");
-        return accept != null && accept.contains("application/json");
+        return negotiate(request.headers("Accept"), Format.JSON.getMediaType()) != null;
+    }
+
+    /**
+     * Choose the format of the response body.
+     * @param request the request, its <code>Accept</code> header is honored.
+     * @return the format the client prefers, JSON if it has no preference, <code>null</code> if it accepts none.
+     */
+    public static Format getAcceptedFormat(Request request) {
+        Format[] formats = Format.values();
+        String[] offered = new String[formats.length];
+        for (int i = 0; i < formats.length; i++) {
+            offered[i] = formats[i].getMediaType();
+        }
+        String chosen = negotiate(request.headers("Accept"), offered);
+        return chosen == null ? null : Format.fromContentType(chosen);
+    }
+
+    /**
+     * Determine the format of the request body. Bodies of other types are read as JSON, as they have been before
+     * the binary formats were supported; many clients send JSON as text or form data.
+     * @param request the request, its <code>Content-Type</code> header is honored.
+     * @return the format of the body.
+     */
+    public static Format getContentFormat(Request request) {
+        String contentType = request.contentType();
+        Format format = contentType == null ? null : Format.fromContentType(contentType);
+        return format == null ? Format.JSON : format;
+    }
+
+    /**
+     * Choose the media type of a response as described in RFC 7231, section 5.3.2. A media type takes the quality
+     * value of the most specific range that matches it, e.g. <code>application/cbor</code> before
+     * <code>application/*</code> before <code>*&#47;*</code>; the one with the highest quality value wins, the
+     * server's order breaks ties. Media type parameters other than the quality value are ignored.
+     * @param accept the <code>Accept</code> header of the request, <code>null</code> if the client accepts anything.
+     * @param offered the media types the server can produce, in the order of its preference.
+     * @return the chosen media type or <code>null</code> if the client accepts none of them.
+     */
+    public static String negotiate(String accept, String... offered) {
+        if (offered.length == 0) {
+            return null;
+        }
+        if (accept == null || accept.trim().isEmpty()) {
+            return offered[0];
+        }
+        double[] quality = new double[offered.length];
+        int[] specificity = new int[offered.length];
+        Arrays.fill(specificity, -1);
+        for (String element : accept.split(",")) {
+            String[] params = element.split(";");
+            String range = params[0].trim().toLowerCase(Locale.ROOT);
+            double q = 1.0;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        q = 0.0;
+                    }
+                }
+            }
+            for (int i = 0; i < offered.length; i++) {
+                int match = matches(range, offered[i]);
+                if (match > specificity[i]) {
+                    specificity[i] = match;
+                    quality[i] = q;
+                }
+            }
+        }
+        int best = -1;
+        for (int i = 0; i < offered.length; i++) {
+            if (quality[i] > 0 && (best < 0 || quality[i] > quality[best])) {
+                best = i;
+            }
+        }
+        return best < 0 ? null : offered[best];
+    }
+
+    /**
+     * @return how specific the range matches the media type: 2 exactly, 1 by subtype wildcard, 0 by
+     *         <code>*&#47;*</code> and -1 not at all.
+     */
+    private static int matches(String range, String mediaType) {
+        if ("*/*".equals(range)) {
+            return 0;
+        }
+        if (range.endsWith("/*")) {
+            return mediaType.startsWith(range.substring(0, range.length() - 1)) ? 1 : -1;
+        }
+        return range.equals(mediaType) ? 2 : -1;
     }
 
     // prevent instantiation
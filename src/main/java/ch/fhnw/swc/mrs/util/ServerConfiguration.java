@@ -0,0 +1,180 @@
+package ch.fhnw.swc.mrs.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+import spark.embeddedserver.EmbeddedServers;
+import spark.embeddedserver.jetty.EmbeddedJettyFactory;
+
+/**
+ * Configures the embedded Jetty server of Spark. The settings are read from the classpath resource
+ * <code>/data/server.properties</code>, each key can be overridden by a system property with the prefix
+ * {@value #PREFIX}:
+ * <ul>
+ * <li>{@value #PORT}: the HTTP port.</li>
+ * <li>{@value #MIN_THREADS}, {@value #MAX_THREADS}: the bounds of the worker pool.</li>
+ * <li>{@value #IDLE_TIMEOUT}: milliseconds an idle worker above the minimum is kept.</li>
+ * <li>{@value #QUEUE_CAPACITY}: the number of jobs waiting for a worker, further connections are rejected; 0 does
+ * not bound the queue.</li>
+ * <li>{@value #VIRTUAL_THREADS}: run each request on a virtual thread of its own. The workers then only accept
+ * connections and parse requests, a request blocked on the database does not hold one. Needs Java 21 or later,
+ * older runtimes fall back to the worker pool.</li>
+ * <li>{@value #BACKEND_THREADS}, {@value #BACKEND_QUEUE_CAPACITY}: the threads running the operations of the routes
+ * that answer asynchronously, and the number of operations waiting for them; further operations are refused with
+ * 503.</li>
+ * <li>{@value #BACKEND_TIMEOUT}: milliseconds such an operation may take, 0 for no deadline.</li>
+ * </ul>
+ */
+public final class ServerConfiguration {
+
+	/** Prefix of system properties overriding the configuration. */
+	public static final String PREFIX = "mrs.server.";
+	/** Key of the HTTP port. */
+	public static final String PORT = "port";
+	/** Key of the number of workers kept when the server is idle. */
+	public static final String MIN_THREADS = "minThreads";
+	/** Key of the largest number of workers. */
+	public static final String MAX_THREADS = "maxThreads";
+	/** Key of the milliseconds an idle worker above the minimum is kept. */
+	public static final String IDLE_TIMEOUT = "idleTimeout";
+	/** Key of the largest number of jobs waiting for a worker. */
+	public static final String QUEUE_CAPACITY = "queueCapacity";
+	/** Key of the switch that runs requests on virtual threads. */
+	public static final String VIRTUAL_THREADS = "virtualThreads";
+	/** Key of the number of threads running the operations of the backend. */
+	public static final String BACKEND_THREADS = "backendThreads";
+	/** Key of the largest number of operations waiting for a thread of the backend. */
+	public static final String BACKEND_QUEUE_CAPACITY = "backendQueueCapacity";
+	/** Key of the milliseconds an operation of the backend may take. */
+	public static final String BACKEND_TIMEOUT = "backendTimeout";
+	/** Classpath resource containing the configuration. */
+	private static final String CONFIGURATION = "/data/server.properties";
+
+	private static Logger log = LogManager.getLogger(ServerConfiguration.class);
+
+	/**
+	 * Load the configuration from the classpath and apply the overrides given as system properties.
+	 * @return the configuration of the server.
+	 */
+	public static Properties loadConfiguration() {
+		Properties config = new Properties();
+		try (InputStream in = ServerConfiguration.class.getResourceAsStream(CONFIGURATION)) {
+			if (in != null) {
+				config.load(in);
+			}
+		} catch (IOException e) {
+			log.error("Cannot read the server configuration from " + CONFIGURATION, e);
+		}
+		for (String name : System.getProperties().stringPropertyNames()) {
+			if (name.startsWith(PREFIX)) {
+				config.setProperty(name.substring(PREFIX.length()), System.getProperty(name));
+			}
+		}
+		return config;
+	}
+
+	/**
+	 * @param config the server configuration.
+	 * @return the HTTP port, 4567 if none is configured.
+	 */
+	public static int getPort(Properties config) {
+		return getInt(config, PORT, 4567);
+	}
+
+	/**
+	 * Create the worker pool. Jetty's defaults apply to missing settings: 8 to 200 workers, idle for at most 60
+	 * seconds, and a queue that is not bounded.
+	 * @param config the server configuration.
+	 * @return the pool, not yet started.
+	 */
+	public static QueuedThreadPool createThreadPool(Properties config) {
+		int min = getInt(config, MIN_THREADS, 8);
+		int max = getInt(config, MAX_THREADS, 200);
+		int idleTimeout = getInt(config, IDLE_TIMEOUT, 60000);
+		int capacity = getInt(config, QUEUE_CAPACITY, 0);
+		BlockingQueue<Runnable> queue = capacity > 0 ? new BlockingArrayQueue<>(Math.min(min, capacity),
+				min, capacity) : new BlockingArrayQueue<>(min, min);
+		QueuedThreadPool pool = new QueuedThreadPool(max, min, idleTimeout, queue);
+		pool.setName("mrs-http");
+		return pool;
+	}
+
+	/**
+	 * Create the executor of the operations of the backend. Its queue is bounded, further operations are rejected.
+	 * Missing settings default to 16 threads and 1000 waiting operations.
+	 * @param config the server configuration.
+	 * @return the executor, its threads do not keep the JVM alive.
+	 */
+	public static ThreadPoolExecutor createBackendExecutor(Properties config) {
+		int threads = getInt(config, BACKEND_THREADS, 16);
+		int capacity = getInt(config, BACKEND_QUEUE_CAPACITY, 1000);
+		AtomicInteger count = new AtomicInteger();
+		return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(capacity),
+				r -> {
+					Thread t = new Thread(r, "mrs-backend-" + count.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				});
+	}
+
+	/**
+	 * @param config the server configuration.
+	 * @return the milliseconds an operation of the backend may take, 10 seconds if none is configured.
+	 */
+	public static long getBackendTimeout(Properties config) {
+		return getInt(config, BACKEND_TIMEOUT, 10000);
+	}
+
+	/**
+	 * @return an executor starting a virtual thread per task, <code>null</code> if the runtime has none.
+	 */
+	public static ExecutorService createVirtualThreadExecutor() {
+		try {
+			// looked up by reflection, the sources are compiled for Java 8.
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch (ReflectiveOperationException | UnsupportedOperationException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Make Spark start its server as configured. Routes may defer their responses on this server, see
+	 * {@link AsyncResponses}. Must be called before the first route is registered.
+	 * @param config the server configuration.
+	 */
+	public static void apply(Properties config) {
+		spark.Spark.port(getPort(config));
+		ExecutorService executor = null;
+		if (Boolean.parseBoolean(config.getProperty(VIRTUAL_THREADS, "false").trim())) {
+			executor = createVirtualThreadExecutor();
+			if (executor == null) {
+				log.warn("virtual threads need Java 21 or later, requests run on the worker pool");
+			}
+		}
+		EmbeddedJettyFactory factory = new EmbeddedJettyFactory(new AsyncServerFactory(executor));
+		EmbeddedServers.add(EmbeddedServers.Identifiers.JETTY, factory.withThreadPool(createThreadPool(config)));
+	}
+
+	private static int getInt(Properties config, String key, int defaultValue) {
+		String value = config.getProperty(key);
+		return value == null || value.trim().isEmpty() ? defaultValue : Integer.parseInt(value.trim());
+	}
+
+	// prevent instantiation
+	private ServerConfiguration() { }
+}
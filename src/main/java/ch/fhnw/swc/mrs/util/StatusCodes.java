@@ -5,6 +5,16 @@ public interface StatusCodes {
 	int CREATED = 201;
 	int NO_CONTENT = 204;
 	
+	int NOT_MODIFIED = 304;
+	
 	int BAD_REQUEST = 400;
 	int NOT_FOUND =  404;
+	int NOT_ACCEPTABLE = 406;
+	int CONFLICT = 409;
+	int PRECONDITION_FAILED = 412;
+	int PAYLOAD_TOO_LARGE = 413;
+	
+	int INTERNAL_SERVER_ERROR = 500;
+	int SERVICE_UNAVAILABLE = 503;
+	int GATEWAY_TIMEOUT = 504;
 }
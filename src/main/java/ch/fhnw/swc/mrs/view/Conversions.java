@@ -5,6 +5,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.UUID;
 
+import ch.fhnw.swc.mrs.model.BusinessDate;
 import ch.fhnw.swc.mrs.model.Movie;
 import ch.fhnw.swc.mrs.model.PriceCategory;
 import ch.fhnw.swc.mrs.model.Rental;
@@ -70,20 +71,24 @@ public final class Conversions {
     }
 
     static RentalDTO convert(Rental r) {
+        return convert(r, r.getRentalDays(), r.getRentalFee());
+    }
+
+    private static RentalDTO convert(Rental r, int rentaldays, double fee) {
         UUID id = r.getId();
         String name = r.getUser().getName();
         String firstname = r.getUser().getFirstName();
         String title = r.getMovie().getTitle();
         LocalDate rentaldate = r.getRentalDate();
-        int rentaldays = (int) r.getRentalDays();
-        double fee = r.getRentalFee();
         return new RentalDTO(id, name, firstname, title, rentaldate, rentaldays, fee);
     }
 
     static Collection<RentalDTO> convertRentalList(Collection<Rental> rentals) {
         Collection<RentalDTO> rtls = new ArrayList<>(rentals.size());
+        // one day for all rentals, even if the list is converted across midnight.
+        LocalDate today = BusinessDate.today();
         for (Rental r : rentals) {
-            rtls.add(convert(r));
+            rtls.add(convert(r, r.getRentalDays(today), r.getRentalFee(today)));
         }
         return rtls;
     }
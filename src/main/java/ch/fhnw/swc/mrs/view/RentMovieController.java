@@ -16,6 +16,8 @@ import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
 import javafx.scene.control.TextField;
 
+import ch.fhnw.swc.mrs.model.BusinessDate;
+
 /** Java FX controller class for rent movies tab. */
 public class RentMovieController extends AbstractController {
     @FXML
@@ -136,7 +138,7 @@ public class RentMovieController extends AbstractController {
             surnameField.setText(found.name.get());
             firstnameField.setText(found.firstName.get());
             birthdatePicker.setValue(found.birthdate.get());
-            rentalDatePicker.setValue(LocalDate.now());
+            rentalDatePicker.setValue(BusinessDate.today());
             idField.setDisable(true);
             surnameField.setDisable(true);
         } else {
@@ -154,7 +156,7 @@ public class RentMovieController extends AbstractController {
         try {
         	UUID uid = UUID.fromString(found.id.get());
         	UUID mid = UUID.fromString(m.id.get());
-        	getBackend().createRental(uid, mid, LocalDate.now());
+        	getBackend().createRental(uid, mid, BusinessDate.today());
         } catch (Exception e) {
             Alert alert = new Alert(AlertType.ERROR, e.getMessage(), ButtonType.OK);
             alert.showAndWait();        
@@ -0,0 +1,37 @@
+CREATE TABLE IF NOT EXISTS movies (
+    id uuid NOT NULL PRIMARY KEY,
+    title text NOT NULL,
+    rented boolean NOT NULL,
+    releasedate date NOT NULL,
+    pricecategory text NOT NULL,
+    agerating integer NOT NULL,
+    version bigint NOT NULL DEFAULT 0,
+    copies integer NOT NULL DEFAULT 1,
+    available integer NOT NULL DEFAULT 1,
+    CONSTRAINT movies_copies CHECK (copies > 0 AND available BETWEEN 0 AND copies)
+);
+
+CREATE TABLE IF NOT EXISTS clients (
+    id uuid NOT NULL PRIMARY KEY,
+    name text NOT NULL,
+    firstname text NOT NULL,
+    birthdate date NOT NULL,
+    version bigint NOT NULL DEFAULT 0
+);
+
+CREATE TABLE IF NOT EXISTS rentals (
+    id uuid NOT NULL PRIMARY KEY,
+    movieid uuid NOT NULL,
+    clientid uuid NOT NULL,
+    rentaldate date NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS movies_rented_id ON movies (rented, id);
+CREATE INDEX IF NOT EXISTS rentals_clientid_id ON rentals (clientid, id);
+CREATE INDEX IF NOT EXISTS rentals_movieid_id ON rentals (movieid, id);
+
+ALTER TABLE movies ADD COLUMN IF NOT EXISTS version bigint NOT NULL DEFAULT 0;
+ALTER TABLE movies ADD COLUMN IF NOT EXISTS copies integer NOT NULL DEFAULT 1;
+ALTER TABLE movies ADD COLUMN IF NOT EXISTS available integer NOT NULL DEFAULT 1;
+UPDATE movies SET available = 0 WHERE rented AND available <> 0;
+ALTER TABLE clients ADD COLUMN IF NOT EXISTS version bigint NOT NULL DEFAULT 0;
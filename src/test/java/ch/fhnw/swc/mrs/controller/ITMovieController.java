@@ -1,8 +1,21 @@
 package ch.fhnw.swc.mrs.controller;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
@@ -11,8 +24,12 @@ import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 
 import ch.fhnw.swc.mrs.Application;
+import ch.fhnw.swc.mrs.model.Movie;
+import ch.fhnw.swc.mrs.util.Format;
+import ch.fhnw.swc.mrs.util.JsonUtil;
 import ch.fhnw.swc.mrs.util.StatusCodes;
 import io.restassured.path.json.JsonPath;
+import io.restassured.response.Response;
 
 import static io.restassured.RestAssured.given;
 import static io.restassured.RestAssured.get;
@@ -38,6 +55,257 @@ class ITMovieController {
 			body("title", equalTo("Eragon"));
 	}
 	
+	@DisplayName("Get all movies page by page")
+	@Test
+	void testGetMoviesPaged() {
+		String json = get("http://localhost:4567/movies").asString();
+		int elements = new JsonPath(json).getInt("size()");
+
+		List<String> ids = new ArrayList<>();
+		String next = "/movies?limit=5";
+		while (next != null) {
+			Response page = get("http://localhost:4567" + next);
+			assertEquals(StatusCodes.OK, page.statusCode());
+			ids.addAll(page.jsonPath().getList("id"));
+			String link = page.header("Link");
+			next = link == null ? null : link.substring(1, link.indexOf('>'));
+		}
+		assertEquals(elements, ids.size());
+		assertEquals(elements, new HashSet<>(ids).size());
+
+		given().
+		when().
+			get("http://localhost:4567/movies?limit=0").
+		then().
+			statusCode(StatusCodes.BAD_REQUEST);
+	}
+
+	@DisplayName("Responses are compressed as negotiated")
+	@Test
+	void testCompression() throws IOException {
+		String plain = fetch("/movies", null, null);
+		int elements = new JsonPath(plain).getInt("size()");
+		assertEquals(elements, new JsonPath(fetch("/movies", "gzip", "gzip")).getInt("size()"));
+		assertEquals(elements, new JsonPath(fetch("/movies", "deflate;q=1, gzip;q=0.5", "deflate")).getInt("size()"));
+		assertEquals(elements, new JsonPath(fetch("/movies?limit=100", "gzip", "gzip")).getInt("size()"));
+		// a single movie is below the minimum size.
+		assertEquals("Eragon", new JsonPath(fetch("/movies/00000000-0000-0000-0000-000000000004", "gzip", null))
+				.getString("title"));
+	}
+
+	private static String fetch(String path, String acceptEncoding, String expectedEncoding) throws IOException {
+		HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:4567" + path).openConnection();
+		if (acceptEncoding != null) {
+			conn.setRequestProperty("Accept-Encoding", acceptEncoding);
+		}
+		assertEquals(StatusCodes.OK, conn.getResponseCode());
+		String encoding = conn.getContentEncoding();
+		InputStream in = conn.getInputStream();
+		if (expectedEncoding == null) {
+			assertNull(encoding);
+		} else {
+			assertEquals(expectedEncoding, encoding);
+			in = "gzip".equals(encoding) ? new GZIPInputStream(in) : new InflaterInputStream(in);
+		}
+		try (InputStream body = in) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buf = new byte[4096];
+			for (int n = body.read(buf); n >= 0; n = body.read(buf)) {
+				out.write(buf, 0, n);
+			}
+			return new String(out.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+
+	@DisplayName("Unchanged movies are answered with 304")
+	@Test
+	void testConditionalGet() {
+		String url = "http://localhost:4567/movies/00000000-0000-0000-0000-000000000004";
+		String etag = get(url).then().statusCode(StatusCodes.OK).extract().header("ETag");
+		given().
+			header("If-None-Match", etag).
+		when().
+			get(url).
+		then().
+			statusCode(StatusCodes.NOT_MODIFIED).
+			header("ETag", etag);
+		// a tag of the same version read before the server has been restarted does not match.
+		given().
+			header("If-None-Match", etag.replaceFirst("\"[^-]+-", "\"0-")).
+		when().
+			get(url).
+		then().
+			statusCode(StatusCodes.OK);
+
+		String listTag = get("http://localhost:4567/movies").header("ETag");
+		given().
+			header("If-None-Match", "\"other\", " + listTag).
+		when().
+			get("http://localhost:4567/movies").
+		then().
+			statusCode(StatusCodes.NOT_MODIFIED);
+
+		given().
+		when().
+			post("http://localhost:4567/movies?title=Nosferatu&releaseDate=1922-03-04&priceCategory=Regular&ageRating=12").
+		then().
+			statusCode(StatusCodes.CREATED);
+		given().
+			header("If-None-Match", listTag).
+		when().
+			get("http://localhost:4567/movies").
+		then().
+			statusCode(StatusCodes.OK).
+			header("ETag", not(equalTo(listTag)));
+	}
+
+	@DisplayName("An update with If-Match only applies to the version that has been read")
+	@Test
+	void testIfMatch() {
+		String url = "http://localhost:4567/movies/00000000-0000-0000-0000-000000000007";
+		Response read = get(url);
+		String etag = read.header("ETag");
+		String body = read.asString().replace("\"ageRating\":" + read.jsonPath().getInt("ageRating"),
+				"\"ageRating\":16");
+
+		String newTag = given().
+			header("If-Match", etag).
+			body(body).
+		when().
+			put(url).
+		then().
+			statusCode(StatusCodes.OK).
+			body("ageRating", equalTo(16)).
+		extract().
+			header("ETag");
+
+		given().
+			header("If-Match", etag).
+			body(body).
+		when().
+			put(url).
+		then().
+			statusCode(StatusCodes.PRECONDITION_FAILED);
+
+		given().
+			header("If-None-Match", etag).
+		when().
+			get(url).
+		then().
+			statusCode(StatusCodes.OK).
+			header("ETag", equalTo(newTag));
+	}
+
+	@DisplayName("Movies are exchanged as Smile and CBOR as well")
+	@Test
+	void testBinaryFormats() throws IOException {
+		String url = "http://localhost:4567/movies/00000000-0000-0000-0000-000000000008";
+		byte[] cbor = given().
+			header("Accept", "application/cbor").
+		when().
+			get(url).
+		then().
+			statusCode(StatusCodes.OK).
+			contentType("application/cbor").
+			header("ETag", endsWith("+cbor\"")).
+		extract().
+			asByteArray();
+		Movie m = JsonUtil.bodyToMovie(cbor, Format.CBOR);
+		assertEquals(get(url).jsonPath().getString("title"), m.getTitle());
+
+		byte[] list = given().
+			header("Accept", "application/json;q=0.5, application/x-jackson-smile").
+		when().
+			get("http://localhost:4567/movies").
+		then().
+			statusCode(StatusCodes.OK).
+			contentType("application/x-jackson-smile").
+		extract().
+			asByteArray();
+		List<Movie> movies = JsonUtil.bodyToMovies(new ByteArrayInputStream(list), Format.SMILE);
+		assertEquals(get("http://localhost:4567/movies").jsonPath().getInt("size()"), movies.size());
+
+		m.setAgeRating(18);
+		byte[] updated = given().
+			header("Accept", "application/cbor").
+			contentType("application/x-jackson-smile").
+			body(JsonUtil.dataToBytes(m, Format.SMILE)).
+		when().
+			put(url).
+		then().
+			statusCode(StatusCodes.OK).
+			contentType("application/cbor").
+		extract().
+			asByteArray();
+		assertEquals(18, JsonUtil.bodyToMovie(updated, Format.CBOR).getAgeRating());
+		assertEquals(18, get(url).jsonPath().getInt("ageRating"));
+
+		given().
+			header("Accept", "application/xml").
+		when().
+			get(url).
+		then().
+			statusCode(StatusCodes.NOT_ACCEPTABLE);
+	}
+
+	@DisplayName("Create, update and delete movies in batches")
+	@Test
+	void testBatch() {
+		// the colon is sent as is, Spark matches the raw path
+		String url = "http://localhost:4567/movies:batch";
+		String unknown = "00000000-0000-0000-0000-0000000000ff";
+		JsonPath created = given().
+			urlEncodingEnabled(false).
+			body("{\"title\":\"Nosferatu\",\"releaseDate\":\"1922-03-04\",\"priceCategory\":\"Regular\","
+					+ "\"ageRating\":16}\n"
+					+ "{\"id\":\"" + unknown + "\",\"title\":\"M\",\"releaseDate\":\"1931-05-11\","
+					+ "\"priceCategory\":\"Regular\",\"ageRating\":16}\n"
+					+ "{\"title\":\"Faust\",\"releaseDate\":\"1926-10-14\",\"priceCategory\":\"Regular\","
+					+ "\"ageRating\":12}\n").
+		when().
+			post(url).
+		then().
+			statusCode(StatusCodes.OK).
+			body("status", contains(StatusCodes.CREATED, StatusCodes.BAD_REQUEST, StatusCodes.CREATED)).
+		extract().
+			jsonPath();
+		String nosferatu = created.getString("[0].id");
+		String faust = created.getString("[2].id");
+		get("http://localhost:4567/movies/" + faust).then().body("title", equalTo("Faust"));
+
+		given().
+			urlEncodingEnabled(false).
+			body("[{\"id\":\"" + nosferatu + "\",\"title\":\"Nosferatu\",\"releaseDate\":\"1922-03-04\","
+					+ "\"priceCategory\":\"Children\",\"ageRating\":12},"
+					+ "{\"id\":\"" + unknown + "\",\"title\":\"M\",\"releaseDate\":\"1931-05-11\","
+					+ "\"priceCategory\":\"Regular\",\"ageRating\":16}]").
+		when().
+			put(url).
+		then().
+			statusCode(StatusCodes.OK).
+			body("status", contains(StatusCodes.OK, StatusCodes.NOT_FOUND)).
+			body("id", contains(nosferatu, unknown));
+		get("http://localhost:4567/movies/" + nosferatu).then().body("priceCategory", equalTo("Children"));
+
+		given().
+			urlEncodingEnabled(false).
+			body("[\"" + nosferatu + "\", \"" + faust + "\", \"" + unknown + "\"]").
+		when().
+			delete(url).
+		then().
+			statusCode(StatusCodes.OK).
+			body("status", contains(StatusCodes.NO_CONTENT, StatusCodes.NO_CONTENT, StatusCodes.NOT_FOUND));
+		get("http://localhost:4567/movies/" + faust).then().statusCode(StatusCodes.NOT_FOUND);
+
+		given().
+			urlEncodingEnabled(false).
+			body("[\"42\"]").
+		when().
+			delete(url).
+		then().
+			statusCode(StatusCodes.BAD_REQUEST);
+	}
+
 	@DisplayName("Delete movie")
 	@Test
 	void testDeleteMovie() {
@@ -105,6 +373,43 @@ class ITMovieController {
 		assertEquals(elementsBefore, elementsAfter);
 	}
 		
+	@DisplayName("A movie has copies, each one can be rented")
+	@Test
+	void testCopies() {
+		String url = "http://localhost:4567/movies/00000000-0000-0000-0000-00000000000B";
+		String body = "{\"id\": \"00000000-0000-0000-0000-00000000000B\", \"title\": \"No Country for Old Men\", "
+				+ "\"releaseDate\": \"2007-11-21\", \"priceCategory\": \"New Release\", \"ageRating\": 12, "
+				+ "\"copies\": 3}";
+
+		given().
+			body(body).
+		when().
+			put(url).
+		then().
+			statusCode(StatusCodes.OK).
+			body("copies", equalTo(3)).
+			body("available", equalTo(3)).
+			body("rented", equalTo(false));
+
+		given().
+		when().
+			get(url).
+		then().
+			statusCode(StatusCodes.OK).
+			body("copies", equalTo(3)).
+			body("available", equalTo(3));
+
+		// an update without copies keeps them.
+		given().
+			body(body.replace(", \"copies\": 3", "")).
+		when().
+			put(url).
+		then().
+			statusCode(StatusCodes.OK).
+			body("copies", equalTo(3)).
+			body("available", equalTo(3));
+	}
+
 	@AfterAll
 	static void stopSpark() throws Exception {
 		Application.stop();
@@ -0,0 +1,120 @@
+package ch.fhnw.swc.mrs.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import ch.fhnw.swc.mrs.Application;
+import ch.fhnw.swc.mrs.util.StatusCodes;
+
+import static io.restassured.RestAssured.given;
+import static io.restassured.RestAssured.get;
+import static org.hamcrest.Matchers.*;
+
+@Tag("integration")
+class ITRentalController {
+
+	private static final String PIA = "20000000-0000-0000-0000-000000000001";
+	private static final String BERNHARD = "20000000-0000-0000-0000-000000000002";
+	private static final String NO_COUNTRY = "00000000-0000-0000-0000-00000000000b";
+
+	@BeforeAll
+	static void startWebServer() throws Exception {
+		Application.main(null);
+	}
+
+	@DisplayName("Rentals are listed page by page, by user and by movie")
+	@Test
+	void testGetRentals() {
+		given().
+		when().
+			get("http://localhost:4567/rentals?userId=" + PIA).
+		then().
+			statusCode(StatusCodes.OK).
+			body("id", hasItem("10000000-0000-0000-0000-000000000001")).
+			body("movieId", hasItem("00000000-0000-0000-0000-000000000001")).
+			body("userId", everyItem(equalTo(PIA)));
+
+		given().
+		when().
+			get("http://localhost:4567/rentals?limit=2").
+		then().
+			statusCode(StatusCodes.OK).
+			header("Link", containsString("limit=2&after=")).
+			body("size()", equalTo(2));
+
+		given().
+		when().
+			get("http://localhost:4567/rentals?movieId=42").
+		then().
+			statusCode(StatusCodes.BAD_REQUEST);
+	}
+
+	@DisplayName("A movie is rented once, the second renter gets 409 until it is returned")
+	@Test
+	void testRentAndReturn() {
+		String id = given().
+			body("{\"userId\":\"" + PIA + "\",\"movieId\":\"" + NO_COUNTRY + "\"}").
+		when().
+			post("http://localhost:4567/rentals").
+		then().
+			statusCode(StatusCodes.CREATED).
+			body("movieId", equalTo(NO_COUNTRY)).
+			body("rentalDate", equalTo(LocalDate.now().toString())).
+		extract().
+			path("id");
+
+		given().
+			body("{\"userId\":\"" + BERNHARD + "\",\"movieId\":\"" + NO_COUNTRY + "\"}").
+		when().
+			post("http://localhost:4567/rentals").
+		then().
+			statusCode(StatusCodes.CONFLICT);
+
+		String listed = get("http://localhost:4567/rentals?movieId=" + NO_COUNTRY).jsonPath().getString("[0].id");
+		assertEquals(id, listed);
+
+		given().
+		when().
+			delete("http://localhost:4567/rentals/" + id).
+		then().
+			statusCode(StatusCodes.NO_CONTENT);
+		given().
+		when().
+			delete("http://localhost:4567/rentals/" + id).
+		then().
+			statusCode(StatusCodes.NOT_FOUND);
+	}
+
+	@DisplayName("Rentals of unknown users and in the future are refused")
+	@Test
+	void testRefusedRentals() {
+		given().
+			body("{\"userId\":\"20000000-0000-0000-0000-0000000000ff\",\"movieId\":\"" + NO_COUNTRY + "\"}").
+		when().
+			post("http://localhost:4567/rentals").
+		then().
+			statusCode(StatusCodes.NOT_FOUND);
+
+		given().
+			body("{\"userId\":\"" + PIA + "\",\"movieId\":\"" + NO_COUNTRY + "\",\"rentalDate\":\""
+					+ LocalDate.now().plusDays(1) + "\"}").
+		when().
+			post("http://localhost:4567/rentals").
+		then().
+			statusCode(StatusCodes.BAD_REQUEST);
+	}
+
+	@AfterAll
+	static void stopSpark() throws Exception {
+		Application.stop();
+		Thread.sleep(10000);
+	}
+
+}
@@ -11,6 +11,7 @@ import org.junit.jupiter.api.Test;
 import ch.fhnw.swc.mrs.Application;
 import ch.fhnw.swc.mrs.util.StatusCodes;
 import io.restassured.path.json.JsonPath;
+import io.restassured.response.Response;
 
 import static io.restassured.RestAssured.given;
 import static io.restassured.RestAssured.get;
@@ -36,6 +37,63 @@ class ITUserController {
 			body("name", equalTo("Müller"));
 	}
 	
+	@DisplayName("Get the account of a user")
+	@Test
+	void testGetAccount() {
+		given().
+		when().
+			get("http://localhost:4567/users/{id}/account", "20000000-0000-0000-0000-000000000003").
+		then().
+			statusCode(StatusCodes.OK).
+			body("userId", equalTo("20000000-0000-0000-0000-000000000003")).
+			body("rentals", equalTo(1)).
+			body("charge", greaterThan(0)).
+			body("frequentRenterPoints", greaterThan(0));
+		given().
+		when().
+			get("http://localhost:4567/users/{id}/account", "20000000-0000-0000-0000-0000000000FF").
+		then().
+			statusCode(StatusCodes.NOT_FOUND);
+	}
+
+	@DisplayName("Unchanged users are answered with 304, stale updates with 412")
+	@Test
+	void testConditionalRequests() {
+		String url = "http://localhost:4567/users/20000000-0000-0000-0000-000000000002";
+		Response read = get(url);
+		String etag = read.header("ETag");
+		given().
+			header("If-None-Match", etag).
+		when().
+			get(url).
+		then().
+			statusCode(StatusCodes.NOT_MODIFIED);
+
+		String body = read.asString().replace("Bernhard", "Bernd");
+		given().
+			header("If-Match", etag).
+			body(body).
+		when().
+			put(url).
+		then().
+			statusCode(StatusCodes.OK).
+			body("firstname", equalTo("Bernd"));
+		given().
+			header("If-Match", etag).
+			body(body).
+		when().
+			put(url).
+		then().
+			statusCode(StatusCodes.PRECONDITION_FAILED);
+		given().
+			header("If-Match", "*").
+			body(body).
+		when().
+			put(url).
+		then().
+			statusCode(StatusCodes.OK);
+	}
+
 	@DisplayName("Delete user")
 	@Test
 	void testDeleteUser() {
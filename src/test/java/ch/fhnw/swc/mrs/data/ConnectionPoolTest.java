@@ -0,0 +1,76 @@
+package ch.fhnw.swc.mrs.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Properties;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+@DisplayName("Tests for the connection pool configuration and metrics")
+public class ConnectionPoolTest {
+
+    private static final String OVERRIDE = ConnectionPool.PREFIX + "maximumPoolSize";
+
+    @AfterEach
+    public void tearDown() {
+        System.clearProperty(OVERRIDE);
+    }
+
+    @DisplayName("The pool is configured from the classpath")
+    @Test
+    public void testLoadConfiguration() {
+        Properties config = ConnectionPool.loadConfiguration();
+        assertEquals("jdbc:postgresql://localhost:4567/mrs", config.getProperty("jdbcUrl"));
+        assertEquals("10", config.getProperty("maximumPoolSize"));
+    }
+
+    @DisplayName("The batch size is part of the configuration")
+    @Test
+    public void testBatchSize() {
+        Properties config = new Properties();
+        assertEquals(Batch.DEFAULT_SIZE, ConnectionPool.getBatchSize(config));
+        config.setProperty(ConnectionPool.BATCH_SIZE, "250");
+        assertEquals(250, ConnectionPool.getBatchSize(config));
+    }
+
+    @DisplayName("System properties override the configuration")
+    @Test
+    public void testOverrideConfiguration() {
+        System.setProperty(OVERRIDE, "42");
+        assertEquals("42", ConnectionPool.loadConfiguration().getProperty("maximumPoolSize"));
+    }
+
+    @DisplayName("Connection counts and wait times are reported")
+    @Test
+    public void testMetrics() {
+        PoolMetrics metrics = new PoolMetrics();
+        assertEquals(0, metrics.getActiveConnections());
+        assertEquals(0.0, metrics.getAverageWaitMillis());
+
+        IMetricsTracker tracker = metrics.create("test", new PoolStats(0) {
+            @Override
+            protected void update() {
+                activeConnections = 3;
+                idleConnections = 7;
+                pendingThreads = 1;
+            }
+        });
+        tracker.recordConnectionAcquiredNanos(1_000_000);
+        tracker.recordConnectionAcquiredNanos(3_000_000);
+        tracker.recordConnectionTimeout();
+
+        assertEquals(3, metrics.getActiveConnections());
+        assertEquals(7, metrics.getIdleConnections());
+        assertEquals(1, metrics.getPendingThreads());
+        assertEquals(2, metrics.getAcquisitions());
+        assertEquals(1, metrics.getTimeouts());
+        assertEquals(4.0, metrics.getTotalWaitMillis(), 1e-9);
+        assertEquals(2.0, metrics.getAverageWaitMillis(), 1e-9);
+        assertEquals(3.0, metrics.getMaxWaitMillis(), 1e-9);
+    }
+}
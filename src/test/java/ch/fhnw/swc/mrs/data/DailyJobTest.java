@@ -0,0 +1,54 @@
+package ch.fhnw.swc.mrs.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ch.fhnw.swc.mrs.model.BusinessDate;
+
+@DisplayName("Tests for DailyJob")
+public class DailyJobTest {
+
+    private static final LocalDate DAY = LocalDate.of(2018, 10, 10);
+
+    @AfterEach
+    public void tearDown() {
+        BusinessDate.setClock(Clock.systemDefaultZone());
+    }
+
+    @DisplayName("The job runs at midnight with the new day")
+    @Test
+    public void testRunsAtMidnight() throws InterruptedException {
+        ZoneId zone = ZoneId.of("Europe/Zurich");
+        Clock system = Clock.system(zone);
+        Duration untilMidnight = Duration.between(system.instant(), DAY.atStartOfDay(zone).toInstant());
+        BusinessDate.setClock(Clock.offset(system, untilMidnight.minusMillis(300)));
+        BlockingQueue<LocalDate> days = new LinkedBlockingQueue<>();
+        try (DailyJob job = new DailyJob("test-rollover", days::add)) {
+            assertEquals(DAY, days.poll(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @DisplayName("A closed job does not run")
+    @Test
+    public void testClose() throws InterruptedException {
+        ZoneId zone = ZoneId.of("Europe/Zurich");
+        Clock system = Clock.system(zone);
+        Duration untilMidnight = Duration.between(system.instant(), DAY.atStartOfDay(zone).toInstant());
+        BusinessDate.setClock(Clock.offset(system, untilMidnight.minusMillis(300)));
+        BlockingQueue<LocalDate> days = new LinkedBlockingQueue<>();
+        new DailyJob("test-rollover", days::add).close();
+        assertNull(days.poll(1, TimeUnit.SECONDS));
+    }
+}
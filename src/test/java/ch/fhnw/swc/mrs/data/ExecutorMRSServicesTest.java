@@ -0,0 +1,149 @@
+package ch.fhnw.swc.mrs.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ch.fhnw.swc.mrs.api.MovieRentalException;
+import ch.fhnw.swc.mrs.model.Movie;
+import ch.fhnw.swc.mrs.model.PriceCategory;
+import ch.fhnw.swc.mrs.model.User;
+import ch.fhnw.swc.mrs.util.ServerConfiguration;
+
+@DisplayName("Tests for ExecutorMRSServices")
+public class ExecutorMRSServicesTest {
+
+    private SimpleMRSServices backend;
+    private ExecutorMRSServices services; // class under test
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeAll
+    public static void registerPriceCategories() {
+        PriceCategory.init();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        backend = new SimpleMRSServices();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        if (services != null) {
+            services.close();
+        }
+    }
+
+    @DisplayName("Operations complete with the result of the backend")
+    @Test
+    public void testOperations() throws Exception {
+        services = create(2, 10, 0);
+        User u = services.createUser("Muster", "Hans", LocalDate.of(1980, 1, 1)).get(5, TimeUnit.SECONDS);
+        Movie m = services.createMovie("Brazil", LocalDate.of(1985, 2, 22), "Regular", 0).get(5, TimeUnit.SECONDS);
+        UUID rental = services.rentMovie(u.getId(), m.getId(), LocalDate.now()).get(5, TimeUnit.SECONDS);
+        assertNotNull(rental);
+        assertEquals(1, services.getRentals(u.getId(), null, null, 10).get(5, TimeUnit.SECONDS).size());
+        assertTrue(services.returnRental(rental).get(5, TimeUnit.SECONDS));
+        assertFalse(services.returnRental(rental).get(5, TimeUnit.SECONDS));
+    }
+
+    @DisplayName("The exceptions of the backend fail the future")
+    @Test
+    public void testFailure() {
+        services = create(1, 10, 0);
+        CompletableFuture<Object> failed = services.submit(s -> {
+            throw new MovieRentalException("too young");
+        });
+        ExecutionException e = assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof MovieRentalException);
+    }
+
+    @DisplayName("Operations beyond the queue are rejected at once")
+    @Test
+    public void testBackPressure() throws Exception {
+        services = create(1, 1, 0);
+        CountDownLatch busy = new CountDownLatch(1);
+        CompletableFuture<Boolean> blocking = services.submit(s -> block(busy));
+        assertTrue(busy.await(5, TimeUnit.SECONDS));
+        CompletableFuture<User> queued = services.getUserById(UUID.randomUUID());
+        CompletableFuture<User> rejected = services.getUserById(UUID.randomUUID());
+
+        assertTrue(rejected.isCompletedExceptionally());
+        ExecutionException e = assertThrows(ExecutionException.class, () -> rejected.get());
+        assertTrue(e.getCause() instanceof RejectedExecutionException);
+        release.countDown();
+        assertTrue(blocking.get(5, TimeUnit.SECONDS));
+        assertNull(queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @DisplayName("Operations that miss their deadline fail, queued ones are rejected and not run")
+    @Test
+    public void testDeadline() throws Exception {
+        Properties config = new Properties();
+        config.setProperty(ServerConfiguration.BACKEND_THREADS, "1");
+        ThreadPoolExecutor executor = ServerConfiguration.createBackendExecutor(config);
+        services = new ExecutorMRSServices(backend, executor, 100);
+        CountDownLatch busy = new CountDownLatch(1);
+        CompletableFuture<Boolean> blocking = services.submit(s -> block(busy));
+        AtomicBoolean run = new AtomicBoolean();
+        CompletableFuture<Boolean> queued = services.submit(s -> run.getAndSet(true));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> blocking.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof TimeoutException);
+        e = assertThrows(ExecutionException.class, () -> queued.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof RejectedExecutionException);
+        release.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertFalse(run.get());
+    }
+
+    @DisplayName("Without an executor the operations run on the calling thread")
+    @Test
+    public void testDirect() {
+        services = new ExecutorMRSServices(backend);
+        Thread caller = Thread.currentThread();
+        CompletableFuture<Thread> thread = services.submit(s -> Thread.currentThread());
+        assertTrue(thread.isDone());
+        assertEquals(caller, thread.join());
+    }
+
+    private ExecutorMRSServices create(int threads, int capacity, long timeout) {
+        Properties config = new Properties();
+        config.setProperty(ServerConfiguration.BACKEND_THREADS, Integer.toString(threads));
+        config.setProperty(ServerConfiguration.BACKEND_QUEUE_CAPACITY, Integer.toString(capacity));
+        return new ExecutorMRSServices(backend, ServerConfiguration.createBackendExecutor(config), timeout);
+    }
+
+    private boolean block(CountDownLatch busy) {
+        busy.countDown();
+        try {
+            return release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package ch.fhnw.swc.mrs.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.opentable.db.postgres.embedded.EmbeddedPostgres;
+
+import ch.fhnw.swc.mrs.model.Movie;
+import ch.fhnw.swc.mrs.model.PriceCategory;
+
+@Tag("integration")
+@DisplayName("Integration tests for the CSV bulk loader")
+public class ITCsvBulkLoader {
+
+    private static final String MOVIES_HEADER = "ID;Title;ReleaseDate;PriceCategory;AgeRating;Rented\n";
+
+    private static EmbeddedPostgres pg;
+    private static DataSource ds;
+    private DbMRSServices backend;
+    private CsvBulkLoader loader; // class under test
+
+    @BeforeAll
+    public static void startPostgresql() throws IOException {
+        pg = EmbeddedPostgres.start();
+        ds = pg.getPostgresDatabase();
+        PriceCategory.init();
+    }
+
+    @AfterAll
+    public static void stopPostgresql() throws IOException {
+        pg.close();
+    }
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        backend = new DbMRSServices(ds);
+        backend.init();
+        try (Connection c = ds.getConnection(); Statement s = c.createStatement()) {
+            s.execute("TRUNCATE rentals, movies, clients");
+        }
+        loader = new CsvBulkLoader(ds);
+    }
+
+    @DisplayName("The data set of the in-memory back-end is loaded completely")
+    @Test
+    public void testLoadDefaults() throws Exception {
+        SimpleMRSServices reference = new SimpleMRSServices();
+        reference.init();
+
+        List<CsvBulkLoader.Result> results = loader.loadDefaults();
+
+        assertEquals(3, results.size());
+        for (CsvBulkLoader.Result r : results) {
+            assertEquals(0, r.getRowsRejected(), r.toString());
+            assertEquals(r.getRowsRead(), r.getRowsLoaded());
+            assertTrue(r.getRowsPerSecond() > 0);
+        }
+        assertEquals(reference.getAllMovies().size(), backend.getAllMovies().size());
+        assertEquals(reference.getAllUsers().size(), backend.getAllUsers().size());
+        assertEquals(reference.getAllMovies(true).size(), backend.getAllMovies(true).size());
+        for (Movie m : reference.getAllMovies()) {
+            Movie loaded = backend.getMovieById(m.getId());
+            assertEquals(m.getTitle(), loaded.getTitle());
+            assertEquals(m.getReleaseDate(), loaded.getReleaseDate());
+            assertEquals(m.getPriceCategory(), loaded.getPriceCategory());
+            assertEquals(m.getAgeRating(), loaded.getAgeRating());
+        }
+    }
+
+    @DisplayName("Invalid and duplicate rows are rejected, the valid ones are loaded")
+    @Test
+    public void testRejectInvalidRows() throws Exception {
+        String csv = MOVIES_HEADER
+                + "00000000-0000-0000-0000-000000000001;Valid;2001-12-19;Children;6;FALSE\n"
+                + "not-a-uuid;Bad id;2001-12-19;Children;6;FALSE\n"
+                + "00000000-0000-0000-0000-000000000003;Bad date;2001-02-30;Children;6;FALSE\n"
+                + "00000000-0000-0000-0000-000000000004;Bad category;2001-12-19;Premium;6;FALSE\n"
+                + "00000000-0000-0000-0000-000000000005;Bad age;2001-12-19;Regular;19;FALSE\n"
+                + "00000000-0000-0000-0000-000000000006;Bad flag;2001-12-19;Regular;12;maybe\n"
+                + "00000000-0000-0000-0000-000000000001;Duplicate;2001-12-19;Regular;12;FALSE\n"
+                + "00000000-0000-0000-0000-000000000008;;2001-12-19;Regular;12;FALSE\n"
+                + "00000000-0000-0000-0000-000000000009;Also valid;1999-03-11;Regular;12;TRUE\n";
+
+        CsvBulkLoader.Result result = loader.loadMovies(stream(csv));
+
+        assertEquals(9, result.getRowsRead());
+        assertEquals(2, result.getRowsLoaded());
+        assertEquals(7, result.getRowsRejected());
+        assertEquals(Arrays.asList(3L, 4L, 5L, 6L, 7L, 8L, 9L), result.getRejectedLines());
+        assertEquals("Valid", backend.getMovieById(new UUID(0, 1)).getTitle());
+        assertTrue(backend.getMovieById(new UUID(0, 9)).isRented());
+        assertEquals(2, backend.getAllMovies().size());
+    }
+
+    @DisplayName("Rentals of unknown users or movies are rejected, loaded rentals mark their movies as rented")
+    @Test
+    public void testLoadRentals() throws Exception {
+        loader.loadMovies(stream(MOVIES_HEADER
+                + "00000000-0000-0000-0000-000000000001;Matrix;1999-03-11;Regular;12;FALSE\n"));
+        UUID userId = backend.createUser("Meier", "Pia", LocalDate.of(1987, 10, 4)).getId();
+        String csv = "ID;RentalDate;UserID;MovieID\n"
+                + "10000000-0000-0000-0000-000000000001;2018-06-09;" + userId + ";00000000-0000-0000-0000-000000000001\n"
+                + "10000000-0000-0000-0000-000000000002;2018-06-09;" + UUID.randomUUID()
+                + ";00000000-0000-0000-0000-000000000001\n"
+                + "10000000-0000-0000-0000-000000000003;2018-06-09;" + userId + ";" + UUID.randomUUID() + "\n";
+
+        CsvBulkLoader.Result result = loader.loadRentals(stream(csv));
+
+        assertEquals(1, result.getRowsLoaded());
+        assertEquals(Arrays.asList(3L, 4L), result.getRejectedLines());
+        assertTrue(backend.getMovieById(new UUID(0, 1)).isRented());
+    }
+
+    @DisplayName("A movie is rented no more often than it has copies, reloading the movies keeps the rented copies")
+    @Test
+    public void testLoadRentalsOfCopies() throws Exception {
+        loader.loadMovies(stream(MOVIES_HEADER
+                + "00000000-0000-0000-0000-000000000001;Matrix;1999-03-11;Regular;12;FALSE\n"));
+        Movie m = backend.getMovieById(new UUID(0, 1));
+        m.setCopies(3);
+        assertTrue(backend.updateMovie(m));
+        UUID userId = backend.createUser("Meier", "Pia", LocalDate.of(1987, 10, 4)).getId();
+        assertTrue(backend.createRental(userId, m.getId(), LocalDate.of(2018, 6, 8)));
+        String csv = "ID;RentalDate;UserID;MovieID\n"
+                + "10000000-0000-0000-0000-000000000001;2018-06-09;" + userId + ";" + m.getId() + "\n"
+                + "10000000-0000-0000-0000-000000000002;2018-06-09;" + userId + ";" + m.getId() + "\n"
+                + "10000000-0000-0000-0000-000000000003;2018-06-09;" + userId + ";" + m.getId() + "\n";
+
+        CsvBulkLoader.Result result = loader.loadRentals(stream(csv));
+
+        assertEquals(2, result.getRowsLoaded());
+        assertEquals(Arrays.asList(4L), result.getRejectedLines());
+        assertEquals(0, backend.getMovieById(m.getId()).getAvailable());
+        assertTrue(loader.loadRentals(stream(csv)).getRowsLoaded() > 0);
+        assertEquals(0, backend.getMovieById(m.getId()).getAvailable());
+
+        loader.loadMovies(stream(MOVIES_HEADER
+                + "00000000-0000-0000-0000-000000000001;Matrix;1999-03-11;Regular;12;FALSE\n"));
+        Movie reloaded = backend.getMovieById(m.getId());
+        assertEquals(3, reloaded.getCopies());
+        assertEquals(0, reloaded.getAvailable());
+        assertTrue(reloaded.isRented());
+    }
+
+    @DisplayName("A malformed file leaves the table unchanged")
+    @Test
+    public void testMalformedFile() throws Exception {
+        String csv = MOVIES_HEADER + "00000000-0000-0000-0000-000000000001;Too;many;columns;in;this;row\n";
+        assertThrows(SQLException.class, () -> loader.loadMovies(stream(csv)));
+        assertTrue(backend.getAllMovies().isEmpty());
+    }
+
+    private static InputStream stream(String csv) {
+        return new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,567 @@
+package ch.fhnw.swc.mrs.data;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.sql2o.Sql2o;
+import org.sql2o.Sql2oException;
+import org.sql2o.converters.Converter;
+import org.sql2o.converters.UUIDConverter;
+import org.sql2o.quirks.PostgresQuirks;
+
+import com.opentable.db.postgres.embedded.EmbeddedPostgres;
+
+import ch.fhnw.swc.mrs.api.RentalRequest;
+import ch.fhnw.swc.mrs.model.Account;
+import ch.fhnw.swc.mrs.model.BusinessDate;
+import ch.fhnw.swc.mrs.model.Movie;
+import ch.fhnw.swc.mrs.model.PriceCategory;
+import ch.fhnw.swc.mrs.model.Rental;
+import ch.fhnw.swc.mrs.model.User;
+import ch.fhnw.swc.mrs.util.LocalDateConverter;
+
+@Tag("integration")
+@DisplayName("Integration tests for DbMRSServices")
+public class ITDbMRSServices {
+
+    private static final int THREADS = 8;
+    private static final LocalDate BIRTHDATE = LocalDate.of(1980, 1, 1);
+    private static final int BATCH_SIZE = 7;
+
+    private static EmbeddedPostgres pg;
+    private static DataSource ds;
+    private DbMRSServices backend; // class under test
+
+    @BeforeAll
+    public static void startPostgresql() throws IOException {
+        pg = EmbeddedPostgres.start();
+        ds = pg.getPostgresDatabase();
+        PriceCategory.init();
+    }
+
+    @AfterAll
+    public static void stopPostgresql() throws IOException {
+        pg.close();
+    }
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        backend = new DbMRSServices(ds, BATCH_SIZE);
+        backend.init();
+        try (Connection c = ds.getConnection(); Statement s = c.createStatement()) {
+            s.executeUpdate("DELETE FROM rentals");
+            s.executeUpdate("DELETE FROM movies");
+            s.executeUpdate("DELETE FROM clients");
+        }
+    }
+
+    @DisplayName("Renting and returning a movie")
+    @Test
+    public void testRentAndReturn() throws SQLException {
+        Movie m = backend.createMovie("Metropolis", LocalDate.of(1927, 1, 10), "Regular", 0);
+        User u = backend.createUser("Lang", "Fritz", BIRTHDATE);
+
+        assertTrue(backend.createRental(u.getId(), m.getId(), LocalDate.now()));
+        assertTrue(backend.getMovieById(m.getId()).isRented());
+        assertFalse(backend.createRental(u.getId(), m.getId(), LocalDate.now()));
+        assertEquals(1, countRentals());
+
+        UUID rentalId = findRental(m.getId());
+        assertTrue(backend.returnRental(rentalId));
+        assertFalse(backend.getMovieById(m.getId()).isRented());
+        assertEquals(0, countRentals());
+        assertFalse(backend.returnRental(rentalId));
+    }
+
+    @DisplayName("Rentals take the copies of a movie until none is available")
+    @Test
+    public void testRentCopies() throws SQLException {
+        Movie m = backend.createMovie("Metropolis", LocalDate.of(1927, 1, 10), "Regular", 0);
+        m.setCopies(2);
+        assertTrue(backend.updateMovie(m));
+        assertEquals(2, m.getAvailable());
+        User u = backend.createUser("Lang", "Fritz", BIRTHDATE);
+        User v = backend.createUser("von Harbou", "Thea", BIRTHDATE);
+
+        UUID first = backend.rentMovie(u.getId(), m.getId(), LocalDate.now());
+        assertNotNull(first);
+        Movie stored = backend.getMovieById(m.getId());
+        assertEquals(1, stored.getAvailable());
+        assertFalse(stored.isRented());
+        assertTrue(backend.createRental(v.getId(), m.getId(), LocalDate.now()));
+        assertFalse(backend.createRental(u.getId(), m.getId(), LocalDate.now()));
+        stored = backend.getMovieById(m.getId());
+        assertEquals(0, stored.getAvailable());
+        assertTrue(stored.isRented());
+        assertEquals(2, countRentals());
+        assertEquals(2, backend.getRentals(null, m.getId(), null, 10).get(0).getMovie().getCopies());
+
+        // the rented copies cannot be removed, the others can be added.
+        Movie fewer = new Movie("Metropolis", "1927-01-10", "Regular", 0);
+        fewer.setId(m.getId());
+        fewer.setCopies(1);
+        assertFalse(backend.updateMovie(fewer));
+        stored.setCopies(3);
+        assertTrue(backend.updateMovie(stored, stored.getVersion()));
+        assertEquals(1, stored.getAvailable());
+        assertFalse(backend.getMovieById(m.getId()).isRented());
+        // an update that does not tell the copies keeps them.
+        Movie retitled = new Movie("Metropolis (restored)", "1927-01-10", "Regular", 0);
+        retitled.setId(m.getId());
+        assertTrue(backend.updateMovie(retitled));
+        assertEquals(3, retitled.getCopies());
+        assertEquals(1, retitled.getAvailable());
+        Movie batched = new Movie("Metropolis", "1927-01-10", "Regular", 0);
+        batched.setId(m.getId());
+        assertArrayEquals(new boolean[] {true}, backend.updateMovies(Arrays.asList(batched)));
+        assertEquals(3, backend.getMovieById(m.getId()).getCopies());
+
+        assertTrue(backend.returnRental(first));
+        stored = backend.getMovieById(m.getId());
+        assertEquals(3, stored.getCopies());
+        assertEquals(2, stored.getAvailable());
+    }
+
+    @DisplayName("The account of a user holds its open rentals")
+    @Test
+    public void testAccount() {
+        LocalDate today = LocalDate.now();
+        Movie regular = backend.createMovie("Metropolis", LocalDate.of(1927, 1, 10), "Regular", 0);
+        Movie newRelease = backend.createMovie("M", LocalDate.of(1931, 5, 11), "New Release", 0);
+        User u = backend.createUser("Lang", "Fritz", BIRTHDATE);
+        assertEquals(0, backend.getAccount(u.getId()).getRentals());
+
+        assertTrue(backend.createRental(u.getId(), regular.getId(), today.minusDays(5)));
+        UUID id = backend.rentMovie(u.getId(), newRelease.getId(), today.minusDays(2));
+        Account a = backend.getAccount(u.getId());
+        assertEquals(650 + 600, a.getCharge());
+        assertEquals(1 + 2, a.getFrequentRenterPoints());
+        assertEquals(2, a.getRentals());
+
+        assertTrue(backend.returnRental(id));
+        assertEquals(650, backend.getAccount(u.getId()).getCharge());
+        assertNull(backend.getAccount(UUID.randomUUID()));
+    }
+
+    @DisplayName("Nothing is rented to unknown users, for unknown movies or in the future")
+    @Test
+    public void testInvalidRentals() throws SQLException {
+        Movie m = backend.createMovie("Metropolis", LocalDate.of(1927, 1, 10), "Regular", 0);
+        User u = backend.createUser("Lang", "Fritz", BIRTHDATE);
+
+        assertFalse(backend.createRental(UUID.randomUUID(), m.getId(), LocalDate.now()));
+        assertFalse(backend.createRental(u.getId(), UUID.randomUUID(), LocalDate.now()));
+        assertFalse(backend.createRental(u.getId(), m.getId(), LocalDate.now().plusDays(1)));
+        assertFalse(backend.getMovieById(m.getId()).isRented());
+        assertEquals(0, countRentals());
+    }
+
+    @DisplayName("A user too young for a movie cannot rent it")
+    @Test
+    public void testRentUnderAge() throws SQLException {
+        Movie m = backend.createMovie("Alien", LocalDate.of(1979, 5, 25), "Regular", 18);
+        User child = backend.createUser("Ripley", "Amy", BusinessDate.today().minusYears(5));
+        User adult = backend.createUser("Ripley", "Ellen", BIRTHDATE);
+
+        assertNull(backend.rentMovie(child.getId(), m.getId(), BusinessDate.today()));
+        RentalRequest request = new RentalRequest(child.getId(), m.getId(), BusinessDate.today());
+        assertArrayEquals(new UUID[] {null}, backend.createRentals(Arrays.asList(request)));
+        assertFalse(backend.getMovieById(m.getId()).isRented());
+        assertEquals(0, countRentals());
+
+        assertNotNull(backend.rentMovie(adult.getId(), m.getId(), BusinessDate.today()));
+        assertEquals(1, backend.getAllRentals().size());
+        assertEquals(0, backend.getAccount(child.getId()).getRentals());
+    }
+
+    @DisplayName("A user cannot rent more than the maximum number of movies")
+    @Test
+    public void testRentTooMany() throws SQLException {
+        User u = backend.createUser("Lang", "Fritz", BIRTHDATE);
+        List<RentalRequest> requests = new ArrayList<>();
+        for (int i = 0; i < User.MAX_RENTABLE_MOVIES + 2; i++) {
+            Movie m = backend.createMovie("Metropolis " + i, LocalDate.of(1927, 1, 10), "Regular", 0);
+            requests.add(new RentalRequest(u.getId(), m.getId(), BusinessDate.today()));
+        }
+
+        UUID[] created = backend.createRentals(requests.subList(0, User.MAX_RENTABLE_MOVIES + 1));
+        assertNotNull(created[User.MAX_RENTABLE_MOVIES - 1]);
+        assertNull(created[User.MAX_RENTABLE_MOVIES]);
+        RentalRequest last = requests.get(User.MAX_RENTABLE_MOVIES + 1);
+        assertNull(backend.rentMovie(u.getId(), last.getMovieId(), BusinessDate.today()));
+        assertEquals(User.MAX_RENTABLE_MOVIES, countRentals());
+        assertEquals(User.MAX_RENTABLE_MOVIES, backend.getAccount(u.getId()).getRentals());
+    }
+
+    @DisplayName("Only one of many concurrent renters gets the same movie")
+    @Test
+    public void testConcurrentRentals() throws Exception {
+        Movie m = backend.createMovie("Nosferatu", LocalDate.of(1922, 3, 4), "Regular", 0);
+        List<User> renters = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            renters.add(backend.createUser("Renter" + i, "Test", BIRTHDATE));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (User u : renters) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return backend.createRental(u.getId(), m.getId(), LocalDate.now());
+                }));
+            }
+            start.countDown();
+            int successes = 0;
+            for (Future<Boolean> f : results) {
+                if (f.get(30, TimeUnit.SECONDS)) {
+                    successes++;
+                }
+            }
+            assertEquals(1, successes);
+            assertEquals(1, countRentals());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @DisplayName("A rental returned concurrently in batches gives back its copy once")
+    @Test
+    public void testConcurrentReturns() throws Exception {
+        User u = backend.createUser("Lang", "Fritz", BIRTHDATE);
+        User v = backend.createUser("von Harbou", "Thea", BIRTHDATE);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int round = 0; round < 20; round++) {
+                Movie m = backend.createMovie("Metropolis " + round, LocalDate.of(1927, 1, 10), "Regular", 0);
+                m.setCopies(3);
+                assertTrue(backend.updateMovie(m));
+                UUID rental = backend.rentMovie(u.getId(), m.getId(), LocalDate.now());
+                UUID other = backend.rentMovie(v.getId(), m.getId(), LocalDate.now());
+                boolean single = round % 2 == 0;
+
+                CountDownLatch start = new CountDownLatch(1);
+                Future<Boolean> first = executor.submit(() -> {
+                    start.await();
+                    return backend.returnRentals(Arrays.asList(rental))[0];
+                });
+                Future<Boolean> second = executor.submit(() -> {
+                    start.await();
+                    return single ? backend.returnRental(rental) : backend.returnRentals(Arrays.asList(rental))[0];
+                });
+                start.countDown();
+                assertTrue(first.get(30, TimeUnit.SECONDS) ^ second.get(30, TimeUnit.SECONDS));
+                assertEquals(2, backend.getMovieById(m.getId()).getAvailable());
+                assertTrue(backend.returnRental(other));
+                assertEquals(3, backend.getMovieById(m.getId()).getAvailable());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @DisplayName("Many movies are created at once")
+    @Test
+    public void testCreateMovies() throws SQLException {
+        List<Movie> movies = new ArrayList<>();
+        for (int i = 0; i < 3 * BATCH_SIZE + 1; i++) {
+            movies.add(new Movie("Movie " + i, "2000-01-01", "Regular", 0));
+        }
+        assertTrue(backend.createMovies(movies));
+        assertEquals(movies.size(), backend.getAllMovies().size());
+        for (Movie m : movies) {
+            assertEquals(m.getTitle(), backend.getMovieById(m.getId()).getTitle());
+        }
+    }
+
+    @DisplayName("Rentals are listed page by page by user and by movie")
+    @Test
+    public void testRentalsByUserAndMovie() {
+        List<Movie> movies = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            movies.add(new Movie("Movie " + i, "2000-01-01", "Regular", 0));
+        }
+        assertTrue(backend.createMovies(movies));
+        List<User> users = Arrays.asList(new User("Lang", "Fritz", BIRTHDATE),
+                new User("Murnau", "Friedrich", BIRTHDATE));
+        assertTrue(backend.createUsers(users));
+        UUID lang = users.get(0).getId();
+        UUID murnau = users.get(1).getId();
+        LocalDate today = LocalDate.now();
+
+        UUID first = backend.rentMovie(lang, movies.get(0).getId(), today);
+        UUID second = backend.rentMovie(lang, movies.get(1).getId(), today);
+        UUID third = backend.rentMovie(murnau, movies.get(2).getId(), today);
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNotNull(third);
+        assertNull(backend.rentMovie(murnau, movies.get(0).getId(), today));
+
+        List<Rental> page = backend.getRentals(lang, null, null, 1);
+        assertEquals(1, page.size());
+        List<Rental> next = backend.getRentals(lang, null, page.get(0).getId(), 1);
+        assertEquals(1, next.size());
+        assertEquals(new HashSet<>(Arrays.asList(first, second)),
+                new HashSet<>(Arrays.asList(page.get(0).getId(), next.get(0).getId())));
+        assertTrue(backend.getRentals(lang, null, next.get(0).getId(), 1).isEmpty());
+
+        List<Rental> ofMovie = backend.getRentals(null, movies.get(2).getId(), null, 10);
+        assertEquals(1, ofMovie.size());
+        assertEquals(third, ofMovie.get(0).getId());
+        assertEquals(murnau, ofMovie.get(0).getUser().getId());
+        assertTrue(backend.getRentals(lang, movies.get(2).getId(), null, 10).isEmpty());
+        assertEquals(3, backend.getRentals(null, null, null, 10).size());
+
+        assertTrue(backend.returnRental(third));
+        assertTrue(backend.getRentals(null, movies.get(2).getId(), null, 10).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> backend.getRentals(lang, null, null, 0));
+    }
+
+    @DisplayName("Batches report the outcome of every item")
+    @Test
+    public void testBatchOperations() {
+        List<Movie> movies = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            movies.add(new Movie("Movie " + i, "2000-01-01", "Regular", 0));
+        }
+        assertTrue(backend.createMovies(movies));
+        List<User> users = Arrays.asList(new User("Lang", "Fritz", BIRTHDATE),
+                new User("Murnau", "Friedrich", BIRTHDATE));
+        assertTrue(backend.createUsers(users));
+        assertEquals("Murnau", backend.getUserById(users.get(1).getId()).getName());
+
+        UUID[] rentals = backend.createRentals(Arrays.asList(
+                new RentalRequest(users.get(0).getId(), movies.get(0).getId(), LocalDate.now()),
+                new RentalRequest(users.get(1).getId(), movies.get(0).getId(), LocalDate.now()),
+                new RentalRequest(users.get(1).getId(), movies.get(1).getId(), LocalDate.now().plusDays(1)),
+                new RentalRequest(users.get(1).getId(), movies.get(2).getId(), LocalDate.now())));
+        assertNotNull(rentals[0]);
+        assertNull(rentals[1]);
+        assertNull(rentals[2]);
+        assertNotNull(rentals[3]);
+        assertTrue(backend.getMovieById(movies.get(0).getId()).isRented());
+
+        Movie changed = new Movie("Changed", "2000-01-01", "Children", 6);
+        changed.setId(movies.get(0).getId());
+        Movie unknown = new Movie("Unknown", "2000-01-01", "Regular", 0);
+        unknown.setId(UUID.randomUUID());
+        assertArrayEquals(new boolean[] {true, false}, backend.updateMovies(Arrays.asList(changed, unknown)));
+        Movie stored = backend.getMovieById(changed.getId());
+        assertEquals("Changed", stored.getTitle());
+        assertTrue(stored.isRented());
+        assertNull(backend.getMovieById(unknown.getId()));
+
+        User renamed = new User("Lang", "Fritz Jr.", BIRTHDATE);
+        renamed.setId(users.get(0).getId());
+        assertArrayEquals(new boolean[] {true}, backend.updateUsers(Arrays.asList(renamed)));
+        assertEquals("Fritz Jr.", backend.getUserById(renamed.getId()).getFirstName());
+
+        assertArrayEquals(new boolean[] {true, false},
+                backend.returnRentals(Arrays.asList(rentals[0], UUID.randomUUID())));
+        assertFalse(backend.getMovieById(movies.get(0).getId()).isRented());
+
+        assertArrayEquals(new boolean[] {true, false},
+                backend.deleteMovies(Arrays.asList(movies.get(1).getId(), UUID.randomUUID())));
+        assertNull(backend.getMovieById(movies.get(1).getId()));
+        assertArrayEquals(new boolean[] {true}, backend.deleteUsers(Arrays.asList(users.get(1).getId())));
+        assertNull(backend.getUserById(users.get(1).getId()));
+    }
+
+    @DisplayName("Pages follow each other in id order")
+    @Test
+    public void testPaging() throws SQLException {
+        List<Movie> movies = new ArrayList<>();
+        for (int i = 0; i < 2 * BATCH_SIZE; i++) {
+            movies.add(new Movie("Movie " + i, "2000-01-01", "Regular", 0));
+        }
+        assertTrue(backend.createMovies(movies));
+        User u = backend.createUser("Lang", "Fritz", BIRTHDATE);
+        assertTrue(backend.createRental(u.getId(), movies.get(0).getId(), LocalDate.now()));
+
+        List<UUID> ids = new ArrayList<>();
+        UUID after = null;
+        List<Movie> page;
+        do {
+            page = backend.getMovies(after, 3);
+            for (Movie m : page) {
+                after = m.getId();
+                ids.add(after);
+            }
+        } while (page.size() == 3);
+        assertEquals(movies.size(), ids.size());
+        try (Connection c = ds.getConnection(); Statement s = c.createStatement();
+                ResultSet rs = s.executeQuery("SELECT id FROM movies ORDER BY id")) {
+            for (UUID id : ids) {
+                assertTrue(rs.next());
+                assertEquals(id, rs.getObject(1));
+            }
+        }
+
+        assertEquals(1, backend.getMovies(true, null, 10).size());
+        assertEquals(movies.get(0).getId(), backend.getMovies(true, null, 10).get(0).getId());
+        assertEquals(movies.size() - 1, backend.getMovies(false, null, 100).size());
+        assertEquals(u.getId(), backend.getUsers(null, 10).get(0).getId());
+        assertTrue(backend.getUsers(u.getId(), 10).isEmpty());
+        List<Rental> rentals = backend.getRentals(null, 10);
+        assertEquals(1, rentals.size());
+        assertEquals(movies.get(0).getTitle(), rentals.get(0).getMovie().getTitle());
+        assertEquals(u.getName(), rentals.get(0).getUser().getName());
+        assertEquals(1, backend.getAllRentals().size());
+        assertThrows(IllegalArgumentException.class, () -> backend.getMovies(null, 0));
+    }
+
+    @DisplayName("Movies and users are streamed in several fetches")
+    @Test
+    public void testStreams() throws SQLException {
+        List<Movie> movies = new ArrayList<>();
+        for (int i = 0; i < 2 * Cursor.FETCH_SIZE + 1; i++) {
+            movies.add(new Movie("Movie " + i, "2000-01-01", "Regular", 0));
+        }
+        assertTrue(backend.createMovies(movies));
+        User u = backend.createUser("Lang", "Fritz", BIRTHDATE);
+        assertTrue(backend.createRental(u.getId(), movies.get(0).getId(), LocalDate.now()));
+
+        try (Stream<Movie> all = backend.streamMovies()) {
+            assertEquals(movies.stream().map(Movie::getId).collect(Collectors.toSet()),
+                    all.map(Movie::getId).collect(Collectors.toSet()));
+        }
+        try (Stream<Movie> rented = backend.streamMovies(true)) {
+            assertEquals(movies.get(0).getId(), rented.findFirst().get().getId());
+        }
+        try (Stream<Movie> available = backend.streamMovies(false)) {
+            assertEquals(movies.size() - 1, available.count());
+        }
+        try (Stream<User> users = backend.streamUsers()) {
+            assertEquals(u.getId(), users.findFirst().get().getId());
+        }
+    }
+
+    @DisplayName("Closing a stream early returns its connection to the pool")
+    @Test
+    public void testStreamReleasesConnection() {
+        backend.createMovie("Metropolis", LocalDate.of(1927, 1, 10), "Regular", 0);
+        Properties config = new Properties();
+        config.setProperty("jdbcUrl", pg.getJdbcUrl("postgres", "postgres"));
+        config.setProperty("username", "postgres");
+        config.setProperty("maximumPoolSize", "2");
+        config.setProperty("connectionTimeout", "1000");
+        try (DbMRSServices pooled = new DbMRSServices(config)) {
+            for (int i = 0; i < 10; i++) {
+                try (Stream<Movie> all = pooled.streamMovies()) {
+                    assertTrue(all.findAny().isPresent());
+                }
+            }
+            assertEquals(0, pooled.getPoolMetrics().getTimeouts());
+            assertEquals(0, pooled.getPoolMetrics().getActiveConnections());
+        }
+    }
+
+    @DisplayName("A failing batch leaves no movies behind")
+    @Test
+    public void testInsertAllIsAtomic() throws SQLException {
+        Movie existing = backend.createMovie("Existing", LocalDate.of(2000, 1, 1), "Regular", 0);
+        List<Movie> movies = new ArrayList<>();
+        for (int i = 0; i < 2 * BATCH_SIZE; i++) {
+            Movie m = new Movie("Movie " + i, "2000-01-01", "Regular", 0);
+            // the last movie of the second batch collides with the existing one
+            m.setId(i == 2 * BATCH_SIZE - 1 ? existing.getId() : UUID.randomUUID());
+            movies.add(m);
+        }
+        @SuppressWarnings("rawtypes")
+        Map<Class, Converter> converters = new HashMap<>();
+        converters.put(UUID.class, new UUIDConverter());
+        converters.put(LocalDate.class, new LocalDateConverter());
+        MovieDAO dao = new MovieDAO(new Sql2o(ds, new PostgresQuirks(converters)), BATCH_SIZE);
+
+        assertThrows(Sql2oException.class, () -> dao.insertAll(movies));
+        assertEquals(1, backend.getAllMovies().size());
+        assertEquals("Existing", backend.getMovieById(existing.getId()).getTitle());
+    }
+
+    @DisplayName("Changes increment the stored versions, conditional updates only apply to the current one")
+    @Test
+    public void testVersions() throws SQLException {
+        Movie m = backend.createMovie("Metropolis", LocalDate.of(1927, 1, 10), "Regular", 0);
+        User u = backend.createUser("Lang", "Fritz", BIRTHDATE);
+        long movies = backend.getMoviesVersion();
+        long users = backend.getUsersVersion();
+        assertEquals(0, m.getVersion());
+
+        Movie first = backend.getMovieById(m.getId());
+        Movie second = backend.getMovieById(m.getId());
+        first.setAgeRating(12);
+        second.setAgeRating(16);
+        assertTrue(backend.updateMovie(first, first.getVersion()));
+        assertEquals(1, first.getVersion());
+        assertFalse(backend.updateMovie(second, second.getVersion()));
+        assertEquals(12, backend.getMovieById(m.getId()).getAgeRating());
+        assertTrue(backend.updateMovie(second));
+        assertEquals(2, second.getVersion());
+        assertEquals(movies + 2, backend.getMoviesVersion());
+
+        assertTrue(backend.createRental(u.getId(), m.getId(), LocalDate.now()));
+        assertEquals(3, backend.getMovieById(m.getId()).getVersion());
+        assertEquals(3, backend.getAllRentals().get(0).getMovie().getVersion());
+        assertTrue(backend.returnRental(findRental(m.getId())));
+        assertEquals(4, backend.getMovieById(m.getId()).getVersion());
+        assertEquals(movies + 4, backend.getMoviesVersion());
+
+        User renamed = new User(u.getId(), "Lang", "Friedrich", BIRTHDATE);
+        assertTrue(backend.updateUser(renamed, 0));
+        assertEquals(1, backend.getUserById(u.getId()).getVersion());
+        assertFalse(backend.updateUser(renamed, 0));
+        assertFalse(backend.updateUser(new User(UUID.randomUUID(), "Nobody", "No", BIRTHDATE), 0));
+        assertEquals(users + 1, backend.getUsersVersion());
+    }
+
+    private static int countRentals() throws SQLException {
+        try (Connection c = ds.getConnection(); Statement s = c.createStatement();
+                ResultSet rs = s.executeQuery("SELECT count(*) FROM rentals")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static UUID findRental(UUID movieId) throws SQLException {
+        try (Connection c = ds.getConnection(); Statement s = c.createStatement();
+                ResultSet rs = s.executeQuery("SELECT id FROM rentals WHERE movieid = '" + movieId + "'")) {
+            return rs.next() ? (UUID) rs.getObject(1) : null;
+        }
+    }
+}
@@ -53,7 +53,7 @@ public class ITMovieDao {
         pg = EmbeddedPostgres.start();
 
         PriceCategory.init();
-        vtd = new VerifyTableDefinition("movies", new String[] {"id"});
+        vtd = new VerifyTableDefinition("movies", new String[] {"id", "version"});
         converters.put(UUID.class, new UUIDConverter());
         converters.put(LocalDate.class, new LocalDateConverter());
         converters.put(PriceCategory.class, new PriceCategoryConverter());
@@ -95,6 +95,9 @@ public class ITMovieDao {
                 "    \"releasedate\" date NOT NULL,\n" +
                 "    \"pricecategory\" text COLLATE pg_catalog.\"default\" NOT NULL,\n" +
                 "    \"agerating\" integer NOT NULL,\n" +
+                "    \"version\" bigint NOT NULL DEFAULT 0,\n" +
+                "    \"copies\" integer NOT NULL DEFAULT 1,\n" +
+                "    \"available\" integer NOT NULL DEFAULT 1,\n" +
                 "    CONSTRAINT movies_pkey PRIMARY KEY (\"id\")\n" +
                 ")");
     }
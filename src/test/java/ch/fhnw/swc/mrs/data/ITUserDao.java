@@ -8,6 +8,7 @@ import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -18,6 +19,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -87,7 +89,7 @@ public class ITUserDao {
 		pg = EmbeddedPostgres.start();
 
         PriceCategory.init();
-        vtd = new VerifyTableDefinition("clients", new String[] {"id"});
+        vtd = new VerifyTableDefinition("clients", new String[] {"id", "version"});
         converters.put(UUID.class, new UUIDConverter());
         converters.put(LocalDate.class, new LocalDateConverter());
 	}
@@ -267,7 +269,7 @@ public class ITUserDao {
             UUID gid = UUID.fromString("20000000-A000-0000-0000-000000000001");
             User goofy = new User("Goofy", "Goofus", LocalDate.of(1936, 10, 12));
             goofy.setId(gid);
-            dao.saveOrUpdate(goofy);
+            assertTrue(dao.saveOrUpdate(goofy));
 
             return null;        	
         });
@@ -281,12 +283,34 @@ public class ITUserDao {
 	        User daisy = new User("Duck", "Daisy", LocalDate.of(2013, 01, 13));
 	        daisy.setId(did);
 	        daisy.setFirstName("Daisy");
-	        dao.saveOrUpdate(daisy);
+	        assertTrue(dao.saveOrUpdate(daisy));
 	        return null;
         });
     }
     
 	
+	@Test
+    public void testSaveOrUpdateAll() throws Exception {
+        insertData(connection);
+
+        UUID did = UUID.fromString("20000000-0000-0000-0000-000000000001");
+        User daisy = new User("Duck", "Daisy", LocalDate.of(2013, 01, 13));
+        daisy.setId(did);
+        UUID gid = UUID.fromString("20000000-A000-0000-0000-000000000001");
+        User goofy = new User("Goofy", "Goofus", LocalDate.of(1936, 10, 12));
+        goofy.setId(gid);
+
+        int[] rows = dao.saveOrUpdateAll(Arrays.asList(daisy, goofy));
+        assertEquals(2, rows.length);
+
+        Statement s = connection.createStatement();
+        ResultSet r = s.executeQuery(COUNT_SQL);
+        r.next();
+        assertEquals(4, r.getInt(1));
+        assertEquals("Daisy", dao.getById(did).getFirstName());
+        assertEquals("Goofus", dao.getById(gid).getFirstName());
+    }
+    
     private void createDB(Connection c) throws SQLException {
         Statement s = c.createStatement();
         s.execute("CREATE TABLE public.clients\n" + 
@@ -295,6 +319,7 @@ public class ITUserDao {
         		"    \"name\" text COLLATE pg_catalog.\"default\" NOT NULL,\n" + 
         		"    \"firstname\" text COLLATE pg_catalog.\"default\" NOT NULL,\n" + 
         		"    \"birthdate\" date NOT NULL,\n" + 
+        		"    \"version\" bigint NOT NULL DEFAULT 0,\n" + 
         		"    CONSTRAINT clients_pkey PRIMARY KEY (\"id\")\n" + 
         		")");
 	}
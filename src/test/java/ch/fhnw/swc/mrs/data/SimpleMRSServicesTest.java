@@ -0,0 +1,658 @@
+package ch.fhnw.swc.mrs.data;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ch.fhnw.swc.mrs.api.RentalRequest;
+import ch.fhnw.swc.mrs.model.Account;
+import ch.fhnw.swc.mrs.model.BusinessDate;
+import ch.fhnw.swc.mrs.model.Movie;
+import ch.fhnw.swc.mrs.model.PriceCategory;
+import ch.fhnw.swc.mrs.model.Rental;
+import ch.fhnw.swc.mrs.model.User;
+
+/**
+ * Tests for the secondary indexes and stress tests for the concurrent behavior of SimpleMRSServices.
+ */
+@DisplayName("Tests for SimpleMRSServices")
+public class SimpleMRSServicesTest {
+
+    private static final int THREADS = 16;
+    private static final LocalDate BIRTHDATE = LocalDate.of(1980, 1, 1);
+
+    private SimpleMRSServices backend; // class under test
+    private ExecutorService executor;
+
+    @BeforeAll
+    public static void registerPriceCategories() {
+        PriceCategory.init();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        backend = new SimpleMRSServices();
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @DisplayName("Renting and returning moves a movie between the rented and the available movies")
+    @Test
+    public void testRentedIndex() {
+        Movie m = backend.createMovie("Metropolis", LocalDate.of(1927, 1, 10), "Regular", 0);
+        User u = backend.createUser("Lang", "Fritz", BIRTHDATE);
+        assertTrue(backend.getAllMovies(false).contains(m));
+        assertFalse(backend.getAllMovies(true).contains(m));
+
+        assertTrue(backend.createRental(u.getId(), m.getId(), LocalDate.now()));
+        assertTrue(backend.getAllMovies(true).contains(m));
+        assertFalse(backend.getAllMovies(false).contains(m));
+
+        assertTrue(backend.returnRental(u.getRentals().get(0).getId()));
+        assertTrue(backend.getAllMovies(false).contains(m));
+        assertFalse(backend.getAllMovies(true).contains(m));
+
+        assertTrue(backend.deleteMovie(m.getId()));
+        assertTrue(backend.getAllMovies(false).isEmpty());
+        assertTrue(backend.getAllMovies(true).isEmpty());
+    }
+
+    @DisplayName("Changes increment the versions of the movies, the users and their collections")
+    @Test
+    public void testVersions() {
+        Movie m = backend.createMovie("Metropolis", LocalDate.of(1927, 1, 10), "Regular", 0);
+        User u = backend.createUser("Lang", "Fritz", BIRTHDATE);
+        long movies = backend.getMoviesVersion();
+        long users = backend.getUsersVersion();
+        assertEquals(0, m.getVersion());
+
+        Movie update = new Movie("Metropolis", LocalDate.of(1927, 1, 10), m.getPriceCategory(), 12);
+        update.setId(m.getId());
+        assertTrue(backend.updateMovie(update, 0));
+        assertEquals(1, backend.getMovieById(m.getId()).getVersion());
+        assertFalse(backend.updateMovie(update, 0));
+        assertFalse(backend.updateMovie(update, 2));
+        assertEquals(12, backend.getMovieById(m.getId()).getAgeRating());
+        assertEquals(movies + 1, backend.getMoviesVersion());
+
+        assertTrue(backend.createRental(u.getId(), m.getId(), LocalDate.now()));
+        assertEquals(2, backend.getMovieById(m.getId()).getVersion());
+        assertTrue(backend.returnRental(u.getRentals().get(0).getId()));
+        assertEquals(3, backend.getMovieById(m.getId()).getVersion());
+        assertEquals(movies + 3, backend.getMoviesVersion());
+        assertEquals(users, backend.getUsersVersion());
+
+        User renamed = new User(u.getId(), "Lang", "Friedrich", BIRTHDATE);
+        assertTrue(backend.updateUser(renamed, 0));
+        assertFalse(backend.updateUser(renamed, 0));
+        assertEquals(1, backend.getUserById(u.getId()).getVersion());
+        assertFalse(backend.updateUser(new User(UUID.randomUUID(), "Nobody", "No", BIRTHDATE), 0));
+        assertTrue(backend.deleteUser(u.getId()));
+        assertEquals(users + 2, backend.getUsersVersion());
+
+        assertTrue(backend.deleteMovie(m.getId()));
+        assertFalse(backend.deleteMovie(m.getId()));
+        assertEquals(movies + 4, backend.getMoviesVersion());
+    }
+
+    @DisplayName("Many movies are created at once")
+    @Test
+    public void testCreateMovies() {
+        List<Movie> newMovies = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            newMovies.add(new Movie("Movie " + i, "2000-01-01", "Regular", 0));
+        }
+        assertTrue(backend.createMovies(newMovies));
+        assertEquals(10, backend.getAllMovies().size());
+        assertEquals(10, backend.getAllMovies(false).size());
+        for (Movie m : newMovies) {
+            assertSame(m, backend.getMovieById(m.getId()));
+        }
+    }
+
+    @DisplayName("Rentals are listed page by page by user and by movie")
+    @Test
+    public void testRentalsByUserAndMovie() {
+        List<Movie> movies = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            movies.add(new Movie("Movie " + i, "2000-01-01", "Regular", 0));
+        }
+        assertTrue(backend.createMovies(movies));
+        List<User> users = Arrays.asList(new User("Lang", "Fritz", BIRTHDATE),
+                new User("Murnau", "Friedrich", BIRTHDATE));
+        assertTrue(backend.createUsers(users));
+        UUID lang = users.get(0).getId();
+        UUID murnau = users.get(1).getId();
+        LocalDate today = LocalDate.now();
+
+        UUID first = backend.rentMovie(lang, movies.get(0).getId(), today);
+        UUID second = backend.rentMovie(lang, movies.get(1).getId(), today);
+        UUID third = backend.rentMovie(murnau, movies.get(2).getId(), today);
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNotNull(third);
+        assertNull(backend.rentMovie(murnau, movies.get(0).getId(), today));
+
+        List<Rental> page = backend.getRentals(lang, null, null, 1);
+        assertEquals(1, page.size());
+        List<Rental> next = backend.getRentals(lang, null, page.get(0).getId(), 1);
+        assertEquals(1, next.size());
+        assertEquals(new HashSet<>(Arrays.asList(first, second)),
+                new HashSet<>(Arrays.asList(page.get(0).getId(), next.get(0).getId())));
+        assertTrue(backend.getRentals(lang, null, next.get(0).getId(), 1).isEmpty());
+
+        List<Rental> ofMovie = backend.getRentals(null, movies.get(2).getId(), null, 10);
+        assertEquals(1, ofMovie.size());
+        assertEquals(third, ofMovie.get(0).getId());
+        assertEquals(murnau, ofMovie.get(0).getUser().getId());
+        assertTrue(backend.getRentals(lang, movies.get(2).getId(), null, 10).isEmpty());
+        assertEquals(3, backend.getRentals(null, null, null, 10).size());
+
+        assertTrue(backend.returnRental(third));
+        assertTrue(backend.getRentals(null, movies.get(2).getId(), null, 10).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> backend.getRentals(lang, null, null, 0));
+    }
+
+    @DisplayName("Batches report the outcome of every item")
+    @Test
+    public void testBatchOperations() {
+        List<Movie> movies = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            movies.add(new Movie("Movie " + i, "2000-01-01", "Regular", 0));
+        }
+        assertTrue(backend.createMovies(movies));
+        List<User> users = Arrays.asList(new User("Lang", "Fritz", BIRTHDATE),
+                new User("Murnau", "Friedrich", BIRTHDATE));
+        assertTrue(backend.createUsers(users));
+        assertEquals("Murnau", backend.getUserById(users.get(1).getId()).getName());
+
+        UUID[] rentals = backend.createRentals(Arrays.asList(
+                new RentalRequest(users.get(0).getId(), movies.get(0).getId(), LocalDate.now()),
+                new RentalRequest(users.get(1).getId(), movies.get(0).getId(), LocalDate.now()),
+                new RentalRequest(users.get(1).getId(), movies.get(1).getId(), LocalDate.now().plusDays(1)),
+                new RentalRequest(users.get(1).getId(), movies.get(2).getId(), LocalDate.now())));
+        assertNotNull(rentals[0]);
+        assertNull(rentals[1]);
+        assertNull(rentals[2]);
+        assertNotNull(rentals[3]);
+        assertTrue(backend.getMovieById(movies.get(0).getId()).isRented());
+
+        Movie changed = new Movie("Changed", "2000-01-01", "Children", 6);
+        changed.setId(movies.get(0).getId());
+        Movie unknown = new Movie("Unknown", "2000-01-01", "Regular", 0);
+        unknown.setId(UUID.randomUUID());
+        assertArrayEquals(new boolean[] {true, false}, backend.updateMovies(Arrays.asList(changed, unknown)));
+        Movie stored = backend.getMovieById(changed.getId());
+        assertEquals("Changed", stored.getTitle());
+        assertTrue(stored.isRented());
+        assertNull(backend.getMovieById(unknown.getId()));
+
+        User renamed = new User("Lang", "Fritz Jr.", BIRTHDATE);
+        renamed.setId(users.get(0).getId());
+        assertArrayEquals(new boolean[] {true}, backend.updateUsers(Arrays.asList(renamed)));
+        assertEquals("Fritz Jr.", backend.getUserById(renamed.getId()).getFirstName());
+
+        assertArrayEquals(new boolean[] {true, false},
+                backend.returnRentals(Arrays.asList(rentals[0], UUID.randomUUID())));
+        assertFalse(backend.getMovieById(movies.get(0).getId()).isRented());
+
+        assertArrayEquals(new boolean[] {true, false},
+                backend.deleteMovies(Arrays.asList(movies.get(1).getId(), UUID.randomUUID())));
+        assertNull(backend.getMovieById(movies.get(1).getId()));
+        assertArrayEquals(new boolean[] {true}, backend.deleteUsers(Arrays.asList(users.get(1).getId())));
+        assertNull(backend.getUserById(users.get(1).getId()));
+    }
+
+    @DisplayName("Pages follow each other in unsigned id order")
+    @Test
+    public void testPaging() {
+        List<Movie> newMovies = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            newMovies.add(new Movie("Movie " + i, "2000-01-01", "Regular", 0));
+        }
+        backend.createMovies(newMovies);
+        List<UUID> ids = new ArrayList<>();
+        UUID after = null;
+        List<Movie> page;
+        do {
+            page = backend.getMovies(after, 2);
+            assertTrue(page.size() <= 2);
+            for (Movie m : page) {
+                after = m.getId();
+                ids.add(after);
+            }
+        } while (page.size() == 2);
+        assertEquals(5, ids.size());
+        for (int i = 1; i < ids.size(); i++) {
+            UUID previous = ids.get(i - 1);
+            UUID current = ids.get(i);
+            int order = Long.compareUnsigned(previous.getMostSignificantBits(), current.getMostSignificantBits());
+            assertTrue(order < 0 || order == 0 && Long.compareUnsigned(previous.getLeastSignificantBits(),
+                    current.getLeastSignificantBits()) < 0);
+        }
+
+        // the largest id comes last as in PostgreSQL, a signed comparison would put it first.
+        Movie low = new Movie("Low", "2000-01-01", "Regular", 0);
+        low.setId(UUID.fromString("00000000-0000-0000-0000-000000000001"));
+        Movie high = new Movie("High", "2000-01-01", "Regular", 0);
+        high.setId(UUID.fromString("ffffffff-ffff-ffff-ffff-ffffffffffff"));
+        backend.updateMovie(high);
+        backend.updateMovie(low);
+        List<Movie> all = backend.getMovies(null, 10);
+        assertEquals(7, all.size());
+        assertSame(low, all.get(0));
+        assertSame(high, all.get(6));
+        assertThrows(IllegalArgumentException.class, () -> backend.getMovies(null, 0));
+    }
+
+    @DisplayName("Pages of rented movies, users and rentals")
+    @Test
+    public void testPagingOfPartitions() {
+        Movie rented = backend.createMovie("Metropolis", LocalDate.of(1927, 1, 10), "Regular", 0);
+        Movie available = backend.createMovie("Nosferatu", LocalDate.of(1922, 3, 4), "Regular", 0);
+        User u = backend.createUser("Lang", "Fritz", BIRTHDATE);
+        assertTrue(backend.createRental(u.getId(), rented.getId(), LocalDate.now()));
+
+        assertEquals(1, backend.getMovies(true, null, 10).size());
+        assertSame(rented, backend.getMovies(true, null, 10).get(0));
+        assertSame(available, backend.getMovies(false, null, 10).get(0));
+        assertTrue(backend.getMovies(true, rented.getId(), 10).isEmpty());
+        assertSame(u, backend.getUsers(null, 10).get(0));
+        assertTrue(backend.getUsers(u.getId(), 10).isEmpty());
+        assertEquals(1, backend.getRentals(null, 10).size());
+
+        assertTrue(backend.returnRental(u.getRentals().get(0).getId()));
+        assertTrue(backend.getRentals(null, 10).isEmpty());
+        assertTrue(backend.deleteUser(u.getId()));
+        assertTrue(backend.getUsers(null, 10).isEmpty());
+    }
+
+    @DisplayName("Movies and users are streamed from the indexes")
+    @Test
+    public void testStreams() {
+        Movie rented = backend.createMovie("Metropolis", LocalDate.of(1927, 1, 10), "Regular", 0);
+        Movie available = backend.createMovie("Nosferatu", LocalDate.of(1922, 3, 4), "Regular", 0);
+        User u = backend.createUser("Lang", "Fritz", BIRTHDATE);
+        assertTrue(backend.createRental(u.getId(), rented.getId(), LocalDate.now()));
+
+        assertEquals(2, backend.streamMovies().count());
+        assertSame(rented, backend.streamMovies(true).findFirst().get());
+        assertSame(available, backend.streamMovies(false).findFirst().get());
+        assertEquals(1, backend.streamMovies(false).count());
+        assertSame(u, backend.streamUsers().findFirst().get());
+    }
+
+    @DisplayName("Users are found by their current name")
+    @Test
+    public void testNameIndex() {
+        User u = backend.createUser("Lang", "Fritz", BIRTHDATE);
+        User other = backend.createUser("Murnau", "Friedrich", BIRTHDATE);
+        assertSame(u, backend.getUserByName("Lang"));
+        assertSame(other, backend.getUserByName("Murnau"));
+
+        u.setName("Wiene");
+        assertTrue(backend.updateUser(u));
+        assertNull(backend.getUserByName("Lang"));
+        assertSame(u, backend.getUserByName("Wiene"));
+
+        User replacement = new User(u.getId(), "Pabst", "Georg", BIRTHDATE);
+        assertTrue(backend.updateUser(replacement));
+        assertNull(backend.getUserByName("Wiene"));
+        assertSame(replacement, backend.getUserByName("Pabst"));
+
+        assertTrue(backend.deleteUser(replacement.getId()));
+        assertNull(backend.getUserByName("Pabst"));
+        assertSame(other, backend.getUserByName("Murnau"));
+    }
+
+    @DisplayName("The indexes are filled by the CSV loaders")
+    @Test
+    public void testIndexesAfterInit() {
+        backend.init();
+        int rented = 0;
+        for (Movie m : backend.getAllMovies()) {
+            if (m.isRented()) {
+                rented++;
+            }
+        }
+        assertEquals(rented, backend.getAllMovies(true).size());
+        assertEquals(backend.getAllMovies().size() - rented, backend.getAllMovies(false).size());
+        for (User u : backend.getAllUsers()) {
+            assertEquals(u.getName(), backend.getUserByName(u.getName()).getName());
+        }
+    }
+
+    @DisplayName("Accounts follow the rentals and returns of a user")
+    @Test
+    public void testAccounts() {
+        LocalDate today = LocalDate.now();
+        User u = backend.createUser("Lang", "Fritz", BIRTHDATE);
+        Movie regular = backend.createMovie("Metropolis", LocalDate.of(1927, 1, 10), "Regular", 0);
+        Movie newRelease = backend.createMovie("M", LocalDate.of(1931, 5, 11), "New Release", 0);
+        assertEquals(0, backend.getAccount(u.getId()).getCharge());
+
+        backend.createRental(u.getId(), regular.getId(), today.minusDays(5));
+        UUID id = backend.rentMovie(u.getId(), newRelease.getId(), today.minusDays(2));
+        Account a = backend.getAccount(u.getId());
+        assertEquals(today, a.getDate());
+        assertEquals(650 + 600, a.getCharge());
+        assertEquals(1 + 2, a.getFrequentRenterPoints());
+        assertEquals(2, a.getRentals());
+        assertEquals(u.getCharge(), a.getCharge() / 100.0, 1e-9);
+
+        assertTrue(backend.returnRental(id));
+        a = backend.getAccount(u.getId());
+        assertEquals(650, a.getCharge());
+        assertEquals(1, a.getFrequentRenterPoints());
+        assertEquals(1, a.getRentals());
+
+        assertTrue(backend.deleteUser(u.getId()));
+        assertNull(backend.getAccount(u.getId()));
+        assertNull(backend.getAccount(UUID.randomUUID()));
+    }
+
+    @DisplayName("Accounts are recomputed for a new day")
+    @Test
+    public void testAccountRollover() {
+        LocalDate today = LocalDate.now();
+        User u = backend.createUser("Lang", "Fritz", BIRTHDATE);
+        Movie m = backend.createMovie("Metropolis", LocalDate.of(1927, 1, 10), "Regular", 0);
+        backend.createRental(u.getId(), m.getId(), today.minusDays(2));
+        assertEquals(200, backend.getAccount(u.getId()).getCharge());
+
+        backend.rollover(today.plusDays(1));
+        Account a = backend.getAccount(u.getId());
+        assertEquals(today.plusDays(1), a.getDate());
+        assertEquals(350, a.getCharge());
+        backend.rollover(today);
+        assertEquals(today.plusDays(1), backend.getAccount(u.getId()).getDate());
+    }
+
+    @DisplayName("Accounts are recomputed when they are read on a new day")
+    @Test
+    public void testAccountOnNewDay() {
+        LocalDate today = LocalDate.now();
+        User u = backend.createUser("Lang", "Fritz", BIRTHDATE);
+        Movie m = backend.createMovie("Metropolis", LocalDate.of(1927, 1, 10), "Regular", 0);
+        backend.createRental(u.getId(), m.getId(), today.minusDays(2));
+        assertEquals(200, backend.getAccount(u.getId()).getCharge());
+        try {
+            BusinessDate.setClock(Clock.offset(Clock.systemDefaultZone(), Duration.ofDays(2)));
+            Account a = backend.getAccount(u.getId());
+            assertEquals(today.plusDays(2), a.getDate());
+            assertEquals(500, a.getCharge());
+        } finally {
+            BusinessDate.setClock(Clock.systemDefaultZone());
+        }
+    }
+
+    @DisplayName("Accounts stay consistent while renting and returning concurrently")
+    @Test
+    public void testConcurrentAccounts() throws Exception {
+        final int iterations = 500;
+        LocalDate rentalDate = LocalDate.now().minusDays(4);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> workers = new ArrayList<>();
+        List<User> renters = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            User u = backend.createUser("Renter" + t, "Test", BIRTHDATE);
+            renters.add(u);
+            List<Movie> own = new ArrayList<>();
+            for (int i = 0; i < User.MAX_RENTABLE_MOVIES; i++) {
+                own.add(backend.createMovie("Movie" + t + "-" + i, LocalDate.of(2000, 1, 1),
+                        i % 2 == 0 ? "Regular" : "Children", 0));
+            }
+            workers.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < iterations; i++) {
+                    Movie m = own.get(ThreadLocalRandom.current().nextInt(own.size()));
+                    if (!backend.createRental(u.getId(), m.getId(), rentalDate)) {
+                        for (Rental r : new ArrayList<>(u.getRentals())) {
+                            if (r.getMovie().getId().equals(m.getId())) {
+                                assertTrue(backend.returnRental(r.getId()));
+                            }
+                        }
+                    }
+                    Account a = backend.getAccount(u.getId());
+                    assertTrue(a.getCharge() >= 0 && a.getRentals() <= User.MAX_RENTABLE_MOVIES);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : workers) {
+            f.get(60, TimeUnit.SECONDS);
+        }
+
+        for (User u : renters) {
+            Account a = backend.getAccount(u.getId());
+            assertEquals(Account.of(u.getId(), a.getDate(), u.getRentals()), a);
+        }
+    }
+
+    @DisplayName("Only one of many concurrent renters gets the same movie")
+    @Test
+    public void testConcurrentRentalsOfSameMovie() throws Exception {
+        Movie m = backend.createMovie("Metropolis", LocalDate.of(1927, 1, 10), "Regular", 0);
+        List<User> renters = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            renters.add(backend.createUser("Renter" + i, "Test", BIRTHDATE));
+        }
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (User u : renters) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return backend.createRental(u.getId(), m.getId(), LocalDate.now());
+            }));
+        }
+        start.countDown();
+
+        int successes = 0;
+        for (Future<Boolean> f : results) {
+            if (f.get(10, TimeUnit.SECONDS)) {
+                successes++;
+            }
+        }
+        assertEquals(1, successes);
+        assertEquals(1, backend.getAllRentals().size());
+        assertTrue(backend.getMovieById(m.getId()).isRented());
+    }
+
+    @DisplayName("A movie is never held by two users while renting and returning concurrently")
+    @Test
+    public void testConcurrentRentAndReturn() throws Exception {
+        final int movieCount = 4;
+        final int iterations = 2000;
+        List<Movie> catalogue = new ArrayList<>();
+        for (int i = 0; i < movieCount; i++) {
+            catalogue.add(backend.createMovie("Movie" + i, LocalDate.of(2000, 1, 1), "Regular", 0));
+        }
+        AtomicIntegerArray holders = new AtomicIntegerArray(movieCount);
+        AtomicIntegerArray returning = new AtomicIntegerArray(movieCount);
+        AtomicInteger doubleRentals = new AtomicInteger();
+        AtomicInteger rentals = new AtomicInteger();
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            User u = backend.createUser("Renter" + t, "Test", BIRTHDATE);
+            workers.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < iterations; i++) {
+                    int idx = ThreadLocalRandom.current().nextInt(movieCount);
+                    UUID movieId = catalogue.get(idx).getId();
+                    if (backend.createRental(u.getId(), movieId, BusinessDate.today())) {
+                        rentals.incrementAndGet();
+                        // a previous renter still counted as holder must already be returning the movie.
+                        int returned = returning.get(idx);
+                        if (holders.incrementAndGet(idx) - returned > 1) {
+                            doubleRentals.incrementAndGet();
+                        }
+                        UUID rentalId = u.getRentals().get(0).getId();
+                        returning.incrementAndGet(idx);
+                        assertTrue(backend.returnRental(rentalId));
+                        holders.decrementAndGet(idx);
+                        returning.decrementAndGet(idx);
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : workers) {
+            f.get(60, TimeUnit.SECONDS);
+        }
+
+        assertEquals(0, doubleRentals.get());
+        assertTrue(rentals.get() > 0);
+        assertTrue(backend.getAllRentals().isEmpty());
+        for (Movie m : catalogue) {
+            assertFalse(backend.getMovieById(m.getId()).isRented());
+        }
+    }
+
+    @DisplayName("A rental can only be returned once")
+    @Test
+    public void testConcurrentReturnOfSameRental() throws Exception {
+        Movie m = backend.createMovie("Nosferatu", LocalDate.of(1922, 3, 4), "Regular", 0);
+        User u = backend.createUser("Orlok", "Graf", BIRTHDATE);
+        assertTrue(backend.createRental(u.getId(), m.getId(), LocalDate.now()));
+        UUID rentalId = u.getRentals().get(0).getId();
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return backend.returnRental(rentalId);
+            }));
+        }
+        start.countDown();
+
+        int successes = 0;
+        for (Future<Boolean> f : results) {
+            if (f.get(10, TimeUnit.SECONDS)) {
+                successes++;
+            }
+        }
+        assertEquals(1, successes);
+        assertFalse(u.hasRentals());
+        assertFalse(backend.getMovieById(m.getId()).isRented());
+    }
+
+    @DisplayName("A movie is rented until all of its copies are, the stock follows the rentals")
+    @Test
+    public void testRentCopies() {
+        Movie m = backend.createMovie("Metropolis", LocalDate.of(1927, 1, 10), "Regular", 0);
+        m.setCopies(2);
+        assertTrue(backend.updateMovie(m));
+        User u = backend.createUser("Lang", "Fritz", BIRTHDATE);
+        User v = backend.createUser("von Harbou", "Thea", BIRTHDATE);
+        User w = backend.createUser("Helm", "Brigitte", BIRTHDATE);
+
+        UUID first = backend.rentMovie(u.getId(), m.getId(), LocalDate.now());
+        assertNotNull(first);
+        assertFalse(backend.getMovieById(m.getId()).isRented());
+        assertEquals(1, backend.getStock().getInStock(m.getId()));
+        assertNotNull(backend.rentMovie(v.getId(), m.getId(), LocalDate.now()));
+        assertNull(backend.rentMovie(w.getId(), m.getId(), LocalDate.now()));
+
+        Movie stored = backend.getMovieById(m.getId());
+        assertTrue(stored.isRented());
+        assertEquals(0, stored.getAvailable());
+        assertEquals(0, backend.getStock().getInStock(m.getId()));
+        assertEquals(1, backend.getMovies(true, null, 10).size());
+        assertEquals(2, backend.getRentals(null, m.getId(), null, 10).size());
+
+        // the rented copies cannot be removed, the others can be added.
+        Movie fewer = new Movie("Metropolis", "1927-01-10", "Regular", 0);
+        fewer.setId(m.getId());
+        fewer.setCopies(1);
+        assertFalse(backend.updateMovie(fewer));
+        Movie more = new Movie("Metropolis", "1927-01-10", "Regular", 0);
+        more.setId(m.getId());
+        more.setCopies(3);
+        assertTrue(backend.updateMovie(more));
+        assertEquals(1, backend.getMovieById(m.getId()).getAvailable());
+        // an update that does not tell the copies keeps them.
+        Movie retitled = new Movie("Metropolis (restored)", "1927-01-10", "Regular", 0);
+        retitled.setId(m.getId());
+        assertTrue(backend.updateMovie(retitled));
+        assertEquals(3, backend.getMovieById(m.getId()).getCopies());
+        assertEquals(1, backend.getMovieById(m.getId()).getAvailable());
+        assertNotNull(backend.rentMovie(w.getId(), m.getId(), LocalDate.now()));
+
+        assertTrue(backend.returnRental(first));
+        stored = backend.getMovieById(m.getId());
+        assertFalse(stored.isRented());
+        assertEquals(1, stored.getAvailable());
+        assertEquals(1, backend.getStock().getInStock(m.getId()));
+        assertEquals(2, backend.getRentals(null, m.getId(), null, 10).size());
+    }
+
+    @DisplayName("Concurrent renters of a movie get no more than its copies")
+    @Test
+    public void testConcurrentRentCopies() throws Exception {
+        final int copies = 5;
+        Movie m = backend.createMovie("Sunrise", LocalDate.of(1927, 9, 23), "Regular", 0);
+        m.setCopies(copies);
+        assertTrue(backend.updateMovie(m));
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            User u = backend.createUser("Renter" + i, "Test", BIRTHDATE);
+            results.add(executor.submit(() -> {
+                start.await();
+                return backend.createRental(u.getId(), m.getId(), LocalDate.now());
+            }));
+        }
+        start.countDown();
+
+        int successes = 0;
+        for (Future<Boolean> f : results) {
+            if (f.get(10, TimeUnit.SECONDS)) {
+                successes++;
+            }
+        }
+        assertEquals(copies, successes);
+        assertEquals(copies, backend.getAllRentals().size());
+        assertTrue(backend.getMovieById(m.getId()).isRented());
+        assertEquals(0, backend.getStock().getInStock(m.getId()));
+    }
+}
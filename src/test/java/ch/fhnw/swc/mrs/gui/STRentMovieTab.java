@@ -3,11 +3,7 @@ package ch.fhnw.swc.mrs.gui;
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
-import java.net.URI;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.time.LocalDate;
-import java.util.stream.Stream;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
@@ -20,6 +16,7 @@ import org.testfx.api.FxToolkit;
 import org.testfx.framework.junit5.ApplicationTest;
 
 import ch.fhnw.swc.mrs.MovieRentalSystem;
+import ch.fhnw.swc.mrs.model.PriceCategory;
 import javafx.scene.control.Button;
 import javafx.scene.control.CheckBox;
 import javafx.scene.control.DatePicker;
@@ -221,16 +218,7 @@ public class STRentMovieTab extends ApplicationTest {
 	 */
 	@BeforeAll
 	private static void loadPriceCategories() throws Exception {
-		URI uri = MovieRentalSystem.class.getClassLoader().getResource("data/pricecategories.config").toURI();
-		try (Stream<String> stream = Files.lines(Paths.get(uri))) {
-			stream.forEach(x -> {
-				try {
-					Class.forName(x);
-				} catch (ClassNotFoundException e) {
-					e.printStackTrace();
-				}
-			});
-		}
+		PriceCategory.init();
 	}
 
 }
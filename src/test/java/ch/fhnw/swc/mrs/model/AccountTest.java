@@ -0,0 +1,59 @@
+package ch.fhnw.swc.mrs.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class AccountTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2018, 10, 10);
+
+    private User u;
+    private Rental regular;
+    private Rental children;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        u = new User(UUID.randomUUID(), "Lang", "Fritz", LocalDate.of(1980, 1, 1));
+        regular = new Rental(u, new Movie("Metropolis", LocalDate.of(1927, 1, 10),
+                RegularPriceCategory.getInstance(), 0), TODAY.minusDays(5));
+        children = new Rental(u, new Movie("Heidi", LocalDate.of(1952, 1, 1),
+                ChildrenPriceCategory.getInstance(), 0), TODAY.minusDays(1));
+    }
+
+    @Test
+    @DisplayName("Charges are summed in cents")
+    public void testOf() {
+        Account a = Account.of(u.getId(), TODAY, Arrays.asList(regular, children));
+        assertEquals(650 + 150, a.getCharge());
+        assertEquals(2, a.getFrequentRenterPoints());
+        assertEquals(2, a.getRentals());
+        assertEquals(TODAY, a.getDate());
+        assertEquals(u.getId(), a.getUserId());
+    }
+
+    @Test
+    @DisplayName("Adding and removing a rental gives the same account as computing it")
+    public void testPlusMinus() {
+        Account empty = Account.of(u.getId(), TODAY, Collections.emptyList());
+        Account both = empty.plus(regular).plus(children);
+        assertEquals(Account.of(u.getId(), TODAY, Arrays.asList(regular, children)), both);
+        assertEquals(Account.of(u.getId(), TODAY, Arrays.asList(children)), both.minus(regular));
+        assertEquals(empty, both.minus(regular).minus(children));
+    }
+
+    @Test
+    @DisplayName("A rental costs more on a later day")
+    public void testCharge() {
+        assertEquals(650, Account.charge(regular, TODAY));
+        assertEquals(800, Account.charge(regular, TODAY.plusDays(1)));
+        assertEquals(0, Account.charge(regular, TODAY.minusDays(5)));
+    }
+}
@@ -0,0 +1,55 @@
+package ch.fhnw.swc.mrs.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class BusinessDateTest {
+
+    private static final LocalDate DAY = LocalDate.of(2018, 10, 10);
+
+    @AfterEach
+    public void tearDown() {
+        BusinessDate.setClock(Clock.systemDefaultZone());
+    }
+
+    @Test
+    @DisplayName("The day is read from the clock")
+    public void testToday() {
+        BusinessDate.setClock(Clock.fixed(DAY.atStartOfDay(ZoneOffset.UTC).toInstant(), ZoneOffset.UTC));
+        assertEquals(DAY, BusinessDate.today());
+        assertEquals(Duration.ofDays(1).toMillis(), BusinessDate.millisUntilTomorrow());
+
+        BusinessDate.setClock(Clock.systemDefaultZone());
+        assertEquals(LocalDate.now(), BusinessDate.today());
+    }
+
+    @Test
+    @DisplayName("The day advances at midnight of the zone of the clock")
+    public void testAdvance() throws InterruptedException {
+        ZoneId zone = ZoneId.of("Europe/Zurich");
+        Clock system = Clock.system(zone);
+        Duration untilMidnight = Duration.between(system.instant(), DAY.atStartOfDay(zone).toInstant());
+        // 200 ms before midnight.
+        BusinessDate.setClock(Clock.offset(system, untilMidnight.minusMillis(200)));
+        assertEquals(DAY.minusDays(1), BusinessDate.today());
+        assertTrue(BusinessDate.millisUntilTomorrow() <= 200);
+        Thread.sleep(300);
+        assertEquals(DAY, BusinessDate.today());
+    }
+
+    @Test
+    public void testNoClock() {
+        assertThrows(IllegalArgumentException.class, () -> BusinessDate.setClock(null));
+    }
+}
@@ -160,6 +160,41 @@ public class MovieTest {
     assertEquals(RD_MSG, e.getMessage());
   }
   
+  @DisplayName("Copies are rented and returned, the rented ones are kept when the number of copies changes")
+  @Test
+  public void testCopies() {
+    Movie m = new Movie("Untitled", today, REGULAR, 0);
+    assertEquals(1, m.getCopies());
+    assertEquals(1, m.getAvailable());
+    assertFalse(m.hasCopies());
+
+    m.setCopies(3);
+    assertTrue(m.hasCopies());
+    assertEquals(3, m.getAvailable());
+    assertTrue(m.rentCopy());
+    assertTrue(m.rentCopy());
+    assertFalse(m.isRented());
+    m.setCopies(2);
+    assertEquals(0, m.getAvailable());
+    assertTrue(m.isRented());
+    assertFalse(m.rentCopy());
+    Throwable e = assertThrows(IllegalArgumentException.class, () -> m.setCopies(1));
+    assertEquals(Movie.EXC_COPIES, e.getMessage());
+
+    assertTrue(m.returnCopy());
+    assertTrue(m.returnCopy());
+    assertFalse(m.returnCopy());
+    assertEquals(2, m.getAvailable());
+    e = assertThrows(IllegalArgumentException.class, () -> m.setAvailable(3));
+    assertEquals(Movie.EXC_AVAILABLE, e.getMessage());
+    assertThrows(IllegalArgumentException.class, () -> m.setCopies(0));
+
+    m.setRented(true);
+    assertEquals(0, m.getAvailable());
+    m.setRented(false);
+    assertEquals(2, m.getAvailable());
+  }
+
   @DisplayName("Try to re-set id")
   @Test
   public void testIdReset() {
@@ -2,6 +2,9 @@ package ch.fhnw.swc.mrs.model;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Arrays;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -44,4 +47,12 @@ public class PriceCategoryTest {
       assertNull(pc);
   }
 
+  @Test
+  public void testGetPriceCategoryIds() {
+      assertEquals(Arrays.asList("Regular", "Children", "New Release"),
+              PriceCategory.getPriceCategoryIds().subList(0, 3));
+      assertNull(PriceCategory.getPriceCategoryFromId(null));
+      assertSame(NewReleasePriceCategory.getInstance(), PriceCategory.getPriceCategoryFromId("New Release"));
+  }
+
 }
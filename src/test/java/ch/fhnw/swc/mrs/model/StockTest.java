@@ -3,7 +3,18 @@ package ch.fhnw.swc.mrs.model;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
 import ch.fhnw.swc.mrs.api.MovieRentalException;
@@ -13,7 +24,14 @@ class StockTest {
 
   @BeforeEach
   public void setUp() throws Exception {
-      stock = new Stock(); // create object of CUT
+      stock = new Stock(Runnable::run); // create object of CUT, listeners are notified synchronously
+  }
+
+  private static Movie mockMovie(String title) {
+      Movie m = mock(Movie.class);
+      when(m.getId()).thenReturn(UUID.randomUUID());
+      when(m.getTitle()).thenReturn(title);
+      return m;
   }
 
   /**
@@ -23,26 +41,47 @@ class StockTest {
    */
   @Test
   public void testAddToStock() {
-      Movie m = mock(Movie.class);
+      Movie m = mockMovie(null);
       stock.addToStock(m);
       stock.addToStock(m);
-      assertEquals(2, stock.getInStock(null));
+      assertEquals(2, stock.getInStock(m.getId()));
       
-      // verify that getTitle gets called twice for each add
-      verify(m, times(4)).getTitle();
+      // verify that the stock is kept by id, getId gets called once for each add
+      verify(m, times(3)).getId();
+      verify(m, never()).getTitle();
   }
 
   @Test
-  public void testRemoveFromStockCallsMovieGetTitleOnce() {
-      Movie m = mock(Movie.class);
+  public void testAddAndRemoveCopies() {
+      Movie m = mockMovie("Ben Hur");
+      assertEquals(3, stock.addToStock(m, 3));
+      assertEquals(3, stock.addToStock(m, 0));
+      assertThrows(IllegalArgumentException.class, () -> stock.addToStock(m, -1));
+      assertThrows(IllegalArgumentException.class, () -> stock.removeFromStock(m, 0));
+
+      // either all copies are removed or none.
+      assertThrows(MovieRentalException.class, () -> stock.removeFromStock(m, 4));
+      assertEquals(3, stock.getInStock(m.getId()));
+      assertEquals(1, stock.removeFromStock(m, 2));
+
+      assertEquals(1, stock.removeAllFromStock(m.getId()));
+      assertEquals(0, stock.getInStock(m.getId()));
+      assertEquals(0, stock.removeAllFromStock(m.getId()));
+  }
+
+  @Test
+  public void testRemoveFromStockCallsMovieGetIdOnce() {
+      Movie m = mockMovie(null);
+      UUID id = m.getId();
       stock.addToStock(m);
       stock.addToStock(m);
       stock.removeFromStock(m);
       reset(m); // reset mock to measure only remove behavior
-      assertEquals(1, stock.getInStock(null));
+      when(m.getId()).thenReturn(id);
+      assertEquals(1, stock.getInStock(id));
       stock.removeFromStock(m);
-      assertEquals(0, stock.getInStock(null));
-      verify(m, times(1)).getTitle();
+      assertEquals(0, stock.getInStock(id));
+      verify(m, times(1)).getId();
   }
 
   /**
@@ -52,12 +91,13 @@ class StockTest {
    */
   @Test
   public void testRemoveFromStockThrowsOnEmptyStock() {
-      Movie m = mock(Movie.class);
-      Movie notInStock = mock(Movie.class);
-      when(m.getTitle()).thenReturn("Titanic");
-      when(notInStock.getTitle()).thenReturn("Avatar");
+      Movie m = mockMovie("Titanic");
+      Movie notInStock = mockMovie("Avatar");
       stock.addToStock(m);
       assertThrows(MovieRentalException.class, () -> stock.removeFromStock(notInStock));
+      stock.removeFromStock(m);
+      assertThrows(MovieRentalException.class, () -> stock.removeFromStock(m));
+      assertEquals(0, stock.getInStock(m.getId()));
   }
 
   /**
@@ -70,18 +110,18 @@ class StockTest {
    */
   @Test
   public void testListenerOnRemoveFromStock() {
-      Movie m = mock(Movie.class);
-      when(m.getTitle()).thenReturn("Titanic");
+      Movie m = mockMovie("Titanic");
 
       LowStockListener lsl = mock(LowStockListener.class);
       when(lsl.getThreshold()).thenReturn(2);
 
+      stock.addLowStockListener(lsl);
       stock.addLowStockListener(lsl);
       stock.addToStock(m);
       stock.addToStock(m);
       stock.addToStock(m);
       stock.addToStock(m);
-      assertEquals(4, stock.getInStock("Titanic"));
+      assertEquals(4, stock.getInStock(m.getId()));
 
       // MP06.c.iii
       // remove one from stock above threshold, listener should not be called
@@ -101,8 +141,100 @@ class StockTest {
       stock.removeLowStockListener(lsl);
       stock.removeFromStock(m);
 
-      assertEquals(0, stock.getInStock("Titanic"));
+      assertEquals(0, stock.getInStock(m.getId()));
       verify(lsl, times(3)).getThreshold();
       verify(lsl, times(2)).stockLow(eq(m), anyInt());
   }
+
+  @DisplayName("A slow listener does not hold up removals, a burst of removals is reported once")
+  @Test
+  public void testAsynchronousCoalescedNotification() throws Exception {
+      ExecutorService notifier = Executors.newSingleThreadExecutor();
+      try {
+          stock = new Stock(notifier);
+          Movie m = mockMovie("Titanic");
+          CountDownLatch release = new CountDownLatch(1);
+          List<Integer> reported = new ArrayList<>();
+          stock.addLowStockListener(new LowStockListener() {
+              @Override
+              public int getThreshold() {
+                  return 10;
+              }
+
+              @Override
+              public void stockLow(Movie movie, int c) {
+                  try {
+                      release.await();
+                  } catch (InterruptedException e) {
+                      Thread.currentThread().interrupt();
+                  }
+                  synchronized (reported) {
+                      reported.add(c);
+                  }
+              }
+          });
+          // keep the notifier busy, so the following removals pile up.
+          notifier.execute(() -> {
+              try {
+                  release.await();
+              } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+              }
+          });
+          for (int i = 0; i < 5; i++) {
+              stock.addToStock(m);
+          }
+          for (int i = 0; i < 5; i++) {
+              stock.removeFromStock(m);
+          }
+          release.countDown();
+          notifier.shutdown();
+          assertTrue(notifier.awaitTermination(10, TimeUnit.SECONDS));
+          synchronized (reported) {
+              assertEquals(1, reported.size());
+              assertEquals(0, (int) reported.get(0));
+          }
+      } finally {
+          notifier.shutdownNow();
+      }
+  }
+
+  @DisplayName("Concurrent removals never take the stock below zero")
+  @Test
+  public void testConcurrentRemovals() throws Exception {
+      final int copies = 1000;
+      final int threads = 8;
+      Movie m = mockMovie("Titanic");
+      for (int i = 0; i < copies; i++) {
+          stock.addToStock(m);
+      }
+      AtomicInteger removed = new AtomicInteger();
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      try {
+          CountDownLatch start = new CountDownLatch(1);
+          List<Future<?>> workers = new ArrayList<>();
+          for (int t = 0; t < threads; t++) {
+              workers.add(executor.submit(() -> {
+                  start.await();
+                  for (int i = 0; i < copies; i++) {
+                      try {
+                          stock.removeFromStock(m);
+                          removed.incrementAndGet();
+                      } catch (MovieRentalException e) {
+                          // out of stock
+                      }
+                  }
+                  return null;
+              }));
+          }
+          start.countDown();
+          for (Future<?> f : workers) {
+              f.get(30, TimeUnit.SECONDS);
+          }
+      } finally {
+          executor.shutdownNow();
+      }
+      assertEquals(copies, removed.get());
+      assertEquals(0, stock.getInStock(m.getId()));
+  }
 }
@@ -0,0 +1,93 @@
+package ch.fhnw.swc.mrs.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class TablePriceCategoryTest {
+
+    private static final double tolerance = 1.0e-10;
+
+    private TablePriceCategory classic;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        classic = new TablePriceCategory("Classic", 2, 3, 1, 10, 1, 2);
+    }
+
+    @Test
+    public void testGetCharge() {
+        assertEquals(0.0d, classic.getCharge(-5), tolerance);
+        assertEquals(0.0d, classic.getCharge(0), tolerance);
+        assertEquals(2.0d, classic.getCharge(1), tolerance);
+        assertEquals(2.0d, classic.getCharge(3), tolerance);
+        assertEquals(3.0d, classic.getCharge(4), tolerance);
+        assertEquals(10.0d, classic.getCharge(11), tolerance);
+        assertEquals(10.0d, classic.getCharge(12), tolerance);
+        assertEquals(10.0d, classic.getCharge(PricingTable.DAYS + 10), tolerance);
+    }
+
+    @Test
+    public void testGetFrequentRenterPoints() {
+        assertEquals(0, classic.getFrequentRenterPoints(-3));
+        assertEquals(0, classic.getFrequentRenterPoints(0));
+        assertEquals(1, classic.getFrequentRenterPoints(1));
+        assertEquals(2, classic.getFrequentRenterPoints(2));
+        assertEquals(2, classic.getFrequentRenterPoints(PricingTable.DAYS + 10));
+    }
+
+    @Test
+    public void testToString() {
+        assertEquals("Classic", classic.toString());
+    }
+
+    @Test
+    @DisplayName("Charges beyond the precomputed days are computed")
+    public void testUncapped() {
+        TablePriceCategory pc = new TablePriceCategory("Uncapped", 1.5, 3, 1.5, 0, 1);
+        assertEquals(1.5d, pc.getCharge(3), tolerance);
+        assertEquals(1.5d + 1.5 * (PricingTable.DAYS - 3), pc.getCharge(PricingTable.DAYS), tolerance);
+        assertEquals(1.5d + 1.5 * (PricingTable.DAYS + 7), pc.getCharge(PricingTable.DAYS + 10), tolerance);
+        assertEquals(ChildrenPriceCategory.getInstance().getCharge(PricingTable.DAYS + 10),
+                pc.getCharge(PricingTable.DAYS + 10), tolerance);
+    }
+
+    @Test
+    @DisplayName("Invalid values are rejected")
+    public void testInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> new TablePriceCategory(" ", 1, 1, 1, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new TablePriceCategory("X", -1, 1, 1, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new TablePriceCategory("X", 1, 1, 1, 0));
+        assertThrows(IllegalArgumentException.class, () -> new TablePriceCategory("X", 1, 1, 1, 0, 1, -2));
+    }
+
+    @Test
+    @DisplayName("Categories are read from CSV")
+    public void testRead() throws IOException {
+        List<TablePriceCategory> categories = TablePriceCategory.read(new StringReader(
+                "# comment\nId,BaseCharge,BaseDays,DailyRate,MaxCharge,Points\n"
+                + "Classic, 2, 3, 1, 10, 1;2\nWeekly,5,7,0.5,0,1; 1; 3\n"));
+        assertEquals(2, categories.size());
+        assertEquals("Classic", categories.get(0).toString());
+        assertEquals(10.0d, categories.get(0).getCharge(20), tolerance);
+        assertEquals("Weekly", categories.get(1).toString());
+        assertEquals(5.5d, categories.get(1).getCharge(8), tolerance);
+        assertEquals(3, categories.get(1).getFrequentRenterPoints(3));
+    }
+
+    @Test
+    @DisplayName("Malformed lines are rejected with their number")
+    public void testReadMalformed() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> TablePriceCategory.read(new StringReader(
+                        "Id,BaseCharge,BaseDays,DailyRate,MaxCharge,Points\nClassic,2,3,1,10,1\nBad,two,3,1,0,1\n")));
+        assertEquals(true, e.getMessage().startsWith("line 2"));
+    }
+}
@@ -0,0 +1,161 @@
+package ch.fhnw.swc.mrs.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Tests for the negotiation and compression of response bodies")
+public class CompressionTest {
+
+    private static final int MIN_SIZE = 100;
+
+    private ByteArrayOutputStream wire;
+    private HttpServletResponse response;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        wire = new ByteArrayOutputStream();
+        response = mock(HttpServletResponse.class);
+        when(response.getContentType()).thenReturn("application/json");
+        when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                wire.write(b);
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+        });
+        Compression.setMinSize(MIN_SIZE);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        Compression.setMinSize(Compression.DEFAULT_MIN_SIZE);
+    }
+
+    @DisplayName("The coding with the highest quality is chosen, gzip wins ties")
+    @Test
+    public void testNegotiate() {
+        assertNull(Compression.negotiate(null));
+        assertNull(Compression.negotiate(""));
+        assertNull(Compression.negotiate("identity"));
+        assertNull(Compression.negotiate("br"));
+        assertEquals(Compression.GZIP, Compression.negotiate("gzip"));
+        assertEquals(Compression.GZIP, Compression.negotiate("deflate, gzip"));
+        assertEquals(Compression.GZIP, Compression.negotiate("x-gzip"));
+        assertEquals(Compression.GZIP, Compression.negotiate("*"));
+        assertEquals(Compression.DEFLATE, Compression.negotiate("deflate"));
+        assertEquals(Compression.DEFLATE, Compression.negotiate("gzip;q=0.5, deflate"));
+        assertEquals(Compression.DEFLATE, Compression.negotiate("GZIP;q=0, *"));
+        assertNull(Compression.negotiate("gzip;q=0, deflate;q=0"));
+        assertNull(Compression.negotiate("*;q=0"));
+    }
+
+    @DisplayName("Images are not compressed again")
+    @Test
+    public void testIsCompressible() {
+        assertTrue(Compression.isCompressible(null));
+        assertTrue(Compression.isCompressible("application/json"));
+        assertTrue(Compression.isCompressible("text/html; charset=utf-8"));
+        assertTrue(Compression.isCompressible("image/svg+xml"));
+        assertFalse(Compression.isCompressible("image/png"));
+        assertFalse(Compression.isCompressible("application/zip"));
+    }
+
+    @DisplayName("A large body is gzipped")
+    @Test
+    public void testGzip() throws IOException {
+        byte[] body = body(10 * MIN_SIZE);
+        write("gzip, deflate", body);
+        verify(response).setHeader("Content-Encoding", "gzip");
+        verify(response).addHeader("Vary", "Accept-Encoding");
+        assertTrue(wire.size() < body.length);
+        assertArrayEquals(body, readAll(new GZIPInputStream(new ByteArrayInputStream(wire.toByteArray()))));
+    }
+
+    @DisplayName("A large body is deflated")
+    @Test
+    public void testDeflate() throws IOException {
+        byte[] body = body(10 * MIN_SIZE);
+        write("deflate", body);
+        verify(response).setHeader("Content-Encoding", "deflate");
+        assertArrayEquals(body, readAll(new InflaterInputStream(new ByteArrayInputStream(wire.toByteArray()))));
+    }
+
+    @DisplayName("A body below the minimum size is sent as it is")
+    @Test
+    public void testSmallBody() throws IOException {
+        byte[] body = body(MIN_SIZE - 1);
+        write("gzip", body);
+        verify(response, never()).setHeader(anyString(), anyString());
+        assertArrayEquals(body, wire.toByteArray());
+    }
+
+    @DisplayName("Nothing is compressed for clients that do not ask for it")
+    @Test
+    public void testIdentity() throws IOException {
+        byte[] body = body(10 * MIN_SIZE);
+        write(null, body);
+        verify(response, never()).setHeader(anyString(), anyString());
+        verify(response).addHeader("Vary", "Accept-Encoding");
+        assertArrayEquals(body, wire.toByteArray());
+    }
+
+    private void write(String acceptEncoding, byte[] body) throws IOException {
+        try (OutputStream out = Compression.compress(acceptEncoding, response)) {
+            // write in small pieces, the way a JSON generator flushes its buffer.
+            for (int i = 0; i < body.length; i += 7) {
+                out.write(body, i, Math.min(7, body.length - i));
+            }
+        }
+    }
+
+    private static byte[] body(int size) {
+        StringBuilder sb = new StringBuilder(size);
+        for (int i = 0; sb.length() < size; i++) {
+            sb.append("{\"title\":\"Movie ").append(i).append("\"},");
+        }
+        return sb.substring(0, size).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        for (int n = in.read(buf); n >= 0; n = in.read(buf)) {
+            out.write(buf, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,95 @@
+package ch.fhnw.swc.mrs.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Tests for the cache of rendered JSON")
+public class JsonCacheTest {
+
+    private JsonCache<Item> cache; // class under test
+
+    @BeforeEach
+    public void setUp() {
+        cache = new JsonCache<>(Item::getId, Item::getVersion, 2);
+    }
+
+    @DisplayName("An entity is rendered once per version")
+    @Test
+    public void testRenderOncePerVersion() {
+        Item item = new Item("Metropolis");
+        byte[] json = cache.get(item);
+        assertEquals(JsonUtil.dataToJson(item), new String(json, StandardCharsets.UTF_8));
+        assertSame(json, cache.get(item));
+
+        item.name = "Nosferatu";
+        assertSame(json, cache.get(item), "a change without a new version is not noticed");
+        item.version++;
+        byte[] changed = cache.get(item);
+        assertEquals(JsonUtil.dataToJson(item), new String(changed, StandardCharsets.UTF_8));
+        assertSame(changed, cache.get(item));
+    }
+
+    @DisplayName("An older version does not replace a newer one")
+    @Test
+    public void testOlderVersion() {
+        Item item = new Item("Metropolis");
+        item.version = 2;
+        byte[] json = cache.get(item);
+        Item stale = new Item("Metropolis");
+        stale.id = item.id;
+        stale.version = 1;
+        assertNotSame(json, cache.get(stale));
+        assertSame(json, cache.get(item));
+    }
+
+    @DisplayName("Invalidated entities are rendered again, a full cache does not take new entities")
+    @Test
+    public void testInvalidateAndLimit() {
+        Item first = new Item("Metropolis");
+        Item second = new Item("Nosferatu");
+        Item third = new Item("M");
+        byte[] json = cache.get(first);
+        cache.get(second);
+        cache.get(third);
+        assertEquals(2, cache.size());
+        assertNotSame(cache.get(third), cache.get(third));
+
+        cache.invalidate(first.id);
+        assertEquals(1, cache.size());
+        assertNotSame(json, cache.get(first));
+        assertEquals(2, cache.size());
+    }
+
+    /**
+     * A versioned entity, serialized as a bean.
+     */
+    public static class Item {
+        private UUID id = UUID.randomUUID();
+        private long version;
+        private String name;
+
+        Item(String name) {
+            this.name = name;
+        }
+
+        public UUID getId() {
+            return id;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package ch.fhnw.swc.mrs.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+
+import ch.fhnw.swc.mrs.api.RentalRequest;
+import ch.fhnw.swc.mrs.model.Movie;
+import ch.fhnw.swc.mrs.model.PriceCategory;
+import ch.fhnw.swc.mrs.model.User;
+
+@DisplayName("Tests for the JSON conversions")
+public class JsonUtilTest {
+
+    @BeforeAll
+    public static void registerPriceCategories() {
+        PriceCategory.init();
+    }
+
+    @DisplayName("A streamed array is the same document as a converted collection")
+    @Test
+    public void testWriteJsonArray() throws IOException {
+        List<Map<String, Object>> data = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Map<String, Object> element = new LinkedHashMap<>();
+            element.put("id", i);
+            element.put("title", "Movie \"" + i + "\"");
+            data.add(element);
+        }
+        ClosingStream out = new ClosingStream();
+        JsonUtil.writeJsonArray(data.iterator(), out);
+        assertEquals(JsonUtil.dataToJson(data), out.toString());
+        assertTrue(out.closed);
+    }
+
+    @DisplayName("An empty sequence is written as an empty array")
+    @Test
+    public void testWriteEmptyJsonArray() throws IOException {
+        ClosingStream out = new ClosingStream();
+        JsonUtil.writeJsonArray(Collections.emptyIterator(), out);
+        assertEquals("[]", out.toString());
+    }
+
+    @DisplayName("Rendered elements are joined to the same document as a converted collection")
+    @Test
+    public void testWriteRenderedJsonArray() throws IOException {
+        List<Map<String, Object>> data = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            data.add(Collections.singletonMap("title", "Movie " + i));
+        }
+        ClosingStream out = new ClosingStream();
+        JsonUtil.writeJsonArray(data.iterator(), JsonUtil::dataToJsonBytes, out);
+        assertEquals(JsonUtil.dataToJson(data), out.toString());
+        assertTrue(out.closed);
+
+        out = new ClosingStream();
+        JsonUtil.writeJsonArray(Collections.emptyIterator(), JsonUtil::dataToJsonBytes, out);
+        assertEquals("[]", out.toString());
+    }
+
+    @DisplayName("A movie is decoded field by field, unknown fields are skipped")
+    @Test
+    public void testJsonToMovie() throws IOException {
+        Movie m = JsonUtil.jsonToMovie("{\"id\": \"00000000-0000-0000-0000-000000000004\", \"rented\": false, "
+                + "\"extra\": {\"title\": [\"ignored\"]}, \"title\": \"Eragon\", \"releaseDate\": \"2006-12-14\", "
+                + "\"priceCategory\": \"Children\", \"ageRating\": \"12\"}");
+        assertEquals(UUID.fromString("00000000-0000-0000-0000-000000000004"), m.getId());
+        assertEquals("Eragon", m.getTitle());
+        assertEquals(LocalDate.of(2006, 12, 14), m.getReleaseDate());
+        assertEquals("Children", m.getPriceCategory().toString());
+        assertEquals(12, m.getAgeRating());
+
+        assertThrows(JsonMappingException.class, () -> JsonUtil.jsonToMovie("{\"title\": \"Eragon\"}"));
+        assertThrows(JsonMappingException.class, () -> JsonUtil.jsonToMovie("[]"));
+    }
+
+    @DisplayName("Arrays and sequences of users are decoded while they are read")
+    @Test
+    public void testJsonToUsers() throws IOException {
+        String first = "{\"name\": \"Meier\", \"firstname\": \"Pia\", \"birthDate\": \"1987-10-04\"}";
+        String second = "{\"id\": \"20000000-0000-0000-0000-000000000002\", \"name\": \"Locher\", "
+                + "\"firstname\": \"Bernhard\", \"birthDate\": \"1998-01-01\"}";
+
+        List<User> array = JsonUtil.jsonToUsers(stream("[" + first + ", " + second + "]"));
+        List<User> lines = JsonUtil.jsonToUsers(stream(first + "\n" + second + "\n"));
+        for (List<User> users : Arrays.asList(array, lines)) {
+            assertEquals(2, users.size());
+            assertEquals("Pia", users.get(0).getFirstName());
+            assertEquals(LocalDate.of(1998, 1, 1), users.get(1).getBirthdate());
+            assertEquals(UUID.fromString("20000000-0000-0000-0000-000000000002"), users.get(1).getId());
+        }
+        assertEquals("Meier", JsonUtil.jsonToUsers(stream(first)).get(0).getName());
+        assertTrue(JsonUtil.jsonToUsers(stream("[]")).isEmpty());
+        assertThrows(JsonMappingException.class, () -> JsonUtil.jsonToUsers(stream("[" + first + ", 42]")));
+    }
+
+    @DisplayName("Ids and rental requests are decoded for the batch routes")
+    @Test
+    public void testBatchBodies() throws IOException {
+        UUID user = new UUID(0, 1);
+        UUID movie = new UUID(0, 2);
+        List<UUID> ids = JsonUtil.bodyToIds(stream("[\"" + user + "\", \"" + movie + "\"]"), Format.JSON);
+        assertEquals(Arrays.asList(user, movie), ids);
+        assertThrows(JsonMappingException.class, () -> JsonUtil.bodyToIds(stream("[\"42\"]"), Format.JSON));
+
+        List<RentalRequest> requests = JsonUtil.bodyToRentalRequests(stream(
+                "{\"userId\":\"" + user + "\",\"movieId\":\"" + movie + "\",\"rentalDate\":\"2018-01-02\"}\n"
+                + "{\"userId\":\"" + user + "\",\"movieId\":\"" + movie + "\"}\n"), Format.JSON);
+        assertEquals(2, requests.size());
+        assertEquals(user, requests.get(0).getUserId());
+        assertEquals(movie, requests.get(0).getMovieId());
+        assertEquals(LocalDate.of(2018, 1, 2), requests.get(0).getRentalDate());
+        assertEquals(LocalDate.now(), requests.get(1).getRentalDate());
+    }
+
+    @DisplayName("The binary formats carry the same objects as JSON")
+    @Test
+    public void testBinaryFormats() throws IOException {
+        Map<String, Object> movie = new LinkedHashMap<>();
+        movie.put("title", "Eragon");
+        movie.put("releaseDate", "2006-12-14");
+        movie.put("priceCategory", "Children");
+        movie.put("ageRating", 12);
+        Map<String, Object> user = new LinkedHashMap<>();
+        user.put("name", "Meier");
+        user.put("firstname", "Pia");
+        user.put("birthDate", "1987-10-04");
+        for (Format format : Arrays.asList(Format.SMILE, Format.CBOR)) {
+            byte[] body = JsonUtil.dataToBytes(movie, format);
+            assertNotEquals(JsonUtil.dataToJson(movie), new String(body, StandardCharsets.UTF_8));
+            Movie m = JsonUtil.bodyToMovie(body, format);
+            assertEquals("Eragon", m.getTitle());
+            assertEquals(12, m.getAgeRating());
+
+            ClosingStream out = new ClosingStream();
+            JsonUtil.writeArray(Arrays.asList(user, user).iterator(), format, out);
+            assertTrue(out.closed);
+            List<User> users = JsonUtil.bodyToUsers(new ByteArrayInputStream(out.toByteArray()), format);
+            assertEquals(2, users.size());
+            assertEquals(LocalDate.of(1987, 10, 4), users.get(1).getBirthdate());
+        }
+    }
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static class ClosingStream extends ByteArrayOutputStream {
+        private boolean closed;
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+
+        @Override
+        public String toString() {
+            return new String(toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package ch.fhnw.swc.mrs.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Tests for the media type negotiation")
+public class RequestUtilTest {
+
+    private static final String JSON = "application/json";
+    private static final String SMILE = "application/x-jackson-smile";
+    private static final String CBOR = "application/cbor";
+
+    @DisplayName("Without preference the server's first choice is taken")
+    @Test
+    public void testNoPreference() {
+        assertEquals(JSON, RequestUtil.negotiate(null, JSON, SMILE, CBOR));
+        assertEquals(JSON, RequestUtil.negotiate("", JSON, SMILE, CBOR));
+        assertEquals(JSON, RequestUtil.negotiate("*/*", JSON, SMILE, CBOR));
+        assertEquals(JSON, RequestUtil.negotiate("application/*", JSON, SMILE, CBOR));
+        assertEquals(JSON, RequestUtil.negotiate("text/html,application/xhtml+xml,*/*;q=0.8", JSON, SMILE, CBOR));
+    }
+
+    @DisplayName("The highest quality value wins")
+    @Test
+    public void testQualityValues() {
+        assertEquals(CBOR, RequestUtil.negotiate("application/cbor", JSON, SMILE, CBOR));
+        assertEquals(SMILE, RequestUtil.negotiate("application/json;q=0.5, application/x-jackson-smile", JSON,
+                SMILE, CBOR));
+        assertEquals(CBOR, RequestUtil.negotiate("Application/CBOR; q=0.9, */*;q=0.1", JSON, SMILE, CBOR));
+        assertEquals(SMILE, RequestUtil.negotiate("application/json;q=0.5, application/*", JSON, SMILE, CBOR));
+    }
+
+    @DisplayName("The most specific range decides, q=0 excludes a type")
+    @Test
+    public void testSpecificity() {
+        assertEquals(SMILE, RequestUtil.negotiate("application/json;q=0, */*", JSON, SMILE, CBOR));
+        assertEquals(JSON, RequestUtil.negotiate("*/*;q=0.1, application/json", JSON, SMILE, CBOR));
+        assertNull(RequestUtil.negotiate("application/*;q=0, */*", JSON, SMILE, CBOR));
+        assertNull(RequestUtil.negotiate("text/html, application/xml", JSON, SMILE, CBOR));
+        assertNull(RequestUtil.negotiate("application/json;q=zero", JSON));
+    }
+
+    @DisplayName("Formats are found by their media type")
+    @Test
+    public void testFormatFromContentType() {
+        assertEquals(Format.JSON, Format.fromContentType("application/json; charset=UTF-8"));
+        assertEquals(Format.SMILE, Format.fromContentType(SMILE));
+        assertEquals(Format.CBOR, Format.fromContentType(" application/CBOR"));
+        assertNull(Format.fromContentType("text/plain"));
+    }
+}
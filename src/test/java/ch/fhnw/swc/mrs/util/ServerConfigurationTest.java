@@ -0,0 +1,107 @@
+package ch.fhnw.swc.mrs.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Tests for the configuration of the web server")
+public class ServerConfigurationTest {
+
+    private static final String OVERRIDE = ServerConfiguration.PREFIX + ServerConfiguration.MAX_THREADS;
+
+    @AfterEach
+    public void tearDown() {
+        System.clearProperty(OVERRIDE);
+    }
+
+    @DisplayName("The server is configured from the classpath, system properties override it")
+    @Test
+    public void testLoadConfiguration() {
+        Properties config = ServerConfiguration.loadConfiguration();
+        assertEquals(4567, ServerConfiguration.getPort(config));
+        assertEquals("200", config.getProperty(ServerConfiguration.MAX_THREADS));
+        assertEquals("false", config.getProperty(ServerConfiguration.VIRTUAL_THREADS));
+
+        System.setProperty(OVERRIDE, "42");
+        assertEquals("42", ServerConfiguration.loadConfiguration().getProperty(ServerConfiguration.MAX_THREADS));
+    }
+
+    @DisplayName("The worker pool is sized as configured and rejects jobs beyond its queue")
+    @Test
+    public void testThreadPool() throws Exception {
+        Properties config = new Properties();
+        config.setProperty(ServerConfiguration.MIN_THREADS, "1");
+        config.setProperty(ServerConfiguration.MAX_THREADS, "1");
+        config.setProperty(ServerConfiguration.IDLE_TIMEOUT, "1000");
+        config.setProperty(ServerConfiguration.QUEUE_CAPACITY, "1");
+        QueuedThreadPool pool = ServerConfiguration.createThreadPool(config);
+        assertEquals(1, pool.getMinThreads());
+        assertEquals(1, pool.getMaxThreads());
+        assertEquals(1000, pool.getIdleTimeout());
+
+        pool.start();
+        try {
+            CountDownLatch busy = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            pool.execute(() -> {
+                busy.countDown();
+                await(release);
+            });
+            assertTrue(busy.await(5, TimeUnit.SECONDS));
+            pool.execute(() -> { });
+            assertThrows(RejectedExecutionException.class, () -> pool.execute(() -> { }));
+            release.countDown();
+        } finally {
+            pool.stop();
+        }
+    }
+
+    @DisplayName("Missing settings fall back to Jetty's defaults")
+    @Test
+    public void testDefaults() {
+        QueuedThreadPool pool = ServerConfiguration.createThreadPool(new Properties());
+        assertEquals(8, pool.getMinThreads());
+        assertEquals(200, pool.getMaxThreads());
+        assertEquals(60000, pool.getIdleTimeout());
+        assertEquals(4567, ServerConfiguration.getPort(new Properties()));
+    }
+
+    @DisplayName("Virtual threads are used where the runtime has them")
+    @Test
+    public void testVirtualThreadExecutor() throws Exception {
+        boolean supported = true;
+        try {
+            Thread.class.getMethod("ofVirtual");
+        } catch (NoSuchMethodException e) {
+            supported = false;
+        }
+        ExecutorService executor = ServerConfiguration.createVirtualThreadExecutor();
+        assertEquals(supported, executor != null);
+        if (executor != null) {
+            Future<Boolean> virtual = executor.submit(() -> (Boolean) Thread.class.getMethod("isVirtual")
+                    .invoke(Thread.currentThread()));
+            assertTrue(virtual.get(5, TimeUnit.SECONDS));
+            executor.shutdown();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -6,20 +6,15 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 //import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
-import java.net.URI;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
-import java.util.stream.Stream;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
-import ch.fhnw.swc.mrs.MovieRentalSystem;
 import ch.fhnw.swc.mrs.model.Movie;
 import ch.fhnw.swc.mrs.model.NewReleasePriceCategory;
 import ch.fhnw.swc.mrs.model.PriceCategory;
@@ -31,16 +26,7 @@ class ConversionsTest {
 	
 	@BeforeAll
     private static void loadPriceCategories() throws Exception {
-		URI uri = MovieRentalSystem.class.getClassLoader().getResource("data/pricecategories.config").toURI();
-		try (Stream<String> stream = Files.lines(Paths.get(uri))) {
-			stream.forEach(x -> {
-				try {
-					Class.forName(x);
-				} catch (ClassNotFoundException e) {
-					e.printStackTrace();
-				}
-			});
-		}
+		PriceCategory.init();
     }
 
     private Movie createMovieMock(UUID id, boolean isrented, int releaseyear) {